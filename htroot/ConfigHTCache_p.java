@@ -33,6 +33,7 @@ import java.util.zip.Deflater;
 
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.crawler.data.Cache;
+import net.yacy.kelondro.blob.Compressor;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.server.serverObjects;
@@ -64,6 +65,11 @@ public class ConfigHTCache_p {
             env.setConfig(SwitchboardConstants.PROXY_CACHE_SIZE, newProxyCacheSize);
             Cache.setMaxCacheSize(newProxyCacheSize * 1024L * 1024L);
             
+            /* RAM tier size */
+            final long newRAMTierSize = Math.max(post.getLong("ramTierSize", SwitchboardConstants.HTCACHE_RAM_TIER_SIZE_DEFAULT), 0);
+            env.setConfig(SwitchboardConstants.HTCACHE_RAM_TIER_SIZE, newRAMTierSize);
+            Cache.setRAMTierSize(newRAMTierSize * 1024L * 1024L);
+            
             /* Compression level*/
             /* Ensure a value within the range supported by the Deflater class */
 			final int newCompressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION,
@@ -71,6 +77,11 @@ public class ConfigHTCache_p {
 			env.setConfig(SwitchboardConstants.HTCACHE_COMPRESSION_LEVEL, newCompressionLevel);
 			Cache.setCompressionLevel(newCompressionLevel);
 			
+			/* Compression codec */
+			final Compressor.Codec newCodec = Compressor.Codec.parse(post.get("compressionCodec", SwitchboardConstants.HTCACHE_COMPRESSION_CODEC_DEFAULT));
+			env.setConfig(SwitchboardConstants.HTCACHE_COMPRESSION_CODEC, newCodec.name().toLowerCase());
+			Cache.setCompressionCodec(newCodec);
+			
             /* Synchronization lock timeout */
 			final long newLockTimeout = Math.max(10, Math.min(60000,
 					post.getLong("lockTimeout", SwitchboardConstants.HTCACHE_SYNC_LOCK_TIMEOUT_DEFAULT)));
@@ -112,18 +123,38 @@ public class ConfigHTCache_p {
         }
         prop.put("compressionLevels", levelsCount);
         
+        /* Compression codecs */
+		final Compressor.Codec configuredCodec = Compressor.Codec.parse(env.getConfig(SwitchboardConstants.HTCACHE_COMPRESSION_CODEC,
+				SwitchboardConstants.HTCACHE_COMPRESSION_CODEC_DEFAULT));
+		int codecsCount = 0;
+		for (final Compressor.Codec codec : Compressor.Codec.values()) {
+			prop.put("compressionCodecs_" + codecsCount + "_selected", codec == configuredCodec ? "1" : "0");
+			prop.put("compressionCodecs_" + codecsCount + "_value", codec.name().toLowerCase());
+			prop.put("compressionCodecs_" + codecsCount + "_name", codec == Compressor.Codec.DEFLATE ? "deflate - faster" : "gzip");
+			codecsCount++;
+		}
+		prop.put("compressionCodecs", codecsCount);
+        
 		prop.put("lockTimeout", env.getConfigLong(SwitchboardConstants.HTCACHE_SYNC_LOCK_TIMEOUT,
 				SwitchboardConstants.HTCACHE_SYNC_LOCK_TIMEOUT_DEFAULT));
         prop.put("actualCacheSize", Cache.getActualCacheSize() / 1024 / 1024);
         prop.put("actualCacheDocCount", Cache.getActualCacheDocCount());
         prop.put("docSizeAverage", Cache.getActualCacheDocCount() == 0 ? 0 : Cache.getActualCacheSize() / Cache.getActualCacheDocCount() / 1024);
         prop.put("maxCacheSize", env.getConfigLong(SwitchboardConstants.PROXY_CACHE_SIZE, 64));
+        prop.put("ramTierSize", env.getConfigLong(SwitchboardConstants.HTCACHE_RAM_TIER_SIZE, SwitchboardConstants.HTCACHE_RAM_TIER_SIZE_DEFAULT));
+        prop.put("actualRAMTierSize", Cache.getRAMTierUsedSize() / 1024 / 1024);
+        prop.put("actualRAMTierDocCount", Cache.getRAMTierDocCount());
         /* Statistics */
         final long hits = Cache.getHits();
         final long totalRequests = Cache.getTotalRequests();
         prop.put("hits", hits);
         prop.put("requests", totalRequests);
         prop.put("hitRate", NumberFormat.getPercentInstance().format(Cache.getHitRate()));
+        prop.put("contentRequests", Cache.getContentRequests());
+        prop.put("ramTierHits", Cache.getRAMTierHits());
+        prop.put("ramTierHitRate", NumberFormat.getPercentInstance().format(Cache.getRAMTierHitRate()));
+        prop.put("diskHits", Cache.getDiskHits());
+        prop.put("diskHitRate", NumberFormat.getPercentInstance().format(Cache.getDiskHitRate()));
         
         // return rewrite properties
         return prop;
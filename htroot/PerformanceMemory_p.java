@@ -235,10 +235,13 @@ public class PerformanceMemory_p {
         prop.putNum("namecache.noCache", Domains.nameCacheNoCachingPatternsSize());
         prop.putNum("blacklistcache.size", Switchboard.urlBlacklist.blacklistCacheSize());
         prop.putNum("searchevent.size", SearchEventCache.size());
-        prop.putNum("searchevent.hit", SearchEventCache.cacheHit);
-        prop.putNum("searchevent.miss", SearchEventCache.cacheMiss);
-        prop.putNum("searchevent.insert", SearchEventCache.cacheInsert);
-        prop.putNum("searchevent.delete", SearchEventCache.cacheDelete);
+        prop.putNum("searchevent.memory", SearchEventCache.memory() / (1024d * 1024d));
+        prop.putNum("searchevent.maxMemory", SearchEventCache.getMaxMemory() / (1024d * 1024d));
+        prop.putNum("searchevent.hit", SearchEventCache.cacheHit.get());
+        prop.putNum("searchevent.miss", SearchEventCache.cacheMiss.get());
+        prop.putNum("searchevent.insert", SearchEventCache.cacheInsert.get());
+        prop.putNum("searchevent.delete", SearchEventCache.cacheDelete.get());
+        prop.putNum("searchevent.evict", SearchEventCache.cacheEvict.get());
         // return rewrite values for templates
         return prop;
     }
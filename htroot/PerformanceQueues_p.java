@@ -25,6 +25,7 @@
 //if the shell's current path is HTROOT
 
 import java.io.File;
+import java.text.NumberFormat;
 import java.util.Iterator;
 import java.util.Map;
 
@@ -34,17 +35,25 @@ import net.yacy.cora.federate.solr.instance.RemoteInstance;
 import net.yacy.cora.protocol.ConnectionInfo;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.data.TransactionManager;
+import net.yacy.kelondro.data.citation.CitationReference;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.rwi.IODispatcher;
 import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.util.FileUtils;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.OS;
 import net.yacy.kelondro.workflow.BusyThread;
+import net.yacy.kelondro.workflow.WorkflowProcessor;
+import net.yacy.kelondro.workflow.WorkflowTuner;
+import net.yacy.peers.Dispatcher;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.search.index.Segment;
+import net.yacy.search.snippet.SnippetWorkerPool;
 import net.yacy.server.serverObjects;
 import net.yacy.server.serverSwitch;
 
@@ -257,7 +266,41 @@ public class PerformanceQueues_p {
             sb.setConfig(SwitchboardConstants.WORDCACHE_MAX_COUNT, Integer.toString(wordCacheMaxCount));
             if (rwi != null) rwi.setBufferMaxWordCount(wordCacheMaxCount);
         }
+
+        if ((post != null) && (post.containsKey("indexMergeSubmit"))) {
+            final int mergeConcurrency = post.getInt("indexMergeConcurrency", SwitchboardConstants.INDEX_MERGE_CONCURRENCY_DEFAULT);
+            final long mergeMaxBytesPerSecond = post.getLong("indexMergeMaxKBytesPerSecond", SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND_DEFAULT / 1024L) * 1024L;
+            if (mergeConcurrency > 0 && mergeMaxBytesPerSecond >= 0) {
+                sb.setConfig(SwitchboardConstants.INDEX_MERGE_CONCURRENCY, mergeConcurrency);
+                sb.setConfig(SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND, mergeMaxBytesPerSecond);
+                indexSegment.setMergePolicy(mergeConcurrency, mergeMaxBytesPerSecond);
+            }
+        }
         
+        if ((post != null) && (post.containsKey("indexerPoolSubmit"))) {
+            final boolean autotune = post.getBoolean("indexerPoolAutotune");
+            final int maxThreads = post.getInt("indexerPoolMaxThreads", SwitchboardConstants.INDEXER_POOL_MAX_THREADS_DEFAULT);
+            final int storageMaxThreads = post.getInt("indexerStorageMaxThreads", SwitchboardConstants.INDEXER_STORAGE_MAX_THREADS_DEFAULT);
+            final int storageBatchSize = post.getInt("indexerStorageBatchSize", SwitchboardConstants.INDEXER_STORAGE_BATCH_SIZE_DEFAULT);
+            if (maxThreads >= 0 && storageMaxThreads > 0 && storageBatchSize > 0) {
+                sb.setConfig(SwitchboardConstants.INDEXER_POOL_AUTOTUNE, autotune);
+                sb.setConfig(SwitchboardConstants.INDEXER_POOL_MAX_THREADS, maxThreads);
+                sb.setConfig(SwitchboardConstants.INDEXER_STORAGE_MAX_THREADS, storageMaxThreads);
+                sb.setConfig(SwitchboardConstants.INDEXER_STORAGE_BATCH_SIZE, storageBatchSize);
+                if (sb.indexingTuner != null) {
+                    sb.indexingTuner.setEnabled(autotune);
+                    for (final WorkflowTuner.Stage stage: sb.indexingTuner.stages()) {
+                        if (stage.getProcessor() == sb.indexingStorageProcessor) {
+                            stage.setBounds(stage.getMinConcurrency(), storageMaxThreads);
+                        } else {
+                            stage.setBounds(stage.getMinConcurrency(), maxThreads == 0 ? 2 * WorkflowProcessor.availableCPU : maxThreads);
+                        }
+                    }
+                }
+                if (sb.indexingStorageProcessor != null) sb.indexingStorageProcessor.setBatchSize(storageBatchSize);
+            }
+        }
+
         /* Setting remote searches max loads */
         if (post != null) {
         	if(post.containsKey("setRemoteSearchLoads")) {
@@ -322,6 +365,37 @@ public class PerformanceQueues_p {
 				HTTPClient.initPoolMaxConnections(HTTPClient.CONNECTION_MANAGER, maxTotal);
 			}
 
+			/* Configure the crawler outgoing HTTP connection pool */
+			maxTotal = post.getInt(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL,
+					SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL_DEFAULT);
+			if (maxTotal > 0) {
+				sb.setConfig(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL, maxTotal);
+				HTTPClient.getPool(TrafficClass.CRAWLER).setMaxTotal(maxTotal);
+			}
+
+			final int maxPerHost = post.getInt(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST,
+					SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST_DEFAULT);
+			if (maxPerHost > 0) {
+				sb.setConfig(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST, maxPerHost);
+				HTTPClient.getPool(TrafficClass.CRAWLER).setMaxPerHost(maxPerHost);
+			}
+
+			/* Configure the peer outgoing HTTP connection pool */
+			maxTotal = post.getInt(SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL,
+					SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL_DEFAULT);
+			if (maxTotal > 0) {
+				sb.setConfig(SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL, maxTotal);
+				HTTPClient.getPool(TrafficClass.PEER).setMaxTotal(maxTotal);
+			}
+
+			/* Configure the proxy outgoing HTTP connection pool */
+			maxTotal = post.getInt(SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL,
+					SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL_DEFAULT);
+			if (maxTotal > 0) {
+				sb.setConfig(SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL, maxTotal);
+				HTTPClient.getPool(TrafficClass.PROXY).setMaxTotal(maxTotal);
+			}
+
 			/* Configure the remote Solr outgoing HTTP connection pool */
 			maxTotal = post.getInt(SwitchboardConstants.HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL,
 					SwitchboardConstants.HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL_DEFAULT);
@@ -352,6 +426,77 @@ public class PerformanceQueues_p {
         prop.putNum("crawlPauseLocalsearchCurrent", (System.currentTimeMillis() - sb.localSearchLastAccess) / 1000);
         prop.putNum("crawlPauseRemotesearchCurrent", (System.currentTimeMillis() - sb.remoteSearchLastAccess) / 1000);
 
+        // index file merge settings and statistics
+        final IODispatcher merger = indexSegment.merger();
+        final IndexCell<CitationReference> citation = indexSegment.urlCitation();
+        prop.put("indexMergeConcurrency", sb.getConfigInt(SwitchboardConstants.INDEX_MERGE_CONCURRENCY, SwitchboardConstants.INDEX_MERGE_CONCURRENCY_DEFAULT));
+        prop.put("indexMergeMaxKBytesPerSecond", sb.getConfigLong(SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND, SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND_DEFAULT) / 1024L);
+        prop.putNum("indexMergeDumpQueue", merger == null ? 0 : merger.dumpQueueSize());
+        prop.putNum("indexMergeQueue", merger == null ? 0 : merger.mergeQueueSize());
+        prop.putNum("indexMergeActive", merger == null ? 0 : merger.activeMerges());
+        prop.put("indexMergeBacklog", Formatter.bytesToString(merger == null ? 0 : merger.mergeBacklog()));
+        prop.put("indexMergeSpeed", Formatter.bytesToString(merger == null ? 0 : merger.mergeBytesPerSecond()));
+        prop.putNum("indexMergeCount", merger == null ? 0 : merger.mergeCount());
+        prop.put("indexMergedBytes", Formatter.bytesToString(merger == null ? 0 : merger.mergedBytes()));
+        prop.putNum("indexMergeRWIFiles", rwi == null ? 0 : rwi.getSegmentCount());
+        prop.putNum("indexMergeCitationFiles", citation == null ? 0 : citation.getSegmentCount());
+
+        // DHT transmission queues and statistics of the target peers
+        final Dispatcher dispatcher = sb.getDhtDispatcher();
+        c = 0;
+        if (dispatcher != null) {
+            for (final Dispatcher.Target target: dispatcher.targets()) {
+                prop.putHTML("dhtTarget_" + c + "_name", target.getSeed().getName());
+                prop.putNum("dhtTarget_" + c + "_queued", target.queuedChunks());
+                prop.putNum("dhtTarget_" + c + "_inflight", target.inFlight());
+                prop.putNum("dhtTarget_" + c + "_chunks", target.transmittedChunks());
+                prop.putNum("dhtTarget_" + c + "_references", target.transmittedReferences());
+                prop.put("dhtTarget_" + c + "_speed", Formatter.bytesToString(target.bytesPerSecond()));
+                prop.putNum("dhtTarget_" + c + "_failures", target.failures());
+                prop.put("dhtTarget_" + c + "_failed", target.lastFailure() == 0 ? 0 : 1);
+                prop.putNum("dhtTarget_" + c + "_failed_age", (System.currentTimeMillis() - target.lastFailure()) / 1000);
+                c++;
+            }
+        }
+        prop.put("dhtTarget", c);
+        prop.put("dhtInFlight", Formatter.bytesToString(dispatcher == null ? 0 : dispatcher.inFlightBytes()));
+        prop.put("dhtMaxInFlight", Formatter.bytesToString(sb.getConfigLong(SwitchboardConstants.INDEX_DIST_MAX_INFLIGHT_KBYTES, SwitchboardConstants.INDEX_DIST_MAX_INFLIGHT_KBYTES_DEFAULT) * 1024L));
+
+        // snippet worker pool saturation and statistics
+        prop.putNum("snippetWorkersActive", SnippetWorkerPool.getActiveWorkers());
+        prop.putNum("snippetWorkersMax", SnippetWorkerPool.getMaxWorkers());
+        prop.putNum("snippetQueue", SnippetWorkerPool.getQueueSize());
+        prop.putNum("snippetQueueMax", SnippetWorkerPool.getMaxQueueSize());
+        prop.put("snippetSaturation", NumberFormat.getPercentInstance().format(SnippetWorkerPool.getSaturation()));
+        prop.put("snippetVirtual", SnippetWorkerPool.isVirtual() ? 1 : 0);
+        prop.putNum("snippetSubmitted", SnippetWorkerPool.getSubmitted());
+        prop.putNum("snippetRejected", SnippetWorkerPool.getRejected());
+        prop.putNum("snippetExpired", SnippetWorkerPool.getExpired());
+        prop.putNum("snippetCancelled", SnippetWorkerPool.getCancelled());
+
+        // indexing process thread settings and statistics
+        c = 0;
+        if (sb.indexingTuner != null) {
+            for (final WorkflowTuner.Stage stage: sb.indexingTuner.stages()) {
+                final WorkflowProcessor<?> processor = stage.getProcessor();
+                prop.put("indexer_" + c + "_name", processor.getName());
+                prop.putNum("indexer_" + c + "_queuesize", processor.getQueueSize());
+                prop.putNum("indexer_" + c + "_queuesizemax", processor.getMaxQueueSize());
+                prop.putNum("indexer_" + c + "_executors", processor.getExecutors());
+                prop.putNum("indexer_" + c + "_concurrency", processor.getMaxConcurrency());
+                prop.putNum("indexer_" + c + "_minconcurrency", stage.getMinConcurrency());
+                prop.putNum("indexer_" + c + "_maxconcurrency", stage.getMaxConcurrency());
+                prop.putNum("indexer_" + c + "_throughput", stage.getThroughput());
+                prop.putNum("indexer_" + c + "_busy", (long) (stage.getBusy() * 100));
+                c++;
+            }
+        }
+        prop.put("indexer", c);
+        prop.put("indexerPoolAutotune", sb.getConfigBool(SwitchboardConstants.INDEXER_POOL_AUTOTUNE, SwitchboardConstants.INDEXER_POOL_AUTOTUNE_DEFAULT) ? 1 : 0);
+        prop.put("indexerPoolMaxThreads", sb.getConfigInt(SwitchboardConstants.INDEXER_POOL_MAX_THREADS, SwitchboardConstants.INDEXER_POOL_MAX_THREADS_DEFAULT));
+        prop.put("indexerStorageMaxThreads", sb.getConfigInt(SwitchboardConstants.INDEXER_STORAGE_MAX_THREADS, SwitchboardConstants.INDEXER_STORAGE_MAX_THREADS_DEFAULT));
+        prop.put("indexerStorageBatchSize", sb.getConfigInt(SwitchboardConstants.INDEXER_STORAGE_BATCH_SIZE, SwitchboardConstants.INDEXER_STORAGE_BATCH_SIZE_DEFAULT));
+
         // table thread pool settings
         prop.put("pool_0_name","Crawler Pool");
         prop.put("pool_0_maxActive", sb.getConfigLong(SwitchboardConstants.CRAWLER_THREADS_ACTIVE_MAX, 0));
@@ -374,13 +519,26 @@ public class PerformanceQueues_p {
 		prop.put(SwitchboardConstants.HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL,
 				sb.getConfigInt(SwitchboardConstants.HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL,
 						SwitchboardConstants.HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL_DEFAULT));
+		prop.put(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL,
+				sb.getConfigInt(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL,
+						SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL_DEFAULT));
+		prop.put(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST,
+				sb.getConfigInt(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST,
+						SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST_DEFAULT));
+		prop.put(SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL,
+				sb.getConfigInt(SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL,
+						SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL_DEFAULT));
+		prop.put(SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL,
+				sb.getConfigInt(SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL,
+						SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL_DEFAULT));
 		/* Connection pools stats */
-		PoolStats stats = HTTPClient.CONNECTION_MANAGER.getTotalStats();
-		prop.put("pool.general.leased", stats.getLeased());
-		prop.put("pool.general.available", stats.getAvailable());
-		prop.put("pool.general.pending", stats.getPending());
+		putPoolStats(prop, "pool.general.", HTTPClient.getPool(TrafficClass.GENERAL));
+		putPoolStats(prop, "pool.crawler.", HTTPClient.getPool(TrafficClass.CRAWLER));
+		prop.put("pool.crawler.sizedHosts", HTTPClient.getPool(TrafficClass.CRAWLER).getSizedHosts());
+		putPoolStats(prop, "pool.peer.", HTTPClient.getPool(TrafficClass.PEER));
+		putPoolStats(prop, "pool.proxy.", HTTPClient.getPool(TrafficClass.PROXY));
 		
-		stats = RemoteInstance.CONNECTION_MANAGER.getTotalStats();
+		final PoolStats stats = RemoteInstance.CONNECTION_MANAGER.getTotalStats();
 		prop.put("pool.remoteSolr.leased", stats.getLeased());
 		prop.put("pool.remoteSolr.available", stats.getAvailable());
 		prop.put("pool.remoteSolr.pending", stats.getPending());
@@ -418,6 +576,19 @@ public class PerformanceQueues_p {
         return prop;
     }
 
+    /**
+     * Put the statistics of an outgoing HTTP connection pool with the given property prefix
+     */
+    private static void putPoolStats(final serverObjects prop, final String prefix, final HTTPConnectionPool pool) {
+        final PoolStats stats = pool.getStats();
+        prop.put(prefix + "leased", stats.getLeased());
+        prop.put(prefix + "available", stats.getAvailable());
+        prop.put(prefix + "pending", stats.getPending());
+        prop.put(prefix + "requests", pool.getRequests());
+        prop.put(prefix + "reused", NumberFormat.getPercentInstance().format(pool.getReuseRatio()));
+        prop.put(prefix + "handshakes", pool.getHandshakes());
+    }
+
     private static String d(final String a, final String b) {
         return (a == null) ? b : a;
     }
@@ -0,0 +1,410 @@
+/**
+ *  BufferedSolrConnector
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.federate.solr.connector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.solr.client.solrj.response.QueryResponse;
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.SolrInputField;
+import org.apache.solr.common.params.ModifiableSolrParams;
+
+import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * A write-behind buffer in front of another connector. Added documents are collected and written
+ * to the backend connector in batches, when the buffer holds batchSize documents or when the oldest
+ * buffered document is older than maxAge milliseconds.
+ *
+ * Documents stay in the buffer until they have been written to the backend, so getDocumentById
+ * and getLoadTimeURL always see the latest added document. Deletions and partial updates are applied
+ * to the buffer and then to the backend in the right order. Queries other than the access by id are
+ * answered by the backend alone and see buffered documents only after they have been written.
+ */
+public class BufferedSolrConnector extends AbstractSolrConnector implements SolrConnector {
+
+    private final static ConcurrentLog log = new ConcurrentLog("BufferedSolrConnector");
+
+    private final SolrConnector connector;
+    private final LinkedHashMap<String, SolrInputDocument> buffer; // the buffered documents; the lock of the map protects the buffer fields
+    private final ReentrantLock writeLock; // serializes all writes to the backend
+    private final int batchSize;
+    private final long maxAge;
+    private long bufferStart; // time when the oldest document in the buffer was added
+    private Thread flusher;
+
+    /**
+     * @param connector the backend connector
+     * @param batchSize the number of documents that are written to the backend at once
+     * @param maxAge the maximum time in milliseconds that a document stays in the buffer
+     */
+    public BufferedSolrConnector(final SolrConnector connector, final int batchSize, final long maxAge) {
+        this.connector = connector;
+        this.buffer = new LinkedHashMap<String, SolrInputDocument>();
+        this.writeLock = new ReentrantLock();
+        this.batchSize = Math.max(1, batchSize);
+        this.maxAge = Math.max(1, maxAge);
+        this.bufferStart = 0;
+        this.flusher = new Thread("BufferedSolrConnector.flusher") {
+            @Override
+            public void run() {
+                flushLoop();
+            }
+        };
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    public SolrConnector getBackend() {
+        return this.connector;
+    }
+
+    private void flushLoop() {
+        while (this.flusher == Thread.currentThread()) {
+            long wait;
+            synchronized (this.buffer) {
+                wait = this.buffer.isEmpty() ? this.maxAge : this.bufferStart + this.maxAge - System.currentTimeMillis();
+                if (wait > 0) {
+                    try {
+                        this.buffer.wait(wait);
+                    } catch (final InterruptedException e) {
+                        break;
+                    }
+                    continue;
+                }
+            }
+            try {
+                flush();
+            } catch (final Throwable e) {
+                log.warn("could not write buffered documents: " + e.getMessage(), e);
+                // do not try again at once
+                try {Thread.sleep(this.maxAge);} catch (final InterruptedException ee) {break;}
+            }
+        }
+    }
+
+    /**
+     * write all buffered documents to the backend
+     * @throws IOException
+     */
+    public void flush() throws IOException {
+        this.writeLock.lock();
+        try {
+            final List<SolrInputDocument> docs;
+            synchronized (this.buffer) {
+                if (this.buffer.isEmpty()) return;
+                docs = new ArrayList<SolrInputDocument>(this.buffer.values());
+            }
+            this.connector.add(docs);
+            synchronized (this.buffer) {
+                // documents which have been replaced in the meantime stay in the buffer
+                for (final SolrInputDocument doc: docs) this.buffer.remove(id(doc), doc);
+                this.bufferStart = System.currentTimeMillis();
+            }
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    /**
+     * write the buffered documents and stop the flusher thread; the backend is not closed
+     */
+    public void stop() {
+        final Thread t = this.flusher;
+        this.flusher = null;
+        if (t != null) t.interrupt();
+        try {
+            flush();
+        } catch (final Throwable e) {
+            log.warn("could not write buffered documents: " + e.getMessage(), e);
+        }
+    }
+
+    private static String id(final SolrInputDocument doc) {
+        return (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+    }
+
+    /**
+     * @return true if the document contains field modifiers of a partial update
+     */
+    private static boolean isPartialUpdate(final SolrInputDocument doc) {
+        for (final SolrInputField field: doc) {
+            if (field.getValue() instanceof Map) return true;
+        }
+        return false;
+    }
+
+    private SolrInputDocument buffered(final String id) {
+        synchronized (this.buffer) {
+            return this.buffer.get(id);
+        }
+    }
+
+    @Override
+    public int bufferSize() {
+        synchronized (this.buffer) {
+            return this.buffer.size();
+        }
+    }
+
+    @Override
+    public void clearCaches() {
+        try {
+            flush();
+        } catch (final IOException e) {
+            log.warn("could not write buffered documents: " + e.getMessage(), e);
+        }
+        this.connector.clearCaches();
+    }
+
+    @Override
+    public long getSize() {
+        return this.connector.getSize() + bufferSize();
+    }
+
+    @Override
+    public void commit(final boolean softCommit) {
+        try {
+            flush();
+        } catch (final IOException e) {
+            log.warn("could not write buffered documents: " + e.getMessage(), e);
+        }
+        this.connector.commit(softCommit);
+    }
+
+    @Override
+    public void optimize(final int maxSegments) {
+        commit(true);
+        this.connector.optimize(maxSegments);
+    }
+
+    @Override
+    public int getSegmentCount() {
+        return this.connector.getSegmentCount();
+    }
+
+    @Override
+    public boolean isClosed() {
+        return this.connector.isClosed();
+    }
+
+    @Override
+    public synchronized void close() {
+        stop();
+        this.connector.close();
+    }
+
+    @Override
+    public void clear() throws IOException {
+        this.writeLock.lock();
+        try {
+            synchronized (this.buffer) {
+                this.buffer.clear();
+            }
+            this.connector.clear();
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteById(final String id) throws IOException {
+        this.writeLock.lock();
+        try {
+            synchronized (this.buffer) {
+                this.buffer.remove(id);
+            }
+            this.connector.deleteById(id);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteByIds(final Collection<String> ids) throws IOException {
+        this.writeLock.lock();
+        try {
+            synchronized (this.buffer) {
+                for (final String id: ids) this.buffer.remove(id);
+            }
+            this.connector.deleteByIds(ids);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void deleteByQuery(final String querystring) throws IOException {
+        this.writeLock.lock();
+        try {
+            // the query may match buffered documents
+            flush();
+            this.connector.deleteByQuery(querystring);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void add(final SolrInputDocument solrdoc) throws IOException, SolrException {
+        final String id = id(solrdoc);
+        if (id == null || isPartialUpdate(solrdoc)) {
+            // a partial update must be applied to the latest version of the document
+            this.writeLock.lock();
+            try {
+                flush();
+                this.connector.add(solrdoc);
+            } finally {
+                this.writeLock.unlock();
+            }
+            return;
+        }
+        boolean full;
+        synchronized (this.buffer) {
+            if (this.buffer.isEmpty()) {
+                this.bufferStart = System.currentTimeMillis();
+                this.buffer.notifyAll(); // let the flusher thread wait for the age of this document
+            }
+            this.buffer.remove(id); // keep the order of insertion
+            this.buffer.put(id, solrdoc);
+            full = this.buffer.size() >= this.batchSize;
+        }
+        if (full) flush();
+    }
+
+    @Override
+    public void add(final Collection<SolrInputDocument> solrdocs) throws IOException, SolrException {
+        for (final SolrInputDocument solrdoc: solrdocs) add(solrdoc);
+    }
+
+    @Override
+    public void update(final SolrInputDocument solrdoc) throws IOException, SolrException {
+        this.writeLock.lock();
+        try {
+            flush();
+            this.connector.update(solrdoc);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void update(final Collection<SolrInputDocument> solrdoc) throws IOException, SolrException {
+        this.writeLock.lock();
+        try {
+            flush();
+            this.connector.update(solrdoc);
+        } finally {
+            this.writeLock.unlock();
+        }
+    }
+
+    @Override
+    public SolrDocument getDocumentById(final String key, final String ... fields) throws IOException {
+        final SolrInputDocument doc = buffered(key);
+        if (doc == null) return this.connector.getDocumentById(key, fields);
+        final SolrDocument sd = new SolrDocument();
+        if (fields == null || fields.length == 0) {
+            for (final SolrInputField field: doc) sd.setField(field.getName(), field.getValue());
+        } else {
+            for (final String name: fields) {
+                final SolrInputField field = doc.getField(name);
+                if (field != null) sd.setField(name, field.getValue());
+            }
+        }
+        return sd;
+    }
+
+    @Override
+    public LoadTimeURL getLoadTimeURL(final String id) throws IOException {
+        final SolrInputDocument doc = buffered(id);
+        if (doc == null) return this.connector.getLoadTimeURL(id);
+        return getLoadTimeURL(doc);
+    }
+
+    @Override
+    public QueryResponse getResponseByParams(final ModifiableSolrParams query) throws IOException {
+        return this.connector.getResponseByParams(query);
+    }
+
+    @Override
+    public SolrDocumentList getDocumentListByParams(final ModifiableSolrParams params) throws IOException {
+        return this.connector.getDocumentListByParams(params);
+    }
+
+    @Override
+    public SolrDocumentList getDocumentListByQuery(final String querystring, final String sort, final int offset, final int count, final String ... fields) throws IOException {
+        return this.connector.getDocumentListByQuery(querystring, sort, offset, count, fields);
+    }
+
+    @Override
+    public long getCountByQuery(final String querystring) throws IOException {
+        return this.connector.getCountByQuery(querystring);
+    }
+
+    @Override
+    public LinkedHashMap<String, ReversibleScoreMap<String>> getFacets(final String query, final int maxresults, final String ... fields) throws IOException {
+        return this.connector.getFacets(query, maxresults, fields);
+    }
+
+    @Override
+    public BlockingQueue<SolrDocument> concurrentDocumentsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency, final boolean prefetchIDs, final String ... fields) {
+        return this.connector.concurrentDocumentsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency, prefetchIDs, fields);
+    }
+
+    @Override
+    public BlockingQueue<SolrDocument> concurrentDocumentsByQueries(final List<String> querystrings, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency, final boolean prefetchIDs, final String ... fields) {
+        return this.connector.concurrentDocumentsByQueries(querystrings, sort, offset, maxcount, maxtime, buffersize, concurrency, prefetchIDs, fields);
+    }
+
+    @Override
+    public BlockingQueue<String> concurrentIDsByQuery(final String querystring, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
+        return this.connector.concurrentIDsByQuery(querystring, sort, offset, maxcount, maxtime, buffersize, concurrency);
+    }
+
+    @Override
+    public BlockingQueue<String> concurrentIDsByQueries(final List<String> querystrings, final String sort, final int offset, final int maxcount, final long maxtime, final int buffersize, final int concurrency) {
+        return this.connector.concurrentIDsByQueries(querystrings, sort, offset, maxcount, maxtime, buffersize, concurrency);
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        try {
+            flush();
+        } catch (final IOException e) {
+            log.warn("could not write buffered documents: " + e.getMessage(), e);
+        }
+        return this.connector.iterator();
+    }
+}
@@ -21,14 +21,30 @@
 package net.yacy.cora.federate.solr.connector;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.atomic.AtomicLong;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import net.yacy.cora.sorting.ClusteredScoreMap;
 import net.yacy.cora.sorting.ReversibleScoreMap;
+import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+import net.yacy.search.schema.CollectionSchema;
 
 import org.apache.solr.client.solrj.response.QueryResponse;
 import org.apache.solr.common.SolrDocument;
@@ -37,20 +53,33 @@ import org.apache.solr.common.SolrException;
 import org.apache.solr.common.SolrInputDocument;
 import org.apache.solr.common.params.CommonParams;
 import org.apache.solr.common.params.ModifiableSolrParams;
+import org.apache.solr.common.util.NamedList;
 
 public class MirrorSolrConnector extends AbstractSolrConnector implements SolrConnector {
 
+    /** the default time in milliseconds that a query waits for the result of each of the twin solrs */
+    public static final long DEFAULT_TIMEOUT = 10000;
+
+    /** runs the queries to the twin solrs concurrently */
+    private final static ExecutorService queryExecutor = Executors.newCachedThreadPool(
+            new NamePrefixThreadFactory(MirrorSolrConnector.class.getSimpleName() + ".query"));
+
     // the twin solrs
     private SolrConnector solr0, solr1;
+    private volatile long timeout0, timeout1;
 
     public MirrorSolrConnector() {
         this.solr0 = null;
         this.solr1 = null;
+        this.timeout0 = DEFAULT_TIMEOUT;
+        this.timeout1 = DEFAULT_TIMEOUT;
     }
     
     public MirrorSolrConnector(SolrConnector solr0, SolrConnector solr1) {
         this.solr0 = solr0;
         this.solr1 = solr1;
+        this.timeout0 = DEFAULT_TIMEOUT;
+        this.timeout1 = DEFAULT_TIMEOUT;
     }
 
     @Override
@@ -237,35 +266,22 @@ public class MirrorSolrConnector extends AbstractSolrConnector implements SolrCo
             SolrDocumentList list = this.solr1.getDocumentListByQuery(querystring, sort, offset, count, fields);
             return list;
         }
+        return getDocumentListByParams(getSolrQuery(querystring, sort, offset, count, fields));
+    }
 
-        // combine both lists
-        SolrDocumentList l;
-        l = this.solr0.getDocumentListByQuery(querystring, sort, offset, count, fields);
-        if (l.size() >= count) return l;
-
-        // at this point we need to know how many results are in solr0
-        // compute this with a very bad hack; replace with better method later
-        int size0 = 0;
-        { //bad hack - TODO: replace
-            SolrDocumentList lHack = this.solr0.getDocumentListByQuery(querystring, sort, 0, Integer.MAX_VALUE, fields);
-            size0 = lHack.size();
-        }
-
-        // now use the size of the first query to do a second query
-        final SolrDocumentList list = new SolrDocumentList();
-        for (final SolrDocument d: l) list.add(d);
-        l = this.solr1.getDocumentListByQuery(querystring, sort, offset + l.size() - size0, count - l.size(), fields);
-        for (final SolrDocument d: l) list.add(d);
-
-        return list;
+    /**
+     * set the time that a query waits for the result of each of the twin solrs.
+     * If one solr does not answer in time, the result of the other one is returned.
+     * @param timeout0 the time in milliseconds for solr0
+     * @param timeout1 the time in milliseconds for solr1
+     */
+    public void setTimeouts(final long timeout0, final long timeout1) {
+        this.timeout0 = timeout0;
+        this.timeout1 = timeout1;
     }
 
     @Override
     public QueryResponse getResponseByParams(ModifiableSolrParams query) throws IOException, SolrException {
-        Integer count0 = query.getInt(CommonParams.ROWS);
-        int count = count0 == null ? 10 : count0.intValue();
-        Integer start0 = query.getInt(CommonParams.START);
-        int start = start0 == null ? 0 : start0.intValue();
         if (this.solr0 == null && this.solr1 == null) return new QueryResponse();
 
         if (this.solr0 != null && this.solr1 == null) {
@@ -277,39 +293,33 @@ public class MirrorSolrConnector extends AbstractSolrConnector implements SolrCo
             return list;
         }
 
-        // combine both lists
-        QueryResponse rsp = this.solr0.getResponseByParams(query);
-        final SolrDocumentList l = rsp.getResults();
-        if (l.size() >= count) return rsp;
-
-        // at this point we need to know how many results are in solr0
-        // compute this with a very bad hack; replace with better method later
-        int size0 = 0;
-        { //bad hack - TODO: replace
-            query.set(CommonParams.START, 0);
-            query.set(CommonParams.ROWS, Integer.MAX_VALUE);
-            QueryResponse lHack = this.solr0.getResponseByParams(query);
-            query.set(CommonParams.START, start);
-            query.set(CommonParams.ROWS, count);
-            size0 = lHack.getResults().size();
-        }
+        // query both solrs concurrently
+        final int start = start(query);
+        final int count = rows(query);
+        final ModifiableSolrParams twinQuery = twinQuery(query, start, count);
+        final QueryResponse[] rsp = fanOut(new Callable<QueryResponse>() {
+            @Override
+            public QueryResponse call() throws Exception {
+                return MirrorSolrConnector.this.solr0.getResponseByParams(new ModifiableSolrParams(twinQuery));
+            }
+        }, new Callable<QueryResponse>() {
+            @Override
+            public QueryResponse call() throws Exception {
+                return MirrorSolrConnector.this.solr1.getResponseByParams(new ModifiableSolrParams(twinQuery));
+            }
+        }, new QueryResponse[2]);
+        if (rsp[0] == null) return response(rsp[1], slice(rsp[1].getResults(), start, count));
+        if (rsp[1] == null) return response(rsp[0], slice(rsp[0].getResults(), start, count));
 
-        // now use the size of the first query to do a second query
-        query.set(CommonParams.START, start + l.size() - size0);
-        query.set(CommonParams.ROWS, count - l.size());
-        QueryResponse rsp1 = this.solr1.getResponseByParams(query);
-        query.set(CommonParams.START, start);
-        query.set(CommonParams.ROWS, count);
-        // TODO: combine both
-        return rsp1;
+        // combine both responses
+        final SolrDocumentList list = merge(rsp[0].getResults(), rsp[1].getResults(), sortComparator(query.get(CommonParams.SORT)), start, count);
+        final QueryResponse merged = response(rsp[0], list);
+        mergeFacetFields(merged.getResponse(), rsp[1].getResponse());
+        return merged;
     }
 
     @Override
     public SolrDocumentList getDocumentListByParams(ModifiableSolrParams query) throws IOException, SolrException {
-        Integer count0 = query.getInt(CommonParams.ROWS);
-        int count = count0 == null ? 10 : count0.intValue();
-        Integer start0 = query.getInt(CommonParams.START);
-        int start = start0 == null ? 0 : start0.intValue();
         if (this.solr0 == null && this.solr1 == null) return new SolrDocumentList();
 
         if (this.solr0 != null && this.solr1 == null) {
@@ -321,32 +331,225 @@ public class MirrorSolrConnector extends AbstractSolrConnector implements SolrCo
             return list;
         }
 
+        // query both solrs concurrently
+        final int start = start(query);
+        final int count = rows(query);
+        final ModifiableSolrParams twinQuery = twinQuery(query, start, count);
+        final SolrDocumentList[] l = fanOut(new Callable<SolrDocumentList>() {
+            @Override
+            public SolrDocumentList call() throws Exception {
+                return MirrorSolrConnector.this.solr0.getDocumentListByParams(new ModifiableSolrParams(twinQuery));
+            }
+        }, new Callable<SolrDocumentList>() {
+            @Override
+            public SolrDocumentList call() throws Exception {
+                return MirrorSolrConnector.this.solr1.getDocumentListByParams(new ModifiableSolrParams(twinQuery));
+            }
+        }, new SolrDocumentList[2]);
+        if (l[0] == null) return slice(l[1], start, count);
+        if (l[1] == null) return slice(l[0], start, count);
+
         // combine both lists
-        final SolrDocumentList l = this.solr0.getDocumentListByParams(query);
-        if (l.size() >= count) return l;
-
-        // at this point we need to know how many results are in solr0
-        // compute this with a very bad hack; replace with better method later
-        int size0 = 0;
-        { //bad hack - TODO: replace
-            query.set(CommonParams.START, 0);
-            query.set(CommonParams.ROWS, Integer.MAX_VALUE);
-            final SolrDocumentList lHack = this.solr0.getDocumentListByParams(query);
-            query.set(CommonParams.START, start);
-            query.set(CommonParams.ROWS, count);
-            size0 = lHack.size();
+        return merge(l[0], l[1], sortComparator(query.get(CommonParams.SORT)), start, count);
+    }
+
+    private static int start(final ModifiableSolrParams query) {
+        final Integer start0 = query.getInt(CommonParams.START);
+        return start0 == null ? 0 : Math.max(0, start0.intValue());
+    }
+
+    private static int rows(final ModifiableSolrParams query) {
+        final Integer count0 = query.getInt(CommonParams.ROWS);
+        return count0 == null ? 10 : Math.max(0, count0.intValue());
+    }
+
+    /**
+     * @return a copy of the query which requests all documents up to the end of the wanted page, because the
+     * page of the combined result may be composed of any documents before that position in each solr
+     */
+    private static ModifiableSolrParams twinQuery(final ModifiableSolrParams query, final int start, final int count) {
+        final ModifiableSolrParams twinQuery = new ModifiableSolrParams(query);
+        twinQuery.set(CommonParams.START, 0);
+        twinQuery.set(CommonParams.ROWS, (int) Math.min(Integer.MAX_VALUE, (long) start + (long) count));
+        return twinQuery;
+    }
+
+    /**
+     * run the queries on both solrs concurrently and wait for each result at most the timeout of its solr
+     * @return an array with the result of solr0 and solr1; at most one of them is null if the solr did not answer in time
+     * @throws IOException if both solrs failed
+     */
+    private <T> T[] fanOut(final Callable<T> query0, final Callable<T> query1, final T[] result) throws IOException {
+        final long start = System.currentTimeMillis();
+        final Future<T> f0 = queryExecutor.submit(query0);
+        final Future<T> f1 = queryExecutor.submit(query1);
+        Exception e0 = null, e1 = null;
+        try {
+            result[0] = f0.get(Math.max(0, start + this.timeout0 - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException | ExecutionException | TimeoutException e) {
+            e0 = e;
+            f0.cancel(true);
         }
+        try {
+            result[1] = f1.get(Math.max(0, start + this.timeout1 - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+        } catch (final InterruptedException | ExecutionException | TimeoutException e) {
+            e1 = e;
+            f1.cancel(true);
+        }
+        if (result[0] == null && result[1] == null) {
+            final Exception e = e0 != null ? e0 : e1;
+            final Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+            if (cause instanceof IOException) throw (IOException) cause;
+            if (cause instanceof SolrException) throw (SolrException) cause;
+            throw new IOException("no result from the mirrored solrs: " + (cause == null ? "null" : cause.getMessage()), cause);
+        }
+        if (e0 != null) ConcurrentLog.info("MirrorSolrConnector", "no result from solr0: " + e0.getClass().getSimpleName());
+        if (e1 != null) ConcurrentLog.info("MirrorSolrConnector", "no result from solr1: " + e1.getClass().getSimpleName());
+        return result;
+    }
 
-        // now use the size of the first query to do a second query
-        query.set(CommonParams.START, start + l.size() - size0);
-        query.set(CommonParams.ROWS, count - l.size());
-        final SolrDocumentList l1 = this.solr1.getDocumentListByParams(query);
-        query.set(CommonParams.START, start);
-        query.set(CommonParams.ROWS, count);
-        // TODO: combine both
-        return l1;
+    /**
+     * @return the documents of the list from position start on, at most count documents
+     */
+    private static SolrDocumentList slice(final SolrDocumentList list, final int start, final int count) {
+        final SolrDocumentList slice = new SolrDocumentList();
+        slice.setNumFound(list.getNumFound());
+        slice.setStart(start);
+        slice.setMaxScore(list.getMaxScore());
+        for (int i = start; i < list.size() && slice.size() < count; i++) slice.add(list.get(i));
+        return slice;
     }
-    
+
+    /**
+     * merge two result lists in the order of the comparator and take a page from the merged list.
+     * The lists are read in one pass and only the documents of the page are collected; documents
+     * which are contained in both lists are taken only once.
+     * @param list0 the result of solr0, sorted by comparator
+     * @param list1 the result of solr1, sorted by comparator
+     * @param comparator the order of the lists or null if the order is not known; then the documents of list0 come first
+     * @param start the position of the page in the merged list
+     * @param count the size of the page
+     * @return the page of the merged list
+     */
+    protected static SolrDocumentList merge(final SolrDocumentList list0, final SolrDocumentList list1, final Comparator<SolrDocument> comparator, final int start, final int count) {
+        final SolrDocumentList list = new SolrDocumentList();
+        list.setNumFound(list0.getNumFound() + list1.getNumFound());
+        list.setStart(start);
+        final Float maxScore0 = list0.getMaxScore(), maxScore1 = list1.getMaxScore();
+        if (maxScore0 == null || maxScore1 == null) list.setMaxScore(maxScore0 == null ? maxScore1 : maxScore0);
+        else list.setMaxScore(Math.max(maxScore0.floatValue(), maxScore1.floatValue()));
+        final String idField = CollectionSchema.id.getSolrFieldName();
+        final Set<Object> ids = new HashSet<Object>();
+        int i0 = 0, i1 = 0, position = 0;
+        while (list.size() < count && (i0 < list0.size() || i1 < list1.size())) {
+            final SolrDocument doc;
+            if (i1 >= list1.size() || (i0 < list0.size() && (comparator == null || comparator.compare(list0.get(i0), list1.get(i1)) <= 0))) {
+                doc = list0.get(i0++);
+            } else {
+                doc = list1.get(i1++);
+            }
+            final Object id = doc.getFieldValue(idField);
+            if (id != null && !ids.add(id)) continue; // a mirrored document
+            if (position++ >= start) list.add(doc);
+        }
+        return list;
+    }
+
+    /**
+     * @param sort a solr sort parameter, i.e. "load_date_dt desc,id asc"
+     * @return a comparator for documents sorted by that parameter or null if no sort is given;
+     * without a sort parameter solr sorts by score which is compared if the documents contain the score
+     */
+    protected static Comparator<SolrDocument> sortComparator(final String sort) {
+        final String spec = sort == null || sort.trim().isEmpty() ? "score desc" : sort;
+        final List<String> fields = new ArrayList<String>();
+        final List<Boolean> ascending = new ArrayList<Boolean>();
+        for (final String clause: spec.split(",")) {
+            final String[] c = clause.trim().split("\\s+");
+            if (c.length == 0 || c[0].isEmpty()) continue;
+            fields.add(c[0]);
+            ascending.add(c.length < 2 || !"desc".equalsIgnoreCase(c[1]));
+        }
+        if (fields.isEmpty()) return null;
+        return new Comparator<SolrDocument>() {
+            @SuppressWarnings({ "unchecked", "rawtypes" })
+            @Override
+            public int compare(final SolrDocument d0, final SolrDocument d1) {
+                for (int i = 0; i < fields.size(); i++) {
+                    final Object v0 = d0.getFirstValue(fields.get(i));
+                    final Object v1 = d1.getFirstValue(fields.get(i));
+                    int c;
+                    if (v0 == null || v1 == null) {
+                        c = v0 == null ? (v1 == null ? 0 : 1) : -1; // missing values last
+                    } else if (v0 instanceof Comparable && v0.getClass() == v1.getClass()) {
+                        c = ((Comparable) v0).compareTo(v1);
+                        if (!ascending.get(i)) c = -c;
+                    } else {
+                        c = 0;
+                    }
+                    if (c != 0) return c;
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * @return a copy of the response with the given result list
+     */
+    private static QueryResponse response(final QueryResponse rsp, final SolrDocumentList list) {
+        final NamedList<Object> response = rsp.getResponse().clone();
+        final int p = response.indexOf("response", 0);
+        if (p >= 0) response.setVal(p, list); else response.add("response", list);
+        final QueryResponse r = new QueryResponse();
+        r.setResponse(response);
+        r.setElapsedTime(rsp.getElapsedTime());
+        return r;
+    }
+
+    /**
+     * add the facet counts of response1 to the facet counts of response0
+     */
+    @SuppressWarnings("unchecked")
+    private static void mergeFacetFields(final NamedList<Object> response0, final NamedList<Object> response1) {
+        final Object counts0 = response0.get("facet_counts"), counts1 = response1.get("facet_counts");
+        if (!(counts0 instanceof NamedList) || !(counts1 instanceof NamedList)) return;
+        final Object fields0 = ((NamedList<Object>) counts0).get("facet_fields");
+        final Object fields1 = ((NamedList<Object>) counts1).get("facet_fields");
+        if (!(fields0 instanceof NamedList) || !(fields1 instanceof NamedList)) return;
+        final NamedList<Object> ff0 = (NamedList<Object>) fields0;
+        for (final Map.Entry<String, Object> field1: (NamedList<Object>) fields1) {
+            final int p = ff0.indexOf(field1.getKey(), 0);
+            if (p < 0) {
+                ff0.add(field1.getKey(), field1.getValue());
+                continue;
+            }
+            if (!(ff0.getVal(p) instanceof NamedList) || !(field1.getValue() instanceof NamedList)) continue;
+            ff0.setVal(p, mergeCounts((NamedList<Number>) ff0.getVal(p), (NamedList<Number>) field1.getValue()));
+        }
+        // the facet_counts are parsed again from the response
+        final NamedList<Object> counts = new NamedList<Object>();
+        for (final Map.Entry<String, Object> e: (NamedList<Object>) counts0) counts.add(e.getKey(), e.getKey().equals("facet_fields") ? ff0 : e.getValue());
+        response0.setVal(response0.indexOf("facet_counts", 0), counts);
+    }
+
+    /**
+     * @return the sum of both facet counts, sorted by count; the list has the size of the longer list
+     */
+    private static NamedList<Number> mergeCounts(final NamedList<Number> c0, final NamedList<Number> c1) {
+        final ClusteredScoreMap<String> sum = new ClusteredScoreMap<String>(false);
+        for (final Map.Entry<String, Number> e: c0) sum.inc(e.getKey(), e.getValue().intValue());
+        for (final Map.Entry<String, Number> e: c1) sum.inc(e.getKey(), e.getValue().intValue());
+        final int size = Math.max(c0.size(), c1.size());
+        final NamedList<Number> merged = new NamedList<Number>();
+        final Iterator<String> i = sum.keys(false);
+        while (i.hasNext() && merged.size() < size) {
+            final String key = i.next();
+            merged.add(key, Integer.valueOf(sum.get(key)));
+        }
+        return merged;
+    }
+
     @Override
     public long getCountByQuery(final String querystring) throws IOException {
         if (this.solr0 == null && this.solr1 == null) return 0;
@@ -356,28 +559,18 @@ public class MirrorSolrConnector extends AbstractSolrConnector implements SolrCo
         if (this.solr1 != null && this.solr0 == null) {
             return this.solr1.getCountByQuery(querystring);
         }
-        final AtomicLong count = new AtomicLong(0);
-        Thread t0 = new Thread("MirrorSolrConnector.getCountByQuery/t0") {
+        final Long[] count = fanOut(new Callable<Long>() {
             @Override
-            public void run() {
-                try {
-                    count.addAndGet(MirrorSolrConnector.this.solr0.getCountByQuery(querystring));
-                } catch (final IOException e) {}
+            public Long call() throws Exception {
+                return MirrorSolrConnector.this.solr0.getCountByQuery(querystring);
             }
-        };
-        t0.start();
-        Thread t1 = new Thread("MirrorSolrConnector.getCountByQuery/t1") {
+        }, new Callable<Long>() {
             @Override
-            public void run() {
-                try {
-                    count.addAndGet(MirrorSolrConnector.this.solr1.getCountByQuery(querystring));
-                } catch (final IOException e) {}
+            public Long call() throws Exception {
+                return MirrorSolrConnector.this.solr1.getCountByQuery(querystring);
             }
-        };
-        t1.start();
-        try {t0.join();} catch (final InterruptedException e) {}
-        try {t1.join();} catch (final InterruptedException e) {}
-        return count.get();
+        }, new Long[2]);
+        return (count[0] == null ? 0 : count[0].longValue()) + (count[1] == null ? 0 : count[1].longValue());
     }
 
     @Override
@@ -389,12 +582,29 @@ public class MirrorSolrConnector extends AbstractSolrConnector implements SolrCo
         if (this.solr1 != null && this.solr0 == null) {
             return this.solr1.getFacets(query, maxresults, fields);
         }
-        LinkedHashMap<String, ReversibleScoreMap<String>> facets0 = this.solr0.getFacets(query, maxresults, fields);
-        LinkedHashMap<String, ReversibleScoreMap<String>> facets1 = this.solr1.getFacets(query, maxresults, fields);
+        @SuppressWarnings({ "unchecked", "rawtypes" })
+        final LinkedHashMap<String, ReversibleScoreMap<String>>[] facets = fanOut(new Callable<LinkedHashMap<String, ReversibleScoreMap<String>>>() {
+            @Override
+            public LinkedHashMap<String, ReversibleScoreMap<String>> call() throws Exception {
+                return MirrorSolrConnector.this.solr0.getFacets(query, maxresults, fields);
+            }
+        }, new Callable<LinkedHashMap<String, ReversibleScoreMap<String>>>() {
+            @Override
+            public LinkedHashMap<String, ReversibleScoreMap<String>> call() throws Exception {
+                return MirrorSolrConnector.this.solr1.getFacets(query, maxresults, fields);
+            }
+        }, new LinkedHashMap[2]);
+        if (facets[0] == null) return facets[1];
+        if (facets[1] == null) return facets[0];
+        final LinkedHashMap<String, ReversibleScoreMap<String>> facets0 = facets[0], facets1 = facets[1];
         for (Map.Entry<String, ReversibleScoreMap<String>> facet0: facets0.entrySet()) {
             ReversibleScoreMap<String> facet1 = facets1.remove(facet0.getKey());
             if (facet1 == null) continue;
-            for (String key: facet1) facet0.getValue().inc(key, facet1.get(key));
+            // add the counts of the smaller map to the larger one and keep the maxresults best counts
+            ReversibleScoreMap<String> sum = facet0.getValue(), add = facet1;
+            if (add.size() > sum.size()) {sum = facet1; add = facet0.getValue(); facet0.setValue(sum);}
+            for (String key: add) sum.inc(key, add.get(key));
+            if (maxresults > 0) sum.shrinkToMaxSize(maxresults);
         }
         for (Map.Entry<String, ReversibleScoreMap<String>> facet1: facets1.entrySet()) {
             facets0.put(facet1.getKey(), facet1.getValue());
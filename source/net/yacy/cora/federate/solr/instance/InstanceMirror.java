@@ -27,6 +27,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 
+import net.yacy.cora.federate.solr.connector.BufferedSolrConnector;
 import net.yacy.cora.federate.solr.connector.EmbeddedSolrConnector;
 import net.yacy.cora.federate.solr.connector.MirrorSolrConnector;
 import net.yacy.cora.federate.solr.connector.RemoteSolrConnector;
@@ -64,7 +65,7 @@ public class InstanceMirror {
     }
 
     public void disconnectEmbedded() {
-        mirrorConnectorCache.clear();
+        clearMirrorConnectorCache();
         if (this.embeddedSolrInstance == null) return;
         Set<SolrConnector> connectors = new HashSet<SolrConnector>();
         connectors.addAll(this.embeddedConnectorCache.values());
@@ -88,7 +89,7 @@ public class InstanceMirror {
     }
 
     public void disconnectRemote() {
-        mirrorConnectorCache.clear();
+        clearMirrorConnectorCache();
         if (this.remoteSolrInstance == null) return;
         for (RemoteSolrConnector connector: this.remoteConnectorCache.values()) connector.close();
         this.remoteConnectorCache.clear();
@@ -96,6 +97,16 @@ public class InstanceMirror {
         this.remoteSolrInstance = null;
     }
 
+    /**
+     * write the buffered documents of the mirror connectors to their backends and remove the mirror connectors from the cache
+     */
+    private void clearMirrorConnectorCache() {
+        for (SolrConnector connector: this.mirrorConnectorCache.values()) {
+            if (connector instanceof BufferedSolrConnector) ((BufferedSolrConnector) connector).stop();
+        }
+        this.mirrorConnectorCache.clear();
+    }
+
     /**
      * Close this instance and it's connectors and cores
      */
@@ -180,6 +191,14 @@ public class InstanceMirror {
         EmbeddedSolrConnector esc = getEmbeddedConnector(corename);
         RemoteSolrConnector rsc = getRemoteConnector(corename);
         msc = new MirrorSolrConnector(esc, rsc);
+        int batchSize = SwitchboardConstants.SOLR_INDEXING_BATCH_SIZE_DEFAULT;
+        long batchMaxAge = SwitchboardConstants.SOLR_INDEXING_BATCH_MAXAGE_DEFAULT;
+        if (Switchboard.getSwitchboard() != null) {
+            batchSize = Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.SOLR_INDEXING_BATCH_SIZE, batchSize);
+            batchMaxAge = Switchboard.getSwitchboard().getConfigLong(SwitchboardConstants.SOLR_INDEXING_BATCH_MAXAGE, batchMaxAge);
+        }
+        // documents are written in batches; a batch size of 1 writes each document at once
+        if (batchSize > 1) msc = new BufferedSolrConnector(msc, batchSize, batchMaxAge);
         this.mirrorConnectorCache.put(corename, msc);
         return msc;
     }
@@ -34,6 +34,7 @@ import net.yacy.cora.federate.yacy.Peer;
 import net.yacy.cora.federate.yacy.Peers;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 
 /**
  * discover all peers in the network when only one peer is known.
@@ -49,7 +50,7 @@ public class Network {
      */
     public static Peers getNetwork(final String address) throws IOException {
         Peers peers = new Peers();
-        final HTTPClient httpclient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent);
+        final HTTPClient httpclient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, TrafficClass.PEER);
             final byte[] content = httpclient.GETbytes("http://" + address  + "/Network.xml?page=1&maxCount=1000&ip=", null, null, false);
             ByteArrayInputStream bais = new ByteArrayInputStream(content);
             Document doc = null;
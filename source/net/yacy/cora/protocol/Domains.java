@@ -24,8 +24,14 @@
 
 package net.yacy.cora.protocol;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
 import java.lang.reflect.Array;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
@@ -34,6 +40,7 @@ import java.net.InetAddress;
 import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -46,11 +53,14 @@ import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -67,9 +77,6 @@ import net.yacy.kelondro.util.MemoryControl;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 import com.google.common.net.InetAddresses;
-import com.google.common.util.concurrent.SimpleTimeLimiter;
-import com.google.common.util.concurrent.TimeLimiter;
-import com.google.common.util.concurrent.UncheckedTimeoutException;
 
 public class Domains {
     
@@ -81,7 +88,6 @@ public class Domains {
     private static Class<?> InetAddressLocatorClass;
     private static Method InetAddressLocatorGetLocaleInetAddressMethod;
     private static final Set<String> ccSLD_TLD = new HashSet<String>();
-    private static final String PRESENT = "";
     private static final String LOCALHOST_IPv4_PATTERN = "(127\\..*)";
     private static final String LOCALHOST_IPv6_PATTERN = "((\\[?fe80\\:.*)|(\\[?0\\:0\\:0\\:0\\:0\\:0\\:0\\:1.*)|(\\[?\\:\\:1))(/.*|%.*|\\z)";
     private static final String INTRANET_IPv4_PATTERN = "(10\\..*)|(172\\.(1[6-9]|2[0-9]|3[0-1])\\..*)|(169\\.254\\..*)|(192\\.168\\..*)";
@@ -91,12 +97,16 @@ public class Domains {
 
     private static final int MAX_NAME_CACHE_HIT_SIZE = 10000;
     private static final int MAX_NAME_CACHE_MISS_SIZE = 1000;
+    private static final long NAME_CACHE_HIT_TTL = 3600000L; // time in milliseconds until a resolved host is resolved again
+    private static final long NAME_CACHE_MISS_TTL = 600000L; // time in milliseconds until an unknown host is resolved again
+    private static final long DNS_LOOKUP_TIMEOUT = 3000L; // maximum time in milliseconds to wait for a lookup in dnsResolve
     private static final int CONCURRENCY_LEVEL = Runtime.getRuntime().availableProcessors() * 2;
 
     // a dns cache
-    private static final ARC<String, InetAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
-    private static final ARC<String, String> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL);
-    private static final ConcurrentHashMap<String, Object> LOOKUP_SYNC = new ConcurrentHashMap<>(100, 0.75f, Runtime.getRuntime().availableProcessors() * 2);
+    private static volatile ARC<String, CachedAddress> NAME_CACHE_HIT = new ConcurrentARC<>(MAX_NAME_CACHE_HIT_SIZE, CONCURRENCY_LEVEL);
+    private static volatile ARC<String, Long> NAME_CACHE_MISS = new ConcurrentARC<>(MAX_NAME_CACHE_MISS_SIZE, CONCURRENCY_LEVEL); // the values are the expiry times
+    private static volatile long nameCacheHitTTL = NAME_CACHE_HIT_TTL, nameCacheMissTTL = NAME_CACHE_MISS_TTL;
+    private static final ConcurrentHashMap<String, CompletableFuture<InetAddress>> LOOKUPS = new ConcurrentHashMap<>(100, 0.75f, CONCURRENCY_LEVEL); // the running lookups
     private static       List<Pattern> nameCacheNoCachingPatterns = Collections.synchronizedList(new LinkedList<Pattern>());
     public static long cacheHit_Hit = 0, cacheHit_Miss = 0, cacheHit_Insert = 0; // for statistics only; do not write
     public static long cacheMiss_Hit = 0, cacheMiss_Miss = 0, cacheMiss_Insert = 0; // for statistics only; do not write
@@ -733,9 +743,19 @@ public class Domains {
     }
 
     private static KeyList globalHosts = null;
+    private static File nameCacheFile = null;
     private static boolean noLocalCheck = false;
 
     public static void init(final File globalHostsnameCache) {
+        init(globalHostsnameCache, null);
+    }
+
+    /**
+     * initialize the host name caches
+     * @param globalHostsnameCache file with the list of global host names, may be null
+     * @param nameCache file where the resolved addresses are saved at close and loaded from, null for no persistence
+     */
+    public static void init(final File globalHostsnameCache, final File nameCache) {
         if (globalHostsnameCache == null) {
             globalHosts = null;
         } else try {
@@ -744,6 +764,22 @@ public class Domains {
         } catch (final IOException e) {
             globalHosts = null;
         }
+        nameCacheFile = nameCache;
+        if (nameCache != null && nameCache.exists()) loadNameCache(nameCache);
+    }
+
+    /**
+     * Set the sizes and the times to live of the host name caches. The caches are emptied.
+     * @param hitSize maximum number of resolved host names
+     * @param missSize maximum number of host names which could not be resolved
+     * @param hitTTL time in milliseconds until a resolved host name is resolved again
+     * @param missTTL time in milliseconds until an unknown host name is resolved again
+     */
+    public static void setNameCache(final int hitSize, final int missSize, final long hitTTL, final long missTTL) {
+        NAME_CACHE_HIT = new ConcurrentARC<>(Math.max(hitSize, CONCURRENCY_LEVEL), CONCURRENCY_LEVEL);
+        NAME_CACHE_MISS = new ConcurrentARC<>(Math.max(missSize, CONCURRENCY_LEVEL), CONCURRENCY_LEVEL);
+        nameCacheHitTTL = hitTTL;
+        nameCacheMissTTL = missTTL;
     }
 
     /**
@@ -760,11 +796,111 @@ public class Domains {
 
     public static synchronized void close() {
         if (globalHosts != null) try {globalHosts.close();} catch (final IOException e) {log.warn(e);}
+        if (nameCacheFile != null) saveNameCache(nameCacheFile);
         if(getByNameService != null) {
         	getByNameService.shutdownNow();
         }
     }
 
+    /**
+     * load the resolved addresses which are not expired, one "host address expirytime" entry per line
+     */
+    private static void loadNameCache(final File file) {
+        final long now = System.currentTimeMillis();
+        int c = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final String[] entry = CommonPattern.SPACE.split(line);
+                if (entry.length != 3) continue;
+                try {
+                    final long expires = Long.parseLong(entry[2]);
+                    if (expires <= now) continue;
+                    final InetAddress ip = InetAddress.getByAddress(entry[0], InetAddresses.forString(entry[1]).getAddress());
+                    NAME_CACHE_HIT.insertIfAbsent(entry[0], new CachedAddress(ip, expires));
+                    c++;
+                } catch (final IllegalArgumentException | UnknownHostException e) { // also a NumberFormatException
+                    continue;
+                }
+            }
+        } catch (final IOException e) {
+            log.warn("could not load host name cache from " + file + ": " + e.getMessage());
+        }
+        log.info("loaded host name cache, size = " + c);
+    }
+
+    /**
+     * save the resolved addresses which are not expired
+     */
+    static void saveNameCache(final File file) {
+        final long now = System.currentTimeMillis();
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (final Map.Entry<String, CachedAddress> e: NAME_CACHE_HIT) {
+                if (e.getValue().expires <= now) continue;
+                writer.write(e.getKey());
+                writer.write(' ');
+                writer.write(e.getValue().address.getHostAddress());
+                writer.write(' ');
+                writer.write(Long.toString(e.getValue().expires));
+                writer.write('\n');
+            }
+        } catch (final IOException e) {
+            log.warn("could not save host name cache to " + file + ": " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (file.exists()) file.delete();
+        if (!tmp.renameTo(file)) log.warn("could not rename " + tmp + " to " + file);
+    }
+
+    /**
+     * A resolved address in the name cache. Entries are equal if they have the same address.
+     */
+    private static final class CachedAddress {
+        private final InetAddress address;
+        private final long expires;
+
+        private CachedAddress(final InetAddress address, final long expires) {
+            this.address = address;
+            this.expires = expires;
+        }
+
+        @Override
+        public boolean equals(final Object obj) {
+            return obj instanceof CachedAddress && this.address.equals(((CachedAddress) obj).address);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.address.hashCode();
+        }
+    }
+
+    /**
+     * @return the cached address of the host, null if the host is not in the cache or its entry is expired
+     */
+    private static InetAddress cachedAddress(final String host) {
+        final ARC<String, CachedAddress> cache = NAME_CACHE_HIT;
+        final CachedAddress entry = cache.get(host);
+        if (entry == null) return null;
+        if (entry.expires > System.currentTimeMillis()) return entry.address;
+        cache.remove(host);
+        return null;
+    }
+
+    /**
+     * @return true if the host is in the cache of unknown hosts and its entry is not expired
+     */
+    private static boolean cachedUnknown(final String host) {
+        final ARC<String, Long> cache = NAME_CACHE_MISS;
+        final Long expires = cache.get(host);
+        if (expires == null) return false;
+        if (expires.longValue() > System.currentTimeMillis()) return true;
+        cache.remove(host);
+        return false;
+    }
+
     /**
     * Does an DNS-Check to resolve a hostname to an IP.
     *
@@ -776,14 +912,14 @@ public class Domains {
         host = host.toLowerCase(Locale.ROOT).trim();
 
         // trying to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
+        InetAddress ip = cachedAddress(host);
         if (ip != null) {
             cacheHit_Hit++;
             return ip;
         }
         cacheHit_Miss++;
 
-        if (NAME_CACHE_MISS.containsKey(host)) {
+        if (cachedUnknown(host)) {
             cacheMiss_Hit++;
             return null;
         }
@@ -812,10 +948,10 @@ public class Domains {
     }
 
     public static String getHostName(final InetAddress i) {
-        final Collection<String> hosts = NAME_CACHE_HIT.getKeys(i);
+        final Collection<String> hosts = NAME_CACHE_HIT.getKeys(new CachedAddress(i, 0));
         if (!hosts.isEmpty()) return hosts.iterator().next();
         final String host = i.getHostName();
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        NAME_CACHE_HIT.insertIfAbsent(host, new CachedAddress(i, System.currentTimeMillis() + nameCacheHitTTL));
         cacheHit_Insert++;
         return host;
     }
@@ -827,15 +963,13 @@ public class Domains {
      * @param host the known host name
      */
     public static void setHostName(final InetAddress i, final String host) {
-        NAME_CACHE_HIT.insertIfAbsent(host, i);
+        NAME_CACHE_HIT.insertIfAbsent(host, new CachedAddress(i, System.currentTimeMillis() + nameCacheHitTTL));
         cacheHit_Insert++;
     }
     
 	final private static ExecutorService getByNameService = Executors
 			.newCachedThreadPool(new NamePrefixThreadFactory("InetAddress.getByName"));
 
-	final private static TimeLimiter timeLimiter = new SimpleTimeLimiter(getByNameService);
-
     /**
      * strip off any parts of an url, address string (containing host/ip:port) or raw IPs/Hosts,
      * considering that the host may also be an (IPv4) IP or a IPv6 IP in brackets.
@@ -918,7 +1052,30 @@ public class Domains {
      */
     public static InetAddress dnsResolve(final String host0) {
         // consider to call stripToHostName() before calling this
-        if (host0 == null || host0.isEmpty()) return null;
+        final CompletableFuture<InetAddress> lookup = dnsResolveAsync(host0);
+        if (lookup.isDone()) return lookup.getNow(null);
+        try {
+            return lookup.get(DNS_LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS);
+        } catch (final TimeoutException e) {
+            // the lookup goes on and fills the cache when it terminates
+            return null;
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Resolve a host address without blocking the calling thread. Cached addresses are returned at once,
+     * otherwise the DNS lookup is done by a thread of the lookup pool. Concurrent requests for the same host
+     * share one lookup. This can also be used to prefetch the address of a host which will be accessed soon.
+     * @param host0 the host name or an IP string
+     * @return the future address of the host, which is completed with null if the address cannot be resolved
+     */
+    public static CompletableFuture<InetAddress> dnsResolveAsync(final String host0) {
+        if (host0 == null || host0.isEmpty()) return CompletableFuture.completedFuture(null);
         final String host = host0.toLowerCase(Locale.ROOT).trim();
 
         if (MemoryControl.shortStatus()) {
@@ -928,107 +1085,97 @@ public class Domains {
         
         if (host0.endsWith(".yacyh")) {
             // that should not happen here
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
 
         // try to resolve host by doing a name cache lookup
-        InetAddress ip = NAME_CACHE_HIT.get(host);
+        InetAddress ip = cachedAddress(host);
         if (ip != null) {
-            //System.out.println("DNSLOOKUP-CACHE-HIT(CONC) " + host);
             cacheHit_Hit++;
-            return ip;
+            return CompletableFuture.completedFuture(ip);
         }
         cacheHit_Miss++;
-        if (NAME_CACHE_MISS.containsKey(host)) {
-            //System.out.println("DNSLOOKUP-CACHE-MISS(CONC) " + host);
+        if (cachedUnknown(host)) {
             cacheMiss_Hit++;
-            return null;
+            return CompletableFuture.completedFuture(null);
         }
         cacheMiss_Miss++;
 
-        // call dnsResolveNetBased(host) using concurrency to interrupt execution in case of a time-out
-        final Object sync_obj_new = new Object();
-        Object sync_obj = LOOKUP_SYNC.putIfAbsent(host, sync_obj_new);
-        if (sync_obj == null) sync_obj = sync_obj_new;
-        synchronized (sync_obj) {
-            // now look again if the host is in the cache where it may be meanwhile because of the synchronization
-
-            ip = NAME_CACHE_HIT.get(host);
-            if (ip != null) {
-                //System.out.println("DNSLOOKUP-CACHE-HIT(SYNC) " + host);
-                LOOKUP_SYNC.remove(host);
-                cacheHit_Hit++;
-                return ip;
+        // an IP string needs no lookup
+        if (InetAddresses.isInetAddress(host)) {
+            try {
+                ip = InetAddresses.forString(host);
+            } catch (final IllegalArgumentException e) {
+                ip = null;
             }
-            cacheHit_Miss++;
-            if (NAME_CACHE_MISS.containsKey(host)) {
-                //System.out.println("DNSLOOKUP-CACHE-MISS(SYNC) " + host);
-                LOOKUP_SYNC.remove(host);
-                cacheMiss_Hit++;
-                return null;
+            if (ip != null) {
+                remember(host, ip);
+                return CompletableFuture.completedFuture(ip);
             }
-            cacheMiss_Miss++;
+        }
 
-            // do the dns lookup on the dns server
-            //if (!matchesList(host, nameCacheNoCachingPatterns)) System.out.println("DNSLOOKUP " + host);
-            try {
-                //final long t = System.currentTimeMillis();
-                String oldName = Thread.currentThread().getName();
-                Thread.currentThread().setName("Domains: DNS resolve of '" + host + "'"); // thread dump show which host is resolved
-                if (InetAddresses.isInetAddress(host)) {
+        // join a running lookup of the host or start a new one
+        final CompletableFuture<InetAddress> lookup = new CompletableFuture<>();
+        final CompletableFuture<InetAddress> running = LOOKUPS.putIfAbsent(host, lookup);
+        if (running != null) return running;
+        // a lookup of the host may have terminated after the cache check above; it fills the cache
+        // before it is removed from the running lookups, so check the cache again
+        ip = cachedAddress(host);
+        if (ip != null || cachedUnknown(host)) {
+            LOOKUPS.remove(host);
+            lookup.complete(ip);
+            return lookup;
+        }
+        try {
+            getByNameService.execute(new Runnable() {
+                @Override
+                public void run() {
+                    final String oldName = Thread.currentThread().getName();
+                    Thread.currentThread().setName("Domains: DNS resolve of '" + host + "'"); // thread dump show which host is resolved
+                    InetAddress address = null;
                     try {
-                        ip = InetAddresses.forString(host);
-                        log.info("using guava for host resolution:"  + host);
-                    } catch (final IllegalArgumentException e) {
-                        ip = null;
+                        address = InetAddress.getByName(host); // this makes the DNS request to backbone
+                    } catch (final Throwable e) {
+                        address = null;
+                    } finally {
+                        Thread.currentThread().setName(oldName);
+                        remember(host, address);
+                        LOOKUPS.remove(host);
+                        lookup.complete(address);
                     }
                 }
-                Thread.currentThread().setName(oldName);
-                if (ip == null) try {
-                    ip = timeLimiter.callWithTimeout(new Callable<InetAddress>() {
-                        @Override
-                        public InetAddress call() throws Exception {
-                            return InetAddress.getByName(host);
-                        }
-                    }, 3000L, TimeUnit.MILLISECONDS, false);
-                    //ip = TimeoutRequest.getByName(host, 1000); // this makes the DNS request to backbone
-                } catch (final UncheckedTimeoutException e) {
-                	// in case of a timeout - maybe cause of massive requests - do not fill NAME_CACHE_MISS
-                	LOOKUP_SYNC.remove(host);
-                    return null;
-                }
-                //.out.println("DNSLOOKUP-*LOOKUP* " + host + ", time = " + (System.currentTimeMillis() - t) + "ms");
-            } catch (final Throwable e) {
-                // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
-                LOOKUP_SYNC.remove(host);
-                return null;
-            }
-
-            if (ip == null) {
-                // add new entries
-                NAME_CACHE_MISS.insertIfAbsent(host, PRESENT);
-                cacheMiss_Insert++;
-                LOOKUP_SYNC.remove(host);
-                return null;
-            }
+            });
+        } catch (final RejectedExecutionException e) {
+            // the lookup service is shut down
+            LOOKUPS.remove(host);
+            lookup.complete(null);
+        }
+        return lookup;
+    }
 
-            if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
-                // add new ip cache entries
-                NAME_CACHE_HIT.insertIfAbsent(host, ip);
-                cacheHit_Insert++;
-
-                // add also the isLocal host name caches
-                final boolean localp = ip.isAnyLocalAddress() || ip.isLinkLocalAddress() || ip.isSiteLocalAddress();
-                if (!localp) {
-                    if (globalHosts != null) try {
-                        globalHosts.add(host);
-                    } catch (final IOException e) {}
-                }
+    /**
+     * put the result of a lookup to the name caches
+     * @param host the host name
+     * @param ip the resolved address or null if the host could not be resolved
+     */
+    private static void remember(final String host, final InetAddress ip) {
+        if (ip == null) {
+            NAME_CACHE_MISS.insert(host, Long.valueOf(System.currentTimeMillis() + nameCacheMissTTL));
+            cacheMiss_Insert++;
+            return;
+        }
+        if (!ip.isLoopbackAddress() && !matchesList(host, nameCacheNoCachingPatterns)) {
+            // add new ip cache entries
+            NAME_CACHE_HIT.insert(host, new CachedAddress(ip, System.currentTimeMillis() + nameCacheHitTTL));
+            cacheHit_Insert++;
+
+            // add also the isLocal host name caches
+            final boolean localp = ip.isAnyLocalAddress() || ip.isLinkLocalAddress() || ip.isSiteLocalAddress();
+            if (!localp) {
+                if (globalHosts != null) try {
+                    globalHosts.add(host);
+                } catch (final IOException e) {}
             }
-            LOOKUP_SYNC.remove(host);
-            return ip;
         }
     }
 
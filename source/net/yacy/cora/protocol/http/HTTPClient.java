@@ -34,6 +34,7 @@ import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.EnumMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -78,9 +79,6 @@ import org.apache.http.conn.ConnectionKeepAliveStrategy;
 import org.apache.http.conn.DnsResolver;
 import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
-import org.apache.http.conn.socket.PlainConnectionSocketFactory;
-import org.apache.http.conn.ssl.NoopHostnameVerifier;
-import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.entity.mime.content.ContentBody;
 import org.apache.http.impl.auth.BasicSchemeFactory;
@@ -89,7 +87,6 @@ import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
 import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.IdleConnectionEvictor;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.protocol.HTTP;
 import org.apache.http.protocol.HttpContext;
@@ -102,6 +99,7 @@ import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.ConnectionInfo;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.protocol.http.auth.YaCyDigestSchemeFactory;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.Memory;
@@ -121,6 +119,12 @@ public class HTTPClient {
     /** Maximum number of simultaneously open outgoing HTTP connections in the pool */
 	private final static int maxcon = 200;
 	
+	/** Default maximum number of simultaneously open outgoing HTTP connections of the crawler */
+	private final static int maxcon_crawler = 200;
+	
+	/** Default maximum number of simultaneously open outgoing HTTP connections to other peers and of the proxy */
+	private final static int maxcon_peer = 100, maxcon_proxy = 100;
+	
 	/** Default sleep time in seconds between each run of the connection evictor */
 	private static final int DEFAULT_CONNECTION_EVICTOR_SLEEP_TIME = 5;
 	
@@ -129,24 +133,13 @@ public class HTTPClient {
 	
 	private final static RequestConfig dfltReqConf = initRequestConfig();
 	
-	/** The connection manager holding the configured connection pool for this client */
-	public static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = initPoolingConnectionManager();
-	
-	/**
-	 * Background daemon thread evicting expired idle connections from the pool.
-	 * This may be eventually already done by the pool itself on connection request,
-	 * but this background task helps when no request is made to the pool for a long
-	 * time period.
-	 */
-	private static final IdleConnectionEvictor EXPIRED_CONNECTIONS_EVICTOR = new IdleConnectionEvictor(
-			CONNECTION_MANAGER, DEFAULT_CONNECTION_EVICTOR_SLEEP_TIME, TimeUnit.SECONDS,
-			DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE, TimeUnit.SECONDS);
+	/** The connection pools of the traffic classes */
+	private static final Map<TrafficClass, HTTPConnectionPool> POOLS = initPools();
 	
-	static {
-		EXPIRED_CONNECTIONS_EVICTOR.start();
-	}
+	/** The connection manager holding the configured connection pool of the general traffic */
+	public static final PoolingHttpClientConnectionManager CONNECTION_MANAGER = POOLS.get(TrafficClass.GENERAL).getConnectionManager();
 	
-	private final static HttpClientBuilder clientBuilder = initClientBuilder();
+	private final HTTPConnectionPool pool;
 	private final RequestConfig.Builder reqConfBuilder;
 	private Set<Entry<String, String>> headers = null;
 	private CloseableHttpResponse httpResponse = null;
@@ -158,23 +151,64 @@ public class HTTPClient {
 			.newCachedThreadPool(new NamePrefixThreadFactory(HTTPClient.class.getSimpleName() + ".execute"));
 
     public HTTPClient(final ClientIdentification.Agent agent) {
-        super();
-        this.timeout = agent.clientTimeout;
-        clientBuilder.setUserAgent(agent.userAgent);
-        reqConfBuilder = RequestConfig.copy(dfltReqConf);
-        setTimout(agent.clientTimeout);
+        this(agent, agent.clientTimeout);
     }
     
     public HTTPClient(final ClientIdentification.Agent agent, final int timeout) {
+        this(agent, timeout, TrafficClass.GENERAL);
+    }
+
+    /**
+     * @param agent the agent identifying the client
+     * @param trafficClass the class of the traffic, the requests use the connection pool of that class
+     */
+    public HTTPClient(final ClientIdentification.Agent agent, final TrafficClass trafficClass) {
+        this(agent, agent.clientTimeout, trafficClass);
+    }
+
+    /**
+     * @param agent the agent identifying the client
+     * @param timeout the timeout of the connection and the socket in milliseconds
+     * @param trafficClass the class of the traffic, the requests use the connection pool of that class
+     */
+    public HTTPClient(final ClientIdentification.Agent agent, final int timeout, final TrafficClass trafficClass) {
         super();
         this.timeout = timeout;
-        clientBuilder.setUserAgent(agent.userAgent);
+        this.pool = POOLS.get(trafficClass);
+        this.pool.getClientBuilder().setUserAgent(agent.userAgent);
         reqConfBuilder = RequestConfig.copy(dfltReqConf);
         setTimout(timeout);
     }
 
     public static void setDefaultUserAgent(final String defaultAgent) {
-    	clientBuilder.setUserAgent(defaultAgent);
+    	for (final HTTPConnectionPool p : POOLS.values()) {
+    		p.getClientBuilder().setUserAgent(defaultAgent);
+    	}
+    }
+
+    /**
+     * @param trafficClass a traffic class
+     * @return the connection pool of the traffic class
+     */
+    public static HTTPConnectionPool getPool(final TrafficClass trafficClass) {
+    	return POOLS.get(trafficClass);
+    }
+
+    private static Map<TrafficClass, HTTPConnectionPool> initPools() {
+    	final SSLContext sslContext = initSSLContext();
+    	final Map<TrafficClass, HTTPConnectionPool> pools = new EnumMap<TrafficClass, HTTPConnectionPool>(TrafficClass.class);
+    	// the default number of connections to one host, for the crawler it is raised for hosts with many waiting urls
+    	final int maxPerHost = (int) (2 * Memory.cores());
+    	pools.put(TrafficClass.GENERAL, new HTTPConnectionPool(TrafficClass.GENERAL, maxcon, maxPerHost, false, dfltReqConf, sslContext,
+    			DEFAULT_CONNECTION_EVICTOR_SLEEP_TIME, DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE));
+    	// the crawler and the peers send many requests to the same hosts, their connections are reused
+    	pools.put(TrafficClass.CRAWLER, new HTTPConnectionPool(TrafficClass.CRAWLER, maxcon_crawler, maxPerHost, true, dfltReqConf, sslContext,
+    			DEFAULT_CONNECTION_EVICTOR_SLEEP_TIME, DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE));
+    	pools.put(TrafficClass.PEER, new HTTPConnectionPool(TrafficClass.PEER, maxcon_peer, maxPerHost, true, dfltReqConf, sslContext,
+    			DEFAULT_CONNECTION_EVICTOR_SLEEP_TIME, DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE));
+    	pools.put(TrafficClass.PROXY, new HTTPConnectionPool(TrafficClass.PROXY, maxcon_proxy, maxPerHost, false, dfltReqConf, sslContext,
+    			DEFAULT_CONNECTION_EVICTOR_SLEEP_TIME, DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE));
+    	return pools;
     }
     
     private static RequestConfig initRequestConfig() {
@@ -193,11 +227,11 @@ public class HTTPClient {
         return builder.build();
     }
     
-    private static HttpClientBuilder initClientBuilder() {
+    static HttpClientBuilder initClientBuilder(final PoolingHttpClientConnectionManager connectionManager, final RequestConfig requestConfig) {
     	final HttpClientBuilder builder = HttpClientBuilder.create();
     	
-    	builder.setConnectionManager(CONNECTION_MANAGER);
-		builder.setDefaultRequestConfig(dfltReqConf);
+    	builder.setConnectionManager(connectionManager);
+		builder.setDefaultRequestConfig(requestConfig);
 		
     	// UserAgent
 		builder.setUserAgent(ClientIdentification.yacyInternetCrawlerAgent.userAgent);
@@ -222,12 +256,7 @@ public class HTTPClient {
     	return builder;
     }
     
-    private static PoolingHttpClientConnectionManager initPoolingConnectionManager() {
-    	final PlainConnectionSocketFactory plainsf = PlainConnectionSocketFactory.getSocketFactory();
-    	final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
-    	        .register("http", plainsf)
-    	        .register("https", getSSLSocketFactory())
-    	        .build();
+    static PoolingHttpClientConnectionManager initPoolingConnectionManager(final Registry<ConnectionSocketFactory> registry) {
     	final PoolingHttpClientConnectionManager pooling = new PoolingHttpClientConnectionManager(registry, null, null, new DnsResolver(){
 			@Override
 			public InetAddress[] resolve(final String host0)throws UnknownHostException {
@@ -235,7 +264,6 @@ public class HTTPClient {
 				if (ip == null) throw new UnknownHostException(host0);
 				return new InetAddress[]{ip};
 			}}, DEFAULT_POOLED_CONNECTION_TIME_TO_LIVE, TimeUnit.SECONDS);
-        initPoolMaxConnections(pooling, maxcon);
         
         pooling.setValidateAfterInactivity(default_timeout); // on init set to default 5000ms
         final SocketConfig socketConfig = SocketConfig.custom()
@@ -282,24 +310,25 @@ public class HTTPClient {
 
 	/**
 	 * This method should be called just before shutdown to stop the
-	 * ConnectionManager and the idle connections evictor.
+	 * ConnectionManagers and the idle connections evictors of all pools.
 	 *
 	 * @throws InterruptedException
 	 *             when the current thread is interrupted before the idle
 	 *             connections evictor thread termination.
 	 */
 	public static void closeConnectionManager() throws InterruptedException {
-		try {
-			if (EXPIRED_CONNECTIONS_EVICTOR != null) {
-				// Shut down the evictor thread
-				EXPIRED_CONNECTIONS_EVICTOR.shutdown();
-				EXPIRED_CONNECTIONS_EVICTOR.awaitTermination(1L, TimeUnit.SECONDS);
-			}
-		} finally {
-			if (CONNECTION_MANAGER != null) {
-				CONNECTION_MANAGER.shutdown();
+		InterruptedException interrupted = null;
+		for (final HTTPConnectionPool p : POOLS.values()) {
+			try {
+				p.close();
+			} catch (final InterruptedException e) {
+				// continue with the other pools
+				interrupted = e;
 			}
 		}
+		if (interrupted != null) {
+			throw interrupted;
+		}
 	}
 
     /**
@@ -328,7 +357,7 @@ public class HTTPClient {
      * @param userAgent
      */
     public void setUserAgent(final ClientIdentification.Agent agent) {
-    	clientBuilder.setUserAgent(agent.userAgent);
+    	this.pool.getClientBuilder().setUserAgent(agent.userAgent);
     }
 
     /**
@@ -938,6 +967,7 @@ public class HTTPClient {
 
 	    final String initialThreadName = Thread.currentThread().getName();
 	    Thread.currentThread().setName("HTTPClient-" + httpUriRequest.getURI());
+	    this.pool.countRequest();
         final long time = System.currentTimeMillis();
 	    try {
 	        
@@ -945,7 +975,7 @@ public class HTTPClient {
 	            FutureTask<CloseableHttpResponse> t = new FutureTask<CloseableHttpResponse>(new Callable<CloseableHttpResponse>() {
 	                @Override
                     public CloseableHttpResponse call() throws ClientProtocolException, IOException {
-	                    final CloseableHttpClient client = clientBuilder.build();
+	                    final CloseableHttpClient client = HTTPClient.this.pool.getClientBuilder().build();
 	                    CloseableHttpResponse response = client.execute(httpUriRequest, context);
 	                    return response;
 	                }
@@ -959,7 +989,7 @@ public class HTTPClient {
 	            try {t.cancel(true);} catch (Throwable e) {}
 	            if (this.httpResponse == null) throw new IOException("timout to client after " + this.timeout + "ms" + " for url " + httpUriRequest.getURI().toString());
 	        } else {
-	            final CloseableHttpClient client = clientBuilder.build();
+	            final CloseableHttpClient client = this.pool.getClientBuilder().build();
 	            this.httpResponse = client.execute(httpUriRequest, context);
 	        }
             this.httpResponse.setHeader(HeaderFramework.RESPONSE_TIME_MILLIS, Long.toString(System.currentTimeMillis() - time));
@@ -1041,7 +1071,9 @@ public class HTTPClient {
             }
     	}
     	if (this.host != null) httpUriRequest.setHeader(HTTP.TARGET_HOST, this.host);
-        httpUriRequest.setHeader(HTTP.CONN_DIRECTIVE, "close"); // don't keep alive, prevent CLOSE_WAIT state
+        if (!this.pool.isKeepAlive()) {
+        	httpUriRequest.setHeader(HTTP.CONN_DIRECTIVE, "close"); // don't keep alive, prevent CLOSE_WAIT state
+        }
     }
 
     private void storeConnectionInfo(final HttpUriRequest httpUriRequest) {
@@ -1057,7 +1089,10 @@ public class HTTPClient {
     			this.upbytes));
     }
 
-    private static SSLConnectionSocketFactory getSSLSocketFactory() {
+    /**
+     * @return a TLS context which trusts all certificates
+     */
+    private static SSLContext initSSLContext() {
     	final TrustManager trustManager = new X509TrustManager() {
             @Override
             public void checkClientTrusted(final X509Certificate[] chain, final String authType)
@@ -1085,11 +1120,7 @@ public class HTTPClient {
             // should not happen
             // e.printStackTrace();
         }
-
-        final SSLConnectionSocketFactory sslSF = new SSLConnectionSocketFactory(
-                sslContext,
-                new NoopHostnameVerifier());
-    	return sslSF;
+        return sslContext;
     }
 
     /**
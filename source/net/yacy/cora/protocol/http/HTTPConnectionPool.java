@@ -0,0 +1,344 @@
+/**
+ *  HTTPConnectionPool
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.protocol.http;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.SSLContext;
+
+import org.apache.http.HttpHost;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.config.Registry;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.NoopHostnameVerifier;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.protocol.HttpContext;
+
+import net.yacy.cora.protocol.Domains;
+
+/**
+ * A pool of outgoing http connections for one class of traffic. Each pool has its own connection manager,
+ * so that i.e. a crawl with many hosts can not take the connections which are needed for the p2p protocol.
+ *
+ * The pools of the crawler and the peers keep the connections alive, so that the following requests to the same host
+ * reuse the connection and the TLS session instead of opening a new one. The number of connections per host of a pool
+ * can be raised for hosts with many waiting requests, see {@link #setHostDemand(String, String, int, int)}.
+ *
+ * The pool counts the requests, the opened connections and the TLS handshakes, the ratio of the requests which
+ * were sent on a reused connection is {@link #getReuseRatio()}.
+ */
+public class HTTPConnectionPool {
+
+    /** the classes of the outgoing http traffic, each has its own pool */
+    public enum TrafficClass {
+        /** all requests without another class */
+        GENERAL,
+        /** the requests of the crawler */
+        CRAWLER,
+        /** the requests of the p2p protocol to other peers */
+        PEER,
+        /** the requests of the http proxy */
+        PROXY
+    }
+
+    /** the number of waiting requests of a host for each additional connection to the host */
+    public static final int QUEUED_PER_CONNECTION = 10;
+
+    /**
+     * the maximum number of hosts with an own connection limit at the same time: when another host needs an own limit,
+     * the limit of the least recently sized host is set back to the default
+     */
+    public static final int MAX_SIZED_HOSTS = 1000;
+
+    private final TrafficClass trafficClass;
+    private final boolean keepAlive;
+    private final int defaultMaxPerHost;
+    private volatile int maxPerHost;
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor evictor;
+    private final HttpClientBuilder clientBuilder;
+    private final Map<HttpRoute, Integer> sizedRoutes; // the routes with an own limit in the order of their last sizing; guarded by itself
+    private final AtomicLong requests, connections, handshakes;
+
+    /**
+     * @param trafficClass the class of the traffic of the pool
+     * @param maxTotal the maximum number of connections, greater than 0
+     * @param defaultMaxPerHost the number of connections per host, greater than 0
+     * @param keepAlive true if the connections shall be kept alive for the next request
+     * @param requestConfig the default request configuration
+     * @param sslContext the context of the https connections
+     * @param evictorSleepTime the sleep time in seconds between each run of the idle connection evictor
+     * @param connectionTimeToLive the maximum time in seconds to keep alive an idle connection
+     */
+    HTTPConnectionPool(final TrafficClass trafficClass, final int maxTotal, final int defaultMaxPerHost, final boolean keepAlive,
+            final RequestConfig requestConfig, final SSLContext sslContext, final int evictorSleepTime, final int connectionTimeToLive) {
+        this.trafficClass = trafficClass;
+        this.keepAlive = keepAlive;
+        this.defaultMaxPerHost = defaultMaxPerHost;
+        this.maxPerHost = defaultMaxPerHost;
+        this.sizedRoutes = new LinkedHashMap<HttpRoute, Integer>(16, 0.75f, true);
+        this.requests = new AtomicLong(0);
+        this.connections = new AtomicLong(0);
+        this.handshakes = new AtomicLong(0);
+
+        final Registry<ConnectionSocketFactory> registry = RegistryBuilder.<ConnectionSocketFactory>create()
+                .register("http", new CountingPlainSocketFactory())
+                .register("https", new CountingSSLSocketFactory(sslContext))
+                .build();
+        this.connectionManager = HTTPClient.initPoolingConnectionManager(registry);
+        setMaxTotal(maxTotal);
+        this.clientBuilder = HTTPClient.initClientBuilder(this.connectionManager, requestConfig);
+
+        /*
+         * Background daemon thread evicting expired idle connections from the pool.
+         * This may be eventually already done by the pool itself on connection request,
+         * but this background task helps when no request is made to the pool for a long
+         * time period.
+         */
+        this.evictor = new IdleConnectionEvictor(this.connectionManager, evictorSleepTime, TimeUnit.SECONDS, connectionTimeToLive, TimeUnit.SECONDS);
+        this.evictor.start();
+    }
+
+    public TrafficClass getTrafficClass() {
+        return this.trafficClass;
+    }
+
+    /**
+     * @return true if the connections are kept alive after a request
+     */
+    public boolean isKeepAlive() {
+        return this.keepAlive;
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return this.connectionManager;
+    }
+
+    HttpClientBuilder getClientBuilder() {
+        return this.clientBuilder;
+    }
+
+    /**
+     * Set the maximum number of connections of the pool
+     * @param maxTotal the maximum number of connections, greater than 0
+     * @throws IllegalArgumentException when maxTotal is lower than 1
+     */
+    public void setMaxTotal(final int maxTotal) {
+        if (this.trafficClass == TrafficClass.GENERAL) {
+            // this sets also the maximum of the connection statistics
+            HTTPClient.initPoolMaxConnections(this.connectionManager, maxTotal);
+        } else {
+            if (maxTotal <= 0) {
+                throw new IllegalArgumentException("maxTotal parameter must be greater than zero");
+            }
+            this.connectionManager.setMaxTotal(maxTotal);
+            this.connectionManager.setMaxPerRoute(new HttpRoute(new HttpHost(Domains.LOCALHOST)), maxTotal);
+        }
+        this.connectionManager.setDefaultMaxPerRoute(this.defaultMaxPerHost);
+    }
+
+    public int getMaxTotal() {
+        return this.connectionManager.getMaxTotal();
+    }
+
+    /**
+     * Set the maximum number of connections to one host which is given by {@link #setHostDemand(String, String, int, int)}
+     * @param maxPerHost the maximum number of connections per host, at least the default number of connections per host
+     */
+    public void setMaxPerHost(final int maxPerHost) {
+        this.maxPerHost = Math.max(this.defaultMaxPerHost, maxPerHost);
+    }
+
+    public int getMaxPerHost() {
+        return this.maxPerHost;
+    }
+
+    /**
+     * Size the number of connections to a host according to the number of requests which wait for the host:
+     * one more connection for each {@link #QUEUED_PER_CONNECTION} requests, at most {@link #getMaxPerHost()}.
+     * A host which needs no more than the default number of connections gets the default limit again; when
+     * {@link #MAX_SIZED_HOSTS} hosts have an own limit, the limit of the least recently sized host is reset.
+     * @param scheme the protocol, http or https
+     * @param host the host name
+     * @param port the port or -1 for the default port of the protocol
+     * @param queued the number of waiting requests for the host
+     */
+    public void setHostDemand(final String scheme, final String host, final int port, final int queued) {
+        if (host == null || host.isEmpty()) return;
+        final HttpRoute route = route(scheme, host, port);
+        if (route == null) return;
+        final int size = Math.min(this.maxPerHost, Math.max(this.defaultMaxPerHost, 1 + queued / QUEUED_PER_CONNECTION));
+        synchronized (this.sizedRoutes) {
+            if (size <= this.defaultMaxPerHost) {
+                // the host does not need an own limit any more
+                if (this.sizedRoutes.remove(route) != null) this.connectionManager.setMaxPerRoute(route, this.defaultMaxPerHost);
+                return;
+            }
+            if (!this.sizedRoutes.containsKey(route) && this.sizedRoutes.size() >= MAX_SIZED_HOSTS) {
+                // reset the least recently sized host; the connection manager keeps only the default limit of that route
+                final Iterator<HttpRoute> i = this.sizedRoutes.keySet().iterator();
+                final HttpRoute eldest = i.next();
+                i.remove();
+                this.connectionManager.setMaxPerRoute(eldest, this.defaultMaxPerHost);
+            }
+            final Integer previous = this.sizedRoutes.put(route, size);
+            if (previous == null || previous.intValue() != size) this.connectionManager.setMaxPerRoute(route, size);
+        }
+    }
+
+    /**
+     * @return the maximum number of connections to a host
+     */
+    public int getMaxPerHost(final String scheme, final String host, final int port) {
+        final HttpRoute route = route(scheme, host, port);
+        return route == null ? this.defaultMaxPerHost : this.connectionManager.getMaxPerRoute(route);
+    }
+
+    /**
+     * @return the number of hosts with an own connection limit
+     */
+    public int getSizedHosts() {
+        synchronized (this.sizedRoutes) {
+            return this.sizedRoutes.size();
+        }
+    }
+
+    /**
+     * @return the route of the requests to a host without a proxy, as created by the route planner
+     */
+    private static HttpRoute route(final String scheme, final String host, final int port) {
+        final boolean https = "https".equalsIgnoreCase(scheme);
+        if (!https && !"http".equalsIgnoreCase(scheme)) return null;
+        // the target host of a request has no port if the url has the default port
+        final int p = port == (https ? 443 : 80) ? -1 : port;
+        return new HttpRoute(new HttpHost(host, p, https ? "https" : "http"));
+    }
+
+    /**
+     * count a request which is executed with a connection of the pool
+     */
+    void countRequest() {
+        this.requests.incrementAndGet();
+    }
+
+    /**
+     * @return the number of requests which were executed with the pool
+     */
+    public long getRequests() {
+        return this.requests.get();
+    }
+
+    /**
+     * @return the number of connections which were opened by the pool
+     */
+    public long getConnections() {
+        return this.connections.get();
+    }
+
+    /**
+     * @return the number of TLS handshakes of the connections of the pool
+     */
+    public long getHandshakes() {
+        return this.handshakes.get();
+    }
+
+    /**
+     * @return the part of the requests which reused an open connection, between 0 and 1
+     */
+    public double getReuseRatio() {
+        final long r = this.requests.get();
+        if (r == 0) return 0.0d;
+        return Math.max(0L, r - this.connections.get()) / (double) r;
+    }
+
+    /**
+     * @return the leased, available and pending connections of the pool
+     */
+    public PoolStats getStats() {
+        return this.connectionManager.getTotalStats();
+    }
+
+    /**
+     * Stop the idle connections evictor and the connection manager
+     * @throws InterruptedException when the current thread is interrupted while waiting for the evictor
+     */
+    void close() throws InterruptedException {
+        try {
+            this.evictor.shutdown();
+            this.evictor.awaitTermination(1L, TimeUnit.SECONDS);
+        } finally {
+            this.connectionManager.shutdown();
+        }
+    }
+
+    /**
+     * counts the opened connections
+     */
+    private class CountingPlainSocketFactory extends PlainConnectionSocketFactory {
+
+        @Override
+        public Socket connectSocket(final int connectTimeout, final Socket socket, final HttpHost host, final InetSocketAddress remoteAddress,
+                final InetSocketAddress localAddress, final HttpContext context) throws IOException {
+            final Socket s = super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            HTTPConnectionPool.this.connections.incrementAndGet();
+            return s;
+        }
+    }
+
+    /**
+     * counts the opened connections and the TLS handshakes, the certificates and host names are not verified
+     */
+    private class CountingSSLSocketFactory extends SSLConnectionSocketFactory {
+
+        private CountingSSLSocketFactory(final SSLContext sslContext) {
+            super(sslContext, NoopHostnameVerifier.INSTANCE);
+        }
+
+        @Override
+        public Socket connectSocket(final int connectTimeout, final Socket socket, final HttpHost host, final InetSocketAddress remoteAddress,
+                final InetSocketAddress localAddress, final HttpContext context) throws IOException {
+            final Socket s = super.connectSocket(connectTimeout, socket, host, remoteAddress, localAddress, context);
+            HTTPConnectionPool.this.connections.incrementAndGet();
+            return s;
+        }
+
+        @Override
+        public Socket createLayeredSocket(final Socket socket, final String target, final int port, final HttpContext context) throws IOException {
+            final Socket s = super.createLayeredSocket(socket, target, port, context);
+            HTTPConnectionPool.this.handshakes.incrementAndGet();
+            return s;
+        }
+    }
+}
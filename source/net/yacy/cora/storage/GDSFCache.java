@@ -0,0 +1,307 @@
+/**
+ *  GDSFCache
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.cora.storage;
+
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * A byte-bounded cache of byte arrays with a size-aware eviction.
+ *
+ * The entries are evicted by the Greedy-Dual-Size-Frequency policy: each entry has the priority
+ * <code>L + frequency / size</code>, the entry with the lowest priority is evicted first and L is raised
+ * to the priority of the evicted entry, so entries which are not read any more age out.
+ * Large documents which are read rarely are therefore evicted before small documents which are read often.
+ *
+ * New entries are only admitted if they are not less frequent than the entry which would be evicted for them,
+ * as in TinyLFU. The frequencies of all keys, also of the keys which are not in the cache,
+ * are estimated with a small count-min sketch which is halved periodically to forget old accesses.
+ *
+ * The keys must implement hashCode() and equals() by their content, i.e. Strings.
+ * All methods are synchronized.
+ */
+public final class GDSFCache<K> {
+
+    /** the estimated heap usage of an entry besides the value: the entry object, the map entry and the tree node */
+    private static final int ENTRY_OVERHEAD = 128;
+
+    /** an entry may use at most this fraction of the maximum size */
+    private static final int MAX_ENTRY_FRACTION = 4;
+
+    private static final class Entry<K> {
+        private final K key;
+        private final byte[] value;
+        private final long seq;
+        private int frequency;
+        private double priority;
+
+        private Entry(final K key, final byte[] value, final long seq) {
+            this.key = key;
+            this.value = value;
+            this.seq = seq;
+        }
+
+        private int weight() {
+            return this.value.length + ENTRY_OVERHEAD;
+        }
+    }
+
+    private final Map<K, Entry<K>> map;
+    private final TreeSet<Entry<K>> queue; // ordered by the priority, the first is the next victim
+    private final FrequencySketch sketch;
+    private long maxBytes, usedBytes;
+    private double inflation; // the L value of GDSF
+    private long seq;
+    private long hits, misses, rejected, evicted;
+
+    /**
+     * @param maxBytes the maximum number of bytes of all values, including an estimated overhead for each entry
+     * @param expectedEntries the expected number of entries, which sets the size of the frequency sketch
+     */
+    public GDSFCache(final long maxBytes, final int expectedEntries) {
+        this.map = new HashMap<K, Entry<K>>();
+        this.queue = new TreeSet<Entry<K>>(new Comparator<Entry<K>>() {
+            @Override
+            public int compare(final Entry<K> e0, final Entry<K> e1) {
+                final int c = Double.compare(e0.priority, e1.priority);
+                return c != 0 ? c : Long.compare(e0.seq, e1.seq);
+            }
+        });
+        this.sketch = new FrequencySketch(expectedEntries);
+        this.maxBytes = Math.max(0, maxBytes);
+        this.usedBytes = 0;
+        this.inflation = 0.0d;
+        this.seq = 0;
+    }
+
+    private double priority(final Entry<K> entry) {
+        return this.inflation + ((double) entry.frequency) * 1024.0d / entry.weight();
+    }
+
+    /**
+     * @return the cached value or null if the key is not cached. The returned array must not be changed.
+     */
+    public synchronized byte[] get(final K key) {
+        this.sketch.increment(key.hashCode());
+        final Entry<K> entry = this.map.get(key);
+        if (entry == null) {
+            this.misses++;
+            return null;
+        }
+        this.hits++;
+        this.queue.remove(entry);
+        entry.frequency++;
+        entry.priority = priority(entry);
+        this.queue.add(entry);
+        return entry.value;
+    }
+
+    /**
+     * @return true if the key is cached, without counting an access
+     */
+    public synchronized boolean containsKey(final K key) {
+        return this.map.containsKey(key);
+    }
+
+    /**
+     * Offer a value to the cache. The value is not copied and must not be changed afterwards.
+     * @return true if the value has been admitted, false if it is too large or less frequent than the entries it would evict
+     */
+    public synchronized boolean put(final K key, final byte[] value) {
+        remove(key);
+        final Entry<K> entry = new Entry<K>(key, value, this.seq++);
+        final int weight = entry.weight();
+        if (weight > this.maxBytes / MAX_ENTRY_FRACTION) {
+            this.rejected++;
+            return false;
+        }
+        this.sketch.increment(key.hashCode());
+        final int frequency = this.sketch.frequency(key.hashCode());
+        if (this.usedBytes + weight > this.maxBytes && !this.queue.isEmpty()) {
+            // the admission: compare the candidate with the victim
+            final Entry<K> victim = this.queue.first();
+            if (frequency < this.sketch.frequency(victim.key.hashCode())) {
+                this.rejected++;
+                return false;
+            }
+        }
+        while (this.usedBytes + weight > this.maxBytes && !this.queue.isEmpty()) evict();
+        entry.frequency = frequency;
+        entry.priority = priority(entry);
+        this.map.put(key, entry);
+        this.queue.add(entry);
+        this.usedBytes += weight;
+        return true;
+    }
+
+    private void evict() {
+        final Entry<K> victim = this.queue.pollFirst();
+        this.map.remove(victim.key);
+        this.usedBytes -= victim.weight();
+        this.inflation = victim.priority;
+        this.evicted++;
+    }
+
+    /**
+     * remove an entry
+     */
+    public synchronized void remove(final K key) {
+        final Entry<K> entry = this.map.remove(key);
+        if (entry == null) return;
+        this.queue.remove(entry);
+        this.usedBytes -= entry.weight();
+    }
+
+    /**
+     * remove all entries and reset the statistics
+     */
+    public synchronized void clear() {
+        this.map.clear();
+        this.queue.clear();
+        this.sketch.clear();
+        this.usedBytes = 0;
+        this.inflation = 0.0d;
+        this.hits = 0;
+        this.misses = 0;
+        this.rejected = 0;
+        this.evicted = 0;
+    }
+
+    /**
+     * Change the maximum size, entries are evicted if the new size is smaller than the used size
+     * @param maxBytes the new maximum number of bytes
+     */
+    public synchronized void setMaxBytes(final long maxBytes) {
+        this.maxBytes = Math.max(0, maxBytes);
+        while (this.usedBytes > this.maxBytes && !this.queue.isEmpty()) evict();
+    }
+
+    public synchronized long maxBytes() {
+        return this.maxBytes;
+    }
+
+    /**
+     * @return the number of bytes used by the entries, including the estimated overhead
+     */
+    public synchronized long usedBytes() {
+        return this.usedBytes;
+    }
+
+    public synchronized int size() {
+        return this.map.size();
+    }
+
+    public synchronized long hits() {
+        return this.hits;
+    }
+
+    public synchronized long misses() {
+        return this.misses;
+    }
+
+    /**
+     * @return the number of values which have not been admitted
+     */
+    public synchronized long rejected() {
+        return this.rejected;
+    }
+
+    public synchronized long evicted() {
+        return this.evicted;
+    }
+
+    /**
+     * @return the proportion of hits over all get requests
+     */
+    public synchronized double hitRate() {
+        final long total = this.hits + this.misses;
+        return total > 0 ? ((double) this.hits) / total : 0.0d;
+    }
+
+    /**
+     * A count-min sketch with four rows of 4-bit counters, packed into longs.
+     * All counters are halved after a number of increments of ten times the width.
+     */
+    private static final class FrequencySketch {
+
+        private static final int[] SEEDS = {0x97cb3127, 0x0c4ac5f1, 0x5bd1e995, 0x27d4eb2f};
+
+        private final long[][] rows;
+        private final int mask;
+        private final int sampleSize;
+        private int additions;
+
+        private FrequencySketch(final int expectedEntries) {
+            int width = 64;
+            while (width < expectedEntries && width < (1 << 24)) width <<= 1;
+            this.rows = new long[SEEDS.length][width / 16]; // 16 counters in a long
+            this.mask = width - 1;
+            this.sampleSize = 10 * width;
+            this.additions = 0;
+        }
+
+        private int index(final int hash, final int row) {
+            int h = hash * SEEDS[row];
+            h ^= h >>> 17;
+            return h & this.mask;
+        }
+
+        private void increment(final int hash) {
+            boolean added = false;
+            for (int r = 0; r < this.rows.length; r++) {
+                final int i = index(hash, r);
+                final int shift = (i & 15) << 2;
+                final long[] row = this.rows[r];
+                if (((row[i >>> 4] >>> shift) & 15L) < 15L) {
+                    row[i >>> 4] += 1L << shift;
+                    added = true;
+                }
+            }
+            if (added && ++this.additions >= this.sampleSize) reset();
+        }
+
+        private int frequency(final int hash) {
+            int frequency = 15;
+            for (int r = 0; r < this.rows.length; r++) {
+                final int i = index(hash, r);
+                frequency = Math.min(frequency, (int) ((this.rows[r][i >>> 4] >>> ((i & 15) << 2)) & 15L));
+            }
+            return frequency;
+        }
+
+        /** halve all counters */
+        private void reset() {
+            for (final long[] row: this.rows) {
+                for (int i = 0; i < row.length; i++) row[i] = (row[i] >>> 1) & 0x7777777777777777L;
+            }
+            this.additions /= 2;
+        }
+
+        private void clear() {
+            for (final long[] row: this.rows) Arrays.fill(row, 0L);
+            this.additions = 0;
+        }
+    }
+
+}
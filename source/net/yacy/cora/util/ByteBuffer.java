@@ -250,6 +250,11 @@ public final class ByteBuffer extends OutputStream {
         dest.flush();
     }
 
+    public void writeTo(final OutputStream dest, final int start, final int len) throws IOException {
+        if (start + len > this.length) throw new IndexOutOfBoundsException("writeTo: start + len > length");
+        dest.write(this.buffer, this.offset + start, len);
+    }
+
     public static boolean contains(final Collection<byte[]> collection, final byte[] key) {
         for (final byte[] v: collection) {
             if (Arrays.equals(v, key)) return true;
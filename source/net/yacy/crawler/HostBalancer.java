@@ -27,7 +27,6 @@ import java.net.MalformedURLException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.ConcurrentModificationException;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -39,6 +38,9 @@ import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.Domains;
+import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
@@ -64,12 +66,15 @@ import net.yacy.kelondro.util.FileUtils;
 public class HostBalancer implements Balancer {
 
     private final static ConcurrentLog log = new ConcurrentLog("HostBalancer");
+
+    /** the maximum number of hosts which are scheduled again within one pop because their due time has changed */
+    private final static int maxRevalidations = 16;
     public final static HandleMap depthCache = new RowHandleMap(Word.commonHashLength, Word.commonHashOrder, 2, 8 * 1024 * 1024, "HostBalancer.DepthCache");
     
     private final File hostsPath;
     private final boolean exceed134217727;
     private final Map<String, HostQueue> queues;
-    private final Set<String> roundRobinHostHashes;
+    private final HostScheduler scheduler;
     private final int onDemandLimit;
 
     /**
@@ -104,7 +109,7 @@ public class HostBalancer implements Balancer {
         // create a stack for newly entered entries
         if (!(hostsPath.exists())) hostsPath.mkdirs(); // make the path
         this.queues = new ConcurrentHashMap<String, HostQueue>();
-        this.roundRobinHostHashes = new HashSet<String>();
+        this.scheduler = new HostScheduler();
         init(asyncInit); // return without wait but starts a thread to fill the queues
     }
 
@@ -142,6 +147,7 @@ public class HostBalancer implements Balancer {
                     FileUtils.deletedelete(queuePath);
                 } else {
                     queues.put(queue.getHostHash(), queue);
+                    this.scheduler.offer(queue.getHostHash(), System.currentTimeMillis(), queue.size());
                 }
             } catch (MalformedURLException | RuntimeException e) {
                 log.warn("delete queue due to init error for " + hostsPath.getName() + " host=" + hoststr + " " + e.getLocalizedMessage());
@@ -158,6 +164,7 @@ public class HostBalancer implements Balancer {
         }
         for (HostQueue queue: this.queues.values()) queue.close();
         this.queues.clear();
+        this.scheduler.clear();
     }
 
     @Override
@@ -167,6 +174,7 @@ public class HostBalancer implements Balancer {
         }
         for (HostQueue queue: this.queues.values()) queue.clear();
         this.queues.clear();
+        this.scheduler.clear();
     }
 
     @Override
@@ -291,8 +299,11 @@ public class HostBalancer implements Balancer {
                 this.queues.put(hosthash, queue);
                 // profile might be null when continue crawls after YaCy restart
                 robots.ensureExist(entry.url(), profile == null ? ClientIdentification.yacyInternetCrawlerAgent : profile.getAgent(), true); // concurrently load all robots.txt
+                Domains.dnsResolveAsync(entry.url().getHost()); // prefetch the address of the new host, the loader will find it in the cache
             }
-            return queue.push(entry, profile, robots);
+            final String error = queue.push(entry, profile, robots);
+            if (!this.scheduler.isKnown(hosthash)) this.scheduler.offer(hosthash, dueTime(queue, robots), queue.size());
+            return error;
         }
     }
 
@@ -301,7 +312,9 @@ public class HostBalancer implements Balancer {
      * and always above the given minimum delay time. An additional delay time is computed using the robots.txt
      * crawl-delay time which is always respected. In case the minimum time cannot ensured, this method pauses
      * the necessary time until the url is released and returned as CrawlEntry object. In case that a profile
-     * for the computed Entry does not exist, null is returned
+     * for the computed Entry does not exist, null is returned.
+     * The host is taken from the scheduler, which orders the hosts by their next allowed access time;
+     * a host which is taken is not returned to other threads until its entry has been popped.
      * @param delay true if the requester demands forced delays using explicit thread sleep
      * @param profile
      * @return a url in a CrawlEntry object
@@ -310,177 +323,39 @@ public class HostBalancer implements Balancer {
      */
     @Override
     public Request pop(boolean delay, CrawlSwitchboard cs, RobotsTxt robots) throws IOException {
+        int revalidations = 0;
         tryagain: while (true) try {
-            HostQueue rhq = null;
-            String rhh = null;
-        
-            synchronized (this) {
-                if (this.roundRobinHostHashes.size() == 0) {
-                    // refresh the round-robin cache
-                    this.roundRobinHostHashes.addAll(this.queues.keySet());
-                    // quickly get rid of small stacks to reduce number of files:
-                    // remove all stacks with more than 10 entries
-                    // this shall kick out small stacks to prevent that too many files are opened for very wide crawls
-                    boolean smallStacksExist = false;
-                    boolean singletonStacksExist = false;
-                    smallsearch: for (String s: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(s);
-                        if (hq != null) {
-                            int size = hq.size();
-                            if (size ==  1) {singletonStacksExist = true; break smallsearch;}
-                            if (size <= 10) {smallStacksExist = true; break smallsearch;}
-                        }
-                    }
-                    if (singletonStacksExist || smallStacksExist) {
-                        Iterator<String> i = this.roundRobinHostHashes.iterator();
-                        smallstacks: while (i.hasNext()) {
-                            if (this.roundRobinHostHashes.size() <= 10) break smallstacks; // don't shrink the hosts until nothing is left
-                            String s = i.next();
-                            HostQueue hq = this.queues.get(s);
-                            if (hq == null) {i.remove(); continue smallstacks;}
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                            if (delta < 0) continue; // keep all non-waiting stacks; they are useful to speed up things
-                            // to protect all small stacks which have a fast throughput, remove all with long waiting time
-                            if (delta >= 1000) {i.remove(); continue smallstacks;}
-                            int size = hq.size();
-                            if (singletonStacksExist) {
-                                if (size != 1) {i.remove(); continue smallstacks;} // remove all non-singletons
-                            } else /*smallStacksExist*/ {
-                                if (size > 10) {i.remove(); continue smallstacks;} // remove all large stacks
-                            }
-                        }
-                    }
-                    if (this.roundRobinHostHashes.size() == 1) {
-                        if (log.isFine()) log.fine("(re-)initialized the round-robin queue with one host");
-                    } else {
-                        log.info("(re-)initialized the round-robin queue; " + this.roundRobinHostHashes.size() + " hosts.");
-                    }
-                }
-                if (this.roundRobinHostHashes.size() == 0) return null;
-                
-                // if the queue size is 1, just take that
-                if (this.roundRobinHostHashes.size() == 1) {
-                    rhh = this.roundRobinHostHashes.iterator().next();
-                    rhq = this.queues.get(rhh);
-                }
-                
-                if (rhq == null) {
-                    // mixed minimum sleep time / largest queue strategy:
-                    // create a map of sleep time / queue relations with a fuzzy sleep time (ms / 500).
-                    // if the entry with the smallest sleep time contains at least two entries,
-                    // then the larger one from these queues are selected.
-                    TreeMap<Integer, List<String>> fastTree = new TreeMap<>();
-                    mixedstrategy: for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), h, robots, ClientIdentification.yacyInternetCrawlerAgent) / 200;
-                            if (delta < 0) delta = 0;
-                            List<String> queueHashes = fastTree.get(delta);
-                            if (queueHashes == null) {
-                                queueHashes = new ArrayList<>(2);
-                                fastTree.put(delta, queueHashes);
-                            }
-                            queueHashes.add(h);
-                            // check stop criteria
-                            List<String> firstEntries = fastTree.firstEntry().getValue();
-                            if (firstEntries.size() > 1) {
-                                // select larger queue from that list
-                                int largest = Integer.MIN_VALUE;
-                                for (String hh: firstEntries) {
-                                    HostQueue hhq = this.queues.get(hh);
-                                    if (hhq != null) {
-                                        int s = hhq.size();
-                                        if (s > largest) {
-                                            largest = s;
-                                            rhh = hh;
-                                        }
-                                    }
-                                }
-                                rhq = this.queues.get(rhh);
-                                break mixedstrategy;
-                            }
-                        }
-                    }
-                    if (rhq == null && fastTree.size() > 0) {
-                        // it may be possible that the lowest entry never has more than one queues assigned
-                        // in this case just take the smallest entry
-                        List<String> firstEntries = fastTree.firstEntry().getValue();
-                        assert firstEntries.size() == 1;
-                        rhh = firstEntries.get(0);
-                        rhq = this.queues.get(rhh);
-                    }
-                    // to prevent that the complete roundrobinhosthashes are taken for each round, we remove the entries from the top of the fast queue
-                    List<String> lastEntries = fastTree.size() > 0 ? fastTree.lastEntry().getValue() : null;
-                    if (lastEntries != null) {
-                        for (String h: lastEntries) this.roundRobinHostHashes.remove(h);
-                    }
-                }
-
-                /*
-                // first strategy: get one entry which does not need sleep time
-                Iterator<String> nhhi = this.roundRobinHostHashes.iterator();
-                nosleep: while (nhhi.hasNext()) {
-                    rhh = nhhi.next();
-                    rhq = this.queues.get(rhh);
-                    if (rhq == null) {
-                        nhhi.remove();
-                        continue nosleep;
-            }
-                    int delta = Latency.waitingRemainingGuessed(rhq.getHost(), rhh, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                    if (delta <= 10 || this.roundRobinHostHashes.size() == 1 || rhq.size() == 1) {
-                        nhhi.remove();
-                        break nosleep;
-                    }
-                }
-                if (rhq == null) {
-                    // second strategy: take from the largest stack
-                    int largest = Integer.MIN_VALUE;
-                    for (String h: this.roundRobinHostHashes) {
-                        HostQueue hq = this.queues.get(h);
-                        if (hq != null) {
-                            int s = hq.size();
-                            if (s > largest) {
-                                largest = s;
-                                rhh = h;
-                            }
-                        }
-                    }
-                    rhq = this.queues.get(rhh);
-                }
-                */
+            final HostScheduler.Entry next = this.scheduler.poll();
+            if (next == null) {
+                // all queues are empty or taken by other threads, or some queues have not been scheduled yet
+                if (scheduleAll(robots)) continue tryagain;
+                return null;
             }
-            
+            final String rhh = next.hosthash;
+            final HostQueue rhq = this.queues.get(rhh);
             if (rhq == null) {
-                this.roundRobinHostHashes.clear(); // force re-initialization
+                release(rhh, robots);
                 continue tryagain;
             }
-            this.roundRobinHostHashes.remove(rhh); // prevent that the queue is used again
-            long timestamp = System.currentTimeMillis();
-            Request request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
-            long actualwaiting = System.currentTimeMillis() - timestamp;
-            
-            if (actualwaiting > 1000) {
-                synchronized (this) {
-                    // to prevent that this occurs again, remove all stacks with positive delay times (which may be less after that waiting)
-                    Iterator<String> i = this.roundRobinHostHashes.iterator();
-                    protectcheck: while (i.hasNext()) {
-                        if (this.roundRobinHostHashes.size() <= 3) break protectcheck; // don't shrink the hosts until nothing is left
-                        String s = i.next();
-                        HostQueue hq = this.queues.get(s);
-                        if (hq == null) {i.remove(); continue protectcheck;}
-                        int delta = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), s, robots, ClientIdentification.yacyInternetCrawlerAgent);
-                        if (delta >= 0) {i.remove();}
-                    }
-                }
+
+            // the due time was computed when the host was scheduled; since then the host may have been accessed
+            // by the loader, which updates the latency statistics. If the host is not due any more, schedule it again.
+            final long due = dueTime(rhq, robots);
+            if (HostScheduler.slot(due) > HostScheduler.slot(next.due) && revalidations++ < maxRevalidations) {
+                this.scheduler.schedule(rhh, due, rhq.size());
+                continue tryagain;
             }
-            
-            if (rhq.isEmpty()) {
-                synchronized (this) {
-                    this.queues.remove(rhh);
-                }
-                rhq.close();
+
+            Request request;
+            try {
+                request = rhq.pop(delay, cs, robots); // this pop is outside of synchronization to prevent blocking of pushes
+            } finally {
+                release(rhh, robots);
             }
             if (request == null) continue tryagain;
+            // a host with many waiting urls gets more connections in the pool of the crawler
+            final DigestURL url = request.url();
+            HTTPClient.getPool(TrafficClass.CRAWLER).setHostDemand(url.getProtocol(), url.getHost(), url.getPort(), rhq.size());
             return request;
         } catch (ConcurrentModificationException e) {
             continue tryagain;
@@ -492,6 +367,57 @@ public class HostBalancer implements Balancer {
         }
     }
 
+    /**
+     * compute the time when the next access to the host of the queue is allowed
+     * @param hq
+     * @param robots may be null
+     * @return the due time in milliseconds since epoch
+     */
+    private static long dueTime(final HostQueue hq, final RobotsTxt robots) {
+        final int waiting = Latency.waitingRemainingGuessed(hq.getHost(), hq.getPort(), hq.getHostHash(), robots, ClientIdentification.yacyInternetCrawlerAgent);
+        return System.currentTimeMillis() + Math.max(0, waiting);
+    }
+
+    /**
+     * schedule a host again after it was taken from the scheduler. Empty queues are removed and closed.
+     * @param hosthash
+     * @param robots
+     */
+    private void release(final String hosthash, final RobotsTxt robots) {
+        HostQueue hq = this.queues.get(hosthash);
+        if (hq == null || hq.isEmpty()) {
+            // must be synchronized with push to not lose a queue which gets new entries concurrently
+            synchronized (this) {
+                hq = this.queues.get(hosthash);
+                if (hq != null && hq.isEmpty()) {
+                    this.queues.remove(hosthash);
+                } else if (hq != null) {
+                    this.scheduler.schedule(hosthash, dueTime(hq, robots), hq.size());
+                    return;
+                }
+                this.scheduler.remove(hosthash);
+            }
+            if (hq != null) hq.close();
+            return;
+        }
+        this.scheduler.schedule(hosthash, dueTime(hq, robots), hq.size());
+    }
+
+    /**
+     * schedule all queues which are not known to the scheduler
+     * @param robots
+     * @return true if any queue was scheduled
+     */
+    private boolean scheduleAll(final RobotsTxt robots) {
+        boolean scheduled = false;
+        for (Map.Entry<String, HostQueue> entry: this.queues.entrySet()) {
+            if (this.scheduler.isKnown(entry.getKey())) continue;
+            HostQueue hq = entry.getValue();
+            if (this.scheduler.offer(entry.getKey(), dueTime(hq, robots), hq.size())) scheduled = true;
+        }
+        return scheduled;
+    }
+
     @Override
     public Iterator<Request> iterator() throws IOException {
         final Iterator<HostQueue> hostsIterator = this.queues.values().iterator();
@@ -0,0 +1,147 @@
+/**
+ *  HostScheduler
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A priority index of host queues, ordered by the time when the next access to the host is allowed.
+ * Hosts which are due within the same time slot are ordered by the size of their queue, larger queues first.
+ * A host that is taken with {@link #poll()} is not returned again until it is scheduled again,
+ * so concurrent loader threads never get the same host at the same time.
+ * All operations are lock-free and need O(log n) time for n scheduled hosts.
+ */
+final class HostScheduler {
+
+    /** the fuzziness of the due times in milliseconds */
+    protected static final long SLOT = 200;
+
+    /** marker for hosts which are taken from the schedule and not yet scheduled again */
+    private static final Entry TAKEN = new Entry(null, Long.MAX_VALUE, 0, -1);
+
+    private final ConcurrentSkipListSet<Entry> schedule;
+    private final ConcurrentHashMap<String, Entry> entries; // mapping from host hash to the scheduled entry or the TAKEN marker
+    private final AtomicLong sequence;
+
+    protected HostScheduler() {
+        this.schedule = new ConcurrentSkipListSet<Entry>();
+        this.entries = new ConcurrentHashMap<String, Entry>();
+        this.sequence = new AtomicLong(0);
+    }
+
+    protected static long slot(final long time) {
+        return time / SLOT;
+    }
+
+    /**
+     * schedule a host if it is not known to the scheduler
+     * @param hosthash
+     * @param due the time when the next access to the host is allowed
+     * @param size the size of the host queue
+     * @return true if the host was scheduled, false if it was already scheduled or is taken
+     */
+    protected boolean offer(final String hosthash, final long due, final int size) {
+        final Entry entry = new Entry(hosthash, due, size, this.sequence.incrementAndGet());
+        if (this.entries.putIfAbsent(hosthash, entry) != null) return false;
+        this.schedule.add(entry);
+        return true;
+    }
+
+    /**
+     * schedule a host; an existing schedule for the host is replaced and a taken host is released
+     * @param hosthash
+     * @param due the time when the next access to the host is allowed
+     * @param size the size of the host queue
+     */
+    protected void schedule(final String hosthash, final long due, final int size) {
+        final Entry entry = new Entry(hosthash, due, size, this.sequence.incrementAndGet());
+        final Entry old = this.entries.put(hosthash, entry);
+        if (old != null && old != TAKEN) this.schedule.remove(old);
+        this.schedule.add(entry);
+    }
+
+    /**
+     * take the host with the earliest due time from the schedule.
+     * The host stays known to the scheduler until it is scheduled again or removed.
+     * @return the entry of the host or null if no host is scheduled
+     */
+    protected Entry poll() {
+        Entry entry;
+        while ((entry = this.schedule.pollFirst()) != null) {
+            // entries which have been replaced concurrently are outdated; skip them
+            if (this.entries.replace(entry.hosthash, entry, TAKEN)) return entry;
+        }
+        return null;
+    }
+
+    /**
+     * @param hosthash
+     * @return true if the host is scheduled or taken
+     */
+    protected boolean isKnown(final String hosthash) {
+        return this.entries.containsKey(hosthash);
+    }
+
+    /**
+     * remove a host from the scheduler
+     * @param hosthash
+     */
+    protected void remove(final String hosthash) {
+        final Entry old = this.entries.remove(hosthash);
+        if (old != null && old != TAKEN) this.schedule.remove(old);
+    }
+
+    protected void clear() {
+        this.entries.clear();
+        this.schedule.clear();
+    }
+
+    protected static final class Entry implements Comparable<Entry> {
+
+        protected final String hosthash;
+        protected final long due;
+        private final int size;
+        private final long seq;
+
+        private Entry(final String hosthash, final long due, final int size, final long seq) {
+            this.hosthash = hosthash;
+            this.due = due;
+            this.size = size;
+            this.seq = seq;
+        }
+
+        @Override
+        public int compareTo(final Entry other) {
+            int c = Long.compare(slot(this.due), slot(other.due));
+            if (c != 0) return c;
+            c = Integer.compare(other.size, this.size);
+            if (c != 0) return c;
+            return Long.compare(this.seq, other.seq);
+        }
+
+        @Override
+        public String toString() {
+            return this.hosthash + "@" + this.due;
+        }
+    }
+}
@@ -46,6 +46,7 @@ import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.cora.storage.GDSFCache;
 import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
@@ -67,6 +68,12 @@ public final class Cache {
 	/** Default size in bytes of the response header data base buffer (buffered bytes before writing to the file system) */
 	protected static final int DEFAULT_RESPONSE_HEADER_BUFFER_SIZE = 2048;
 	
+	/** Default size in bytes of the RAM tier (decompressed content of recently and frequently read documents) */
+	public static final long DEFAULT_RAM_TIER_SIZE = 32L * 1024L * 1024L;
+	
+	/** The estimated average size of a cached document, used to size the frequency sketch of the RAM tier */
+	private static final int AVERAGE_DOCUMENT_SIZE = 16 * 1024;
+	
 	
     private static final String RESPONSE_HEADER_DB_NAME = "responseHeader.heap";
     private static final String FILE_DB_NAME = "file.array";
@@ -83,6 +90,18 @@ public final class Cache {
     /** Total number of cache hits since last start/initialization or cache clear */
     private static AtomicLong hits = new AtomicLong(0);
     
+    /** Number of requests for cached content since last start/initialization or cache clear */
+    private static AtomicLong contentRequests = new AtomicLong(0);
+    
+    /** Number of content requests served by the RAM tier */
+    private static AtomicLong ramHits = new AtomicLong(0);
+    
+    /** Number of content requests served by the disk tier */
+    private static AtomicLong diskHits = new AtomicLong(0);
+    
+    /** The RAM tier: decompressed content of documents which are also stored in the fileDB, keyed by the url hash */
+    private static volatile GDSFCache<String> ramTier = new GDSFCache<String>(DEFAULT_RAM_TIER_SIZE, (int) (DEFAULT_RAM_TIER_SIZE / AVERAGE_DOCUMENT_SIZE));
+    
     private static File cachePath = null;
     private static String prefix;
     public static final ConcurrentLog log = new ConcurrentLog("HTCACHE");
@@ -101,6 +120,10 @@ public final class Cache {
         prefix = peerSalt;
         totalRequests.set(0);
         hits.set(0);
+        contentRequests.set(0);
+        ramHits.set(0);
+        diskHits.set(0);
+        ramTier.clear();
 
         // set/make cache path
         if (!htCachePath.exists()) {
@@ -210,9 +233,13 @@ public final class Cache {
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
         }
+        ramTier.clear();
         /* Clear statistics */
         totalRequests.set(0);
         hits.set(0);
+        contentRequests.set(0);
+        ramHits.set(0);
+        diskHits.set(0);
     }
 
     /**
@@ -224,6 +251,44 @@ public final class Cache {
         fileDBunbuffered.setMaxSize(maxCacheSize);
     }
 
+    /**
+     * This method changes the size of the RAM tier, its documents are kept and only evicted if the new size is smaller than the used size.
+     * The RAM tier is only created anew when it is enabled or disabled.<br>
+     * @param newRAMTierSize the new size in bytes, 0 disables the RAM tier
+     */
+    public static synchronized void setRAMTierSize(final long newRAMTierSize) {
+        final long size = Math.max(0, newRAMTierSize);
+        final long oldSize = ramTier.maxBytes();
+        if (size == oldSize) return;
+        if (size > 0 && oldSize > 0) {
+            ramTier.setMaxBytes(size);
+        } else {
+            // the frequency sketch is sized for the expected number of documents, a disabled RAM tier has none
+            ramTier = new GDSFCache<String>(size, (int) Math.min(Integer.MAX_VALUE, size / AVERAGE_DOCUMENT_SIZE));
+        }
+    }
+
+    /**
+     * @return the maximum size of the RAM tier in bytes
+     */
+    public static long getRAMTierSize() {
+        return ramTier.maxBytes();
+    }
+
+    /**
+     * @return the bytes used by the documents in the RAM tier, including an estimated overhead for each document
+     */
+    public static long getRAMTierUsedSize() {
+        return ramTier.usedBytes();
+    }
+
+    /**
+     * @return the number of documents in the RAM tier
+     */
+    public static int getRAMTierDocCount() {
+        return ramTier.size();
+    }
+
     /**
      * Warning : even when the cache is empty, 
      * the actual cache size may not be zero because heap files still containing zeros after deletions
@@ -248,6 +313,14 @@ public final class Cache {
     	fileDB.setCompressionLevel(newCompressionLevel);
     }
     
+    /**
+     * Set the encoding of new compressed content
+     * @param codec the new codec
+     */
+    public static void setCompressionCodec(final Compressor.Codec codec) {
+    	fileDB.setCodec(codec);
+    }
+    
     /**
      * Set the new synchronization lock timeout.
      * @param lockTimeout the new synchronization lock timeout (in milliseconds).
@@ -290,6 +363,9 @@ public final class Cache {
             fileDB.delete(url.hash());
             throw new IOException("Cache.store: cannot write to headerDB: " + e.getMessage());
         }
+        
+        // offer the content to the RAM tier, which admits it if it is not less frequent than the documents it would evict
+        ramTier.put(ASCII.String(url.hash()), file);
         if (log.isFine()) log.fine("stored in cache: " + url.toNormalform(true));
     }
 
@@ -361,13 +437,28 @@ public final class Cache {
      */
     public static byte[] getContent(final byte[] hash) {
     	totalRequests.incrementAndGet();
+    	contentRequests.incrementAndGet();
+    	final String key = ASCII.String(hash);
         // load the url as resource from the cache
         try {
-            final byte[] b = fileDB.get(hash);
+            // first the RAM tier; its documents are only valid as long as they are also in the fileDB
+            final GDSFCache<String> ram = ramTier;
+            byte[] b = ram.get(key);
+            if (b != null) {
+                if (fileDB.containsKey(hash)) {
+                    ramHits.incrementAndGet();
+                    hits.incrementAndGet();
+                    return b;
+                }
+                ram.remove(key);
+            }
+            b = fileDB.get(hash);
             if (b == null) {
             	return null;
             }
+            diskHits.incrementAndGet();
             hits.incrementAndGet();
+            ram.put(key, b);
             return b;
         } catch (final UnsupportedEncodingException e) {
             ConcurrentLog.logException(e);
@@ -405,6 +496,7 @@ public final class Cache {
      * @throws IOException
      */
     public static void delete(final byte[] hash) throws IOException {
+        ramTier.remove(ASCII.String(hash));
         responseHeaderDB.delete(hash);
         fileDB.delete(hash);
     }
@@ -430,4 +522,41 @@ public final class Cache {
     	final long total = totalRequests.get();
     	return total > 0 ? ((Cache.getHits() / ((double) total))) : 0.0 ;
     }
+    
+    /**
+     * @return the number of requests for cached content since last start/initialization or cache clear
+     */
+    public static long getContentRequests() {
+        return contentRequests.get();
+    }
+    
+    /**
+     * @return the number of content requests served by the RAM tier
+     */
+    public static long getRAMTierHits() {
+        return ramHits.get();
+    }
+    
+    /**
+     * @return the number of content requests served by the disk tier
+     */
+    public static long getDiskHits() {
+        return diskHits.get();
+    }
+    
+    /**
+     * @return the hit rate of the RAM tier (proportion of RAM tier hits over all content requests)
+     */
+    public static double getRAMTierHitRate() {
+        final long total = contentRequests.get();
+        return total > 0 ? ramHits.get() / ((double) total) : 0.0;
+    }
+    
+    /**
+     * @return the hit rate of the disk tier (proportion of disk tier hits over the content requests which missed the RAM tier)
+     */
+    public static double getDiskHitRate() {
+        final long total = contentRequests.get() - ramHits.get();
+        return total > 0 ? diskHits.get() / ((double) total) : 0.0;
+    }
 }
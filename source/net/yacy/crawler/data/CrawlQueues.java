@@ -37,6 +37,9 @@ import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.solr.client.solrj.SolrQuery;
@@ -59,11 +62,13 @@ import net.yacy.crawler.data.NoticedURL.StackType;
 import net.yacy.crawler.retrieval.Request;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.crawler.robots.RobotsTxtEntry;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.kelondro.workflow.WorkflowJob;
 import net.yacy.peers.DHTSelection;
 import net.yacy.peers.Protocol;
 import net.yacy.peers.Seed;
 import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.repository.LoaderDispatcher;
 import net.yacy.search.IndexingQueueEntry;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
@@ -78,6 +83,9 @@ public class CrawlQueues {
     private final Switchboard sb;
     private final Loader[] worker;
     private final ArrayBlockingQueue<Request> workerQueue;
+    private final boolean asyncLoad; // load http(s) urls with the asynchronous loader of the LoaderDispatcher
+    private final ThreadPoolExecutor asyncWorker; // checks robots.txt before and processes the responses after the asynchronous loads
+    private final Set<Request> asyncRequests; // the requests given to the asynchronous loader which are not yet finished
     private ArrayList<String> remoteCrawlProviderHashes;
 
     public  NoticedURL noticeURL;
@@ -93,6 +101,16 @@ public class CrawlQueues {
         /* We initialize workerQueue with the same capacity as worker array, because this same queue 
          * will be used to send POISON_REQUEST items consumed by all eventually running workers in the close() function*/
         this.workerQueue = new ArrayBlockingQueue<Request>(maxWorkers);
+        this.asyncLoad = sb.getConfigBool(SwitchboardConstants.CRAWLER_LOADER_ASYNC, SwitchboardConstants.CRAWLER_LOADER_ASYNC_DEFAULT);
+        if (this.asyncLoad) {
+            // the workers do the blocking parts of the asynchronous loads, the number of queued tasks is limited by the capacity of the loader
+            this.asyncWorker = new ThreadPoolExecutor(maxWorkers, maxWorkers, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                    new NamePrefixThreadFactory(CrawlQueues.class.getSimpleName() + ".asyncWorker"));
+            this.asyncWorker.allowCoreThreadTimeOut(true);
+        } else {
+            this.asyncWorker = null;
+        }
+        this.asyncRequests = ConcurrentHashMap.<Request>newKeySet();
         this.remoteCrawlProviderHashes = null;
 
         // start crawling management
@@ -156,6 +174,7 @@ public class CrawlQueues {
                 }
             }
         }
+        if (this.asyncWorker != null) this.asyncWorker.shutdownNow();
         if (this.delegatedURL != null) this.delegatedURL.clear();
     }
 
@@ -163,6 +182,8 @@ public class CrawlQueues {
         // wait for all workers to finish
         this.workerQueue.clear();
         for (final Loader w: this.worker) if (w != null) w.interrupt();
+        if (this.asyncLoad) this.sb.loader.asyncLoader().clear();
+        this.asyncRequests.clear();
         if (this.remoteCrawlProviderHashes != null) this.remoteCrawlProviderHashes.clear();
         this.noticeURL.clear();
         if (this.delegatedURL != null) this.delegatedURL.clear();
@@ -258,6 +279,7 @@ public class CrawlQueues {
                     if (r != null) map.put(r.url(), r);
                 }
             }
+            for (final Request r: this.asyncRequests) map.put(r.url(), r);
             return map;
         }
     }
@@ -381,11 +403,14 @@ public class CrawlQueues {
                     CrawlQueues.log.info(stats + ": urlEntry = null");
                 } else {
                     if (!activeWorkerEntries().containsKey(urlEntry.url())) {
-                        try {
-                            ensureLoaderRunning();
-                            this.workerQueue.put(urlEntry);
-                        } catch (InterruptedException e) {
-                            ConcurrentLog.logException(e);
+                        // http(s) urls are loaded by the asynchronous loader if enabled; when it is saturated, the loader threads are used
+                        if (!this.asyncLoad || !(urlProtocol.equals("http") || urlProtocol.equals("https")) || !loadAsync(urlEntry, profile)) {
+                            try {
+                                ensureLoaderRunning();
+                                this.workerQueue.put(urlEntry);
+                            } catch (InterruptedException e) {
+                                ConcurrentLog.logException(e);
+                            }
                         }
                     }
                 }
@@ -430,8 +455,8 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
-            return "too many workers active: " + this.workerQueue.size();
+        if (loaderCapacity() == 0) {
+            return "too many workers active: " + activeWorkerEntries().size();
         }
 
         final String cautionCause = this.sb.onlineCaution();
@@ -455,7 +480,7 @@ public class CrawlQueues {
         }
 
         // check again
-        if (this.workerQueue.remainingCapacity() == 0) {
+        if (loaderCapacity() == 0) {
             if (CrawlQueues.log.isFine()) {
                 CrawlQueues.log.fine("remoteCrawlLoaderJob: too many processes in loader queue, dismissed (" + "workerQueue=" + this.workerQueue.size() + "), httpClients = " + ConnectionInfo.getCount());
             }
@@ -702,15 +727,130 @@ public class CrawlQueues {
         }
     }
 
-    private void ensureLoaderRunning() {
-        // check if there is at least one loader available
-        for (int i = 0; i < this.worker.length; i++) {
-            if (this.worker[i] == null || !this.worker[i].isAlive()) {
-                this.worker[i] = new Loader();
-                this.worker[i].start();
+    /**
+     * @return the number of requests which can be given to the loader without waiting
+     */
+    private int loaderCapacity() {
+        return this.asyncLoad ? asyncCapacity() : this.workerQueue.remainingCapacity();
+    }
+
+    /**
+     * @return the number of requests which can be given to the asynchronous loader; the requests which wait for
+     *         their robots.txt check or for the processing of their response are counted as well
+     */
+    private int asyncCapacity() {
+        return Math.max(0, Math.min(this.sb.loader.asyncLoader().remainingCapacity(), this.sb.loader.asyncLoader().maxRequests() - this.asyncRequests.size()));
+    }
+
+    /**
+     * Load a http(s) url with the asynchronous loader. The robots.txt check and the handling of the result
+     * are the same as in the {@link Loader} threads; they are done by the async workers, so neither the calling
+     * thread nor the threads of the http client are blocked.
+     * @param request the request
+     * @param profile the crawl profile of the request
+     * @return true if the request has been handled, false if the asynchronous loader is saturated
+     */
+    private boolean loadAsync(final Request request, final CrawlProfile profile) {
+        if (asyncCapacity() <= 0) return false;
+        request.setStatus("worker-initialized", WorkflowJob.STATUS_INITIATED);
+        this.asyncRequests.add(request);
+        try {
+            this.asyncWorker.execute(new Runnable() {
+                @Override
+                public void run() {
+                    startAsync(request, profile);
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            this.asyncRequests.remove(request);
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Check the robots.txt of a request and give it to the asynchronous loader; called by the async workers.
+     * If the asynchronous loader is saturated, the request is given to the {@link Loader} threads.
+     */
+    private void startAsync(final Request request, final CrawlProfile profile) {
+        try {
+            // checking robots.txt
+            request.setStatus("worker-checkingrobots", WorkflowJob.STATUS_STARTED);
+            final RobotsTxtEntry robotsEntry = this.sb.robots.getEntry(request.url(), profile.getAgent());
+            if (robotsEntry != null && robotsEntry.isDisallowed(request.url())) {
+                this.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_ROBOTS_RULE, "denied by robots.txt", -1);
+                request.setStatus("worker-disallowed", WorkflowJob.STATUS_FINISHED);
+                this.asyncRequests.remove(request);
                 return;
             }
-            if (this.worker[i].loading() == null) return;
+
+            // starting a load from the internet; the listener is called by the async workers
+            request.setStatus("loading", WorkflowJob.STATUS_RUNNING);
+            final boolean accepted = this.sb.loader.loadAsync(request, profile.cacheStrategy(), BlacklistType.CRAWLER, profile.getAgent(), this.asyncWorker, new LoaderDispatcher.LoadListener() {
+
+                @Override
+                public void loaded(final Response response) {
+                    request.setStatus("loaded", WorkflowJob.STATUS_RUNNING);
+                    final String storedFailMessage = CrawlQueues.this.sb.toIndexer(response);
+                    request.setStatus("enqueued-" + ((storedFailMessage == null) ? "ok" : "fail"), WorkflowJob.STATUS_FINISHED);
+                    loadFinished(request, profile, (storedFailMessage == null) ? null : "not enqueued to indexer: " + storedFailMessage);
+                    CrawlQueues.this.asyncRequests.remove(request);
+                }
+
+                @Override
+                public void failed(final Request failedRequest, final String error) {
+                    request.setStatus("error", WorkflowJob.STATUS_FINISHED);
+                    if (CrawlQueues.log.isFine()) {
+                        CrawlQueues.log.fine("problem loading " + request.url().toString() + ": " + error);
+                    }
+                    loadFinished(request, profile, "load error - " + error);
+                    CrawlQueues.this.asyncRequests.remove(request);
+                }
+            });
+            if (!accepted) {
+                this.asyncRequests.remove(request);
+                ensureLoaderRunning();
+                this.workerQueue.put(request);
+            }
+        } catch (final InterruptedException e) {
+            this.asyncRequests.remove(request);
+        } catch (final Exception e) {
+            this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
+            request.setStatus("worker-exception", WorkflowJob.STATUS_FINISHED);
+            this.asyncRequests.remove(request);
+        }
+    }
+
+    /**
+     * Record the end of a load
+     * @param request the request
+     * @param profile the crawl profile of the request
+     * @param error null if the response has been given to the indexer, otherwise the reason of the failure
+     */
+    private void loadFinished(final Request request, final CrawlProfile profile, final String error) {
+        if (error != null) {
+            // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
+            // thus we only push this message if we don't have that mark
+            if (!error.endsWith("$")) {
+                this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
+            }
+            request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
+        } else {
+            request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
+        }
+    }
+
+    private void ensureLoaderRunning() {
+        // check if there is at least one loader available; this is also called by the async workers
+        synchronized (this.worker) {
+            for (int i = 0; i < this.worker.length; i++) {
+                if (this.worker[i] == null || !this.worker[i].isAlive()) {
+                    this.worker[i] = new Loader();
+                    this.worker[i].start();
+                    return;
+                }
+                if (this.worker[i].loading() == null) return;
+            }
         }
     }
     
@@ -773,18 +913,7 @@ public class CrawlQueues {
                                 error = "load error - " + e.getMessage();
                             }
    
-                            if (error != null) {
-                                if (error.endsWith("$")) {
-                                    // the "$" mark at the end of the error message means, that the error was already pushed to the error-db by the reporting method
-                                    // thus we only push this message if we don't have that mark
-                                    error = error.substring(0, error.length() - 1).trim();
-                                } else {
-                                    CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "cannot load: " + error, -1);
-                                }
-                                request.setStatus("worker-error", WorkflowJob.STATUS_FINISHED);
-                            } else {
-                                request.setStatus("worker-processed", WorkflowJob.STATUS_FINISHED);
-                            }
+                            loadFinished(request, profile, error);
                         }
                     } catch (final Exception e) {
                         CrawlQueues.this.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, e.getMessage() + " - in worker", -1);
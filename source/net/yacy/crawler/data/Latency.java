@@ -23,16 +23,28 @@
 
 package net.yacy.crawler.data;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.document.id.MultiProtocolURL;
 import net.yacy.cora.federate.yacy.CacheStrategy;
 import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.robots.RobotsTxt;
 import net.yacy.crawler.robots.RobotsTxtEntry;
 import net.yacy.kelondro.util.MemoryControl;
@@ -42,9 +54,105 @@ import net.yacy.search.SwitchboardConstants;
 
 public class Latency {
 
-    // the map is a mapping from host names to host configurations
-    private static final int mapMaxSize = 1000;
+    private final static ConcurrentLog log = new ConcurrentLog("Latency");
+
+    // the map is a mapping from host hashes to host statistics
     private static final ConcurrentHashMap<String, Host> map = new ConcurrentHashMap<String, Host>();
+    private static volatile int mapMaxSize = 100000;
+    private static final ReentrantLock evictionLock = new ReentrantLock();
+    private static File persistenceFile = null;
+
+    /**
+     * load the host statistics which have been saved with the last close
+     * @param file the file where the statistics are stored; null for no persistence
+     */
+    public static void init(final File file) {
+        persistenceFile = file;
+        if (file == null || !file.exists()) return;
+        int c = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                final Host h = Host.parse(line);
+                if (h == null) continue;
+                map.put(line.substring(0, line.indexOf(' ')), h);
+                c++;
+            }
+        } catch (final IOException e) {
+            log.warn("could not load latency statistics from " + file + ": " + e.getMessage());
+        }
+        evict(mapMaxSize);
+        log.info("loaded latency statistics of " + c + " hosts");
+    }
+
+    /**
+     * save the host statistics if a persistence file was given with init
+     */
+    public static synchronized void close() {
+        final File file = persistenceFile;
+        if (file == null) return;
+        final File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+        try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            for (final Map.Entry<String, Host> e: map.entrySet()) {
+                writer.write(e.getKey());
+                writer.write(' ');
+                writer.write(e.getValue().toString());
+                writer.write('\n');
+            }
+        } catch (final IOException e) {
+            log.warn("could not save latency statistics to " + file + ": " + e.getMessage());
+            tmp.delete();
+            return;
+        }
+        if (file.exists()) file.delete();
+        if (!tmp.renameTo(file)) log.warn("could not rename " + tmp + " to " + file);
+    }
+
+    /**
+     * set the maximum number of hosts with statistics; if there are more hosts, the least recently accessed are removed
+     * @param maxSize
+     */
+    public static void setMaxSize(final int maxSize) {
+        mapMaxSize = Math.max(100, maxSize);
+        evict(mapMaxSize);
+    }
+
+    public static int size() {
+        return map.size();
+    }
+
+    private static void put(final String hosthash, final Host h) {
+        if (map.putIfAbsent(hosthash, h) != null) return;
+        final int maxSize = MemoryControl.shortStatus() ? mapMaxSize / 2 : mapMaxSize;
+        // evict in steps to amortize the cost of finding the least recently accessed hosts
+        if (map.size() > maxSize + maxSize / 10) evict(maxSize);
+    }
+
+    /**
+     * remove the least recently accessed hosts until at most maxSize hosts remain.
+     * Only one thread evicts at a time, other threads do not wait for it.
+     * @param maxSize
+     */
+    private static void evict(final int maxSize) {
+        if (!evictionLock.tryLock()) return;
+        try {
+            final long[] acc = new long[map.size() + 100];
+            int n = 0;
+            for (final Host h: map.values()) {
+                if (n >= acc.length) break;
+                acc[n++] = h.lastacc();
+            }
+            if (n <= maxSize) return;
+            Arrays.sort(acc, 0, n);
+            final long threshold = acc[n - maxSize - 1];
+            final Iterator<Host> i = map.values().iterator();
+            while (i.hasNext()) {
+                if (i.next().lastacc() <= threshold) i.remove();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
 
     /**
      * update the latency entry after a host was selected for queueing into the loader
@@ -58,8 +166,7 @@ public class Latency {
         Host h = map.get(hosthash);
         if (h == null) {
             h = new Host(host, Switchboard.getSwitchboard().getConfigInt("crawler.defaultAverageLatency", 500), robotsCrawlDelay);
-            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
-            map.put(hosthash, h);
+            put(hosthash, h);
         }
     }
 
@@ -75,8 +182,7 @@ public class Latency {
         Host h = map.get(hosthash);
         if (h == null) {
             h = new Host(host, 500, 0);
-            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
-            map.put(hosthash, h);
+            put(hosthash, h);
         } else {
             h.update();
         }
@@ -94,8 +200,7 @@ public class Latency {
         Host h = map.get(hosthash);
         if (h == null) {
             h = new Host(host, time, 0);
-            if (map.size() > mapMaxSize || MemoryControl.shortStatus()) map.clear();
-            map.put(hosthash, h);
+            put(hosthash, h);
         } else {
             h.update(time);
         }
@@ -196,28 +301,50 @@ public class Latency {
         final Host host = host(url);
         if (host == null) return Integer.MIN_VALUE; // no delay if host is new; use Integer because there is a cast to int somewhere
 
+        final int waiting = waitingTime(url, host, robots, agent);
+
+        // the time since last access to the domain is the basis of the remaining calculation
+        final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
+        if (waiting < 0) return -timeSinceLastAccess; // no limits if granted exclusively for this peer
+
+        return waiting - timeSinceLastAccess;
+    }
+
+    /**
+     * calculates how long should be waited between two accesses to the domain, following the same rules
+     * as {@link #waitingRemaining(DigestURL, RobotsTxt, ClientIdentification.Agent)} but without the
+     * time since the last access; the flux factor and the response latency apply only to known domains
+     * @param url
+     * @param robots
+     * @param agent
+     * @return the waiting time in milliseconds; -1 if host gives us special rights
+     */
+    public static int waitingTime(final DigestURL url, final RobotsTxt robots, final ClientIdentification.Agent agent) {
+        return waitingTime(url, host(url), robots, agent);
+    }
+
+    private static int waitingTime(final DigestURL url, final Host host, final RobotsTxt robots, final ClientIdentification.Agent agent) {
+
         // find the minimum waiting time based on the network domain (local or global)
-        boolean local = url.isLocal();
         int waiting = agent.minimumDelta;
 
-        // if we have accessed the domain many times, get slower (the flux factor)
-        if (!local) waiting += host.flux(waiting);
+        if (host != null) {
+            // if we have accessed the domain many times, get slower (the flux factor)
+            if (!url.isLocal()) waiting += host.flux(waiting);
+
+            // use the access latency as rule how fast we can access the server
+            waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
+        }
 
-        // use the access latency as rule how fast we can access the server
-        waiting = Math.max(waiting, (int) (host.average() * Switchboard.getSwitchboard().getConfigFloat(SwitchboardConstants.CRAWLER_LATENCY_FACTOR, 0.5f)));
-        
         // if the number of same hosts as in the url in the loading queue is greater than MaxSameHostInQueue, then increase waiting
         if (Switchboard.getSwitchboard().crawlQueues.hostcount(url.getHost()) > Switchboard.getSwitchboard().getConfigInt(SwitchboardConstants.CRAWLER_MAX_SAME_HOST_IN_QUEUE, 20)) waiting += 3000;
 
-        // the time since last access to the domain is the basis of the remaining calculation
-        final int timeSinceLastAccess = (int) (System.currentTimeMillis() - host.lastacc());
-        
         // find the delay as given by robots.txt on target site
         int robotsDelay = waitingRobots(url, robots, agent);
-        if (robotsDelay < 0) return -timeSinceLastAccess; // no limits if granted exclusively for this peer
+        if (robotsDelay < 0) return -1; // no limits if granted exclusively for this peer
 
         waiting = Math.max(waiting, robotsDelay);
-        return Math.min(60000, waiting) - timeSinceLastAccess;
+        return Math.min(60000, waiting);
     }
     
     public static String waitingRemainingExplain(final DigestURL url, final RobotsTxt robots, final ClientIdentification.Agent agent) {
@@ -300,30 +427,40 @@ public class Latency {
         return sleeptime < 0 ? 0 : sleeptime;
     }
     
+    /**
+     * The access statistics of a host. All updates are lock-free.
+     * The average of the access latency decays exponentially, so recent accesses count more than old ones.
+     */
     public static final class Host {
-        private AtomicLong timeacc;
-        private AtomicLong lastacc;
-        private AtomicInteger count;
+
+        /** the weight of a new latency in the average; the average covers roughly the last 10 accesses */
+        private static final double AVERAGE_WEIGHT = 0.1d;
+
+        private final AtomicLong average; // the bits of a double value
+        private final AtomicLong lastacc;
+        private final AtomicInteger count;
         private final String host;
-        private long robotsMinDelay;
+        private final long robotsMinDelay;
         private Host(final String host, final long time, long robotsMinDelay) {
+            this(host, time, 1, System.currentTimeMillis(), robotsMinDelay);
+        }
+        private Host(final String host, final double average, final int count, final long lastacc, long robotsMinDelay) {
             this.host = host;
-            this.timeacc = new AtomicLong(time);
-            this.count = new AtomicInteger(1);
-            this.lastacc = new AtomicLong(System.currentTimeMillis());
+            this.average = new AtomicLong(Double.doubleToLongBits(average));
+            this.count = new AtomicInteger(count);
+            this.lastacc = new AtomicLong(lastacc);
             this.robotsMinDelay = robotsMinDelay;
         }
         private void update(final long time) {
-            if (this.count.get() > 100) {
-                synchronized(this) {
-                    // faster adoption to new values
-                    this.timeacc.set(this.timeacc.get() / this.count.get());
-                    this.count.set(1);
-                }
-            }
+            final double t = Math.min(30000, time);
             this.lastacc.set(System.currentTimeMillis());
-            this.timeacc.addAndGet(Math.min(30000, time));
             this.count.incrementAndGet();
+            long prev, next;
+            do {
+                prev = this.average.get();
+                final double a = Double.longBitsToDouble(prev);
+                next = Double.doubleToLongBits(a + AVERAGE_WEIGHT * (t - a));
+            } while (!this.average.compareAndSet(prev, next));
         }
         private void update() {
             this.lastacc.set(System.currentTimeMillis());
@@ -331,8 +468,11 @@ public class Latency {
         public int count() {
             return this.count.get();
         }
+        /**
+         * @return the exponentially decayed average of the access latency in milliseconds
+         */
         public int average() {
-            return (int) (this.timeacc.get() / this.count.get());
+            return (int) Double.longBitsToDouble(this.average.get());
         }
         public long lastacc() {
             return this.lastacc.get();
@@ -352,6 +492,23 @@ public class Latency {
         public int flux(final int range) {
             return this.count.get() >= 10000 ? range >> 1 : (range * this.count.get() / 10000) >> 1;
         }
+        @Override
+        public String toString() {
+            return this.host + ' ' + Double.longBitsToDouble(this.average.get()) + ' ' + this.count.get() + ' ' + this.lastacc.get() + ' ' + this.robotsMinDelay;
+        }
+        /**
+         * @param line a line of the persistence file: the host hash followed by the output of toString
+         * @return the host statistics or null if the line cannot be parsed
+         */
+        private static Host parse(final String line) {
+            final String[] s = line.split(" ");
+            if (s.length != 6) return null;
+            try {
+                return new Host(s[1], Double.parseDouble(s[2]), Integer.parseInt(s[3]), Long.parseLong(s[4]), Long.parseLong(s[5]));
+            } catch (final NumberFormatException e) {
+                return null;
+            }
+        }
     }
     
 }
@@ -0,0 +1,414 @@
+/**
+ *  AsyncHTTPLoader
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.crawler.retrieval;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.api.Result;
+import org.eclipse.jetty.client.http.HttpClientTransportOverHTTP;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.util.HttpCookieStore;
+import org.eclipse.jetty.util.ssl.SslContextFactory;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.FailCategory;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.protocol.ResponseHeader;
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * An event driven loader of http(s) resources: the requests are sent with the non-blocking Jetty http client,
+ * so a small pool of threads drives a large number of concurrent requests.
+ *
+ * The requests to the same host are sent one after another, and the start of a request waits until the given delay
+ * after the start of the previous request to that host has passed; the waiting is done by a timer and does not block a thread.
+ * Redirects are not followed, the listener gets the redirect response and may submit a new request.
+ *
+ * The loader does not depend on the {@link net.yacy.search.Switchboard}, the crawler specific checks and the processing
+ * of the responses are done by the {@link Listener} of each request.
+ */
+public final class AsyncHTTPLoader {
+
+    private final static ConcurrentLog log = new ConcurrentLog("AsyncHTTPLoader");
+
+    /** the content encodings which are decoded by the client */
+    private static final String ACCEPT_ENCODING = "gzip";
+
+    /**
+     * Receives the result of a request. The methods are called by the threads of the loader and should return soon.
+     */
+    public interface Listener {
+
+        /**
+         * called when the request is sent, after the delay for its host
+         * @param request the request
+         */
+        public void started(Request request);
+
+        /**
+         * called when the response has been received completely, also for responses with a redirect or an error status
+         * @param request the request
+         * @param responseHeader the response header with the status code
+         * @param content the decoded content, an empty array if the response has no content
+         */
+        public void completed(Request request, ResponseHeader responseHeader, byte[] content);
+
+        /**
+         * called when the request failed, i.e. because of a network error, a timeout or a too large content
+         * @param request the request
+         * @param category the fail category for the error cache
+         * @param reason the reason of the failure
+         */
+        public void failed(Request request, FailCategory category, String reason);
+    }
+
+    private final class Fetch {
+        private final Request request;
+        private final DigestURL url;
+        private final String host;
+        private final RequestHeader requestHeader;
+        private final int maxFileSize;
+        private final long delay;
+        private final Listener listener;
+        private volatile org.eclipse.jetty.client.api.Request httpRequest; // the request of the http client when started
+        private volatile boolean cancelled;
+
+        private Fetch(final Request request, final DigestURL url, final RequestHeader requestHeader, final int maxFileSize, final long delay, final Listener listener) {
+            this.request = request;
+            this.url = url;
+            final String h = url.getHost();
+            this.host = h == null ? "" : h.toLowerCase(Locale.ROOT);
+            this.requestHeader = requestHeader;
+            this.maxFileSize = maxFileSize;
+            this.delay = Math.max(0, delay);
+            this.listener = listener;
+            this.httpRequest = null;
+            this.cancelled = false;
+        }
+    }
+
+    /** the politeness state of a host */
+    private static final class Host {
+        private long nextAccess = 0; // the earliest start time of the next request
+        private boolean busy = false; // a request to the host is scheduled or running
+        private final ArrayDeque<Fetch> waiting = new ArrayDeque<Fetch>();
+    }
+
+    private final HttpClient client;
+    private final int maxRequests;
+    private final int timeout;
+    private final Set<Fetch> fetches; // the accepted requests which have not yet finished
+    private final Map<String, Host> hosts; // guarded by this
+    private boolean closed;
+
+    /**
+     * @param maxRequests the maximum number of accepted requests, including the requests which wait for their host
+     * @param threads the number of threads of the client
+     * @param timeout the connect and idle timeout in milliseconds
+     */
+    public AsyncHTTPLoader(final int maxRequests, final int threads, final int timeout) {
+        this.maxRequests = Math.max(1, maxRequests);
+        this.timeout = timeout;
+        this.fetches = ConcurrentHashMap.<Fetch>newKeySet();
+        this.hosts = new HashMap<String, Host>();
+        this.closed = false;
+        final QueuedThreadPool pool = new QueuedThreadPool(Math.max(4, threads), 2);
+        pool.setName("AsyncHTTPLoader");
+        pool.setDaemon(true);
+        this.client = new HttpClient(new HttpClientTransportOverHTTP(1), new SslContextFactory(true));
+        this.client.setExecutor(pool);
+        this.client.setFollowRedirects(false); // redirects are handled by the listener, so we don't index pages twice
+        this.client.setUserAgentField(null); // the user agent is set by the request header
+        this.client.setCookieStore(new HttpCookieStore.Empty());
+        this.client.setConnectTimeout(timeout);
+        this.client.setIdleTimeout(timeout);
+        this.client.setMaxConnectionsPerDestination(4);
+        this.client.setMaxRequestsQueuedPerDestination(this.maxRequests);
+        this.client.setRemoveIdleDestinations(true);
+        try {
+            this.client.start();
+        } catch (final Exception e) {
+            throw new IllegalStateException("cannot start the http client: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Submit a request
+     * @param request the request, it is handed to the listener
+     * @param url the url to load, this may differ from the url of the request when a domain name has been resolved
+     * @param requestHeader the request header; the Accept-Encoding field is replaced by the encodings the client can decode
+     * @param maxFileSize the maximum size of the content in bytes, -1 for no limit
+     * @param delay the minimum time in milliseconds between the start of this request and the start of the previous request to the host
+     * @param listener the listener which gets the result
+     * @return true if the request has been accepted, false if the loader is closed or the maximum number of requests is reached;
+     *         then the listener is not called
+     */
+    public boolean load(final Request request, final DigestURL url, final RequestHeader requestHeader, final int maxFileSize, final long delay, final Listener listener) {
+        final Fetch fetch = new Fetch(request, url, requestHeader, maxFileSize, delay, listener);
+        synchronized (this) {
+            if (this.closed || this.fetches.size() >= this.maxRequests) return false;
+            this.fetches.add(fetch);
+            if (this.hosts.size() > 2 * this.maxRequests) cleanup();
+            Host host = this.hosts.get(fetch.host);
+            if (host == null) {
+                host = new Host();
+                this.hosts.put(fetch.host, host);
+            }
+            if (host.busy) {
+                host.waiting.add(fetch);
+            } else {
+                host.busy = true;
+                schedule(fetch, host);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * remove the hosts which are idle and may be accessed now; must be called while holding the lock
+     */
+    private void cleanup() {
+        final long now = System.currentTimeMillis();
+        final Iterator<Host> i = this.hosts.values().iterator();
+        while (i.hasNext()) {
+            final Host host = i.next();
+            if (!host.busy && host.nextAccess <= now) i.remove();
+        }
+    }
+
+    /**
+     * start a fetch when its host may be accessed; must be called while holding the lock
+     */
+    private void schedule(final Fetch fetch, final Host host) {
+        final long wait = host.nextAccess - System.currentTimeMillis();
+        final Runnable start = new Runnable() {
+            @Override
+            public void run() {
+                start(fetch);
+            }
+        };
+        if (wait <= 0) {
+            this.client.getExecutor().execute(start);
+        } else {
+            this.client.getScheduler().schedule(start, wait, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void start(final Fetch fetch) {
+        synchronized (this) {
+            if (this.closed || fetch.cancelled) return;
+            final Host host = this.hosts.get(fetch.host);
+            if (host != null) host.nextAccess = System.currentTimeMillis() + fetch.delay;
+        }
+        final org.eclipse.jetty.client.api.Request httpRequest;
+        try {
+            httpRequest = this.client.newRequest(fetch.url.toNormalform(false));
+        } catch (final IllegalArgumentException e) {
+            finish(fetch);
+            fetch.listener.failed(fetch.request, FailCategory.FINAL_LOAD_CONTEXT, "url not valid: " + e.getMessage());
+            return;
+        }
+        for (final Map.Entry<String, String> entry: fetch.requestHeader.entrySet()) {
+            if (HeaderFramework.ACCEPT_ENCODING.equalsIgnoreCase(entry.getKey())) continue;
+            httpRequest.header(entry.getKey(), entry.getValue());
+        }
+        httpRequest.header(HeaderFramework.ACCEPT_ENCODING, ACCEPT_ENCODING);
+        httpRequest.idleTimeout(this.timeout, TimeUnit.MILLISECONDS);
+        fetch.httpRequest = httpRequest;
+        try {
+            fetch.listener.started(fetch.request);
+        } catch (final Throwable e) {
+            log.warn("listener failed for " + fetch.url.toNormalform(false) + ": " + e.getMessage(), e);
+        }
+        httpRequest.send(new ContentListener(fetch));
+    }
+
+    /**
+     * remove a fetch and start the next waiting request to its host
+     */
+    private void finish(final Fetch fetch) {
+        synchronized (this) {
+            if (!this.fetches.remove(fetch)) return; // the loader has been cleared
+            final Host host = this.hosts.get(fetch.host);
+            if (host == null) return;
+            final Fetch next = host.waiting.poll();
+            if (next == null) {
+                host.busy = false;
+            } else {
+                schedule(next, host);
+            }
+        }
+    }
+
+    private final class ContentListener extends org.eclipse.jetty.client.api.Response.Listener.Adapter {
+
+        private final Fetch fetch;
+        private final ByteArrayOutputStream content;
+        private boolean tooLarge;
+
+        private ContentListener(final Fetch fetch) {
+            this.fetch = fetch;
+            this.content = new ByteArrayOutputStream();
+            this.tooLarge = false;
+        }
+
+        @Override
+        public void onHeaders(final org.eclipse.jetty.client.api.Response response) {
+            final long length = response.getHeaders().getLongField(HeaderFramework.CONTENT_LENGTH);
+            if (this.fetch.maxFileSize >= 0 && length > this.fetch.maxFileSize) {
+                this.tooLarge = true;
+                response.abort(new IllegalStateException("content length " + length + " exceeds the limit of " + this.fetch.maxFileSize + " bytes"));
+            }
+        }
+
+        @Override
+        public void onContent(final org.eclipse.jetty.client.api.Response response, final ByteBuffer buffer) {
+            if (this.tooLarge) return;
+            final int length = buffer.remaining();
+            if (this.fetch.maxFileSize >= 0 && this.content.size() + length > this.fetch.maxFileSize) {
+                this.tooLarge = true;
+                response.abort(new IllegalStateException("content exceeds the limit of " + this.fetch.maxFileSize + " bytes"));
+                return;
+            }
+            if (buffer.hasArray()) {
+                this.content.write(buffer.array(), buffer.arrayOffset() + buffer.position(), length);
+                buffer.position(buffer.limit());
+            } else {
+                final byte[] b = new byte[length];
+                buffer.get(b);
+                this.content.write(b, 0, length);
+            }
+        }
+
+        @Override
+        public void onComplete(final Result result) {
+            finish(this.fetch);
+            if (this.fetch.cancelled) return;
+            try {
+                if (this.tooLarge) {
+                    this.fetch.listener.failed(this.fetch.request, FailCategory.FINAL_PROCESS_CONTEXT, "file size limit exceeded");
+                } else if (result.isFailed()) {
+                    final Throwable failure = result.getFailure();
+                    this.fetch.listener.failed(this.fetch.request, FailCategory.TEMPORARY_NETWORK_FAILURE,
+                            "load error - " + (failure.getMessage() == null ? failure.getClass().getSimpleName() : failure.getMessage()));
+                } else {
+                    final org.eclipse.jetty.client.api.Response response = result.getResponse();
+                    final ResponseHeader responseHeader = new ResponseHeader(response.getStatus());
+                    for (final HttpField field: response.getHeaders()) responseHeader.add(field.getName(), field.getValue());
+                    final byte[] body = this.content.toByteArray();
+                    if (responseHeader.containsKey(HeaderFramework.CONTENT_ENCODING)) {
+                        // the content has been decoded by the client
+                        responseHeader.remove(HeaderFramework.CONTENT_ENCODING);
+                        responseHeader.put(HeaderFramework.CONTENT_LENGTH, Integer.toString(body.length));
+                    }
+                    this.fetch.listener.completed(this.fetch.request, responseHeader, body);
+                }
+            } catch (final Throwable e) {
+                log.warn("listener failed for " + this.fetch.url.toNormalform(false) + ": " + e.getMessage(), e);
+            }
+        }
+    }
+
+    /**
+     * @return the maximum number of accepted requests
+     */
+    public int maxRequests() {
+        return this.maxRequests;
+    }
+
+    /**
+     * @return the number of accepted requests which have not yet finished
+     */
+    public int size() {
+        return this.fetches.size();
+    }
+
+    /**
+     * @return the number of requests which can be accepted
+     */
+    public int remainingCapacity() {
+        return Math.max(0, this.maxRequests - this.fetches.size());
+    }
+
+    /**
+     * @return the accepted requests which have not yet finished, the running and the waiting ones
+     */
+    public List<Request> requests() {
+        final List<Request> requests = new ArrayList<Request>(this.fetches.size());
+        for (final Fetch fetch: this.fetches) requests.add(fetch.request);
+        return requests;
+    }
+
+    /**
+     * @return the number of requests which are sent and not yet finished
+     */
+    public int running() {
+        int c = 0;
+        for (final Fetch fetch: this.fetches) if (fetch.httpRequest != null) c++;
+        return c;
+    }
+
+    /**
+     * Cancel all accepted requests; their listeners are not called
+     */
+    public void clear() {
+        final List<Fetch> cancelled;
+        synchronized (this) {
+            cancelled = new ArrayList<Fetch>(this.fetches);
+            for (final Fetch fetch: cancelled) fetch.cancelled = true;
+            this.fetches.clear();
+            this.hosts.clear();
+        }
+        for (final Fetch fetch: cancelled) {
+            final org.eclipse.jetty.client.api.Request httpRequest = fetch.httpRequest;
+            if (httpRequest != null) httpRequest.abort(new InterruptedException("loader cleared"));
+        }
+    }
+
+    /**
+     * Cancel all requests and stop the client
+     */
+    public void close() {
+        clear();
+        synchronized (this) {
+            this.closed = true;
+        }
+        try {
+            this.client.stop();
+        } catch (final Exception e) {
+            log.warn("cannot stop the http client: " + e.getMessage());
+        }
+    }
+}
@@ -28,9 +28,13 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Locale;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
 import org.apache.http.StatusLine;
+import org.apache.http.message.BasicStatusLine;
 
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.federate.solr.FailCategory;
@@ -39,6 +43,7 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.HTTPInputStream;
 import net.yacy.cora.util.StrictLimitInputStream;
@@ -49,6 +54,7 @@ import net.yacy.crawler.data.Latency;
 import net.yacy.kelondro.io.ByteCount;
 import net.yacy.kelondro.util.Formatter;
 import net.yacy.repository.Blacklist.BlacklistType;
+import net.yacy.repository.LoaderDispatcher;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 import net.yacy.server.http.AlternativeDomainNames;
@@ -68,6 +74,7 @@ public final class HTTPLoader {
     private final int socketTimeout;
     private final Switchboard sb;
     private final ConcurrentLog log;
+    private AsyncHTTPLoader asyncLoader; // created at the first asynchronous load
 
     public HTTPLoader(final Switchboard sb, final ConcurrentLog theLog) {
         this.sb = sb;
@@ -75,6 +82,28 @@ public final class HTTPLoader {
 
         // refreshing timeout value
         this.socketTimeout = (int) sb.getConfigLong("crawler.clientTimeout", 30000);
+        this.asyncLoader = null;
+    }
+
+    /**
+     * @return the loader of the asynchronous loads, it is created at the first call
+     */
+    public synchronized AsyncHTTPLoader asyncLoader() {
+        if (this.asyncLoader == null) {
+            this.asyncLoader = new AsyncHTTPLoader(
+                    this.sb.getConfigInt(SwitchboardConstants.CRAWLER_LOADER_ASYNC_MAXREQUESTS, SwitchboardConstants.CRAWLER_LOADER_ASYNC_MAXREQUESTS_DEFAULT),
+                    this.sb.getConfigInt(SwitchboardConstants.CRAWLER_LOADER_ASYNC_THREADS, SwitchboardConstants.CRAWLER_LOADER_ASYNC_THREADS_DEFAULT),
+                    this.socketTimeout);
+        }
+        return this.asyncLoader;
+    }
+
+    /**
+     * stop the asynchronous loader if it has been started
+     */
+    public synchronized void close() {
+        if (this.asyncLoader != null) this.asyncLoader.close();
+        this.asyncLoader = null;
     }
 
     public Response load(final Request entry, CrawlProfile profile, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent) throws IOException {
@@ -140,7 +169,7 @@ public final class HTTPLoader {
 		final RequestHeader requestHeader = createRequestheader(request, agent);
 
 		// HTTP-Client
-		final HTTPClient client = new HTTPClient(agent);
+		final HTTPClient client = new HTTPClient(agent, TrafficClass.CRAWLER);
 		client.setRedirecting(false); // we want to handle redirection
 										// ourselves, so we don't index pages
 										// twice
@@ -360,7 +389,7 @@ public final class HTTPLoader {
         final RequestHeader requestHeader = createRequestheader(request, agent);
 
         // HTTP-Client
-        final HTTPClient client = new HTTPClient(agent);
+        final HTTPClient client = new HTTPClient(agent, TrafficClass.CRAWLER);
         client.setRedirecting(false); // we want to handle redirection ourselves, so we don't index pages twice
         client.setTimout(this.socketTimeout);
         client.setHeader(requestHeader.entrySet());
@@ -449,6 +478,182 @@ public final class HTTPLoader {
         }
     }
 
+    /**
+     * Load a http(s) resource with the asynchronous loader. The checks and the handling of redirects and of the status codes
+     * are the same as for {@link #load(Request, CrawlProfile, int, BlacklistType, ClientIdentification.Agent)}.
+     * The requests to a host are delayed by the same waiting time between two accesses as the crawler applies, see
+     * {@link Latency#waitingTime(DigestURL, net.yacy.crawler.robots.RobotsTxt, ClientIdentification.Agent)}.
+     * @param request the request
+     * @param profile the crawl profile of the request, may be null
+     * @param maxFileSize max file size to load. -1 means no limit.
+     * @param blacklistType blacklist type to use
+     * @param agent agent identifier
+     * @param executor the executor which processes the results of the asynchronous loader, so that the threads of the http client are not blocked
+     * @param listener the listener which gets the response or the error
+     * @return true if the request has been accepted or rejected by a check, false if the asynchronous loader is saturated;
+     *         then the listener is not called
+     */
+    public boolean loadAsync(final Request request, final CrawlProfile profile, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor, final LoaderDispatcher.LoadListener listener) {
+        return loadAsync(request, profile, DEFAULT_CRAWLING_RETRY_COUNT, maxFileSize, blacklistType, agent, executor, listener);
+    }
+
+    private boolean loadAsync(final Request request, final CrawlProfile profile, final int retryCount, final int maxFileSize, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor, final LoaderDispatcher.LoadListener listener) {
+
+        if (retryCount < 0) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "retry counter exceeded", -1);
+            listener.failed(request, "retry counter exceeded for URL " + request.url().toString() + ". Processing aborted.$");
+            return true;
+        }
+
+        DigestURL url = request.url();
+
+        final String host = url.getHost();
+        if (host == null || host.length() < 2) {
+            listener.failed(request, "host is not well-formed: '" + host + "'");
+            return true;
+        }
+        final String path = url.getFile();
+
+        // check if url is in blacklist
+        final String hostlow = host.toLowerCase(Locale.ROOT);
+        if (blacklistType != null && Switchboard.urlBlacklist.isListed(blacklistType, hostlow, path)) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), profile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+            listener.failed(request, "CRAWLER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            return true;
+        }
+
+        final RequestHeader requestHeader;
+        try {
+            // resolve yacy and yacyh domains
+            final AlternativeDomainNames yacyResolver = this.sb.peers;
+            if (yacyResolver != null) {
+                final String yAddress = yacyResolver.resolve(host);
+                if (yAddress != null) {
+                    url = new DigestURL(url.getProtocol() + "://" + yAddress + path);
+                }
+            }
+
+            // create a request header
+            requestHeader = createRequestheader(request, agent);
+        } catch (final IOException e) {
+            listener.failed(request, e.getMessage());
+            return true;
+        }
+
+        // the delay between two accesses to the host: the same as the crawler applies to the host of the request; no delay if granted exclusively
+        final long delay = url.isLocal() ? 0 : Math.max(0, Latency.waitingTime(request.url(), this.sb.robots, agent));
+        final DigestURL loadURL = url;
+
+        return asyncLoader().load(request, url, requestHeader, maxFileSize, delay, new AsyncHTTPLoader.Listener() {
+
+            private long start = 0;
+
+            @Override
+            public void started(final Request startedRequest) {
+                Latency.updateBeforeLoad(startedRequest.url());
+                this.start = System.currentTimeMillis();
+            }
+
+            @Override
+            public void failed(final Request failedRequest, final FailCategory category, final String reason) {
+                execute(failedRequest, new Runnable() {
+                    @Override
+                    public void run() {
+                        HTTPLoader.this.sb.crawlQueues.errorURL.push(failedRequest.url(), failedRequest.depth(), profile, category, reason, -1);
+                        listener.failed(failedRequest, "CRAWLER cannot load URL '" + failedRequest.url().toString() + "': " + reason + "$");
+                    }
+                });
+            }
+
+            @Override
+            public void completed(final Request completedRequest, final ResponseHeader responseHeader, final byte[] content) {
+                Latency.updateAfterLoad(completedRequest.url(), System.currentTimeMillis() - this.start);
+                execute(completedRequest, new Runnable() {
+                    @Override
+                    public void run() {
+                        process(completedRequest, responseHeader, content);
+                    }
+                });
+            }
+
+            /**
+             * hand the processing of a result over to the executor; if the executor does not accept it, the request fails
+             */
+            private void execute(final Request request, final Runnable task) {
+                try {
+                    executor.execute(task);
+                } catch (final RejectedExecutionException e) {
+                    listener.failed(request, "CRAWLER cannot process URL '" + request.url().toString() + "': the loader is closed");
+                }
+            }
+
+            /**
+             * check the status of a response and give it to the listener; redirects are loaded again
+             */
+            private void process(final Request completedRequest, final ResponseHeader responseHeader, final byte[] content) {
+                final int statusCode = responseHeader.getStatusCode();
+                final StatusLine statusLine = new BasicStatusLine(HttpVersion.HTTP_1_1, statusCode, null);
+                final String requestURLString = completedRequest.url().toNormalform(true);
+                try {
+                    // check redirection
+                    if (statusCode > 299 && statusCode < 310) {
+                        final DigestURL redirectionUrl = extractRedirectURL(completedRequest, profile, loadURL, statusLine, responseHeader, requestURLString);
+
+                        if (HTTPLoader.this.sb.getConfigBool(SwitchboardConstants.CRAWLER_FOLLOW_REDIRECTS, true)) {
+                            // we have two use cases here: loading from a crawl or just loading the url. Check this:
+                            if (profile != null && !CrawlSwitchboard.DEFAULT_PROFILES.contains(profile.name())) {
+                                // put redirect url on the crawler queue to repeat a double-check
+                                final Request redirectedRequest = new Request(completedRequest.initiator(),
+                                        redirectionUrl,
+                                        completedRequest.referrerhash(),
+                                        completedRequest.name(),
+                                        completedRequest.appdate(),
+                                        completedRequest.profileHandle(),
+                                        completedRequest.depth(),
+                                        completedRequest.timezoneOffset());
+                                final String rejectReason = HTTPLoader.this.sb.crawlStacker.stackCrawl(redirectedRequest);
+                                if (rejectReason != null) {
+                                    throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted. Reason : " + rejectReason);
+                                }
+                                throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " to " + redirectionUrl.toNormalform(false) + " placed on crawler queue for double-check");
+                            }
+
+                            // retry crawling with new url
+                            completedRequest.redirectURL(redirectionUrl);
+                            if (!loadAsync(completedRequest, profile, retryCount - 1, maxFileSize, blacklistType, agent, executor, listener)) {
+                                HTTPLoader.this.sb.crawlQueues.errorURL.push(completedRequest.url(), completedRequest.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "loader saturated", statusCode);
+                                throw new IOException("CRAWLER Redirect of URL=" + requestURLString + " aborted because the loader is saturated.$");
+                            }
+                            return;
+                        }
+                        // we don't want to follow redirects
+                        HTTPLoader.this.sb.crawlQueues.errorURL.push(completedRequest.url(), completedRequest.depth(), profile, FailCategory.FINAL_PROCESS_CONTEXT, "redirection not wanted", statusCode);
+                        throw new IOException("REJECTED UNWANTED REDIRECTION '" + statusLine + "' for URL '" + requestURLString + "'$");
+                    } else if (statusCode == 200 || statusCode == 203) {
+                        // the transfer is ok
+                        ByteCount.addAccountCount(ByteCount.CRAWLER, content.length);
+
+                        // create a new cache entry
+                        listener.loaded(new Response(
+                                completedRequest,
+                                requestHeader,
+                                responseHeader,
+                                profile,
+                                false,
+                                content
+                        ));
+                    } else {
+                        // if the response has not the right response type then reject file
+                        HTTPLoader.this.sb.crawlQueues.errorURL.push(completedRequest.url(), completedRequest.depth(), profile, FailCategory.TEMPORARY_NETWORK_FAILURE, "wrong http status code", statusCode);
+                        throw new IOException("REJECTED WRONG STATUS TYPE '" + statusLine + "' for URL '" + requestURLString + "'$");
+                    }
+                } catch (final IOException e) {
+                    listener.failed(completedRequest, e.getMessage());
+                }
+            }
+        });
+    }
+
     public static Response load(final Request request, ClientIdentification.Agent agent) throws IOException {
         return load(request, agent, 3);
     }
@@ -482,7 +687,7 @@ public final class HTTPLoader {
         requestHeader.put(HeaderFramework.ACCEPT_CHARSET, DEFAULT_CHARSET);
         requestHeader.put(HeaderFramework.ACCEPT_ENCODING, DEFAULT_ENCODING);
 
-        final HTTPClient client = new HTTPClient(agent);
+        final HTTPClient client = new HTTPClient(agent, TrafficClass.CRAWLER);
         client.setTimout(20000);
         client.setHeader(requestHeader.entrySet());
         	final byte[] responseBody = client.GETbytes(request.url(), null, null, false);
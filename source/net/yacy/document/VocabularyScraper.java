@@ -70,6 +70,13 @@ public class VocabularyScraper {
         return this.scraperDefinition.toString();
     }
     
+    /**
+     * @return true when class names are mapped to vocabularies, so the complete content of tags with a class attribute is used
+     */
+    public boolean hasClassVocabulary() {
+        return this.classVocabulary != null;
+    }
+    
     public void check(DigestURL root, String className, CharBuffer content) {
         if (this.classVocabulary == null) return;
         String voc = this.classVocabulary.get(className);
@@ -65,6 +65,11 @@ public abstract class AbstractScraper implements Scraper {
         return (this.tags1 != null) && (this.tags1.contains(tag.toLowerCase()));
     }
 
+    @Override
+    public int getMaxTagContentLength(final String tag) {
+        return Integer.MAX_VALUE;
+    }
+
     public static String stripAllTags(final char[] s) {
         if (s.length > 80 && !MemoryControl.request(s.length * 2, false)) return "";
         final StringBuilder r = new StringBuilder(s.length);
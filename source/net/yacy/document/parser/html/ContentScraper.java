@@ -149,6 +149,9 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         
         /** Set to true when this tag should be ignored from scraping */
         private boolean ignore = false;
+
+        /** The maximum number of characters collected in content, further characters are dropped */
+        private int contentLimit = Integer.MAX_VALUE;
         
         public Tag(final String name) {
             this.name = name;
@@ -191,6 +194,32 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         public void setIgnore(final boolean ignore) {
 			this.ignore = ignore;
 		}
+
+        /** @return the maximum number of characters collected in content */
+        public int getContentLimit() {
+            return this.contentLimit;
+        }
+
+        /**
+         * @param contentLimit the maximum number of characters to collect in content
+         */
+        public void setContentLimit(final int contentLimit) {
+            this.contentLimit = contentLimit;
+        }
+
+        /** @return true when the content limit is reached and no more characters are collected */
+        public boolean isContentFull() {
+            return this.content.length() >= this.contentLimit;
+        }
+
+        /**
+         * Append characters to the content, as far as the content limit allows it
+         * @param chars the characters to append
+         */
+        public void appendContent(final char[] chars) {
+            final int free = this.contentLimit - this.content.length();
+            if (free > 0) this.content.append(chars, 0, Math.min(free, chars.length));
+        }
     }
 
     // all these tags must be given in lowercase, because the tags from the files are compared in lowercase
@@ -885,6 +914,29 @@ public class ContentScraper extends AbstractScraper implements Scraper {
         this.fireScrapeTag0(tag.name, tag.opts);
     }
 
+    /**
+     * Tags with a larger content than the limits checked in {@link #scrapeTag1(Tag)} are not
+     * used, so their content need not be buffered while parsing a large page. Script and
+     * article tags are used with their complete content. The complete content of all tags is
+     * kept when listeners receive it or when the vocabulary scraper maps class names to
+     * vocabularies, because any tag with a class attribute may then be recorded as a term.
+     */
+    @Override
+    public int getMaxTagContentLength(final String tag) {
+        if (this.htmlFilterEventListeners.getListenerCount() > 0 || this.vocabularyScraper.hasClassVocabulary()) return Integer.MAX_VALUE;
+        switch (tag) {
+        case "a":
+            return 2048;
+        case "h1": case "h2": case "h3": case "h4": case "h5": case "h6": case "title":
+        case "b": case "strong": case "em": case "i": case "u": case "li": case "dt": case "dd":
+            return 1024;
+        case "script": case "article":
+            return Integer.MAX_VALUE;
+        default:
+            return 0;
+        }
+    }
+
     /**
      * Process a paired tag (has a start and an end tag)
      * @param tag the tag to process. Must not be null.
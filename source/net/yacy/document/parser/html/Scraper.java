@@ -48,6 +48,16 @@ public interface Scraper {
 	 */
     public boolean isTag1(String tag);
 
+	/**
+	 * @param tag
+	 *            a tag name of the second category of tags
+	 * @return the maximum number of content characters of the tag which are
+	 *         used by the Scraper implementation in
+	 *         {@link #scrapeTag1(net.yacy.document.parser.html.ContentScraper.Tag)}.
+	 *         Further content characters need not be collected.
+	 */
+    public int getMaxTagContentLength(String tag);
+
     /**
      * Process plain text
      * @param plain text to process
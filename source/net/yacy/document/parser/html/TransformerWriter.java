@@ -239,7 +239,7 @@ public final class TransformerWriter extends Writer {
         if (this.scraper != null) {
             this.scraper.scrapeText(content, this.tagStack.lastElement());
         }
-        this.tagStack.lastElement().content.append(content);
+        this.tagStack.lastElement().appendContent(content);
         return new char[0];
     }
             
@@ -257,7 +257,7 @@ public final class TransformerWriter extends Writer {
 
             // its a close tag where no should be
             // case (3): we ignore that thing and return it again
-            return genTag0raw(tagname, false, content);
+            return isTokenUsed() ? genTag0raw(tagname, false, content) : new char[0];
 
         }
 
@@ -267,13 +267,15 @@ public final class TransformerWriter extends Writer {
         // it's a tag! which one?
         if (opening) {
             // case (5): the opening should not be here. But we keep the order anyway
-            this.tagStack.lastElement().content.append(filterTagOpening(tagname, content, quotechar));
+            this.tagStack.lastElement().appendContent(filterTagOpening(tagname, content, quotechar));
             return new char[0];
         }
 
         if (!tagname.equalsIgnoreCase(this.tagStack.lastElement().name)) {
             // case (6): its a closing tag, but the wrong one. just add it.
-            this.tagStack.lastElement().content.append(genTag0raw(tagname, opening, content));
+            if (!this.tagStack.lastElement().isContentFull()) {
+                this.tagStack.lastElement().appendContent(genTag0raw(tagname, opening, content));
+            }
             return new char[0];
         }
 
@@ -309,23 +311,37 @@ public final class TransformerWriter extends Writer {
         }
         if (this.scraper != null && this.scraper.isTag1(tagname)) {
             // ok, start collecting; we don't push this here to the scraper or transformer; we do that when the tag is closed.
+            // the content is only collected as far as the scraper or the collecting parent tag uses it
+            int contentLimit = this.out == null ? this.scraper.getMaxTagContentLength(tagname) : Integer.MAX_VALUE;
+            if (parentTag != null) contentLimit = Math.max(contentLimit, parentTag.getContentLimit());
+            tag.setContentLimit(contentLimit);
             this.tagStack.push(tag);
             return new char[0];
         }
         // we ignore that thing and return it again
-        return genTag0raw(tagname, true, content);
+        return isTokenUsed() ? genTag0raw(tagname, true, content) : new char[0];
+    }
+
+    /**
+     * @return true when the characters of a processed token are written to the output stream or
+     *         collected as content of the enclosing tag. Otherwise they need not be generated.
+     */
+    private boolean isTokenUsed() {
+        return this.out != null || (this.tagStack.size() > 0 && !this.tagStack.lastElement().isContentFull());
     }
 
     private char[] filterTagCloseing(final char quotechar) {
         char[] ret;
         ContentScraper.Tag tag = this.tagStack.lastElement();
         if (this.scraper != null) this.scraper.scrapeTag1(tag);
-        ret = genTag1(tag.name, tag.opts, tag.content.getChars(), quotechar);
         if (this.scraper != null && this.scraper.isTag1(tag.name)) {
             // remove the tag from the stack as soon as the tag is processed
             this.tagStack.pop();
+            ret = isTokenUsed() ? genTag1(tag.name, tag.opts, tag.content.getChars(), quotechar) : new char[0];
             // at this point the characters from the recently processed tag must be attached to the previous tag
-            if (this.tagStack.size() > 0) this.tagStack.lastElement().content.append(ret);
+            if (this.tagStack.size() > 0) this.tagStack.lastElement().appendContent(ret);
+        } else {
+            ret = genTag1(tag.name, tag.opts, tag.content.getChars(), quotechar);
         }
         return ret;
     }
@@ -338,7 +354,7 @@ public final class TransformerWriter extends Writer {
         // it's our closing tag! return complete result.
         char[] ret;
         if (this.scraper != null) this.scraper.scrapeTag1(this.tagStack.lastElement());
-        ret = genTag1(this.tagStack.lastElement().name, this.tagStack.lastElement().opts, this.tagStack.lastElement().content.getChars(), quotechar);
+        ret = this.out == null ? new char[0] : genTag1(this.tagStack.lastElement().name, this.tagStack.lastElement().opts, this.tagStack.lastElement().content.getChars(), quotechar);
         this.tagStack.pop();
         return ret;
     }
@@ -479,7 +495,7 @@ public final class TransformerWriter extends Writer {
     public void write(final char b[], final int off, final int len) throws IOException {
 //      System.out.println(UTF8.String(b, off, len));
         if ((off | len | (b.length - (len + off)) | (off + len)) < 0) throw new IndexOutOfBoundsException();
-        for (int i = off ; i < (len - off) ; i++) this.write(b[i]);
+        for (int i = off ; i < (off + len) ; i++) this.write(b[i]);
     }
 
     @Override
@@ -41,8 +41,6 @@ import java.util.LinkedHashMap;
 import java.util.Locale;
 import java.util.Set;
 
-import org.apache.commons.io.IOUtils;
-
 import com.ibm.icu.text.CharsetDetector;
 
 import net.yacy.cora.document.encoding.UTF8;
@@ -248,7 +246,7 @@ public class htmlParser extends AbstractParser implements Parser {
      * @param maxAnchors the maximum number of URLs to process and store in the in the scraper's anchors property
      * @param maxLinks the maximum number of links (other than a, area, and canonical and stylesheet links) to store in the scraper
      * @param maxBytes the maximum number of content bytes to process
-     * @return a scraper containing parsed information
+     * @return a scraper containing parsed information. Parsing stops as soon as the maxAnchors or the maxBytes limit is exceeded.
      * @throws Parser.Failure when an error occurred while parsing
      * @throws IOException when a read/write error occurred while trying to detect the charset
      */
@@ -316,12 +314,17 @@ public class htmlParser extends AbstractParser implements Parser {
         try {
         	final long maxChars = (long)(maxBytes * detectedcharsetcontainer[0].newDecoder().averageCharsPerByte());
         	final Reader sourceReader = new InputStreamReader(sourceStream, detectedcharsetcontainer[0]);
-			final long copiedChars = IOUtils.copyLarge(sourceReader, writer, 0, maxChars);
-            if(copiedChars > maxChars) {
-            	/* maxChars limit has been exceeded : do not fail here as we want to use the partially obtained results. */
-            	scraper.setContentSizeLimitExceeded(true);
-            } else if(copiedChars == maxChars) {
-            	/* Exactly maxChars limit reached : let's check if more to read remain. */
+        	final char[] chunk = new char[4096];
+        	long copiedChars = 0;
+        	int read = 0;
+        	/* feed the writer chunk by chunk and stop reading as soon as the anchors limit is exceeded : the rest of the page would not be used */
+        	while (copiedChars < maxChars && !scraper.isMaxAnchorsExceeded()
+        			&& (read = sourceReader.read(chunk, 0, (int) Math.min(chunk.length, maxChars - copiedChars))) >= 0) {
+        		writer.write(chunk, 0, read);
+        		copiedChars += read;
+        	}
+            if(copiedChars >= maxChars && !scraper.isMaxAnchorsExceeded()) {
+            	/* maxChars limit reached : let's check if more to read remain. Do not fail here as we want to use the partially obtained results. */
             	if(sourceReader.read() >= 0) {
             		scraper.setContentSizeLimitExceeded(true);
             	}
@@ -44,6 +44,7 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.retrieval.Response;
 import net.yacy.document.TextParser;
@@ -132,7 +133,7 @@ public class ProxyHandler extends AbstractRemoteHandler implements Handler {
         RequestHeader proxyHeaders = ProxyHandler.convertHeaderFromJetty(request);
         setProxyHeaderForClient(request, proxyHeaders);
 
-        final HTTPClient client = new HTTPClient(ClientIdentification.yacyProxyAgent);
+        final HTTPClient client = new HTTPClient(ClientIdentification.yacyProxyAgent, TrafficClass.PROXY);
         client.setTimout(timeout);
         client.setHeader(proxyHeaders.entrySet());
         client.setRedirecting(false);
@@ -21,8 +21,6 @@ package net.yacy.http.servlets;
 import java.awt.Image;
 import java.awt.image.BufferedImage;
 import java.io.BufferedInputStream;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -81,7 +79,9 @@ import net.yacy.peers.graphics.EncodedImage;
 import net.yacy.peers.operation.yacyBuildProperties;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
+import net.yacy.server.http.CompiledTemplate;
 import net.yacy.server.http.HTTPDFileHandler;
+import net.yacy.server.http.StaticFile;
 import net.yacy.server.http.TemplateEngine;
 import net.yacy.server.serverClassLoader;
 import net.yacy.server.serverObjects;
@@ -97,6 +97,7 @@ import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.MimeTypes;
 import org.eclipse.jetty.io.WriterOutputStream;
+import org.eclipse.jetty.server.HttpOutput;
 import org.eclipse.jetty.server.InclusiveByteRange;
 import org.eclipse.jetty.util.MultiPartOutputStream;
 import org.eclipse.jetty.util.URIUtil;
@@ -154,6 +155,9 @@ public class YaCyDefaultServlet extends HttpServlet  {
     protected static final FileItemFactory DISK_FILE_ITEM_FACTORY = new DiskFileItemFactory(SIZE_FILE_THRESHOLD, TMPDIR);
 	private final static TimeLimiter timeLimiter = new SimpleTimeLimiter(Executors.newCachedThreadPool(
 			new NamePrefixThreadFactory(YaCyDefaultServlet.class.getSimpleName() + ".timeLimiter")));
+    // output buffers for the template rendering, reused by the server threads
+    private final static ThreadLocal<ByteBuffer> renderBuffer = new ThreadLocal<ByteBuffer>();
+    private final static int RENDER_BUFFER_MAXSIZE = 1024 * 1024; // larger buffers are not kept
     /* ------------------------------------------------------------ */
     @Override
     public void init() throws UnavailableException {
@@ -191,6 +195,24 @@ public class YaCyDefaultServlet extends HttpServlet  {
             ConcurrentLog.fine("FILEHANDLER","YaCyDefaultServlet: resource base = " + _resourceBase);
         }
         templateMethodCache = new ConcurrentHashMap<File, SoftReference<Method>>();
+
+        // static files are served from mapped buffers, the gzip variants are generated in the background
+        StaticFile.setMappedLimit(sb.getConfigLong(SwitchboardConstants.SERVER_RESPONSE_MAPPED_CACHE, SwitchboardConstants.SERVER_RESPONSE_MAPPED_CACHE_DEFAULT) * 1024L * 1024L);
+        if (sb.getConfigBool(SwitchboardConstants.SERVER_RESPONSE_PRECOMPRESS, SwitchboardConstants.SERVER_RESPONSE_PRECOMPRESS_DEFAULT)) {
+            // only the files of the htroot and its translations are compressed, not the files of the htDocs
+            final File htroot = new File(sb.getConfig(SwitchboardConstants.HTROOT_PATH, SwitchboardConstants.HTROOT_PATH_DEFAULT));
+            StaticFile.setCompressedPath(new File(sb.workPath, "compressed"), htroot, _htLocalePath);
+            new Thread("YaCyDefaultServlet.precompress") {
+                @Override
+                public void run() {
+                    final int count = StaticFile.precompress(htroot);
+                    final int deleted = StaticFile.deleteUnused();
+                    ConcurrentLog.info("FILEHANDLER", "YaCyDefaultServlet: " + count + " compressed static files in " + htroot.getAbsolutePath() + ", " + deleted + " outdated files deleted");
+                }
+            }.start();
+        } else {
+            StaticFile.setCompressedPath(null);
+        }
     }
     
     /* ------------------------------------------------------------ */
@@ -415,7 +437,30 @@ public class YaCyDefaultServlet extends HttpServlet  {
         return null;
     } 
     /* ------------------------------------------------------------ */
-    /* Check modification date headers.
+    /**
+     * Get the static file of a resource in the representation for the request: without a range
+     * request, the pre-compressed variant for the Accept-Encoding header is chosen
+     * @return the static file or null if the resource is not a file
+     */
+    protected StaticFile getStaticFile(HttpServletRequest request, Resource resource) {
+        try {
+            final File file = resource.getFile();
+            if (file == null || !file.isFile()) {
+                return null;
+            }
+            final StaticFile staticFile = StaticFile.get(file);
+            if (request.getHeader(HeaderFramework.RANGE) != null) {
+                return staticFile;
+            }
+            return staticFile.select(request.getHeader(HeaderFramework.ACCEPT_ENCODING));
+        } catch (IOException e) {
+            ConcurrentLog.fine("FILEHANDLER", "YaCyDefaultServlet: static file " + resource + " not available: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /* ------------------------------------------------------------ */
+    /* Check entity tag and modification date headers.
      * send a 304 response instead of content if not modified since
      */
     protected boolean passConditionalHeaders(HttpServletRequest request, HttpServletResponse response, Resource resource)
@@ -423,8 +468,24 @@ public class YaCyDefaultServlet extends HttpServlet  {
         try {
             if (!request.getMethod().equals(HttpMethod.HEAD.asString())) {
 
+                // if the entity tag is checked, the modification date is ignored (RFC 7232, 3.3)
+                String ifnm = request.getHeader(HttpHeader.IF_NONE_MATCH.asString());
+                final StaticFile staticFile = ifnm == null ? null : getStaticFile(request, resource);
+                if (staticFile != null) {
+                    if (staticFile.matches(ifnm)) {
+                        response.reset();
+                        response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+                        response.setHeader(HeaderFramework.ETAG, staticFile.etag());
+                        if (staticFile.encoding() != null || staticFile.hasVariants()) {
+                            response.setHeader(HttpHeader.VARY.asString(), HeaderFramework.ACCEPT_ENCODING);
+                        }
+                        response.flushBuffer();
+                        return false;
+                    }
+                }
+
                 String ifms = request.getHeader(HttpHeader.IF_MODIFIED_SINCE.asString());
-                if (ifms != null) {
+                if (ifms != null && staticFile == null) {
 
                     long ifmsl = request.getDateHeader(HttpHeader.IF_MODIFIED_SINCE.asString());
                     if (ifmsl != -1) {
@@ -526,8 +587,23 @@ public class YaCyDefaultServlet extends HttpServlet  {
 
         // cache-control: allow shared caching (i.e. proxies) and set expires age for cache
         response.setHeader(HeaderFramework.CACHE_CONTROL, "public, max-age=" + Integer.toString(600)); // seconds; ten minutes
+
+        // a file is sent from its mapped buffer, eventually pre-compressed, and it has an entity tag for conditional requests
+        final StaticFile staticFile = include ? null : getStaticFile(request, resource);
+        if (staticFile != null) {
+            response.setHeader(HeaderFramework.ETAG, staticFile.etag());
+            if (staticFile.encoding() != null) {
+                response.setHeader(HeaderFramework.CONTENT_ENCODING, staticFile.encoding());
+            }
+            if (staticFile.encoding() != null || staticFile.hasVariants()) {
+                response.setHeader(HttpHeader.VARY.asString(), HeaderFramework.ACCEPT_ENCODING);
+            }
+        }
         
-        if (reqRanges == null || !reqRanges.hasMoreElements() || content_length < 0) {
+        if (staticFile != null && (reqRanges == null || !reqRanges.hasMoreElements())) {
+            writeHeaders(response, resource, staticFile.length());
+            sendStaticFile(out, staticFile, 0, staticFile.length());
+        } else if (reqRanges == null || !reqRanges.hasMoreElements() || content_length < 0) {
             //  if there were no ranges, send entire entity
             if (include) {
                 resource.writeTo(out, 0, content_length);
@@ -559,7 +635,11 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
                 response.setHeader(HttpHeader.CONTENT_RANGE.asString(),
                         singleSatisfiableRange.toHeaderRangeString(content_length));
-                resource.writeTo(out, singleSatisfiableRange.getFirst(), singleLength);
+                if (staticFile != null) {
+                    sendStaticFile(out, staticFile, singleSatisfiableRange.getFirst(), singleLength);
+                } else {
+                    resource.writeTo(out, singleSatisfiableRange.getFirst(), singleLength);
+                }
                 out.close();
                 return;
             }
@@ -638,6 +718,26 @@ public class YaCyDefaultServlet extends HttpServlet  {
         }
     }
 
+    /* ------------------------------------------------------------ */
+    /**
+     * send (a part of) a static file. With the Jetty output the mapped buffer or the file channel is
+     * written to the connection without copying the content into the heap.
+     */
+    protected void sendStaticFile(OutputStream out, StaticFile staticFile, long offset, long count) throws IOException {
+        if (out instanceof HttpOutput) {
+            final java.nio.ByteBuffer content = staticFile.content(offset, count);
+            if (content != null) {
+                ((HttpOutput) out).sendContent(content);
+                return;
+            }
+            if (offset == 0 && count == staticFile.length()) {
+                ((HttpOutput) out).sendContent(staticFile.channel()); // the channel is closed by the output
+                return;
+            }
+        }
+        staticFile.writeTo(out, offset, count);
+    }
+
     /* ------------------------------------------------------------ */
     protected void writeHeaders(HttpServletResponse response, Resource resource, long count) {
         if (response.getContentType() == null) {
@@ -1075,38 +1175,47 @@ public class YaCyDefaultServlet extends HttpServlet  {
                 
                 String mimeType = Classification.ext2mime(targetExt, MimeTypes.Type.TEXT_HTML.asString());
 
-                InputStream fis;
                 long fileSize = targetFile.length();
 
                 if (fileSize <= Math.min(4 * 1024 * 1204, MemoryControl.available() / 100)) {
-                    // read file completely into ram, avoid that too many files are open at the same time
-                    fis = new ByteArrayInputStream(FileUtils.read(targetFile));
-                } else {
-                    fis = new BufferedInputStream(new FileInputStream(targetFile));
-                }
+                    // the compiled template is cached, the file is read and parsed again only if it was changed
+                    final CompiledTemplate template = CompiledTemplate.get(targetFile);
+
+                    // set response header
+                    response.setContentType(mimeType);
+                    response.setStatus(HttpServletResponse.SC_OK);
+
+                    // take the buffer of this thread; a request which is included with SSI gets its own buffer
+                    ByteBuffer bas = renderBuffer.get();
+                    if (bas == null) bas = new ByteBuffer(4096); else renderBuffer.remove();
+                    bas.clear();
+                    // apply templates
+                    template.write(bas, templatePatterns);
 
-                // set response header
-                response.setContentType(mimeType);
-                response.setStatus(HttpServletResponse.SC_OK);
-                ByteArrayOutputStream bas = new ByteArrayOutputStream(4096);
-                try {
-                	// apply templates
-                	TemplateEngine.writeTemplate(targetFile.getName(), fis, bas, templatePatterns);
-                	
                     // handle SSI
-                    parseSSI (bas.toByteArray(),request,response);
-                } finally {
-                	try {
-                		fis.close();
-                	} catch(IOException ignored) {
-                		ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: could not close target file " + targetFile.getName());
-                	}
-                	
-                	try {
-                		bas.close();
-                	} catch(IOException ignored) {
-                		/* Should never happen with a ByteArrayOutputStream */
-                	}
+                    parseSSI(bas, request, response);
+                    if (bas.length() <= RENDER_BUFFER_MAXSIZE) renderBuffer.set(bas);
+                } else {
+                    InputStream fis = new BufferedInputStream(new FileInputStream(targetFile));
+
+                    // set response header
+                    response.setContentType(mimeType);
+                    response.setStatus(HttpServletResponse.SC_OK);
+                    ByteBuffer bas = new ByteBuffer(4096);
+                    try {
+                        // apply templates
+                        TemplateEngine.writeTemplate(targetFile.getName(), fis, bas, templatePatterns);
+
+                        // handle SSI
+                        parseSSI(bas, request, response);
+                    } finally {
+                        try {
+                            fis.close();
+                        } catch(IOException ignored) {
+                            ConcurrentLog.warn("FILEHANDLER", "YaCyDefaultServlet: could not close target file " + targetFile.getName());
+                        }
+                        bas.close();
+                    }
                 }
             }
         }
@@ -1202,15 +1311,14 @@ public class YaCyDefaultServlet extends HttpServlet  {
     /**
      * parse SSI line and include resource (<!--#include virtual="file.html" -->)
      */
-    protected void parseSSI(final byte[] in, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
-        ByteBuffer buffer = new ByteBuffer(in);
+    protected void parseSSI(final ByteBuffer buffer, HttpServletRequest request, HttpServletResponse response) throws IOException, ServletException {
         OutputStream out = response.getOutputStream();
         final byte[] inctxt ="<!--#include virtual=\"".getBytes();
         int offset = 0;
         int p = buffer.indexOf(inctxt, offset);
         int end;
         while (p >= 0 && (end = buffer.indexOf("-->".getBytes(), p + 24)) > 0 ) { // min length 24; <!--#include virtual="a"
-            out.write(in, offset, p - offset);
+            buffer.writeTo(out, offset, p - offset);
             out.flush();
             // find right end quote
             final int rightquote = buffer.indexOf("\"".getBytes(), p + 23);
@@ -1229,9 +1337,8 @@ public class YaCyDefaultServlet extends HttpServlet  {
             offset = end + 3; // after "-->"
             p = buffer.indexOf(inctxt, offset);
         }
-        out.write(in, offset, in.length - offset);
+        buffer.writeTo(out, offset, buffer.length() - offset);
         out.close();
-        buffer.close();
     }
 
     /**
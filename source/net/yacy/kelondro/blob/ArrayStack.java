@@ -50,6 +50,8 @@ import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import com.google.common.util.concurrent.RateLimiter;
+
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.encoding.UTF8;
@@ -98,9 +100,11 @@ public class ArrayStack implements BLOB {
     private final String         prefix;
     private final int            buffersize;
     private final boolean        trimall;
+    private final boolean        mappedIndex; // if true, the key indexes of the read-only BLOB files are memory-mapped
 
     /** the thread pool for the keeperOf executor service */
     private final ExecutorService executor;
+    private       long           lastBLOBTime; // time stamp of the latest file name generated with newBLOB()
 
     // use our own formatter to prevent concurrency locks with other processes
     private final static GenericFormatter my_SHORT_MILSEC_FORMATTER  = new GenericFormatter(GenericFormatter.newShortMilsecFormat(), 1);
@@ -114,7 +118,23 @@ public class ArrayStack implements BLOB {
             final int buffersize,
             final boolean trimall,
             final boolean deleteonfail) throws IOException {
+        this(heapLocation, prefix, ordering, keylength, buffersize, trimall, deleteonfail, false);
+    }
+
+    /**
+     * @param mappedIndex if true, the key indexes of the read-only BLOB files (buffersize 0) are memory-mapped instead of loaded into RAM
+     */
+    public ArrayStack(
+            final File heapLocation,
+            final String prefix,
+            final ByteOrder ordering,
+            final int keylength,
+            final int buffersize,
+            final boolean trimall,
+            final boolean deleteonfail,
+            final boolean mappedIndex) throws IOException {
         this.keylength = keylength;
+        this.mappedIndex = mappedIndex;
         this.prefix = prefix;
         this.ordering = ordering;
         this.buffersize = buffersize;
@@ -124,6 +144,7 @@ public class ArrayStack implements BLOB {
         this.repositoryAgeMax = Long.MAX_VALUE;
         this.repositorySizeMax = Long.MAX_VALUE;
         this.trimall = trimall;
+        this.lastBLOBTime = 0;
 
         // init the thread pool for the keeperOf executor service
         this.executor = new ThreadPoolExecutor(
@@ -152,7 +173,7 @@ public class ArrayStack implements BLOB {
                 FileUtils.deletedelete(new File(heapLocation, file));
                 deletions = true;
             }
-            if (file.endsWith(".idx") || file.endsWith(".gap")) {
+            if (file.endsWith(".idx") || file.endsWith(".gap") || file.endsWith(".blm")) {
                 final String s = file.substring(0, file.length() - 17);
                 if (!fh.contains(s)) {
                     FileUtils.deletedelete(new File(heapLocation, file));
@@ -206,7 +227,7 @@ public class ArrayStack implements BLOB {
                        if (time == maxtime && !trimall) {
                            oneBlob = new Heap(f, keylength, ordering, buffersize);
                        } else {
-                           oneBlob = new HeapModifier(f, keylength, ordering);
+                           oneBlob = new HeapModifier(f, keylength, ordering, mappedIndex);
                            oneBlob.optimize(); // no writings here, can be used with minimum memory
                        }
                        sortedItems.put(Long.valueOf(time), new blobItem(d, f, oneBlob));
@@ -261,7 +282,7 @@ public class ArrayStack implements BLOB {
         if (full && this.buffersize > 0 && !this.trimall) {
             oneBlob = new Heap(location, this.keylength, this.ordering, this.buffersize);
         } else {
-            oneBlob = new HeapModifier(location, this.keylength, this.ordering);
+            oneBlob = new HeapModifier(location, this.keylength, this.ordering, this.mappedIndex);
             oneBlob.optimize();
         }
         this.blobs.add(new blobItem(d, location, oneBlob));
@@ -345,6 +366,47 @@ public class ArrayStack implements BLOB {
         return new File[]{f0, f1};
     }
 
+    /**
+     * size-tiered selection of files for a merge: all files are grouped into size classes (tiers).
+     * Tier 0 holds all files smaller than minTierSize, tier k holds files from minTierSize * tierRatio^(k-1)
+     * up to minTierSize * tierRatio^k. From the lowest tier that holds at least two files the two oldest
+     * files are unmounted. Because the selected files are removed from the array, repeated calls return
+     * disjoint pairs of files which can be merged concurrently.
+     * @param tierRatio the size factor between two neighboring tiers
+     * @param minTierSize the upper size limit of tier 0
+     * @param maxResultSize the maximum size of the merged file
+     * @return two files of the same tier or null if no tier holds two files that fit into maxResultSize
+     */
+    public synchronized File[] unmountTier(final float tierRatio, final long minTierSize, final long maxResultSize) {
+        if (this.blobs.size() < 2) return null;
+        final TreeMap<Integer, blobItem> oldestOfTier = new TreeMap<Integer, blobItem>();
+        int bestTier = Integer.MAX_VALUE;
+        blobItem b0 = null, b1 = null;
+        long length;
+        int tier;
+        // the blobs are ordered by creation date; the first item of a tier is therefore the oldest of that tier
+        for (final blobItem b: this.blobs) {
+            length = b.location.length();
+            tier = length < minTierSize ? 0 : 1 + (int) (Math.log((double) length / (double) minTierSize) / Math.log(tierRatio));
+            if (tier >= bestTier) continue;
+            final blobItem oldest = oldestOfTier.get(tier);
+            if (oldest == null) {
+                oldestOfTier.put(tier, b);
+                continue;
+            }
+            if (oldest.location.length() + length > maxResultSize) continue;
+            bestTier = tier;
+            b0 = oldest;
+            b1 = b;
+        }
+        if (b0 == null || b1 == null) return null;
+        if (!MemoryControl.request(b0.blob.mem() + b1.blob.mem(), true)) return null;
+        final File[] tierMatch = new File[]{b0.location, b1.location};
+        unmountBLOB(tierMatch[1], false);
+        unmountBLOB(tierMatch[0], false);
+        return tierMatch;
+    }
+
     private synchronized File smallestBLOB(final File excluding, final long maxsize) {
         if (this.blobs.isEmpty()) return null;
         File bestFile = null;
@@ -386,7 +448,15 @@ public class ArrayStack implements BLOB {
      */
     public synchronized File newBLOB(final Date creation) {
         //return new File(heapLocation, DateFormatter.formatShortSecond(creation) + "." + blobSalt + ".blob");
-        return new File(this.heapLocation, this.prefix + "." + my_SHORT_MILSEC_FORMATTER.format(creation) + ".blob");
+        // file names must be unique, also if several dumps and merges ask for a name within the same millisecond
+        long time = Math.max(creation.getTime(), this.lastBLOBTime + 1);
+        File f = new File(this.heapLocation, this.prefix + "." + my_SHORT_MILSEC_FORMATTER.format(new Date(time)) + ".blob");
+        while (f.exists()) {
+            time++;
+            f = new File(this.heapLocation, this.prefix + "." + my_SHORT_MILSEC_FORMATTER.format(new Date(time)) + ".blob");
+        }
+        this.lastBLOBTime = time;
+        return f;
     }
 
     @Override
@@ -442,6 +512,9 @@ public class ArrayStack implements BLOB {
         return this.ordering;
     }
 
+    // switch to disable the key filters of the blobs; only used to measure their effect in benchmarks
+    static boolean useKeyFilter = true;
+
     private class blobItem {
         Date creation;
         File location;
@@ -456,7 +529,14 @@ public class ArrayStack implements BLOB {
             // make a new blob file and assign it in this item
             this.creation = new Date();
             this.location = newBLOB(this.creation);
-            this.blob = (buffer == 0) ? new HeapModifier(this.location, ArrayStack.this.keylength, ArrayStack.this.ordering) : new Heap(this.location, ArrayStack.this.keylength, ArrayStack.this.ordering, buffer);
+            this.blob = (buffer == 0) ? new HeapModifier(this.location, ArrayStack.this.keylength, ArrayStack.this.ordering, ArrayStack.this.mappedIndex) : new Heap(this.location, ArrayStack.this.keylength, ArrayStack.this.ordering, buffer);
+        }
+        /**
+         * ask the key filter of the blob if it may contain the key
+         * @return false if the blob cannot contain the key, true if the blob must be asked
+         */
+        public boolean mightContain(final byte[] key) {
+            return !useKeyFilter || !(this.blob instanceof HeapReader) || ((HeapReader) this.blob).mightContainKey(key);
         }
     }
 
@@ -571,26 +651,31 @@ public class ArrayStack implements BLOB {
         if (this.blobs.isEmpty()) return null;
         if (this.blobs.size() == 1) {
             final blobItem bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            if (bi.mightContain(key) && bi.blob.containsKey(key)) return bi;
             return null;
         }
 
         // first check the current blob only because that has most probably the key if any has that key
         int bs1 = this.blobs.size() - 1;
         blobItem bi = this.blobs.get(bs1);
-        if (bi.blob.containsKey(key)) return bi;
-        if (this.blobs.size() == 2) {
+        if (bi.mightContain(key) && bi.blob.containsKey(key)) return bi;
+
+        // skip all blobs where the key filter tells that they do not have the key
+        final List<blobItem> candidates = new ArrayList<blobItem>(bs1);
+        for (int i = 0; i < bs1; i++) {
+            bi = this.blobs.get(i);
+            if (bi.mightContain(key)) candidates.add(bi);
+        }
+        if (candidates.size() <= 1) {
             // this should not be done concurrently
-            bi = this.blobs.get(0);
-            if (bi.blob.containsKey(key)) return bi;
+            for (final blobItem b: candidates) if (b.blob.containsKey(key)) return b;
             return null;
         }
 
         // start a concurrent query to database tables
         final CompletionService<blobItem> cs = new ExecutorCompletionService<blobItem>(this.executor);
         int accepted = 0;
-        for (int i = 0; i < bs1; i++) {
-            final blobItem b = this.blobs.get(i);
+        for (final blobItem b: candidates) {
             try {
                 cs.submit(new Callable<blobItem>() {
                     @Override
@@ -695,8 +780,9 @@ public class ArrayStack implements BLOB {
         @Override
         protected byte[] next0() {
             while (this.bii.hasNext()) {
-                final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                final blobItem bi = this.bii.next();
+                final BLOB b = bi.blob;
+                if (b == null || !bi.mightContain(this.key)) continue;
                 try {
                     final byte[] n = b.get(this.key);
                     if (n != null) return n;
@@ -722,6 +808,7 @@ public class ArrayStack implements BLOB {
     public synchronized long length(final byte[] key) throws IOException {
         long l;
         for (final blobItem bi: this.blobs) {
+            if (!bi.mightContain(key)) continue;
             l = bi.blob.length(key);
             if (l >= 0) return l;
         }
@@ -752,8 +839,9 @@ public class ArrayStack implements BLOB {
         @Override
         protected Long next0() {
             while (this.bii.hasNext()) {
-                final BLOB b = this.bii.next().blob;
-                if (b == null) continue;
+                final blobItem bi = this.bii.next();
+                final BLOB b = bi.blob;
+                if (b == null || !bi.mightContain(this.key)) continue;
                 try {
                     final long l = b.length(this.key);
                     if (l >= 0) return Long.valueOf(l);
@@ -852,10 +940,14 @@ public class ArrayStack implements BLOB {
             final blobItem bi = this.blobs.get(0);
             bi.blob.delete(key);
         } else {
+            // only blobs which may have the key according to their key filter must be asked
+            final List<blobItem> candidates = new ArrayList<blobItem>(this.blobs.size());
+            for (final blobItem bi: this.blobs) if (bi.mightContain(key)) candidates.add(bi);
+            if (candidates.isEmpty()) return;
             @SuppressWarnings("unchecked")
-            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, this.blobs.size() - 1);
+            final FutureTask<Boolean>[] t = (FutureTask<Boolean>[]) Array.newInstance(FutureTask.class, candidates.size() - 1);
             int i = 0;
-            for (final blobItem bi: this.blobs) {
+            for (final blobItem bi: candidates) {
                 if (i < t.length) {
                     // run this in a concurrent thread
                     final blobItem bi0 = bi;
@@ -923,10 +1015,27 @@ public class ArrayStack implements BLOB {
     public File mergeMount(final File f1, final File f2,
             final ReferenceFactory<? extends Reference> factory,
             final File newFile, final int writeBuffer) {
+        return mergeMount(f1, f2, factory, newFile, writeBuffer, null);
+    }
+
+    /**
+     * merge two blob files into one. If the second file is given as null,
+     * then the first file is only rewritten into a new one.
+     * @param f1
+     * @param f2 (may also be null)
+     * @param factory
+     * @param newFile
+     * @param writeBuffer
+     * @param throttle a limiter for the number of written bytes per second, may be null for no limit
+     * @return the target file where the given files are merged in
+     */
+    public File mergeMount(final File f1, final File f2,
+            final ReferenceFactory<? extends Reference> factory,
+            final File newFile, final int writeBuffer, final RateLimiter throttle) {
         if (f2 == null) {
             // this is a rewrite
             ConcurrentLog.info("BLOBArray", "rewrite of " + f1.getName());
-            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer);
+            final File resultFile = rewriteWorker(factory, this.keylength, this.ordering, f1, newFile, writeBuffer, throttle);
             if (resultFile == null) {
                 ConcurrentLog.warn("BLOBArray", "rewrite of file " + f1 + " returned null. newFile = " + newFile);
                 return null;
@@ -941,7 +1050,7 @@ public class ArrayStack implements BLOB {
             return resultFile;
         }
         ConcurrentLog.info("BLOBArray", "merging " + f1.getName() + " with " + f2.getName());
-        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer);
+        final File resultFile = mergeWorker(factory, this.keylength, this.ordering, f1, f2, newFile, writeBuffer, throttle);
         if (resultFile == null) {
             ConcurrentLog.warn("BLOBArray", "merge of files " + f1 + ", " + f2 + " returned null. newFile = " + newFile);
             return null;
@@ -958,7 +1067,8 @@ public class ArrayStack implements BLOB {
 
     private static <ReferenceType extends Reference> File mergeWorker(
                     final ReferenceFactory<ReferenceType> factory,
-                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer) {
+                    final int keylength, final ByteOrder order, final File f1, final File f2, final File newFile, final int writeBuffer,
+                    final RateLimiter throttle) {
         // iterate both files and write a new one
         ReferenceIterator<ReferenceType> i1 = null;
         try {
@@ -985,7 +1095,7 @@ public class ArrayStack implements BLOB {
                 final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
                 try {
                     final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-                    merge(i1, i2, order, writer);
+                    merge(i1, i2, order, writer, throttle);
                     writer.close(true);
                 } catch (final IOException e) {
                     ConcurrentLog.severe("ArrayStack", "cannot writing or close writing merge, newFile = " + newFile.toString() + ", tmpFile = " + tmpFile.toString() + ": " + e.getMessage(), e);
@@ -1018,7 +1128,8 @@ public class ArrayStack implements BLOB {
 
     private static <ReferenceType extends Reference> File rewriteWorker(
             final ReferenceFactory<ReferenceType> factory,
-            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer) {
+            final int keylength, final ByteOrder order, final File f, final File newFile, final int writeBuffer,
+            final RateLimiter throttle) {
         // iterate both files and write a new one
 
         CloneableIterator<ReferenceContainer<ReferenceType>> i = null;
@@ -1036,7 +1147,7 @@ public class ArrayStack implements BLOB {
         final File tmpFile = new File(newFile.getParentFile(), newFile.getName() + ".prt");
         try {
             final HeapWriter writer = new HeapWriter(tmpFile, newFile, keylength, order, writeBuffer);
-            rewrite(i, order, writer);
+            rewrite(i, order, writer, throttle);
             writer.close(true);
             i.close();
         } catch (final IOException e) {
@@ -1058,7 +1169,7 @@ public class ArrayStack implements BLOB {
     private static <ReferenceType extends Reference> void merge(
             final CloneableIterator<ReferenceContainer<ReferenceType>> i1,
             final CloneableIterator<ReferenceContainer<ReferenceType>> i2,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
+            final ByteOrder ordering, final HeapWriter writer, final RateLimiter throttle) throws IOException, SpaceExceededException {
         assert i1.hasNext();
         assert i2.hasNext();
         byte[] c1lh, c2lh;
@@ -1073,7 +1184,7 @@ public class ArrayStack implements BLOB {
             if (e < 0) {
             	s = c1.shrinkReferences();
             	if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-                writer.add(c1.getTermHash(), c1.exportCollection());
+                write(writer, c1, throttle);
                 if (i1.hasNext()) {
                     c1lh = c1.getTermHash();
                     c1 = i1.next();
@@ -1086,7 +1197,7 @@ public class ArrayStack implements BLOB {
             if (e > 0) {
                 s = c2.shrinkReferences();
                 if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-                writer.add(c2.getTermHash(), c2.exportCollection());
+                write(writer, c2, throttle);
                 if (i2.hasNext()) {
                     c2lh = c2.getTermHash();
                     c2 = i2.next();
@@ -1101,7 +1212,7 @@ public class ArrayStack implements BLOB {
             c1 = c1.merge(c2);
             s = c1.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
+            write(writer, c1, throttle);
             c1lh = c1.getTermHash();
             c2lh = c2.getTermHash();
             if (i1.hasNext() && i2.hasNext()) {
@@ -1131,7 +1242,7 @@ public class ArrayStack implements BLOB {
             //System.out.println("FLUSH REMAINING 1: " + c1.getWordHash());
             s = c1.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c1.getTermHash()) + " by " + s + " to " + c1.size() + " entries");
-            writer.add(c1.getTermHash(), c1.exportCollection());
+            write(writer, c1, throttle);
             if (i1.hasNext()) {
                 c1lh = c1.getTermHash();
                 c1 = i1.next();
@@ -1144,7 +1255,7 @@ public class ArrayStack implements BLOB {
             //System.out.println("FLUSH REMAINING 2: " + c2.getWordHash());
             s = c2.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c2.getTermHash()) + " by " + s + " to " + c2.size() + " entries");
-            writer.add(c2.getTermHash(), c2.exportCollection());
+            write(writer, c2, throttle);
             if (i2.hasNext()) {
                 c2lh = c2.getTermHash();
                 c2 = i2.next();
@@ -1158,7 +1269,7 @@ public class ArrayStack implements BLOB {
 
     private static <ReferenceType extends Reference> void rewrite(
             final CloneableIterator<ReferenceContainer<ReferenceType>> i,
-            final ByteOrder ordering, final HeapWriter writer) throws IOException, SpaceExceededException {
+            final ByteOrder ordering, final HeapWriter writer, final RateLimiter throttle) throws IOException, SpaceExceededException {
         assert i.hasNext();
         byte[] clh;
         ReferenceContainer<ReferenceType> c;
@@ -1168,7 +1279,7 @@ public class ArrayStack implements BLOB {
             assert c != null;
             s = c.shrinkReferences();
             if (s > 0) ConcurrentLog.info("ArrayStack", "shrinking index for " + ASCII.String(c.getTermHash()) + " by " + s + " to " + c.size() + " entries");
-            writer.add(c.getTermHash(), c.exportCollection());
+            write(writer, c, throttle);
             if (i.hasNext()) {
                 clh = c.getTermHash();
                 c = i.next();
@@ -1180,6 +1291,13 @@ public class ArrayStack implements BLOB {
         // finished with writing
     }
 
+    private static <ReferenceType extends Reference> void write(
+            final HeapWriter writer, final ReferenceContainer<ReferenceType> c, final RateLimiter throttle) throws IOException, SpaceExceededException {
+        final byte[] b = c.exportCollection();
+        if (throttle != null && b.length > 0) throttle.acquire(b.length);
+        writer.add(c.getTermHash(), b);
+    }
+
     public static void main(final String[] args) {
         final File f = new File("/Users/admin/blobarraytest");
         try {
@@ -34,12 +34,18 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.util.Iterator;
 import java.util.Map;
-import java.util.TreeMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReentrantLock;
 import java.util.zip.Deflater;
 import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import net.yacy.cora.order.ByteOrder;
 import net.yacy.cora.order.CloneableIterator;
@@ -47,17 +53,53 @@ import net.yacy.cora.util.ByteArray;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
 public class Compressor implements BLOB, Iterable<byte[]> {
 
-    private static byte[] gzipMagic  = {(byte) 'z', (byte) '|'}; // magic for gzip-encoded content
-    private static byte[] plainMagic = {(byte) 'p', (byte) '|'}; // magic for plain content (no encoding)
+    private static byte[] gzipMagic    = {(byte) 'z', (byte) '|'}; // magic for gzip-encoded content
+    private static byte[] deflateMagic = {(byte) 'd', (byte) '|'}; // magic for raw deflate-encoded content
+    private static byte[] plainMagic   = {(byte) 'p', (byte) '|'}; // magic for plain content (no encoding)
+
+    /** the encoding of compressed entries. Entries of all codecs can always be read. */
+    public enum Codec {
+        /** gzip stream, marked with z| */
+        GZIP,
+        /** raw deflate stream without gzip header and checksum, marked with d|; faster to write and to read */
+        DEFLATE;
+
+        /**
+         * @param name the name of a codec, case is ignored
+         * @return the codec with the given name or GZIP if there is no such codec
+         */
+        public static Codec parse(final String name) {
+            for (final Codec codec: values()) if (codec.name().equalsIgnoreCase(name)) return codec;
+            return GZIP;
+        }
+    }
+
+    /** workers which compress buffered entries of all Compressor instances in the background */
+    private static final ThreadPoolExecutor COMPRESSION_EXECUTOR;
+    static {
+        final int workers = Math.max(1, Runtime.getRuntime().availableProcessors());
+        COMPRESSION_EXECUTOR = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new NamePrefixThreadFactory("Compressor.compression"));
+        COMPRESSION_EXECUTOR.allowCoreThreadTimeOut(true);
+    }
 
     private final BLOB backend;
     
-    /** entries which are not yet compressed, format is RAW (without magic) */
-    private TreeMap<byte[], byte[]> buffer;
+    /**
+     * entries which are not yet compressed, format is RAW (without magic).
+     * The buffer can be read without a lock; it is only changed while the lock is held.
+     * An entry is always written to the backend before it is removed from the buffer,
+     * so that a reader finds it in one of both places.
+     */
+    private final ConcurrentSkipListMap<byte[], byte[]> buffer;
+    
+    /** keys of buffer entries which are currently compressed by a background worker */
+    private final ConcurrentSkipListSet<byte[]> compressing;
     
     /** Total size (in bytes) of uncompressed entries in buffer */
     private volatile long bufferlength;
@@ -65,29 +107,46 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     /** Maximum {@link #bufferlength} value before compressing and flushing to the backend */
     private final long maxbufferlength;
     
-    /** Maximum time (in milliseconds) to acquire a synchronization lock on get() and insert() */
+    /** Maximum time (in milliseconds) to acquire a synchronization lock on insert() */
     private volatile long lockTimeout;
     
-    /** Synchronization lock */
+    /** Synchronization lock for all changes of the buffer and the backend; reads do not need it */
     private final ReentrantLock lock;
     
     /** The compression level */
     private volatile int compressionLevel;
+    
+    /** The encoding of new compressed entries */
+    private volatile Codec codec;
 
     /**
      * @param backend the backend storage
      * @param buffersize the maximum total size (in bytes) of uncompressed in-memory entries before compressing and flushing to the backend
-     * @param lockTimeout maximum time to acquire a synchronization lock on get() and insert() operations
+     * @param lockTimeout maximum time to acquire a synchronization lock on insert() operations
      * @param compressionLevel the compression level : supported values ranging from 0 - no compression, to 9 - best compression
      */
     public Compressor(final BLOB backend, final long buffersize, final long lockTimeout, final int compressionLevel) {
+        this(backend, buffersize, lockTimeout, compressionLevel, Codec.GZIP);
+    }
+
+    /**
+     * @param backend the backend storage
+     * @param buffersize the maximum total size (in bytes) of uncompressed in-memory entries before compressing and flushing to the backend
+     * @param lockTimeout maximum time to acquire a synchronization lock on insert() operations
+     * @param compressionLevel the compression level : supported values ranging from 0 - no compression, to 9 - best compression
+     * @param codec the encoding of compressed entries
+     */
+    public Compressor(final BLOB backend, final long buffersize, final long lockTimeout, final int compressionLevel, final Codec codec) {
         this.backend = backend;
         this.maxbufferlength = buffersize;
         this.lockTimeout = lockTimeout;
         this.lock = new ReentrantLock();
         /* Ensure a value within the range supported by the Deflater class */
         this.compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
-        initBuffer();
+        this.codec = codec == null ? Codec.GZIP : codec;
+        this.buffer = new ConcurrentSkipListMap<byte[], byte[]>(this.backend.ordering());
+        this.compressing = new ConcurrentSkipListSet<byte[]>(this.backend.ordering());
+        this.bufferlength = 0;
     }
 
     @Override
@@ -117,7 +176,7 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     }
 
     private void initBuffer() {
-        this.buffer = new TreeMap<byte[], byte[]>(this.backend.ordering());
+        this.buffer.clear();
         this.bufferlength = 0;
     }
 
@@ -138,14 +197,33 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     	}
     }
 
-    private static byte[] compress(final byte[] b, final int compressionLevel) {
+    private static byte[] compress(final byte[] b, final int compressionLevel, final Codec codec) {
         final int l = b.length;
         if (l < 100) return markWithPlainMagic(b);
-        final byte[] bb = compressAddMagic(b, compressionLevel);
-        if (bb.length >= l) return markWithPlainMagic(b);
+        final byte[] bb = codec == Codec.DEFLATE ? deflateAddMagic(b, compressionLevel) : compressAddMagic(b, compressionLevel);
+        if (bb == null || bb.length >= l) return markWithPlainMagic(b);
         return bb;
     }
 
+    private static byte[] deflateAddMagic(final byte[] b, final int compressionLevel) {
+        // compress a byte array without gzip header and checksum and add a leading magic
+        final Deflater deflater = new Deflater(compressionLevel, true);
+        try {
+            deflater.setInput(b);
+            deflater.finish();
+            final ByteArrayOutputStream baos = new ByteArrayOutputStream(b.length / 5);
+            baos.write(deflateMagic, 0, deflateMagic.length);
+            final byte[] buf = new byte[1024 * 16];
+            while (!deflater.finished()) {
+                final int n = deflater.deflate(buf);
+                baos.write(buf, 0, n);
+            }
+            return baos.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
     private static byte[] compressAddMagic(final byte[] b, final int compressionLevel) {
         // compress a byte array and add a leading magic for the compression
         try {
@@ -198,6 +276,22 @@ public class Compressor implements BLOB, Iterable<byte[]> {
                 ConcurrentLog.logException(e);
                 return null;
             }
+        } else if (ByteArray.startsWith(b, deflateMagic)) {
+            final Inflater inflater = new Inflater(true);
+            try {
+                final InputStream iis = new InflaterInputStream(new ByteArrayInputStream(b, deflateMagic.length, b.length - deflateMagic.length), inflater);
+                final ByteArrayOutputStream baos = new ByteArrayOutputStream(b.length * 3);
+                final byte[] buf = new byte[1024 * 4];
+                int n;
+                while ((n = iis.read(buf)) > 0) baos.write(buf, 0, n);
+                iis.close();
+                return baos.toByteArray();
+            } catch (final IOException e) {
+                ConcurrentLog.logException(e);
+                return null;
+            } finally {
+                inflater.end();
+            }
         } else if (ByteArray.startsWith(b, plainMagic)) {
             //System.out.print("-"); // DEBUG
             final byte[] r = new byte[b.length - 2];
@@ -211,38 +305,26 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public byte[] get(final byte[] key) throws IOException, SpaceExceededException {
-        // depending on the source of the result, we additionally do entry compression
-        // because if a document was read once, we think that it will not be retrieved another time again soon
-        byte[] b = null;
-        boolean locked = false;
-        try {
-			locked = this.lock.tryLock(this.lockTimeout, TimeUnit.MILLISECONDS);
-		} catch (InterruptedException ignored) {
-			/* When interrupted, simply return null */
-			ConcurrentLog.fine("Compressor", "Interrupted while acquiring a synchronzation lock on get()");
-		}
-        if(locked) {
-        	try {
-        		b = this.buffer.remove(key);
-        		if (b != null) {
-        			this.bufferlength = this.bufferlength - b.length;
-           			this.backend.insert(key, compress(b, this.compressionLevel));
-        			return b;
-        		}
-        	} finally {
-        		this.lock.unlock();
-        	}
-        	
-            // return from the backend
-            b = this.backend.get(key);
-            if (b == null) return null;
-            if (!MemoryControl.request(b.length * 2, true)) {
-                throw new SpaceExceededException(b.length * 2, "decompress needs 2 * " + b.length + " bytes");
-            }
-            return decompress(b);
+        // no lock is needed here: an entry is written to the backend before it is removed from the buffer
+        byte[] b = this.buffer.get(key);
+        if (b != null) {
+            // depending on the source of the result, we additionally do entry compression
+            // because if a document was read once, we think that it will not be retrieved another time again soon
+            flushInBackground(key, b);
+            return b;
         }
-       	ConcurrentLog.fine("Compressor", "Could not acquire a synchronization lock for retrieval within " + this.lockTimeout + " milliseconds");
-        return b;
+
+        // return from the backend
+        b = this.backend.get(key);
+        if (b == null) {
+            // the entry may have been replaced meanwhile; the new entry is put into the buffer
+            // before the old one is removed from the backend
+            return this.buffer.get(key);
+        }
+        if (!MemoryControl.request(b.length * 2, true)) {
+            throw new SpaceExceededException(b.length * 2, "decompress needs 2 * " + b.length + " bytes");
+        }
+        return decompress(b);
     }
 
     @Override
@@ -260,12 +342,7 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public boolean containsKey(final byte[] key) {
-        this.lock.lock();
-        try {
-            return this.buffer.containsKey(key) || this.backend.containsKey(key);
-        } finally {
-        	this.lock.unlock();
-        }
+        return this.buffer.containsKey(key) || this.backend.containsKey(key);
     }
 
     @Override
@@ -288,20 +365,15 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     @Override
     public long length(final byte[] key) throws IOException {
-        this.lock.lock();
+        byte[] b = this.buffer.get(key);
+        if (b != null) return b.length;
         try {
-            byte[] b = this.buffer.get(key);
-            if (b != null) return b.length;
-            try {
-                b = this.backend.get(key);
-                if (b == null) return 0;
-                b = decompress(b);
-                return (b == null) ? 0 : b.length;
-            } catch (final SpaceExceededException e) {
-                throw new IOException(e.getMessage());
-            }
-        } finally {
-        	this.lock.unlock();
+            b = this.backend.get(key);
+            if (b == null) return 0;
+            b = decompress(b);
+            return (b == null) ? 0 : b.length;
+        } catch (final SpaceExceededException e) {
+            throw new IOException(e.getMessage());
         }
     }
 
@@ -322,9 +394,6 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 		}
     	if(locked) {
     		try {
-    			// first ensure that the files do not exist anywhere
-    			delete(key);
-
     			// check if the buffer is full or could be full after this write
     			if (this.bufferlength + b.length * 2 > this.maxbufferlength) {
     				// in case that we compress, just compress as much as is necessary to get enough room
@@ -338,15 +407,20 @@ public class Compressor implements BLOB, Iterable<byte[]> {
 
     			// files are written uncompressed to the uncompressed-queue
     			// they are either written uncompressed to the database
-    			// or compressed later
-   				this.buffer.put(key, b);
-   				this.bufferlength += b.length;
+    			// or compressed later. The new entry is put before the old one is removed
+    			// from the backend, so that a concurrent get() never misses the key
+   				final byte[] old = this.buffer.put(key, b);
+   				this.bufferlength += b.length - (old == null ? 0 : old.length);
+   				this.backend.delete(key);
     		} finally {
     			this.lock.unlock();
     		}
     		
     		if (MemoryControl.shortStatus()) {
     			flushAll();
+    		} else if (this.bufferlength > this.maxbufferlength / 2) {
+    			// start compression of the oldest entries before the buffer is full
+    			flushInBackground();
     		}
     	} else {
     		ConcurrentLog.fine("Compressor", "Could not acquire a synchronization lock for insertion within " + this.lockTimeout + " milliseconds");
@@ -420,20 +494,73 @@ public class Compressor implements BLOB, Iterable<byte[]> {
     }
 
     private boolean flushOne() {
-        if (this.buffer.isEmpty()) return false;
-        // depending on process case, write it to the file or compress it to the other queue
-        final Map.Entry<byte[], byte[]> entry = this.buffer.entrySet().iterator().next();
-        this.buffer.remove(entry.getKey());
+        final Map.Entry<byte[], byte[]> entry = this.buffer.firstEntry();
+        if (entry == null) return false;
+        return flush(entry.getKey(), entry.getValue());
+    }
+
+    /**
+     * compress a buffer entry and move it to the backend. The compression is done without the lock,
+     * so the lock is only held to write the compressed entry.
+     * @param key
+     * @param b the buffered content of the entry
+     * @return true if the entry was moved, false if it was changed meanwhile or could not be written
+     */
+    private boolean flush(final byte[] key, final byte[] b) {
+        final byte[] c = compress(b, this.compressionLevel, this.codec);
+        this.lock.lock();
         try {
-            this.backend.insert(entry.getKey(), compress(entry.getValue(), this.compressionLevel));
-            this.bufferlength -= entry.getValue().length;
+            // the entry may have been deleted or replaced while it was compressed
+            if (this.buffer.get(key) != b) return false;
+            this.backend.insert(key, c);
+            this.buffer.remove(key);
+            this.bufferlength -= b.length;
             return true;
         } catch (final IOException e) {
-            this.buffer.put(entry.getKey(), entry.getValue());
+            ConcurrentLog.warn("Compressor", "cannot write entry to " + this.backend.name() + ": " + e.getMessage());
+            return false;
+        } finally {
+            this.lock.unlock();
+        }
+    }
+
+    /**
+     * let a background worker compress a buffer entry and move it to the backend
+     * @return true if the entry is compressed in the background
+     */
+    private boolean flushInBackground(final byte[] key, final byte[] b) {
+        if (!this.compressing.add(key)) return true; // already in progress
+        try {
+            COMPRESSION_EXECUTOR.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        flush(key, b);
+                    } finally {
+                        Compressor.this.compressing.remove(key);
+                    }
+                }
+            });
+            return true;
+        } catch (final RejectedExecutionException e) {
+            this.compressing.remove(key);
             return false;
         }
     }
 
+    /**
+     * let background workers compress the oldest buffer entries until the buffer
+     * will be filled to only the half of its maximum size
+     */
+    private void flushInBackground() {
+        long excess = this.bufferlength - this.maxbufferlength / 2;
+        for (final Map.Entry<byte[], byte[]> entry: this.buffer.entrySet()) {
+            if (excess <= 0) break;
+            if (!flushInBackground(entry.getKey(), entry.getValue())) break;
+            excess -= entry.getValue().length;
+        }
+    }
+
     public void flushAll() {
     	this.lock.lock();
     	try {
@@ -480,6 +607,15 @@ public class Compressor implements BLOB, Iterable<byte[]> {
         this.compressionLevel = Math.max(Deflater.NO_COMPRESSION, Math.min(Deflater.BEST_COMPRESSION, compressionLevel));
     }
     
+    /**
+     * Set the encoding of new compressed entries. Entries which are already compressed
+     * with another codec can still be read.
+     * @param codec the new codec
+     */
+    public void setCodec(final Codec codec) {
+        if (codec != null) this.codec = codec;
+    }
+    
     /**
      * Set the new synchronization lock timeout.
      * @param lockTimeout the new synchronization lock timeout (in milliseconds).
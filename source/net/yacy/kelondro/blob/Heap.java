@@ -107,6 +107,14 @@ public final class Heap extends HeapModifier implements BLOB {
         System.out.println("*** DEBUG - counted " + c + " BLOBs");
         */
     }
+
+    /**
+     * a heap is written, therefore it cannot have a key filter or a mapped index
+     */
+    @Override
+    protected boolean fixedKeys() {
+        return false;
+    }
     
     /**
      * the number of BLOBs in the heap
@@ -58,6 +58,18 @@ public class HeapModifier extends HeapReader implements BLOB {
         super(heapFile, keylength, ordering);
     }
 
+    /**
+     * create a heap file with an optional memory-mapped key index
+     * @param heapFile
+     * @param keylength
+     * @param ordering
+     * @param mappedIndex if true, the index dump is memory-mapped instead of loaded into RAM
+     * @throws IOException
+     */
+    public HeapModifier(final File heapFile, final int keylength, final ByteOrder ordering, final boolean mappedIndex) throws IOException {
+        super(heapFile, keylength, ordering, mappedIndex);
+    }
+
     /**
      * clears the content of the database
      * @throws IOException
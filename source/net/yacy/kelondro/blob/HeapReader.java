@@ -46,6 +46,8 @@ import net.yacy.cora.storage.HandleMap;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.LookAheadIterator;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.index.BloomFilter;
+import net.yacy.kelondro.index.MappedHandleMap;
 import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.io.CachedFileWriter;
 import net.yacy.kelondro.io.Writer;
@@ -64,19 +66,39 @@ public class HeapReader {
     protected int                keylength;  // the length of the primary key
     protected File               heapFile;   // the file of the heap
     protected final ByteOrder    ordering;   // the ordering on keys
+    private   final boolean      mappedIndex; // if true, the index dump of a heap which does not get new keys is memory-mapped instead of loaded into RAM
 
     // computed values
     protected Writer             file;       // a random access to the file
     protected HandleMap          index;      // key/seek relation for used records
     protected Gap                free;       // set of {seek, size} pairs denoting space and position of free records
-    private   File               fingerprintFileIdx, fingerprintFileGap; // files with dumped indexes. Will be deleted if file is written
+    private   BloomFilter        keyFilter;  // filter to find out without locking if a key can be in the heap; null if the heap may get new keys
+    private   File               fingerprintFileIdx, fingerprintFileGap, fingerprintFileBlm; // files with dumped indexes. Will be deleted if file is written
+    private   File               outdatedFileIdx; // a mapped index dump which is outdated; it can only be deleted after the index is unmapped
     private   Date               closeDate;  // records a time when the file was closed; used for debugging
 
     public HeapReader(
             final File heapFile,
             final int keylength,
             final ByteOrder ordering) throws IOException {
+        this(heapFile, keylength, ordering, false);
+    }
+
+    /**
+     * @param heapFile the file of the heap
+     * @param keylength the length of the primary key
+     * @param ordering the ordering on keys
+     * @param mappedIndex if true, the key index of a heap which does not get new keys is not loaded into RAM;
+     * the index dump is memory-mapped and searched in place instead
+     * @throws IOException
+     */
+    public HeapReader(
+            final File heapFile,
+            final int keylength,
+            final ByteOrder ordering,
+            final boolean mappedIndex) throws IOException {
         this.ordering = ordering;
+        this.mappedIndex = mappedIndex;
         this.heapFile = heapFile;
         this.keylength = keylength;
         this.index = null; // will be created as result of initialization process
@@ -88,6 +110,7 @@ public class HeapReader {
         // read or initialize the index
         this.fingerprintFileIdx = null;
         this.fingerprintFileGap = null;
+        this.fingerprintFileBlm = null;
         if (initIndexReadDump()) {
             // verify that everything worked just fine
             // pick some elements of the index
@@ -108,15 +131,23 @@ public class HeapReader {
             }
             if (!ok) {
                 log.warn("verification of idx file for " + heapFile.toString() + " failed, re-building index");
+                if (this.fingerprintFileBlm != null) FileUtils.deletedelete(this.fingerprintFileBlm);
+                this.fingerprintFileBlm = null;
+                this.index.close();
                 initIndexReadFromHeap();
+                if (this.mappedIndex && fixedKeys()) mapIndex();
             } else {
                 log.info("using a dump of the index of " + heapFile.toString() + ".");
             }
         } else {
             // if we did not have a dump, create a new index
             initIndexReadFromHeap();
+            if (this.mappedIndex && fixedKeys()) mapIndex();
         }
 
+        // load or compute the key filter; this must be done after the index is complete
+        initKeyFilter();
+
         // merge gaps that follow directly
         mergeFreeEntries();
 
@@ -135,6 +166,15 @@ public class HeapReader {
         this.index.optimize();
     }
 
+    /**
+     * decide if the keys of this heap are fixed after initialization. Only then a key filter
+     * and a memory-mapped index can be used, because both cannot get new keys.
+     * @return true if the heap does not get new keys after initialization
+     */
+    protected boolean fixedKeys() {
+        return true;
+    }
+
     protected byte[] normalizeKey(byte[] key) {
         // check size of key: zero-filled keys are only possible of the ordering is
         // an instance of the natural ordering. Base64-orderings cannot use zeros in keys.
@@ -172,11 +212,16 @@ public class HeapReader {
             deleteAllFingerprints(this.heapFile, this.fingerprintFileIdx.getName(), this.fingerprintFileGap.getName());
             return false;
         }
+        this.fingerprintFileBlm = HeapWriter.fingerprintKeyFilterFile(this.heapFile, fingerprint);
 
         // there is an index and a gap file:
         // read the index file:
         try {
-            this.index = new RowHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
+            if (this.mappedIndex && fixedKeys() && !this.fingerprintFileIdx.getName().endsWith(".gz")) {
+                this.index = new MappedHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
+            } else {
+                this.index = new RowHandleMap(this.keylength, this.ordering, 8, this.fingerprintFileIdx);
+            }
         } catch (final IOException e) {
             ConcurrentLog.logException(e);
             return false;
@@ -205,6 +250,42 @@ public class HeapReader {
         return !this.index.isEmpty();
     }
 
+    /**
+     * replace the index in RAM by a memory-mapped dump of it
+     */
+    private void mapIndex() {
+        if (this.index.isEmpty()) return;
+        final String fingerprint = fingerprintFileHash(this.heapFile);
+        if (fingerprint == null) return;
+        final File idx = HeapWriter.fingerprintIndexFile(this.heapFile, fingerprint);
+        try {
+            this.index.dump(idx);
+            final MappedHandleMap mapped = new MappedHandleMap(this.keylength, this.ordering, 8, idx);
+            this.index.close();
+            this.index = mapped;
+            this.fingerprintFileIdx = idx;
+        } catch (final IOException e) {
+            log.warn("cannot map the index of " + this.heapFile.getName() + ", using the index in RAM: " + e.getMessage());
+        }
+    }
+
+    private void initKeyFilter() {
+        this.keyFilter = null;
+        if (!fixedKeys() || this.index == null) return;
+        if (this.fingerprintFileBlm != null && this.fingerprintFileBlm.exists()) {
+            try {
+                this.keyFilter = new BloomFilter(this.fingerprintFileBlm);
+                return;
+            } catch (final IOException e) {
+                log.warn("cannot read key filter " + this.fingerprintFileBlm.getName() + ", re-building: " + e.getMessage());
+                FileUtils.deletedelete(this.fingerprintFileBlm);
+                this.fingerprintFileBlm = null;
+            }
+        }
+        // there is no dump of the filter: compute it from the index; it is written at close time
+        this.keyFilter = BloomFilter.of(this.index.keys(true, null), this.index.size(), HeapWriter.keyFilterFalsePositiveRate);
+    }
+
     /**
      * deletion of the fingerprint: this should happen if the heap is written or entries are deleted
      * if the files are not deleted then it may be possible that they are not used anyway because the
@@ -213,13 +294,19 @@ public class HeapReader {
      */
     public void deleteFingerprint() {
         if (this.fingerprintFileIdx != null) {
-            FileUtils.deletedelete(this.fingerprintFileIdx);
+            // a mapped file cannot be deleted on all systems; it is deleted when the index is closed
+            if (this.index instanceof MappedHandleMap) this.outdatedFileIdx = this.fingerprintFileIdx; else FileUtils.deletedelete(this.fingerprintFileIdx);
             this.fingerprintFileIdx = null;
         }
         if (this.fingerprintFileGap != null) {
             FileUtils.deletedelete(this.fingerprintFileGap);
             this.fingerprintFileGap = null;
         }
+        if (this.fingerprintFileBlm != null) {
+            // the key filter in RAM is still valid because keys are only deleted, never added
+            FileUtils.deletedelete(this.fingerprintFileBlm);
+            this.fingerprintFileBlm = null;
+        }
     }
 
     protected static String fingerprintFileHash(File f) {
@@ -242,7 +329,8 @@ public class HeapReader {
             if (l[i].endsWith(".idx") ||
                 l[i].endsWith(".gap") ||
                 l[i].endsWith(".idx.gz") ||
-                l[i].endsWith(".gap.gz")
+                l[i].endsWith(".gap.gz") ||
+                l[i].endsWith(".blm")
                ) FileUtils.deletedelete(new File(d, l[i]));
         }
     }
@@ -394,6 +482,18 @@ public class HeapReader {
         }
     }
 
+    /**
+     * test if a key may be in the heap file. This uses only the key filter and does not need
+     * a lock on the index. If the result is false, the key is not in the heap file; if the result
+     * is true, containsKey() must be used to find out if the key actually exists.
+     * @param key
+     * @return false if the key does not exist, true if the key may exist
+     */
+    public boolean mightContainKey(final byte[] key) {
+        final BloomFilter filter = this.keyFilter;
+        return filter == null || filter.mightContain(normalizeKey(key));
+    }
+
     public ByteOrder ordering() {
         return this.ordering;
     }
@@ -641,8 +741,13 @@ public class HeapReader {
                         } else {
                             long start = System.currentTimeMillis();
                             this.index.dump(newFingerprintFileIdx);
+                            if (newFingerprintFileIdx.equals(this.outdatedFileIdx)) this.outdatedFileIdx = null; // it was replaced
                             log.info("wrote a dump for the " + this.index.size() +  " index entries of " + this.heapFile.getName()+ " in " + (System.currentTimeMillis() - start) + " milliseconds.");
                         }
+                        if (this.keyFilter != null) {
+                            File newFingerprintFileBlm = HeapWriter.fingerprintKeyFilterFile(this.heapFile, fingerprint);
+                            if (!newFingerprintFileBlm.exists()) this.keyFilter.dump(newFingerprintFileBlm);
+                        }
                     }
                     this.index.close();
                     this.index = null;
@@ -654,6 +759,12 @@ public class HeapReader {
             this.free = null;
             if (this.index != null) this.index.close();
             this.index = null;
+            if (this.outdatedFileIdx != null) {
+                // the index is unmapped now
+                FileUtils.deletedelete(this.outdatedFileIdx);
+                this.outdatedFileIdx = null;
+            }
+            this.keyFilter = null;
             this.closeDate = new Date();
             } catch (Throwable e) {ConcurrentLog.logException(e);}
             log.info("close HeapFile " + this.heapFile.getName() + "; trace: " + ConcurrentLog.stackTrace());
@@ -0,0 +1,226 @@
+/**
+ *  WordReferenceColumns
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.data.word;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.index.Row;
+import net.yacy.kelondro.index.RowCollection;
+
+/**
+ * The ranking properties of the word references in a collection of {@link WordReferenceRow} rows,
+ * decoded in one pass over the row bytes into primitive arrays, one array for each property.
+ *
+ * In contrast to the decoding into {@link WordReferenceVars} objects no object is created for a reference,
+ * which makes it possible to normalize and rank large containers without loads of short-living objects.
+ * A {@link WordReferenceVars} object is only created on request for a single reference, i.e. for the best ones.
+ * The row indexes are the indexes of the collection, therefore the collection must not be changed
+ * as long as the columns are used.
+ */
+public final class WordReferenceColumns {
+
+    // the ranking criteria which are normalized between their minimum and maximum
+    public static final int URLCOMPS      =  0;
+    public static final int URLLENGTH     =  1;
+    public static final int POSINTEXT     =  2;
+    public static final int POSOFPHRASE   =  3;
+    public static final int POSINPHRASE   =  4;
+    public static final int DISTANCE      =  5;
+    public static final int VIRTUALAGE    =  6;
+    public static final int WORDSINTITLE  =  7;
+    public static final int WORDSINTEXT   =  8;
+    public static final int PHRASESINTEXT =  9;
+    public static final int LLOCAL        = 10;
+    public static final int LOTHER        = 11;
+    public static final int HITCOUNT      = 12;
+    public static final int CRITERIA      = 13;
+
+    private static final Row row = WordReferenceRow.urlEntryRow;
+    private static final int urlhashLength = row.primaryKeyLength;
+
+    private final RowCollection rows;
+    private final int size;
+    private final int[][] criteria;
+    private final byte[] urlhashes;
+    private final int[] flags;
+    private final byte[] types;
+    private final byte[] languages;
+
+    /**
+     * Decode the ranking properties of all rows
+     * @param rows a collection of rows with the {@link WordReferenceRow#urlEntryRow} definition, i.e. a reference container
+     */
+    public WordReferenceColumns(final RowCollection rows) {
+        assert rows.row().objectsize == row.objectsize : "row = " + rows.row().toString();
+        this.rows = rows;
+        this.size = rows.size();
+        this.criteria = new int[CRITERIA][this.size];
+        this.urlhashes = new byte[this.size * urlhashLength];
+        this.flags = new int[this.size];
+        this.types = new byte[this.size];
+        this.languages = new byte[this.size * 2];
+        rows.visit(new RowCollection.RowVisitor() {
+            @Override
+            public void visit(final int index, final byte[] b, final int offset) {
+                if (index >= WordReferenceColumns.this.size) return; // the collection has grown meanwhile
+                decode(index, b, offset);
+            }
+        });
+    }
+
+    private void decode(final int i, final byte[] b, final int offset) {
+        final int[] colstart = row.colstart;
+        final int[][] c = this.criteria;
+        System.arraycopy(b, offset + colstart[WordReferenceRow.col_urlhash], this.urlhashes, i * urlhashLength, urlhashLength);
+        c[URLCOMPS][i]      = 0xff & b[offset + colstart[WordReferenceRow.col_urlComps]];
+        c[URLLENGTH][i]     = 0xff & b[offset + colstart[WordReferenceRow.col_urlLength]];
+        c[POSINTEXT][i]     = (int) NaturalOrder.decodeLong(b, offset + colstart[WordReferenceRow.col_posintext], 2);
+        c[POSOFPHRASE][i]   = 0xff & b[offset + colstart[WordReferenceRow.col_posofphrase]];
+        c[POSINPHRASE][i]   = 0xff & b[offset + colstart[WordReferenceRow.col_posinphrase]];
+        c[DISTANCE][i]      = 0xff & b[offset + colstart[WordReferenceRow.col_worddistance]];
+        c[VIRTUALAGE][i]    = (int) NaturalOrder.decodeLong(b, offset + colstart[WordReferenceRow.col_lastModified], 2);
+        c[WORDSINTITLE][i]  = 0xff & b[offset + colstart[WordReferenceRow.col_wordsInTitle]];
+        c[WORDSINTEXT][i]   = (int) NaturalOrder.decodeLong(b, offset + colstart[WordReferenceRow.col_wordsInText], 2);
+        c[PHRASESINTEXT][i] = (int) NaturalOrder.decodeLong(b, offset + colstart[WordReferenceRow.col_phrasesInText], 2);
+        c[LLOCAL][i]        = 0xff & b[offset + colstart[WordReferenceRow.col_llocal]];
+        c[LOTHER][i]        = 0xff & b[offset + colstart[WordReferenceRow.col_lother]];
+        c[HITCOUNT][i]      = 0xff & b[offset + colstart[WordReferenceRow.col_hitcount]];
+
+        // the bit n of the flags is the bit n % 8 of the byte n / 8, as in the Bitfield
+        final int f = offset + colstart[WordReferenceRow.col_flags];
+        this.flags[i] = (0xff & b[f]) | ((0xff & b[f + 1]) << 8) | ((0xff & b[f + 2]) << 16) | ((0xff & b[f + 3]) << 24);
+        this.types[i] = b[offset + colstart[WordReferenceRow.col_doctype]];
+        this.languages[2 * i] = b[offset + colstart[WordReferenceRow.col_language]];
+        this.languages[2 * i + 1] = b[offset + colstart[WordReferenceRow.col_language] + 1];
+    }
+
+    /**
+     * @return the number of decoded references
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * @param criterion one of the ranking criteria, i.e. {@link #HITCOUNT}
+     * @return the values of the criterion for all references, indexed by the row index. The array must not be changed.
+     */
+    public int[] criterion(final int criterion) {
+        return this.criteria[criterion];
+    }
+
+    /**
+     * @return the term frequency of the reference, computed as in {@link WordReferenceRow#termFrequency()}
+     */
+    public double termFrequency(final int i) {
+        return ((double) this.criteria[HITCOUNT][i]) / ((double) (this.criteria[WORDSINTEXT][i] + this.criteria[WORDSINTITLE][i] + 1));
+    }
+
+    /**
+     * @return the flags of the reference, the bit n is the flag n of its {@link WordReference#flags()}
+     */
+    public int flags(final int i) {
+        return this.flags[i];
+    }
+
+    /**
+     * @return true if the flag is set for the reference
+     */
+    public boolean flag(final int i, final int flag) {
+        return flag < 32 && ((this.flags[i] >>> flag) & 1) != 0;
+    }
+
+    public char type(final int i) {
+        return (char) this.types[i];
+    }
+
+    /**
+     * @param language the language code of a document as bytes
+     * @return true if the reference has this language
+     */
+    public boolean isLanguage(final int i, final byte[] language) {
+        return language != null && language.length == 2 && this.languages[2 * i] == language[0] && this.languages[2 * i + 1] == language[1];
+    }
+
+    /**
+     * @return the estimated domain length of the url of the reference, see {@link DigestURL#domLengthNormalized(byte[])}
+     */
+    public int domLengthNormalized(final int i) {
+        return DigestURL.domLengthNormalized(this.urlhashes, i * urlhashLength);
+    }
+
+    /**
+     * @return a copy of the url hash of the reference
+     */
+    public byte[] urlhash(final int i) {
+        final byte[] urlhash = new byte[urlhashLength];
+        urlhash(i, urlhash);
+        return urlhash;
+    }
+
+    /**
+     * copy the url hash of the reference into a buffer, i.e. to check it without creating a new array
+     * @param urlhash an array of at least the length of the url hash
+     */
+    public void urlhash(final int i, final byte[] urlhash) {
+        System.arraycopy(this.urlhashes, i * urlhashLength, urlhash, 0, urlhashLength);
+    }
+
+    /**
+     * @return the host hash of the reference, which is the last 6 bytes of the url hash, packed into a number
+     */
+    public long hostkey(final int i) {
+        final int p = i * urlhashLength + 6;
+        long key = 0;
+        for (int j = 0; j < 6; j++) key = (key << 8) | (0xff & this.urlhashes[p + j]);
+        return key;
+    }
+
+    /**
+     * @return the host hash of the reference, as in {@link WordReference#hosthash()}
+     */
+    public String hosthash(final int i) {
+        return ASCII.String(this.urlhashes, i * urlhashLength + 6, 6);
+    }
+
+    /**
+     * @param hosthash a host hash as bytes
+     * @return true if the host hash of the reference is the given one
+     */
+    public boolean isHost(final int i, final byte[] hosthash) {
+        if (hosthash == null || hosthash.length != 6) return false;
+        final int p = i * urlhashLength + 6;
+        for (int j = 0; j < 6; j++) if (this.urlhashes[p + j] != hosthash[j]) return false;
+        return true;
+    }
+
+    /**
+     * Create the reference object of a single reference
+     * @param i the row index
+     * @param local true if the reference comes from the local index
+     * @return the reference with all properties, including the ones which are not decoded into columns
+     */
+    public WordReferenceVars vars(final int i, final boolean local) {
+        return new WordReferenceVars(new WordReferenceRow(this.rows.get(i, true)), local);
+    }
+
+}
@@ -0,0 +1,176 @@
+/**
+ *  BloomFilter
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * a bloom filter for byte[] keys. It answers the question if a key may be contained in a set:
+ * if mightContain() returns false, the key is definitely not in the set; if it returns true,
+ * the key is in the set with a probability depending on the false positive rate given at
+ * creation time. Keys cannot be removed from the filter.
+ * The filter is used to skip BLOB files in a multi-file lookup which cannot contain a key.
+ * It can be dumped to a file and read again, the file format is
+ * <magic int><number of hash functions int><number of long words int><long words>
+ */
+public final class BloomFilter {
+
+    private static final int magic = 0x59426c6d; // "YBlm"
+
+    private final long[] bits;
+    private final long   bitCount;
+    private final int    hashCount;
+
+    /**
+     * create an empty bloom filter
+     * @param expectedKeys the number of keys that shall be stored in the filter
+     * @param falsePositiveRate the rate of wrong true-answers of mightContain() that is acceptable
+     */
+    public BloomFilter(final int expectedKeys, final double falsePositiveRate) {
+        final long n = Math.max(1, expectedKeys);
+        final double p = Math.min(0.5d, Math.max(1.0e-6d, falsePositiveRate));
+        final long m = Math.max(64L, (long) Math.ceil(-n * Math.log(p) / (Math.log(2) * Math.log(2))));
+        this.bits = new long[(int) Math.min(Integer.MAX_VALUE - 8, (m + 63) >>> 6)];
+        this.bitCount = ((long) this.bits.length) << 6;
+        this.hashCount = Math.max(1, Math.min(16, (int) Math.round((double) this.bitCount / n * Math.log(2))));
+    }
+
+    /**
+     * read a bloom filter dump
+     * @param file the file that had been written with dump()
+     * @throws IOException if the file cannot be read or has a wrong format
+     */
+    public BloomFilter(final File file) throws IOException {
+        final DataInputStream is = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+        try {
+            if (is.readInt() != magic) throw new IOException("file " + file + " is not a bloom filter dump");
+            this.hashCount = is.readInt();
+            final int words = is.readInt();
+            if (this.hashCount < 1 || words < 1 || (long) words * 8L + 12L != file.length()) throw new IOException("bloom filter dump " + file + " is damaged");
+            this.bits = new long[words];
+            for (int i = 0; i < words; i++) this.bits[i] = is.readLong();
+            this.bitCount = ((long) this.bits.length) << 6;
+        } finally {
+            is.close();
+        }
+    }
+
+    /**
+     * create a bloom filter that contains all keys from an iterator
+     * @param keys the keys
+     * @param size the number of keys that the iterator returns
+     * @param falsePositiveRate the acceptable false positive rate
+     * @return the filled filter
+     */
+    public static BloomFilter of(final Iterator<byte[]> keys, final int size, final double falsePositiveRate) {
+        final BloomFilter filter = new BloomFilter(size, falsePositiveRate);
+        while (keys.hasNext()) filter.add(keys.next());
+        return filter;
+    }
+
+    public void add(final byte[] key) {
+        final long h1 = hash(key, 0x9E3779B97F4A7C15L);
+        final long h2 = hash(key, 0xC2B2AE3D27D4EB4FL) | 1L;
+        long h = h1;
+        synchronized (this.bits) {
+            for (int i = 0; i < this.hashCount; i++) {
+                final long bit = (h & Long.MAX_VALUE) % this.bitCount;
+                this.bits[(int) (bit >>> 6)] |= 1L << bit;
+                h += h2;
+            }
+        }
+    }
+
+    /**
+     * test if a key may be contained in the filter
+     * @param key
+     * @return false if the key was never added, true if the key was probably added
+     */
+    public boolean mightContain(final byte[] key) {
+        final long h1 = hash(key, 0x9E3779B97F4A7C15L);
+        final long h2 = hash(key, 0xC2B2AE3D27D4EB4FL) | 1L;
+        long h = h1;
+        for (int i = 0; i < this.hashCount; i++) {
+            final long bit = (h & Long.MAX_VALUE) % this.bitCount;
+            if ((this.bits[(int) (bit >>> 6)] & (1L << bit)) == 0) return false;
+            h += h2;
+        }
+        return true;
+    }
+
+    /**
+     * @return the number of bytes that the filter uses in RAM
+     */
+    public long mem() {
+        return ((long) this.bits.length) << 3;
+    }
+
+    /**
+     * write the filter to a file. The file is first written to a temporary file
+     * and then renamed, so a reader never sees an incomplete dump.
+     * @param file
+     * @throws IOException
+     */
+    public void dump(final File file) throws IOException {
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        final DataOutputStream os = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 64 * 1024));
+        try {
+            os.writeInt(magic);
+            os.writeInt(this.hashCount);
+            os.writeInt(this.bits.length);
+            synchronized (this.bits) {
+                for (final long w: this.bits) os.writeLong(w);
+            }
+        } finally {
+            os.close();
+        }
+        if (file.exists()) FileUtils.deletedelete(file);
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+    }
+
+    /**
+     * a seeded 64-bit hash of the key bytes (murmur3 finalizer over a multiplicative byte mix)
+     */
+    private static long hash(final byte[] key, final long seed) {
+        long h = seed ^ key.length;
+        for (final byte b: key) {
+            h ^= b & 0xff;
+            h *= 0x100000001B3L;
+            h = Long.rotateLeft(h, 23);
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
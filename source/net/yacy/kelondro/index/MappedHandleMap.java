@@ -0,0 +1,442 @@
+/**
+ *  MappedHandleMap
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.index;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.ByteOrder;
+import net.yacy.cora.order.CloneableIterator;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.storage.HandleMap;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * a HandleMap that does not hold its entries in RAM but uses a memory-mapped index dump.
+ * The dump must have the format that is written by RowHandleMap.dump(): all entries
+ * are sorted, each entry is a key of fixed length followed by the value in b256 encoding.
+ * Lookups are done with a binary search in the mapped file, therefore the map can be used
+ * right after it is opened and does not need RAM for the entries.
+ * The map cannot get new entries; entries can only be removed. Removed entries are marked
+ * in a bitfield; they are not written when the map is dumped again.
+ */
+public final class MappedHandleMap implements HandleMap, Iterable<Map.Entry<byte[], Long>> {
+
+    // the number of entries in one mapped segment; a single MappedByteBuffer cannot be larger than 2GB
+    private static final int maxSegmentBytes = Integer.MAX_VALUE;
+
+    private final int keylength, idxbytes, width, segmentEntries;
+    private final ByteOrder ordering;
+    private final File file;
+    private MappedByteBuffer[] segments;
+    private int count;
+    private AtomicLongArray removed; // bitfield of removed entries
+    private final AtomicInteger removedCount;
+
+    /**
+     * map an index dump
+     * @param keylength the length of the keys
+     * @param objectOrder the order of the keys in the dump
+     * @param idxbytes the length of the values
+     * @param file the dump file, must not be compressed
+     * @throws IOException if the file cannot be mapped or does not have the expected size
+     */
+    public MappedHandleMap(final int keylength, final ByteOrder objectOrder, final int idxbytes, final File file) throws IOException {
+        this.keylength = keylength;
+        this.idxbytes = idxbytes;
+        this.width = keylength + idxbytes;
+        this.ordering = objectOrder;
+        this.file = file;
+        this.segmentEntries = maxSegmentBytes / this.width;
+        this.removedCount = new AtomicInteger(0);
+        map();
+    }
+
+    private void map() throws IOException {
+        final long length = this.file.length();
+        if (length % this.width != 0) throw new IOException("index dump " + this.file + " has a wrong size: " + length + " is not a multiple of " + this.width);
+        if (length / this.width > Integer.MAX_VALUE) throw new IOException("index dump " + this.file + " is too large");
+        this.count = (int) (length / this.width);
+        final int segmentCount = (this.count + this.segmentEntries - 1) / this.segmentEntries;
+        this.segments = new MappedByteBuffer[segmentCount];
+        final RandomAccessFile raf = new RandomAccessFile(this.file, "r");
+        try {
+            final FileChannel channel = raf.getChannel();
+            for (int s = 0; s < segmentCount; s++) {
+                final long start = (long) s * this.segmentEntries * this.width;
+                this.segments[s] = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min((long) this.segmentEntries * this.width, length - start));
+            }
+        } finally {
+            raf.close(); // the mapping stays valid after the channel is closed
+        }
+        this.removed = new AtomicLongArray(Math.max(1, (this.count + 63) >>> 6));
+        this.removedCount.set(0);
+    }
+
+    private void readKey(final int i, final byte[] key) {
+        final MappedByteBuffer segment = this.segments[i / this.segmentEntries];
+        final int p = (i % this.segmentEntries) * this.width;
+        for (int j = 0; j < this.keylength; j++) key[j] = segment.get(p + j);
+    }
+
+    private long readValue(final int i) {
+        final MappedByteBuffer segment = this.segments[i / this.segmentEntries];
+        final int p = (i % this.segmentEntries) * this.width + this.keylength;
+        long c = 0;
+        for (int j = 0; j < this.idxbytes; j++) c = (c << 8) | (segment.get(p + j) & 0xFFL);
+        return c;
+    }
+
+    private boolean isRemoved(final int i) {
+        return (this.removed.get(i >>> 6) & (1L << i)) != 0;
+    }
+
+    private boolean markRemoved(final int i) {
+        final int w = i >>> 6;
+        final long bit = 1L << i;
+        while (true) {
+            final long old = this.removed.get(w);
+            if ((old & bit) != 0) return false;
+            if (this.removed.compareAndSet(w, old, old | bit)) {
+                this.removedCount.incrementAndGet();
+                return true;
+            }
+        }
+    }
+
+    /**
+     * binary search for a key
+     * @param key
+     * @return the position of the key if it exists, or (-(insertion point) - 1)
+     */
+    private int find(final byte[] key) {
+        final byte[] probe = new byte[this.keylength];
+        int low = 0, high = this.count - 1;
+        while (low <= high) {
+            final int mid = (low + high) >>> 1;
+            readKey(mid, probe);
+            final int c = this.ordering.compare(probe, key);
+            if (c < 0) low = mid + 1;
+            else if (c > 0) high = mid - 1;
+            else return mid;
+        }
+        return -(low + 1);
+    }
+
+    @Override
+    public long mem() {
+        // only the bitfield of removed entries is on the heap, the mapped entries are not
+        return ((long) this.removed.length()) << 3;
+    }
+
+    @Override
+    public void optimize() {
+        // the mapped file is already in the best order
+    }
+
+    /**
+     * write all entries that had not been removed to a file. The file has the same
+     * format as the mapped file and can be mapped again. If the file is the mapped file,
+     * it is unmapped before it is replaced and the new file is mapped.
+     */
+    @Override
+    public synchronized int dump(final File file) throws IOException {
+        final boolean mappedFile = file.getAbsoluteFile().equals(this.file.getAbsoluteFile());
+        if (mappedFile && this.removedCount.get() == 0 && file.exists()) return this.count;
+        final File tmp = new File(file.getParentFile(), file.getName() + ".prt");
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(tmp), 4 * 1024 * 1024);
+        int c = 0;
+        try {
+            if (file.getName().endsWith(".gz")) os = new GZIPOutputStream(os, 65536){{def.setLevel(Deflater.BEST_COMPRESSION);}};
+            final byte[] key = new byte[this.keylength];
+            for (int i = 0; i < this.count; i++) {
+                if (isRemoved(i)) continue;
+                readKey(i, key);
+                os.write(key);
+                os.write(NaturalOrder.encodeLong(readValue(i), this.idxbytes));
+                c++;
+            }
+            os.flush();
+        } finally {
+            os.close();
+        }
+        // a mapped file cannot be deleted or replaced on all systems
+        if (mappedFile) unmap();
+        if (file.exists()) FileUtils.deletedelete(file);
+        if (!tmp.renameTo(file)) throw new IOException("cannot rename " + tmp + " to " + file);
+        if (mappedFile) map();
+        return c;
+    }
+
+    /**
+     * release the mapped buffers now instead of waiting for the garbage collector.
+     * The map must not be accessed afterwards until the file is mapped again.
+     */
+    private void unmap() {
+        for (final MappedByteBuffer segment: this.segments) unmap(segment);
+        this.segments = new MappedByteBuffer[0];
+        this.count = 0;
+    }
+
+    private static void unmap(final MappedByteBuffer buffer) {
+        try {
+            // since Java 9
+            final Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            final Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+            theUnsafe.setAccessible(true);
+            unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), buffer);
+        } catch (final Throwable e) {
+            try {
+                // Java 8
+                final Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                final Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) cleaner.getClass().getMethod("clean").invoke(cleaner);
+            } catch (final Throwable ee) {
+                // the mapping is released when the buffer is garbage collected
+            }
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        this.segments = new MappedByteBuffer[0];
+        this.count = 0;
+        this.removed = new AtomicLongArray(1);
+        this.removedCount.set(0);
+    }
+
+    @Override
+    public byte[] smallestKey() {
+        for (int i = 0; i < this.count; i++) {
+            if (isRemoved(i)) continue;
+            final byte[] key = new byte[this.keylength];
+            readKey(i, key);
+            return key;
+        }
+        return null;
+    }
+
+    @Override
+    public byte[] largestKey() {
+        for (int i = this.count - 1; i >= 0; i--) {
+            if (isRemoved(i)) continue;
+            final byte[] key = new byte[this.keylength];
+            readKey(i, key);
+            return key;
+        }
+        return null;
+    }
+
+    @Override
+    public boolean has(final byte[] key) {
+        return get(key) >= 0;
+    }
+
+    @Override
+    public long get(final byte[] key) {
+        assert key != null;
+        final int i = find(key);
+        if (i < 0 || isRemoved(i)) return -1;
+        return readValue(i);
+    }
+
+    @Override
+    public long put(final byte[] key, final long l) {
+        throw new UnsupportedOperationException("MappedHandleMap is read-only");
+    }
+
+    @Override
+    public void putUnique(final byte[] key, final long l) {
+        throw new UnsupportedOperationException("MappedHandleMap is read-only");
+    }
+
+    @Override
+    public long add(final byte[] key, final long a) {
+        throw new UnsupportedOperationException("MappedHandleMap is read-only");
+    }
+
+    @Override
+    public long inc(final byte[] key) {
+        throw new UnsupportedOperationException("MappedHandleMap is read-only");
+    }
+
+    @Override
+    public long dec(final byte[] key) {
+        throw new UnsupportedOperationException("MappedHandleMap is read-only");
+    }
+
+    @Override
+    public ArrayList<long[]> removeDoubles() {
+        // a dump of a map cannot have double entries
+        return new ArrayList<long[]>(0);
+    }
+
+    @Override
+    public ArrayList<byte[]> top(final int count) {
+        final ArrayList<byte[]> list = new ArrayList<byte[]>();
+        final Iterator<byte[]> i = keys(true, null);
+        while (i.hasNext() && list.size() < count) list.add(i.next());
+        return list;
+    }
+
+    @Override
+    public long remove(final byte[] key) {
+        assert key != null;
+        final int i = find(key);
+        if (i < 0 || !markRemoved(i)) return -1;
+        return readValue(i);
+    }
+
+    @Override
+    public long removeone() {
+        for (int i = this.count - 1; i >= 0; i--) {
+            if (markRemoved(i)) return readValue(i);
+        }
+        return -1;
+    }
+
+    @Override
+    public int size() {
+        return this.count - this.removedCount.get();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    @Override
+    public CloneableIterator<byte[]> keys(final boolean up, final byte[] firstKey) {
+        return new KeyIterator(up, firstKey);
+    }
+
+    @Override
+    public Iterator<Entry<byte[], Long>> iterator() {
+        final KeyIterator i = new KeyIterator(true, null);
+        return new Iterator<Entry<byte[], Long>>() {
+
+            @Override
+            public boolean hasNext() {
+                return i.hasNext();
+            }
+
+            @Override
+            public Entry<byte[], Long> next() {
+                synchronized (MappedHandleMap.this) {
+                    final byte[] key = i.next();
+                    return new AbstractMap.SimpleEntry<byte[], Long>(key, readValue(i.last));
+                }
+            }
+
+            @Override
+            public void remove() {
+                i.remove();
+            }
+
+        };
+    }
+
+    @Override
+    public synchronized void close() {
+        // release the mapping now, so that the file can be deleted or replaced also on Windows
+        unmap();
+    }
+
+    private class KeyIterator implements CloneableIterator<byte[]> {
+
+        private final boolean up;
+        private int next, last;
+
+        public KeyIterator(final boolean up, final byte[] firstKey) {
+            this.up = up;
+            if (firstKey == null) {
+                this.next = up ? 0 : MappedHandleMap.this.count - 1;
+            } else {
+                final int i = find(firstKey);
+                // the insertion point is the first entry which is larger than the key
+                this.next = i >= 0 ? i : (up ? -i - 1 : -i - 2);
+            }
+            this.last = -1;
+            skipRemoved();
+        }
+
+        private void skipRemoved() {
+            while (this.next >= 0 && this.next < MappedHandleMap.this.count && isRemoved(this.next)) {
+                this.next += this.up ? 1 : -1;
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            return this.next >= 0 && this.next < MappedHandleMap.this.count;
+        }
+
+        @Override
+        public byte[] next() {
+            // synchronized with close() and dump(), which may unmap the buffers
+            synchronized (MappedHandleMap.this) {
+                if (!hasNext()) throw new NoSuchElementException();
+                final byte[] key = new byte[MappedHandleMap.this.keylength];
+                readKey(this.next, key);
+                this.last = this.next;
+                this.next += this.up ? 1 : -1;
+                skipRemoved();
+                return key;
+            }
+        }
+
+        @Override
+        public void remove() {
+            if (this.last < 0) throw new IllegalStateException();
+            markRemoved(this.last);
+        }
+
+        @Override
+        public CloneableIterator<byte[]> clone(final Object modifier) {
+            return new KeyIterator(this.up, (byte[]) modifier);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+}
@@ -676,6 +676,33 @@ public class RowCollection implements Sortable<Row.Entry>, Iterable<Row.Entry>,
 
     }
 
+    /**
+     * A visitor of the stored rows, used to decode columns without creating row entries
+     */
+    public interface RowVisitor {
+
+        /**
+         * Visit one row. The array must not be changed and must not be retained after the call.
+         * @param index the index of the row in the collection
+         * @param rows the array which holds the row
+         * @param offset the position of the row in the array
+         */
+        public void visit(int index, byte[] rows, int offset);
+    }
+
+    /**
+     * Hand all rows in the order of their index to the visitor.
+     * The collection is locked during the visit.
+     * @param visitor the row visitor
+     */
+    public synchronized final void visit(final RowVisitor visitor) {
+        if (this.chunkcache == null || this.rowdef == null) return; // case may appear during shutdown
+        final int objectsize = this.rowdef.objectsize;
+        for (int i = 0; i < this.chunkcount; i++) {
+            visitor.visit(i, this.chunkcache, i * objectsize);
+        }
+    }
+
     public void optimize() {
         sort();
         trim();
@@ -353,6 +353,42 @@ public class RowSet extends RowCollection implements Index, Iterable<Row.Entry>,
         return l;
     }
 
+    /**
+     * Galloping search in the sorted area: starting at a position which is not after the position
+     * of the key, the distance of the probes is doubled until an entry greater than the key is
+     * found, and then the key is searched by bisection within the last distance. Searching
+     * ascending keys this way costs O(log d) comparisons for a distance d between their positions.
+     * @param key the key to search
+     * @param from the start position
+     * @return the position of the key if the key exists, or -(p + 1) where p is the position
+     *         of the first entry greater than the key within the sorted area
+     */
+    protected final int gallopingPosition(final byte[] key, final int from) {
+        assert (this.rowdef.objectOrder != null);
+        int l = from; // all entries before l are smaller than the key
+        int rbound = from;
+        int step = 1;
+        int d;
+        while (rbound < this.sortBound) {
+            assert key.length >= this.rowdef.primaryKeyLength;
+            d = compare(key, 0, rbound);
+            if (d == 0) return rbound;
+            if (d < 0) break;
+            l = rbound + 1;
+            rbound = l + step;
+            step = step << 1;
+        }
+        if (rbound > this.sortBound) rbound = this.sortBound;
+        int p;
+        while (l < rbound) {
+            p = (l + rbound) >>> 1;
+            d = compare(key, 0, p);
+            if (d == 0) return p;
+            if (d < 0) rbound = p; else l = p + 1;
+        }
+        return -(l + 1);
+    }
+
     public final synchronized Iterator<byte[]> keys() {
         sort();
         return super.keys(true);
@@ -136,6 +136,21 @@ public abstract class AbstractIndex <ReferenceType extends Reference> implements
         return new TermSearch<ReferenceType>(this, queryHashes, excludeHashes, urlselection, termFactory, maxDistance);
     }
 
+    /**
+     * @param completeInclusion when false, the containers of the query terms are only loaded as
+     *        long as the joined result is not empty, and {@link TermSearch#inclusion()} may be incomplete
+     * @see TermSearch
+     */
+    public TermSearch<ReferenceType> query(
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            final HandleSet urlselection,
+            final ReferenceFactory<ReferenceType> termFactory,
+            final int maxDistance,
+            final boolean completeInclusion) throws SpaceExceededException {
+        return new TermSearch<ReferenceType>(this, queryHashes, excludeHashes, urlselection, termFactory, maxDistance, completeInclusion);
+    }
+
     @Override
     public Row referenceRow() {
         return this.factory.getRow();
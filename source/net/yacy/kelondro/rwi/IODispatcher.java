@@ -27,11 +27,19 @@ package net.yacy.kelondro.rwi;
 import java.io.File;
 import java.io.IOException;
 import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.util.concurrent.RateLimiter;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 
 
 /**
@@ -45,6 +53,12 @@ import net.yacy.kelondro.util.MemoryControl;
  * to use this class, first instantiate a object and then start the concurrent execution
  * of merging with a call to the start() - method. To shut down all mergings, call terminate()
  * only once.
+ *
+ * dump jobs are always executed by the dispatcher thread itself and are preferred over merges.
+ * merge jobs are handed over to a pool of merge workers; the number of merges that may run at the
+ * same time is given by the merge concurrency. Because every merge job owns its input files
+ * (they are unmounted from the ArrayStack before the job is queued) concurrent merges never
+ * touch the same file. The write speed of all merges together can be limited with a throttle.
  */
 public class IODispatcher extends Thread {
 
@@ -56,8 +70,25 @@ public class IODispatcher extends Thread {
     private   ArrayBlockingQueue<DumpJob<? extends Reference>> dumpQueue;
     private   boolean                      terminate;
     private final int                      writeBufferSize;
+    private final ExecutorService          mergeExecutor; // runs the merge jobs, the number of running jobs is limited by mergeConcurrency
+    private volatile int                   mergeConcurrency;
+    private volatile RateLimiter           mergeThrottle; // limits the write speed of merges in bytes per second; null if unlimited
+    private final AtomicInteger            activeMerges;
+    private final AtomicLong               mergeBacklog; // sum of the file sizes of all queued and running merge jobs
+    private final AtomicLong               mergedBytes, mergeTime, mergeCount;
 
     public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize) {
+        this(dumpQueueLength, mergeQueueLength, writeBufferSize, 1, 0);
+    }
+
+    /**
+     * @param dumpQueueLength maximum number of waiting dump jobs
+     * @param mergeQueueLength maximum number of waiting merge jobs
+     * @param writeBufferSize the write buffer size for dumps and merges
+     * @param mergeConcurrency maximum number of merge jobs that are executed at the same time
+     * @param mergeMaxBytesPerSecond limit of the write speed of all merges together, 0 for no limit
+     */
+    public IODispatcher(final int dumpQueueLength, final int mergeQueueLength, final int writeBufferSize, final int mergeConcurrency, final long mergeMaxBytesPerSecond) {
     	super("IODispatcher");
         this.termination = new Semaphore(0);
         this.controlQueue = new Semaphore(0);
@@ -65,6 +96,99 @@ public class IODispatcher extends Thread {
         this.mergeQueue = new ArrayBlockingQueue<MergeJob>(mergeQueueLength);
         this.writeBufferSize = writeBufferSize;
         this.terminate = false;
+        this.mergeExecutor = Executors.newCachedThreadPool(new NamePrefixThreadFactory(IODispatcher.class.getSimpleName() + ".merge"));
+        this.activeMerges = new AtomicInteger(0);
+        this.mergeBacklog = new AtomicLong(0);
+        this.mergedBytes = new AtomicLong(0);
+        this.mergeTime = new AtomicLong(0);
+        this.mergeCount = new AtomicLong(0);
+        setMergeConcurrency(mergeConcurrency);
+        setMergeMaxBytesPerSecond(mergeMaxBytesPerSecond);
+    }
+
+    /**
+     * set the maximum number of merge jobs that may run at the same time.
+     * A change takes effect for the next merge job that is started.
+     * @param concurrency number of concurrent merges, at least 1
+     */
+    public void setMergeConcurrency(final int concurrency) {
+        this.mergeConcurrency = Math.max(1, concurrency);
+        if (this.controlQueue != null) this.controlQueue.release(); // wake up the dispatcher to start waiting merges
+    }
+
+    public int getMergeConcurrency() {
+        return this.mergeConcurrency;
+    }
+
+    /**
+     * set a limit for the number of bytes per second that all merge jobs together may write
+     * @param maxBytesPerSecond the limit or 0 to switch the throttle off
+     */
+    public void setMergeMaxBytesPerSecond(final long maxBytesPerSecond) {
+        if (maxBytesPerSecond <= 0) {
+            this.mergeThrottle = null;
+        } else if (this.mergeThrottle == null) {
+            this.mergeThrottle = RateLimiter.create(maxBytesPerSecond);
+        } else {
+            this.mergeThrottle.setRate(maxBytesPerSecond);
+        }
+    }
+
+    public long getMergeMaxBytesPerSecond() {
+        final RateLimiter throttle = this.mergeThrottle;
+        return throttle == null ? 0 : (long) throttle.getRate();
+    }
+
+    /**
+     * @return the number of waiting dump jobs
+     */
+    public int dumpQueueSize() {
+        final ArrayBlockingQueue<DumpJob<? extends Reference>> q = this.dumpQueue;
+        return q == null ? 0 : q.size();
+    }
+
+    /**
+     * @return the number of waiting merge jobs
+     */
+    public int mergeQueueSize() {
+        final ArrayBlockingQueue<MergeJob> q = this.mergeQueue;
+        return q == null ? 0 : q.size();
+    }
+
+    /**
+     * @return the number of merge jobs that are running right now
+     */
+    public int activeMerges() {
+        return this.activeMerges.get();
+    }
+
+    /**
+     * @return the number of bytes in input files of waiting and running merge jobs
+     */
+    public long mergeBacklog() {
+        return this.mergeBacklog.get();
+    }
+
+    /**
+     * @return the number of bytes from input files that had been merged since start-up
+     */
+    public long mergedBytes() {
+        return this.mergedBytes.get();
+    }
+
+    /**
+     * @return the number of finished merge jobs since start-up
+     */
+    public long mergeCount() {
+        return this.mergeCount.get();
+    }
+
+    /**
+     * @return the average merge speed of a single merge job in bytes per second
+     */
+    public long mergeBytesPerSecond() {
+        final long time = this.mergeTime.get();
+        return time == 0 ? 0 : this.mergedBytes.get() * 1000L / time;
     }
 
     public void terminate() {
@@ -107,8 +231,11 @@ public class IODispatcher extends Thread {
         }
     }
 
+    /**
+     * @return the number of dump and merge jobs that are waiting for execution
+     */
     protected synchronized int queueLength() {
-        return (this.controlQueue == null || !isAlive()) ? 0 : this.controlQueue.availablePermits();
+        return (this.controlQueue == null || !isAlive()) ? 0 : dumpQueueSize() + mergeQueueSize();
     }
 
     protected synchronized void merge(final File f1, final File f2, final ReferenceFactory<? extends Reference> factory, final ArrayStack array, final File newFile) {
@@ -118,12 +245,13 @@ public class IODispatcher extends Thread {
             } else {
                 log.warn("emergency merge of files " + f1.getName() + ", " + f2.getName() + " to " + newFile.getName());
             }
-            array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize));
+            array.mergeMount(f1, f2, factory, newFile, (int) Math.min(MemoryControl.available() / 3, this.writeBufferSize), this.mergeThrottle);
         } else {
             final MergeJob job = new MergeJob(f1, f2, factory, array, newFile);
             if (isAlive()) {
                 try {
                     this.mergeQueue.add(job);
+                    this.mergeBacklog.addAndGet(job.size);
                     if (f2 == null) {
                         log.info("appended rewrite job of file " + f1.getName() + " to " + newFile.getName());
                     } else {
@@ -131,6 +259,8 @@ public class IODispatcher extends Thread {
                     }
                 } catch (final IllegalStateException e) { // because mergeQueue size is 1, IllegalStateException could happen frequently (serial execution ensured in run() )
                 	log.warn("Could not add merge job to queue: " + e.getMessage());
+                	// the files had been unmounted for the merge; put them back to keep them visible
+                	job.remount();
                 } finally {
                     this.controlQueue.release();
                 }
@@ -147,7 +277,6 @@ public class IODispatcher extends Thread {
 
     @Override
     public void run() {
-        MergeJob mergeJob;
         DumpJob<? extends Reference> dumpJob;
         try {
             loop: while (true) try {
@@ -171,23 +300,39 @@ public class IODispatcher extends Thread {
                     continue loop;
                 }
 
-                // otherwise do a merge operation
+                // otherwise start a merge operation
                 if (!this.mergeQueue.isEmpty() && !MemoryControl.shortStatus()) {
-                	File f = null, f1 = null, f2 = null;
+                    // if all merge slots are busy, a finishing merge job releases a control permit and we come back here
+                    if (this.activeMerges.get() >= this.mergeConcurrency) continue loop;
                     try {
-                        mergeJob = this.mergeQueue.take();
-                        f = mergeJob.newFile;
-                        f1 = mergeJob.f1;
-                        f2 = mergeJob.f2;
-                        mergeJob.merge();
+                        final MergeJob mergeJob = this.mergeQueue.take();
+                        this.activeMerges.incrementAndGet();
+                        this.mergeExecutor.execute(new Runnable() {
+                            @Override
+                            public void run() {
+                                final long start = System.currentTimeMillis();
+                                try {
+                                    mergeJob.merge();
+                                    IODispatcher.this.mergedBytes.addAndGet(mergeJob.size);
+                                    IODispatcher.this.mergeTime.addAndGet(System.currentTimeMillis() - start);
+                                    IODispatcher.this.mergeCount.incrementAndGet();
+                                } catch (final Throwable e) {
+                                    if (mergeJob.f2 == null) {
+                                        log.severe("merge job had errors (2), dump to " + mergeJob.newFile + " failed. Input file is " + mergeJob.f1, e);
+                                    } else {
+                                        log.severe("merge job had errors (2), dump to " + mergeJob.newFile + " failed. Input files are " + mergeJob.f1 + " and " + mergeJob.f2, e);
+                                    }
+                                } finally {
+                                    IODispatcher.this.mergeBacklog.addAndGet(-mergeJob.size);
+                                    IODispatcher.this.activeMerges.decrementAndGet();
+                                    // wake up the dispatcher to start the next waiting merge job
+                                    final Semaphore control = IODispatcher.this.controlQueue;
+                                    if (control != null) control.release();
+                                }
+                            }
+                        });
                     } catch (final InterruptedException e) {
                         log.severe("main run job was interrupted (2)", e);
-                    } catch (final Throwable e) {
-                        if (f2 == null) {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input file is " + f1, e);
-                        } else {
-                            log.severe("main run job had errors (2), dump to " + f + " failed. Input files are " + f1 + " and " + f2, e);
-                        }
                     } finally {
                         // make sure (on error) loop never hangs on controlQueue.acquire() (after/on error)
                         if (this.terminate) this.controlQueue.release();
@@ -209,6 +354,15 @@ public class IODispatcher extends Thread {
             log.severe("main run job failed (4)", e);
         } finally {
             log.info("terminating run job");
+            // wait for running merges; they need the control queue to signal their termination
+            this.mergeExecutor.shutdown();
+            try {
+                while (!this.mergeExecutor.awaitTermination(10, TimeUnit.SECONDS)) {
+                    log.info("waiting for " + this.activeMerges.get() + " running merge jobs");
+                }
+            } catch (final InterruptedException e) {
+                log.warn("interrupted while waiting for running merge jobs");
+            }
             this.controlQueue = null;
             this.dumpQueue = null;
             this.mergeQueue = null;
@@ -240,6 +394,7 @@ public class IODispatcher extends Thread {
         private final File f1, f2, newFile;
         private final ArrayStack array;
         private final ReferenceFactory<? extends Reference> factory;
+        private final long size;
 
         private MergeJob(
                 final File f1,
@@ -252,6 +407,16 @@ public class IODispatcher extends Thread {
             this.factory = factory;
             this.newFile = newFile;
             this.array = array;
+            this.size = f1.length() + (f2 == null ? 0 : f2.length());
+        }
+
+        private void remount() {
+            try {
+                this.array.mountBLOB(this.f1, false);
+                if (this.f2 != null) this.array.mountBLOB(this.f2, false);
+            } catch (final IOException e) {
+                log.warn("could not re-mount files of rejected merge job: " + e.getMessage());
+            }
         }
 
         private File merge() {
@@ -263,7 +428,7 @@ public class IODispatcher extends Thread {
         	    log.warn("merge of file (2) " + this.f2.getName() + " failed: file does not exists");
         		return null;
         	}
-            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize));
+            return this.array.mergeMount(this.f1, this.f2, this.factory, this.newFile, (int) Math.min(MemoryControl.available() / 3, IODispatcher.this.writeBufferSize), IODispatcher.this.mergeThrottle);
         }
     }
 
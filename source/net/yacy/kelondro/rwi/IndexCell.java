@@ -91,12 +91,13 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
             final long targetFileSize,
             final long maxFileSize,
             final int writeBufferSize,
+            final boolean mappedIndex,
             final IODispatcher merger
             ) throws IOException {
         super(factory);
 
         this.merger = merger;
-        this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize);
+        this.array = new ReferenceContainerArray<ReferenceType>(cellPath, prefix, factory, termOrder, termSize, mappedIndex);
         this.ram = new ReferenceContainerCache<ReferenceType>(factory, termOrder, termSize);
         this.countCache = new ComparableARC<byte[], Integer>(1000, termOrder);
         this.maxRamEntries = maxRamEntries;
@@ -187,8 +188,15 @@ public final class IndexCell<ReferenceType extends Reference> extends AbstractBu
         if (this.array.entries() < 2) return false;
         boolean donesomething = false;
 
-        // first try to merge small files that match
+        // first merge files of the same size class; these merges use disjoint files and can run concurrently
         int term = 10;
+        while (term-- > 0 && this.merger.queueLength() < this.merger.getMergeConcurrency()) {
+            if (!this.array.shrinkTieredFiles(this.merger, maxFileSize)) break;
+            donesomething = true;
+        }
+
+        // then try to merge small files that match
+        term = 10;
         while (term-- > 0 && (this.merger.queueLength() < 3 || this.array.entries() >= 50)) {
             if (!this.array.shrinkBestSmallFiles(this.merger, targetFileSize)) break;
             donesomething = true;
@@ -406,40 +406,48 @@ public class ReferenceContainer<ReferenceType extends Reference> extends RowSet
         final int high = ((i1.size() > i2.size()) ? i1.size() : i2.size());
         final int low  = ((i1.size() > i2.size()) ? i2.size() : i1.size());
         final int stepsEnum = 10 * (high + low - 1);
-        final int stepsTest = 12 * log2(high) * low;
+        final int stepsTest = 24 * log2(high / low) * low; // a galloping search step costs twice the logarithm of the distance to the previous hit
 
         // start most efficient method
         if (stepsEnum > stepsTest) {
-            if (i1.size() < i2.size()) return joinConstructiveByTest(factory, i1, i2, maxDistance);
-            return joinConstructiveByTest(factory, i2, i1, maxDistance);
+            if (i1.size() < i2.size()) return joinConstructiveByGalloping(factory, i1, i2, maxDistance);
+            return joinConstructiveByGalloping(factory, i2, i1, maxDistance);
         }
         return joinConstructiveByEnumeration(factory, i1, i2, maxDistance);
     }
 
-    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> joinConstructiveByTest(
+    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> joinConstructiveByGalloping(
             final ReferenceFactory<ReferenceType> factory,
             final ReferenceContainer<ReferenceType> small,
             final ReferenceContainer<ReferenceType> large,
             final int maxDistance) throws SpaceExceededException {
-        //System.out.println("DEBUG: JOIN METHOD BY TEST, maxdistance = " + maxDistance);
+        //System.out.println("DEBUG: JOIN METHOD BY GALLOPING, maxdistance = " + maxDistance);
         assert small.rowdef.equals(large.rowdef) : "small = " + small.rowdef.toString() + "; large = " + large.rowdef.toString();
         final int keylength = small.rowdef.width(0);
         assert (keylength == large.rowdef.width(0));
         final ReferenceContainer<ReferenceType> conj = new ReferenceContainer<ReferenceType>(factory, null, 0); // start with empty search result
-        final Iterator<ReferenceType> se = small.entries();
-        ReferenceType ie1;
-        ReferenceType ie2;
-        while (se.hasNext()) {
-            ie1 = se.next();
-            ie2 = large.getReference(ie1.urlhash());
-            if ((ie1 != null) && (ie2 != null)) {
-                assert (ie1.urlhash().length == keylength) : "ie0.urlHash() = " + ASCII.String(ie1.urlhash());
-                assert (ie2.urlhash().length == keylength) : "ie1.urlHash() = " + ASCII.String(ie2.urlhash());
+        if (!((small.rowdef.getOrdering().signature().equals(large.rowdef.getOrdering().signature())))) return conj; // ordering must be equal
+        synchronized (large) {
+            // the entries of small are enumerated in ascending order, so each one is searched in large starting at the previous position
+            large.sort();
+            final Iterator<ReferenceType> se = small.entries();
+            ReferenceType ie1;
+            ReferenceType ie2;
+            int p = 0;
+            while (se.hasNext() && p < large.size()) {
+                ie1 = se.next();
+                assert (ie1.urlhash().length == keylength) : "ie1.urlHash() = " + ASCII.String(ie1.urlhash());
+                p = large.gallopingPosition(ie1.urlhash(), p);
+                if (p < 0) {
+                    p = -p - 1;
+                    continue;
+                }
                 // this is a hit. Calculate word distance:
-
-                ie1 = factory.produceFast(ie2, true);
+                ie2 = factory.produceSlow(large.get(p, false));
+                ie1 = factory.produceFast(ie1, true);
                 ie1.join(ie2);
                 if (ie1.distance() <= maxDistance) conj.add(ie1);
+                p++;
             }
         }
         return conj;
@@ -64,6 +64,19 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
     		final ReferenceFactory<ReferenceType> factory,
     		final ByteOrder termOrder,
     		final int termSize) throws IOException {
+        this(heapLocation, prefix, factory, termOrder, termSize, false);
+    }
+
+    /**
+     * @param mappedIndex if true, the key indexes of the BLOB files are memory-mapped instead of loaded into RAM
+     */
+    public ReferenceContainerArray(
+    		final File heapLocation,
+    		final String prefix,
+    		final ReferenceFactory<ReferenceType> factory,
+    		final ByteOrder termOrder,
+    		final int termSize,
+    		final boolean mappedIndex) throws IOException {
         this.factory = factory;
         this.array = new ArrayStack(
             heapLocation,
@@ -72,7 +85,8 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
             termSize,
             0,
             true,
-            true);
+            true,
+            mappedIndex);
     }
 
     public synchronized void close() {
@@ -399,6 +413,14 @@ public final class ReferenceContainerArray<ReferenceType extends Reference> {
         return this.array.entries();
     }
 
+    public boolean shrinkTieredFiles(final IODispatcher merger, final long maxFileSize) {
+        final File[] ff = this.array.unmountTier(4.0f, 1024L * 1024L, maxFileSize);
+        if (ff == null) return false;
+        ConcurrentLog.info("RICELL-shrink0", "unmountTier(4.0, " + maxFileSize + ")");
+        merger.merge(ff[0], ff[1], this.factory, this.array, newContainerBLOBFile());
+        return true;
+    }
+
     public boolean shrinkBestSmallFiles(final IODispatcher merger, final long targetFileSize) {
         final File[] ff = this.array.unmountBestMatch(2.0f, targetFileSize);
         if (ff == null) return false;
@@ -27,10 +27,15 @@
 
 package net.yacy.kelondro.rwi;
 
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.TreeMap;
 
 import net.yacy.cora.order.Base64Order;
 import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
 
 
@@ -46,27 +51,106 @@ public class TermSearch <ReferenceType extends Reference> {
             final HandleSet urlselection,
             ReferenceFactory<ReferenceType> termFactory,
             int maxDistance) throws SpaceExceededException {
+        this(base, queryHashes, excludeHashes, urlselection, termFactory, maxDistance, true);
+    }
+
+    /**
+     * Join the references of the query terms and exclude the references of the excluded terms.
+     * The joins are planned with the number of references of each term, which is known before
+     * the containers are loaded: the containers are joined in ascending size, and an exclusion is
+     * applied as soon as its container is not larger than the next container to join. When the
+     * result is empty, the remaining containers are not loaded.
+     * @param completeInclusion when true, the containers of all query terms are loaded even if
+     *        the result is already empty, because the {@link #inclusion()} map is needed complete
+     */
+    public TermSearch(
+            Index<ReferenceType> base,
+            final HandleSet queryHashes,
+            final HandleSet excludeHashes,
+            final HandleSet urlselection,
+            ReferenceFactory<ReferenceType> termFactory,
+            int maxDistance,
+            final boolean completeInclusion) throws SpaceExceededException {
+
+        this.inclusionContainers = new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder);
+        final List<Term> includeTerms = plan(base, queryHashes);
+        final List<Term> excludeTerms = queryHashes.isEmpty() ? new ArrayList<Term>(0) : plan(base, excludeHashes);
+
+        ReferenceContainer<ReferenceType> result = null;
+        boolean owned = false; // true when the result is not a container of the index and can be changed
+        boolean complete = true;
+        int e = 0;
+        for (final Term term: includeTerms) {
+            if (result != null && result.isEmpty() && !completeInclusion) break;
+
+            // exclude early what would otherwise be joined with larger containers
+            while (result != null && !result.isEmpty() && e < excludeTerms.size() && excludeTerms.get(e).count <= term.count) {
+                if (!owned) {
+                    result = result.topLevelClone();
+                    owned = true;
+                }
+                result = exclude(base, termFactory, result, excludeTerms.get(e++).hash, urlselection);
+            }
 
-        this.inclusionContainers =
-            (queryHashes.isEmpty()) ?
-                new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
-                base.searchConjunction(queryHashes, urlselection);
+            final ReferenceContainer<ReferenceType> container = load(base, term.hash, urlselection);
+            // since this is a conjunction we return an empty entity if any word is not known
+            if (container == null || container.isEmpty()) {
+                complete = false;
+                break;
+            }
+            this.inclusionContainers.put(term.hash, container);
+            if (result == null) {
+                result = container;
+            } else if (!result.isEmpty()) {
+                result = ReferenceContainer.joinConstructive(termFactory, result, container, maxDistance);
+                if (result == null) result = ReferenceContainer.emptyContainer(termFactory, null, 0);
+                owned = true;
+            }
+        }
 
-        if (!this.inclusionContainers.isEmpty() &&
-            (this.inclusionContainers.size() < queryHashes.size()))
+        if (!complete || result == null) {
             this.inclusionContainers = new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder); // prevent that only a subset is returned
+            result = ReferenceContainer.emptyContainer(termFactory, null, 0);
+        }
 
-        TreeMap<byte[], ReferenceContainer<ReferenceType>> exclusionContainers =
-            (this.inclusionContainers.isEmpty()) ?
-                new TreeMap<byte[], ReferenceContainer<ReferenceType>>(Base64Order.enhancedCoder) :
-                base.searchConjunction(excludeHashes, urlselection);
-
-        // join and exclude the result
-        this.joinResult = ReferenceContainer.joinExcludeContainers(
-                termFactory,
-                this.inclusionContainers.values(),
-                exclusionContainers.values(),
-                maxDistance);
+        // exclude the larger containers
+        while (!result.isEmpty() && e < excludeTerms.size()) {
+            if (!owned) {
+                result = result.topLevelClone();
+                owned = true;
+            }
+            result = exclude(base, termFactory, result, excludeTerms.get(e++).hash, urlselection);
+        }
+        this.joinResult = result;
+    }
+
+    /**
+     * @return the terms of the hashes in ascending order of their reference count
+     */
+    private static <ReferenceType extends Reference> List<Term> plan(final Index<ReferenceType> base, final HandleSet hashes) {
+        final List<Term> terms = new ArrayList<Term>(hashes.size());
+        for (final byte[] hash: hashes) terms.add(new Term(hash, base.count(hash)));
+        Collections.sort(terms);
+        return terms;
+    }
+
+    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> load(final Index<ReferenceType> base, final byte[] hash, final HandleSet urlselection) {
+        try {
+            return base.get(hash, urlselection);
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+            return null;
+        }
+    }
+
+    private static <ReferenceType extends Reference> ReferenceContainer<ReferenceType> exclude(
+            final Index<ReferenceType> base,
+            final ReferenceFactory<ReferenceType> termFactory,
+            final ReferenceContainer<ReferenceType> pivot,
+            final byte[] hash,
+            final HandleSet urlselection) {
+        final ReferenceContainer<ReferenceType> result = ReferenceContainer.excludeDestructive(termFactory, pivot, load(base, hash, urlselection));
+        return result == null ? ReferenceContainer.emptyContainer(termFactory, null) : result;
     }
 
     public ReferenceContainer<ReferenceType> joined() {
@@ -77,4 +161,22 @@ public class TermSearch <ReferenceType extends Reference> {
         return this.inclusionContainers;
     }
 
+    /**
+     * A term hash with the number of its references
+     */
+    private static final class Term implements Comparable<Term> {
+        private final byte[] hash;
+        private final int count;
+
+        private Term(final byte[] hash, final int count) {
+            this.hash = hash;
+            this.count = count;
+        }
+
+        @Override
+        public int compareTo(final Term other) {
+            return this.count < other.count ? -1 : (this.count == other.count ? 0 : 1);
+        }
+    }
+
 }
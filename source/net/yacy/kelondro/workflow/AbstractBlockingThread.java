@@ -54,6 +54,7 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
         long timestamp;
         long memstamp0, memstamp1;
         long busyCycles = 0;
+        boolean retired = false;
 
         while (this.running) {
             try {
@@ -95,6 +96,12 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
                     }
                 }
                 this.busytime += System.currentTimeMillis() - timestamp;
+                // terminate if the number of executors has been reduced
+                if (this.manager.retireExecutor()) {
+                    retired = true;
+                    this.running = false;
+                    break;
+                }
             } catch (final InterruptedException e) {
                 // don't ignore this: shut down
                 this.running = false;
@@ -108,7 +115,7 @@ public abstract class AbstractBlockingThread<J extends WorkflowJob> extends Abst
                 busyCycles++;
             }
         }
-        this.manager.decExecutors();
+        if (!retired) this.manager.decExecutors();
         this.close();
         logSystem("thread '" + this.getName() + "' terminated.");
     }
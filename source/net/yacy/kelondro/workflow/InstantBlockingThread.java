@@ -24,6 +24,7 @@
 
 package net.yacy.kelondro.workflow;
 
+import java.util.List;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import net.yacy.cora.util.ConcurrentLog;
@@ -63,24 +64,40 @@ public class InstantBlockingThread<J extends WorkflowJob> extends AbstractBlocki
         } else if (next == WorkflowJob.poisonPill || next.status == WorkflowJob.STATUS_POISON) {
             out = next;
         } else {
-            final long t = System.currentTimeMillis();
-
-            instantThreadCounter.incrementAndGet();
-            //System.out.println("started job " + this.handle + ": " + this.getName());
-
-            try {
-                out = this.task.process(next);
-            } catch (final Throwable e) {
-                ConcurrentLog.severe(BLOCKINGTHREAD, "Internal Error in serverInstantThread.job: " + e.getMessage());
-                ConcurrentLog.severe(BLOCKINGTHREAD, "shutting down thread '" + getName() + "'");
-                ConcurrentLog.logException(e);
-                ConcurrentLog.logException(e.getCause());
-                ConcurrentLog.severe(BLOCKINGTHREAD, "Runtime Error in serverInstantThread.job, thread '" + getName() + "': " + e.getMessage());
+            out = process(next);
+
+            // process the entries which are waiting in the queue in the same cycle
+            final int batchSize = getManager().getBatchSize();
+            if (batchSize > 1) {
+                final List<J> batch = getManager().poll(batchSize - 1);
+                for (final J in: batch) {
+                    final J o = process(in);
+                    if (o != null) getManager().passOn(o);
+                }
             }
-            instantThreadCounter.decrementAndGet();
-            getManager().increaseJobTime(System.currentTimeMillis() - t);
         }
         return out;
     }
 
+    private J process(final J next) {
+        J out = null;
+        final long t = System.currentTimeMillis();
+
+        instantThreadCounter.incrementAndGet();
+        //System.out.println("started job " + this.handle + ": " + this.getName());
+
+        try {
+            out = this.task.process(next);
+        } catch (final Throwable e) {
+            ConcurrentLog.severe(BLOCKINGTHREAD, "Internal Error in serverInstantThread.job: " + e.getMessage());
+            ConcurrentLog.severe(BLOCKINGTHREAD, "shutting down thread '" + getName() + "'");
+            ConcurrentLog.logException(e);
+            ConcurrentLog.logException(e.getCause());
+            ConcurrentLog.severe(BLOCKINGTHREAD, "Runtime Error in serverInstantThread.job, thread '" + getName() + "': " + e.getMessage());
+        }
+        instantThreadCounter.decrementAndGet();
+        getManager().increaseJobTime(System.currentTimeMillis() - t);
+        return out;
+    }
+
 }
\ No newline at end of file
@@ -26,12 +26,14 @@ package net.yacy.kelondro.workflow;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.kelondro.util.NamePrefixThreadFactory;
@@ -46,12 +48,13 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     private AtomicInteger executorRunning;
     private BlockingQueue<J> input;
     private final WorkflowProcessor<J> output;
-    private final int maxpoolsize;
+    private volatile int maxpoolsize;
+    private volatile int batchSize;
     private final WorkflowTask<J> task;
     private final String processName, description;
     private final String[] childs;
-    private long blockTime, execTime, passOnTime;
-    private long execCount;
+    private final AtomicLong blockTime, execTime, passOnTime;
+    private final AtomicLong execCount;
 
     public WorkflowProcessor(
             final String name, final String description, final String[] childnames,
@@ -64,6 +67,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.task = task;
         this.childs = childnames;
         this.maxpoolsize = maxpoolsize;
+        this.batchSize = 1;
         this.input = new LinkedBlockingQueue<J>(Math.max(maxpoolsize + 1, inputQueueSize));
         this.output = output;
         this.executor = Executors.newCachedThreadPool(new NamePrefixThreadFactory(name));
@@ -75,10 +79,10 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         }
         */
         // init statistics
-        this.blockTime = 0;
-        this.execTime = 0;
-        this.passOnTime = 0;
-        this.execCount = 0;
+        this.blockTime = new AtomicLong(0);
+        this.execTime = new AtomicLong(0);
+        this.passOnTime = new AtomicLong(0);
+        this.execCount = new AtomicLong(0);
 
         // store this object for easy monitoring
         processMonitor.add(this);
@@ -105,7 +109,30 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     public int getMaxConcurrency() {
         return this.maxpoolsize;
     }
-    
+
+    /**
+     * change the maximum number of executors. If the number is decreased, the surplus executors
+     * terminate after their current job.
+     * @param maxpoolsize
+     */
+    public void setMaxConcurrency(final int maxpoolsize) {
+        this.maxpoolsize = Math.max(1, maxpoolsize);
+        if (this.input != null) startExecutors();
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    /**
+     * set the number of entries that an executor processes in one cycle. Entries which are waiting in the
+     * input queue are then processed together with the entry that the executor has taken.
+     * @param batchSize
+     */
+    public void setBatchSize(final int batchSize) {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
     public int getExecutors() {
         return this.executorRunning.get();
     }
@@ -117,6 +144,19 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         this.executorRunning.decrementAndGet();
     }
 
+    /**
+     * check if the calling executor must terminate because more executors are running than allowed.
+     * The retireExecutor method may only be called within the AbstractBlockingThread while loop!!
+     * @return true if the executor must terminate; the number of executors is already decreased in that case
+     */
+    public boolean retireExecutor() {
+        int running;
+        while ((running = this.executorRunning.get()) > this.maxpoolsize) {
+            if (this.executorRunning.compareAndSet(running, running - 1)) return true;
+        }
+        return false;
+    }
+
     public J take() throws InterruptedException {
         // read from the input queue
         if (this.input == null) {
@@ -124,10 +164,41 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         }
         final long t = System.currentTimeMillis();
         final J j = this.input.take();
-        this.blockTime += System.currentTimeMillis() - t;
+        this.blockTime.addAndGet(System.currentTimeMillis() - t);
         return j;
     }
 
+    /**
+     * read entries from the input queue without blocking
+     * @param maxcount the maximum number of entries
+     * @return a list of at most maxcount entries, which is empty if the queue is empty
+     */
+    public List<J> poll(final int maxcount) {
+        final List<J> entries = new ArrayList<J>(Math.max(0, maxcount));
+        final BlockingQueue<J> queue = this.input;
+        if (queue == null) return entries;
+        J j;
+        while (entries.size() < maxcount && (j = queue.poll()) != null) {
+            if (j == WorkflowJob.poisonPill || j.status == WorkflowJob.STATUS_POISON) {
+                // leave the poison pill for the executor loop; it must not get lost if
+                // the queue was filled meanwhile, so wait for a free place
+                boolean interrupted = false;
+                while (true) {
+                    try {
+                        queue.put(j);
+                        break;
+                    } catch (final InterruptedException e) {
+                        interrupted = true;
+                    }
+                }
+                if (interrupted) Thread.currentThread().interrupt();
+                break;
+            }
+            entries.add(j);
+        }
+        return entries;
+    }
+
     public void passOn(final J next) {
         // don't mix this method up with enQueue()!
         // this method enqueues into the _next_ queue, not this queue!
@@ -136,7 +207,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         }
         final long t = System.currentTimeMillis();
         this.output.enQueue(next);
-        this.passOnTime += System.currentTimeMillis() - t;
+        this.passOnTime.addAndGet(System.currentTimeMillis() - t);
     }
 
     public void clear() {
@@ -183,12 +254,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         while (this.input != null) {
             try {
                 this.input.put(in);
-                if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) synchronized (executor) {
-                    if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) {
-                        this.executorRunning.incrementAndGet();
-                        this.executor.submit(new InstantBlockingThread<J>(this));
-                    }
-                }
+                startExecutors();
                 break;
             } catch (final Throwable e) {
                 try {Thread.sleep(10);} catch (final InterruptedException ee) {}
@@ -196,6 +262,20 @@ public class WorkflowProcessor<J extends WorkflowJob> {
         }
     }
 
+    /**
+     * ensure that enough job executors are running
+     */
+    private void startExecutors() {
+        final ExecutorService executor = this.executor;
+        if (executor == null || executor.isShutdown()) return;
+        while (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) synchronized (executor) {
+            if (this.input.size() > this.executorRunning.get() && this.executorRunning.get() < this.maxpoolsize) {
+                this.executorRunning.incrementAndGet();
+                executor.submit(new InstantBlockingThread<J>(this));
+            }
+        }
+    }
+
     @SuppressWarnings("unchecked")
     public void shutdown() {
         if (this.executor == null) {
@@ -254,8 +334,8 @@ public class WorkflowProcessor<J extends WorkflowJob> {
     }
 
     protected void increaseJobTime(final long time) {
-        this.execTime += time;
-        this.execCount++;
+        this.execTime.addAndGet(time);
+        this.execCount.incrementAndGet();
     }
 
     public String getName() {
@@ -280,7 +360,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
      * @return
      */
     public long getBlockTime() {
-        return this.blockTime;
+        return this.blockTime.get();
     }
 
     /**
@@ -288,10 +368,10 @@ public class WorkflowProcessor<J extends WorkflowJob> {
      * @return
      */
     public long getExecTime() {
-        return this.execTime;
+        return this.execTime.get();
     }
     public long getExecCount() {
-        return this.execCount;
+        return this.execCount.get();
     }
 
     /**
@@ -300,7 +380,7 @@ public class WorkflowProcessor<J extends WorkflowJob> {
      * @return
      */
     public long getPassOnTime() {
-        return this.passOnTime;
+        return this.passOnTime.get();
     }
 
 }
@@ -0,0 +1,196 @@
+/**
+ *  WorkflowTuner
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.kelondro.workflow;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import net.yacy.cora.util.ConcurrentLog;
+
+/**
+ * Adapts the number of executors of a chain of workflow processors to the load.
+ * The tune method must be called periodically; it computes the statistics of each processor
+ * since the last call and moves executors to the processor which is the bottleneck:
+ * <ul>
+ * <li>a processor with a filled input queue and executors which are busy all the time gets one more executor</li>
+ * <li>a processor whose executors are mostly blocked writing to the queue of the next processor gets one executor less,
+ * because the next processor is the bottleneck</li>
+ * <li>a processor with an empty input queue and idle executors gets one executor less</li>
+ * </ul>
+ * The number of executors of each processor stays within the bounds given for that processor.
+ */
+public class WorkflowTuner {
+
+    private final static ConcurrentLog log = new ConcurrentLog("WorkflowTuner");
+
+    private final List<Stage> stages;
+    private volatile boolean enabled;
+
+    public WorkflowTuner(final boolean enabled) {
+        this.stages = new CopyOnWriteArrayList<Stage>();
+        this.enabled = enabled;
+    }
+
+    /**
+     * add a processor to the set of tuned processors
+     * @param processor
+     * @param minConcurrency the minimum number of executors
+     * @param maxConcurrency the maximum number of executors
+     * @return the stage object holding the statistics of the processor
+     */
+    public Stage add(final WorkflowProcessor<?> processor, final int minConcurrency, final int maxConcurrency) {
+        final Stage stage = new Stage(processor);
+        stage.setBounds(minConcurrency, maxConcurrency);
+        this.stages.add(stage);
+        return stage;
+    }
+
+    public List<Stage> stages() {
+        return this.stages;
+    }
+
+    public boolean isEnabled() {
+        return this.enabled;
+    }
+
+    /**
+     * switch the adaption of the number of executors on or off; the statistics are computed in both cases
+     * @param enabled
+     */
+    public void setEnabled(final boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    /**
+     * compute the statistics of all processors since the last call and adapt the number of executors
+     * @return true if the number of executors of any processor was changed
+     */
+    public synchronized boolean tune() {
+        boolean changed = false;
+        for (final Stage stage: this.stages) {
+            if (stage.tune(this.enabled)) changed = true;
+        }
+        return changed;
+    }
+
+    public static class Stage {
+
+        private final WorkflowProcessor<?> processor;
+        private volatile int minConcurrency, maxConcurrency;
+        private long lastTime, lastBlockTime, lastExecTime, lastPassOnTime, lastExecCount;
+        private volatile double throughput, busy;
+
+        private Stage(final WorkflowProcessor<?> processor) {
+            this.processor = processor;
+            this.lastTime = System.currentTimeMillis();
+            this.lastBlockTime = processor.getBlockTime();
+            this.lastExecTime = processor.getExecTime();
+            this.lastPassOnTime = processor.getPassOnTime();
+            this.lastExecCount = processor.getExecCount();
+            this.throughput = 0.0d;
+            this.busy = 0.0d;
+        }
+
+        public WorkflowProcessor<?> getProcessor() {
+            return this.processor;
+        }
+
+        public int getMinConcurrency() {
+            return this.minConcurrency;
+        }
+
+        public int getMaxConcurrency() {
+            return this.maxConcurrency;
+        }
+
+        /**
+         * set the bounds of the number of executors; the current number of executors is moved into the bounds
+         * @param minConcurrency
+         * @param maxConcurrency
+         */
+        public void setBounds(final int minConcurrency, final int maxConcurrency) {
+            this.minConcurrency = Math.max(1, minConcurrency);
+            this.maxConcurrency = Math.max(this.minConcurrency, maxConcurrency);
+            final int concurrency = this.processor.getMaxConcurrency();
+            if (concurrency < this.minConcurrency) this.processor.setMaxConcurrency(this.minConcurrency);
+            if (concurrency > this.maxConcurrency) this.processor.setMaxConcurrency(this.maxConcurrency);
+        }
+
+        /**
+         * @return the number of processed entries per second during the last tuning period
+         */
+        public double getThroughput() {
+            return this.throughput;
+        }
+
+        /**
+         * @return the share of time that the executors spent on processing entries during the last tuning period, a value between 0 and 1
+         */
+        public double getBusy() {
+            return this.busy;
+        }
+
+        private boolean tune(final boolean adapt) {
+            final long time = System.currentTimeMillis();
+            final long blockTime = this.processor.getBlockTime();
+            final long execTime = this.processor.getExecTime();
+            final long passOnTime = this.processor.getPassOnTime();
+            final long execCount = this.processor.getExecCount();
+            final long dTime = time - this.lastTime;
+            final long dBlock = blockTime - this.lastBlockTime;
+            final long dExec = execTime - this.lastExecTime;
+            final long dPassOn = passOnTime - this.lastPassOnTime;
+            final long dCount = execCount - this.lastExecCount;
+            if (dTime <= 0) return false;
+            this.lastTime = time;
+            this.lastBlockTime = blockTime;
+            this.lastExecTime = execTime;
+            this.lastPassOnTime = passOnTime;
+            this.lastExecCount = execCount;
+
+            final long total = dBlock + dExec + dPassOn;
+            this.throughput = 1000.0d * dCount / dTime;
+            this.busy = total == 0 ? 0.0d : ((double) dExec) / total;
+            if (!adapt) return false;
+
+            final double blocked = total == 0 ? 0.0d : ((double) dPassOn) / total;
+            final double fill = ((double) this.processor.getQueueSize()) / Math.max(1, this.processor.getMaxQueueSize());
+            final int concurrency = this.processor.getMaxConcurrency();
+            int next = concurrency;
+            if (blocked > 0.5d) {
+                // the next processor is the bottleneck, more executors here would only wait longer
+                next = concurrency - 1;
+            } else if (fill > 0.5d && this.busy > 0.8d && this.processor.getExecutors() >= concurrency) {
+                next = concurrency + 1;
+            } else if (fill < 0.1d && (this.busy < 0.3d || dCount == 0)) {
+                // executors waiting for input count their block time only when they get the next entry,
+                // therefore a period without any processed entry is also idle
+                next = concurrency - 1;
+            }
+            next = Math.max(this.minConcurrency, Math.min(this.maxConcurrency, next));
+            if (next == concurrency) return false;
+            this.processor.setMaxConcurrency(next);
+            if (log.isFine()) log.fine("changed executors of " + this.processor.getName() + " from " + concurrency + " to " + next +
+                    "; queue fill = " + (int) (fill * 100) + "%, busy = " + (int) (this.busy * 100) + "%, blocked = " + (int) (blocked * 100) + "%");
+            return true;
+        }
+    }
+}
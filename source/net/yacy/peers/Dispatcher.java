@@ -27,7 +27,11 @@ package net.yacy.peers;
 
 import java.io.IOException;
 import java.lang.reflect.Array;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
@@ -35,13 +39,12 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.order.Base64Order;
-import net.yacy.cora.storage.HandleSet;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.Memory;
 import net.yacy.cora.util.SpaceExceededException;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
-import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.rwi.IndexCell;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
 import net.yacy.kelondro.workflow.WorkflowTask;
@@ -54,41 +57,51 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
 
     /**
      * the dispatcher class accumulates indexContainerCache objects before they are transfered
-     * to other peers. A dispatcher holds several of such caches to enhance the transmission process.
+     * to other peers. The dispatcher holds an outbound queue for each target peer.
      * Before a RWI is sent, the following process is applied:
-     * - (1) a number of RWIs are selected and accumulated.
+     * - (1) a number of RWIs are selected in one pass over the index.
      *       When they are selected, they are removed from the index
-     * - (2) the RWI collection is split into a number of partitions according to the vertical DHT.
-     * - (3) the split RWIs are enqueued as Entry object in the write buffer of the dispatcher
+     * - (2) each selected RWI is split into a number of partitions according to the vertical DHT.
+     * - (3) the split RWIs are enqueued to the queues of their target peers
      * - (4) more entries may be enqueued to the dispatcher and
-     *       entries with the same primary target are accumulated to the same buffer entry.
-     * - (5) the largest entries are selected from the dispatcher write buffer and enqueued to the 'next' array
-     *       which means that they are ready for transmission
-     * - (6) the dispatcher takes some of the entries in the next queue and initiates
-     *       transmission to other peers concurrently. As much transmissions are initiated concurrently
-     *       as the redundancy factor.
-     * - (7) a transmission thread executes the entry transmission.
-     * - (8) the transmission thread initiates another transmission in case that it fails
-     * - (9) when the wanted number of redundant peers have received the entries,
-     *       they are removed from the next queue
+     *       entries with the same target are accumulated to the same chunk until the chunk is full;
+     *       a full chunk waits in the queue of the target and a new chunk is filled
+     * - (5) the full chunks and then the largest chunks which are filled are selected from the queues
+     *       and enqueued to the transmission process
+     * - (6) the transmission process sends chunks concurrently, also several chunks to the same target,
+     *       as long as the number of bytes in flight is below a limit
+     * - (7) in case that a transmission fails, the chunk and all other chunks of the same target
+     *       are put back into the backend index structure
      * Concurrency in this process:
-     * 1-3 follow directly and should be synchronous because of the database operation that are used
-     * 4   is a repeated action of 1-3 and should be done in a busyThread
-     * 5&6 is a repeated action as (4), but must be executed multiple times of (4) in a busyThread,
+     * 1-4 follow directly and should be synchronous because of the database operation that are used;
+     *     this is a repeated action which should be done in a busyThread
+     * 5   is a repeated action as (4), but must be executed multiple times of (4) in a busyThread,
      *     which idle is shorter than the idle time of (4)
-     * 7&8 this is done concurrently with other transmission threads for the same entry and other entries
-     *     for example, if the redundancy factor is 3 and 2 entries are in the 'next' queue, then 6
-     *     transmissions are running concurrently
-     * 9   concurrency ends for the transmission, if the wanted number of redundant peers received the entry,
-     *     or the target queue runs out of entries. If the target queue is empty, the transmission is
-     *     called failed. In case of a fail, the RWI fragment is put back into the backend index structure
+     * 6&7 is done concurrently by the threads of the transmission process
      */
 
+    /** the approximate number of bytes of a reference in a transmission: the term hash and the property form of the reference */
+    private static final int REFERENCE_BYTES = 128;
+
     /**
-     * A transmission buffer is a write buffer for the rwi objects (indices) that wait to be transmitted.
-     * The String-key is the primary target as contained in the chunk entry.
+     * The outbound queues, one for each target peer. The String-key is the hash of the target peer.
      */
-    private Map<String, Transmission.Chunk> transmissionBuffer;
+    private Map<String, Target> targets;
+
+    /** the number of bytes of the chunks which are transmitted right now */
+    private long inFlightBytes;
+
+    /** the number of bytes which each chunk in flight added to {@link #inFlightBytes} when it was dequeued */
+    private final Map<Transmission.Chunk, Long> inFlightChunks;
+
+    /** the maximum number of bytes of the chunks which are transmitted at the same time */
+    private final long maxInFlightBytes;
+
+    /** the maximum number of chunks which are transmitted to the same target peer at the same time */
+    private final int maxConcurrentChunks;
+
+    /** the maximum number of full chunks which wait for their transmission to the same target peer */
+    private final int maxQueuedChunks;
 
     /** the segment backend is used to store the remaining indexContainers in case that the object is closed */
     private final Segment segment;
@@ -108,19 +121,95 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
     /** The Switchboard instance holding the server environment */
     private final Switchboard env;
 
+    /**
+     * The outbound queue of a target peer: the chunk which is filled with references, the full chunks
+     * which wait for their transmission and the transmission statistics of the peer.
+     */
+    public static class Target {
+
+        private final Seed seed;
+        private Transmission.Chunk open = null;
+        private final Deque<Transmission.Chunk> ready = new ArrayDeque<Transmission.Chunk>();
+        private int inFlight = 0;
+        private long chunks = 0, references = 0, bytes = 0, time = 0, failures = 0, lastFailure = 0;
+
+        private Target(final Seed seed) {
+            this.seed = seed;
+        }
+
+        public Seed getSeed() {
+            return this.seed;
+        }
+
+        /**
+         * @return the number of chunks which wait for their transmission, including the chunk which is filled
+         */
+        public synchronized int queuedChunks() {
+            return this.ready.size() + (this.open == null ? 0 : 1);
+        }
+
+        /**
+         * @return the number of chunks which are transmitted right now
+         */
+        public synchronized int inFlight() {
+            return this.inFlight;
+        }
+
+        /**
+         * @return the number of successfully transmitted chunks
+         */
+        public synchronized long transmittedChunks() {
+            return this.chunks;
+        }
+
+        /**
+         * @return the number of successfully transmitted references
+         */
+        public synchronized long transmittedReferences() {
+            return this.references;
+        }
+
+        /**
+         * @return the estimated number of bytes per second of the successful transmissions
+         */
+        public synchronized long bytesPerSecond() {
+            return this.time == 0 ? 0 : this.bytes * 1000 / this.time;
+        }
+
+        /**
+         * @return the number of failed transmissions
+         */
+        public synchronized long failures() {
+            return this.failures;
+        }
+
+        /**
+         * @return the time of the last failed transmission or 0 if no transmission failed
+         */
+        public synchronized long lastFailure() {
+            return this.lastFailure;
+        }
+    }
+
     public Dispatcher(
             final Switchboard env,
             final boolean gzipBody,
             final int timeout
             ) {
         this.env = env;
-        this.transmissionBuffer = new ConcurrentHashMap<String, Transmission.Chunk>();
+        this.targets = new ConcurrentHashMap<String, Target>();
+        this.inFlightBytes = 0;
+        this.inFlightChunks = new IdentityHashMap<Transmission.Chunk, Long>();
+        this.maxInFlightBytes = Math.max(1, env.getConfigLong(SwitchboardConstants.INDEX_DIST_MAX_INFLIGHT_KBYTES, SwitchboardConstants.INDEX_DIST_MAX_INFLIGHT_KBYTES_DEFAULT)) * 1024L;
+        this.maxConcurrentChunks = Math.max(1, env.getConfigInt(SwitchboardConstants.INDEX_DIST_MAX_CONCURRENT_CHUNKS, SwitchboardConstants.INDEX_DIST_MAX_CONCURRENT_CHUNKS_DEFAULT));
+        this.maxQueuedChunks = Math.max(1, env.getConfigInt(SwitchboardConstants.INDEX_DIST_MAX_QUEUED_CHUNKS, SwitchboardConstants.INDEX_DIST_MAX_QUEUED_CHUNKS_DEFAULT));
         this.segment = env.index;
         this.seeds = env.peers;
         this.log = new ConcurrentLog("INDEX-TRANSFER-DISPATCHER");
 		this.transmission = new Transmission(env, this.log, gzipBody, timeout);
 
-        final int concurrentSender = Math.min(8, WorkflowProcessor.availableCPU);
+        // the transmissions wait for the network, not for the CPU
+        final int concurrentSender = Math.max(4, Math.min(16, 2 * WorkflowProcessor.availableCPU));
         this.indexingTransmissionProcessor = new WorkflowProcessor<Transmission.Chunk>(
                 "transferDocumentIndex",
                 "This is the RWI transmission process",
@@ -128,8 +217,39 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
                 this, concurrentSender * 3, null, concurrentSender);
     }
 
+    /**
+     * Create a dispatcher without a transmission process, the chunks are only queued and dequeued
+     * @param transmission the factory of the chunks
+     * @param maxInFlightBytes the maximum number of bytes of the chunks which are transmitted at the same time
+     * @param maxConcurrentChunks the maximum number of chunks which are transmitted to the same target peer at the same time
+     * @param maxQueuedChunks the maximum number of full chunks which wait for their transmission to the same target peer
+     */
+    Dispatcher(final Transmission transmission, final long maxInFlightBytes, final int maxConcurrentChunks, final int maxQueuedChunks) {
+        this.env = null;
+        this.targets = new ConcurrentHashMap<String, Target>();
+        this.inFlightBytes = 0;
+        this.inFlightChunks = new IdentityHashMap<Transmission.Chunk, Long>();
+        this.maxInFlightBytes = maxInFlightBytes;
+        this.maxConcurrentChunks = maxConcurrentChunks;
+        this.maxQueuedChunks = maxQueuedChunks;
+        this.segment = null;
+        this.seeds = null;
+        this.log = new ConcurrentLog("INDEX-TRANSFER-DISPATCHER");
+        this.transmission = transmission;
+        this.indexingTransmissionProcessor = null;
+    }
+
+    /**
+     * @return the number of target peers with chunks which wait for their transmission
+     */
     public int bufferSize() {
-    	return (this.transmissionBuffer == null) ? 0 : this.transmissionBuffer.size();
+        final Map<String, Target> t = this.targets;
+        if (t == null) return 0;
+        int size = 0;
+        synchronized (t) {
+            for (final Target target: t.values()) if (target.queuedChunks() > 0) size++;
+        }
+        return size;
     }
 
     public int transmissionSize() {
@@ -137,91 +257,29 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
     }
 
     /**
-     * PROCESS(1)
-     * Select a number of index containers from the RWI index.
-     * Selected containers are removed from the RWIs (not from Solr, only the DHT references).
-     * @param hash
-     * @param limitHash
-     * @param maxContainerCount
-     * @param maxtime
-     * @return
-     * @throws IOException
+     * @return the outbound queues and statistics of all peers which were targets of this dispatcher
      */
-    private ArrayList<ReferenceContainer<WordReference>> selectContainers(
-            final byte[] hash,
-            final byte[] limitHash,
-            final int maxContainerCount,
-            final int maxReferenceCount,
-            final int maxtime) throws IOException {
-
-    	// prefer file
-        final ArrayList<ReferenceContainer<WordReference>> containers = selectContainers(hash, limitHash, maxContainerCount, maxReferenceCount, maxtime, false);
-
-        // if ram does not provide any result, take from file
-        //if (containers.isEmpty()) containers = selectContainers(hash, limitHash, maxContainerCount, maxtime, false);
-        return containers;
+    public Collection<Target> targets() {
+        final Map<String, Target> t = this.targets;
+        if (t == null) return new ArrayList<Target>(0);
+        synchronized (t) {
+            return new ArrayList<Target>(t.values());
+        }
     }
 
-    private ArrayList<ReferenceContainer<WordReference>> selectContainers(
-            final byte[] hash,
-            final byte[] limitHash,
-            final int maxContainerCount,
-            final int maxReferenceCount,
-            final int maxtime,
-            final boolean ram) throws IOException {
-
-        final ArrayList<ReferenceContainer<WordReference>> containers = new ArrayList<ReferenceContainer<WordReference>>(maxContainerCount);
-
-        final Iterator<ReferenceContainer<WordReference>> indexContainerIterator = this.segment.termIndex() == null ? new ArrayList<ReferenceContainer<WordReference>>().iterator() : this.segment.termIndex().referenceContainerIterator(hash, true, true, ram); // very important that rotation is true here
-        ReferenceContainer<WordReference> container;
-        int refcount = 0;
-
-        // first select the container
-        final long timeout = maxtime == Integer.MAX_VALUE ? Long.MAX_VALUE : (maxtime < 0) ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
-        while (
-                (containers.size() < maxContainerCount) &&
-                (refcount < maxReferenceCount) &&
-                (indexContainerIterator.hasNext()) &&
-                (System.currentTimeMillis() < timeout) &&
-                ((container = indexContainerIterator.next()) != null) &&
-                ((containers.isEmpty()) ||
-                 (Base64Order.enhancedCoder.compare(container.getTermHash(), limitHash) < 0))
-
-        ) {
-            if (container.isEmpty()) continue;
-            if (Word.isPrivate(container.getTermHash())) continue; // exclude private containers
-            refcount += container.size();
-            containers.add(container);
-        }
-        // then remove the container from the backend
-        final ArrayList<ReferenceContainer<WordReference>> rc;
-        if (ram) {
-            // selection was only from ram, so we have to carefully remove only the selected entries
-            final HandleSet urlHashes = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, 0);
-            Iterator<WordReference> it;
-            for (final ReferenceContainer<WordReference> c: containers) {
-                urlHashes.clear();
-                it = c.entries();
-                while (it.hasNext()) try { urlHashes.put(it.next().urlhash()); } catch (final SpaceExceededException e) { ConcurrentLog.logException(e); }
-                if (this.log.isFine()) this.log.fine("selected " + urlHashes.size() + " urls for word '" + ASCII.String(c.getTermHash()) + "'");
-                if (this.segment.termIndex() != null && !urlHashes.isEmpty()) this.segment.termIndex().remove(c.getTermHash(), urlHashes);
-            }
-            rc = containers;
-        } else {
-            // selection was from whole index, so we can just delete the whole container
-            // but to avoid race conditions return the results from the deletes
-            rc = new ArrayList<ReferenceContainer<WordReference>>(containers.size());
-            for (final ReferenceContainer<WordReference> c: containers) {
-                container = this.segment.termIndex() == null ? null : this.segment.termIndex().remove(c.getTermHash()); // be aware this might be null!
-                if (container != null && !container.isEmpty()) {
-                    if (this.log.isFine()) this.log.fine("selected " + container.size() + " urls for word '" + ASCII.String(c.getTermHash()) + "'");
-                    rc.add(container);
-                }
-            }
+    /**
+     * @return the number of bytes of the chunks which are transmitted right now
+     */
+    public long inFlightBytes() {
+        final Map<String, Target> t = this.targets;
+        if (t == null) return 0;
+        synchronized (t) {
+            return this.inFlightBytes;
         }
+    }
 
-        // finished. The caller must take care of the containers and must put them back if not needed
-        return rc;
+    private static long bytes(final Transmission.Chunk chunk) {
+        return (long) chunk.referencesSize() * REFERENCE_BYTES;
     }
 
     /**
@@ -258,7 +316,7 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
 
     /**
      * PROCESS(3) and PROCESS(4)
-     * put containers into the write buffer. This needs information about the network,
+     * put containers into the queues of their targets. This needs information about the network,
      * because the possible targets are assigned here as well. The indexRepositoryReference
      * is the database of references which is needed here because this is the place where
      * finally is checked if the reference exists. If the entry does not exist for specific
@@ -267,90 +325,235 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
      * then no additional IO is necessary.
      * @param containers a reference containers array, one container for each vertical position
      */
-    private void enqueueContainersToBuffer(final byte[] wordhash, final ReferenceContainer<WordReference>[] containers) {
+    private void enqueueContainersToBuffer(final byte[] wordhash, final ReferenceContainer<WordReference>[] containers) throws SpaceExceededException {
         assert (containers.length == this.seeds.scheme.verticalPartitions());
-        if (this.transmissionBuffer == null) return;
-        List<Seed>[] targets = DHTSelection.selectDHTDistributionTargets(this.seeds, wordhash, 3, this.seeds.redundancy());
-        assert (targets.length == this.seeds.scheme.verticalPartitions());
-        assert (targets.length == containers.length);
-        for (int vertical = 0; vertical < containers.length; vertical++) {
-            ReferenceContainer<WordReference> verticalContainer = containers[vertical];
-            if (verticalContainer.isEmpty()) continue;
-            
-            // extend the transmissionBuffer with entries for each redundant position
-            for (Seed target: targets[vertical]) {
-                Transmission.Chunk entry = this.transmissionBuffer.get(target.hash); // if this is not null, the entry is extended here
-                if (entry == null) entry =  transmission.newChunk(target); else {
-                    log.info("extending chunk for peer " + entry.dhtTarget().hash + " containing " + entry.containersSize() + " references with " + verticalContainer.size() + " more entries");
+        final Map<String, Target> t = this.targets;
+        if (t == null) return;
+        List<Seed>[] targetSeeds = DHTSelection.selectDHTDistributionTargets(this.seeds, wordhash, 3, this.seeds.redundancy());
+        assert (targetSeeds.length == this.seeds.scheme.verticalPartitions());
+        assert (targetSeeds.length == containers.length);
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>(0);
+        try {
+            for (int vertical = 0; vertical < containers.length; vertical++) {
+                ReferenceContainer<WordReference> verticalContainer = containers[vertical];
+                if (verticalContainer.isEmpty()) continue;
+
+                // extend the queues of the targets for each redundant position
+                for (Seed seed: targetSeeds[vertical]) {
+                    enqueue(seed, verticalContainer, overflow);
                 }
-                try {
-                    entry.add(verticalContainer);
-                } catch (SpaceExceededException e) {
-                    ConcurrentLog.logException(e);
+            }
+        } finally {
+            // the chunks which did not fit into the queues of their targets go back to the index
+            for (final Transmission.Chunk chunk: overflow) chunk.restore();
+        }
+    }
+
+    /**
+     * Add a container to the chunk of a target peer which is filled, the target is created if it does not exist.
+     * @param seed the target peer
+     * @param container the references for the target
+     * @param overflow receives the full chunks which do not fit into the queue of the target
+     */
+    void enqueue(final Seed seed, final ReferenceContainer<WordReference> container, final List<Transmission.Chunk> overflow) throws SpaceExceededException {
+        final Map<String, Target> t = this.targets;
+        if (t == null) return;
+        synchronized (t) {
+            Target target = t.get(seed.hash);
+            if (target == null) {
+                target = new Target(seed);
+                t.put(seed.hash, target);
+            }
+            enqueue(target, container, overflow);
+        }
+    }
+
+    /**
+     * Add a container to the chunk of a target which is filled. If the container does not fit into
+     * the chunk, the chunk is filled up and waits for its transmission, the remaining references are
+     * put into a new chunk. If the queue of the target is full, the full chunk is not queued but
+     * added to the overflow list; it must be put back to the index by the caller.
+     */
+    private void enqueue(final Target target, final ReferenceContainer<WordReference> container, final List<Transmission.Chunk> overflow) throws SpaceExceededException {
+        ReferenceContainer<WordReference> rest = container;
+        synchronized (target) {
+            while (!rest.isEmpty()) {
+                if (target.open == null) target.open = this.transmission.newChunk(target.seed);
+                final int remaining = Transmission.maxRWIsCount - target.open.referencesSize();
+                if (remaining <= 0) {
+                    ready(target, overflow);
+                    continue;
                 }
-                this.transmissionBuffer.put(target.hash, entry);
+                if (rest.size() <= remaining) {
+                    target.open.add(rest);
+                    break;
+                }
+                final ReferenceContainer<WordReference> part = new ReferenceContainer<WordReference>(Segment.wordReferenceFactory, rest.getTermHash(), remaining);
+                final ReferenceContainer<WordReference> next = new ReferenceContainer<WordReference>(Segment.wordReferenceFactory, rest.getTermHash(), rest.size() - remaining);
+                final Iterator<WordReference> i = rest.entries();
+                while (i.hasNext()) {
+                    final WordReference reference = i.next();
+                    if (part.size() < remaining) part.add(reference); else next.add(reference);
+                }
+                if (!part.isEmpty()) target.open.add(part);
+                ready(target, overflow);
+                rest = next;
+            }
+            if (target.open != null && target.open.referencesSize() >= Transmission.maxRWIsCount) {
+                ready(target, overflow);
             }
         }
     }
-    
+
+    /**
+     * Move the chunk of a target which is filled into its queue, or into the overflow list if the queue is full.
+     * The caller must hold the lock of the target.
+     */
+    private void ready(final Target target, final List<Transmission.Chunk> overflow) {
+        if (target.ready.size() < this.maxQueuedChunks) {
+            target.ready.add(target.open);
+        } else {
+            overflow.add(target.open);
+        }
+        target.open = null;
+    }
+
+    /**
+     * PROCESS(1) to PROCESS(4)
+     * Select a number of index containers from the RWI index and enqueue them to the queues of their targets.
+     * The containers are selected in one pass over the index: each container is removed from the index
+     * (not from Solr, only the DHT references), split and enqueued before the next container is selected.
+     * @param hash the first term hash
+     * @param limitHash the term hash where the selection ends
+     * @param maxContainerCount the maximum number of selected containers
+     * @param maxReferenceCount the number of references after which the selection ends
+     * @param maxtime the maximum time of the selection in milliseconds
+     * @return true if containers were enqueued
+     */
     public boolean selectContainersEnqueueToBuffer(
             final byte[] hash,
             final byte[] limitHash,
             final int maxContainerCount,
             final int maxReferenceCount,
             final int maxtime) {
-        if (this.transmissionBuffer == null) return false;
+        if (this.targets == null) return false;
+        final IndexCell<WordReference> termIndex = this.segment.termIndex();
+        if (termIndex == null) return false;
 
-    	List<ReferenceContainer<WordReference>> selectedContainerCache;
-        try {
-            selectedContainerCache = selectContainers(hash, limitHash, maxContainerCount, maxReferenceCount, maxtime);
-        } catch (final IOException e) {
-            this.log.severe("selectContainersEnqueueToBuffer: selectedContainer failed", e);
-            return false;
-        }
-        this.log.info("selectContainersEnqueueToBuffer: selectedContainerCache was filled with " + selectedContainerCache.size() + " entries");
+        final Iterator<ReferenceContainer<WordReference>> indexContainerIterator = termIndex.referenceContainerIterator(hash, true, true, false); // very important that rotation is true here
+        ReferenceContainer<WordReference> container;
+        int containerCount = 0;
+        int refcount = 0;
+        final long timeout = maxtime == Integer.MAX_VALUE ? Long.MAX_VALUE : (maxtime < 0) ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
+        while (
+                (containerCount < maxContainerCount) &&
+                (refcount < maxReferenceCount) &&
+                (indexContainerIterator.hasNext()) &&
+                (System.currentTimeMillis() < timeout) &&
+                ((container = indexContainerIterator.next()) != null) &&
+                ((containerCount == 0) ||
+                 (Base64Order.enhancedCoder.compare(container.getTermHash(), limitHash) < 0))
 
-        if (selectedContainerCache == null || selectedContainerCache.isEmpty()) {
-        	this.log.info("selectContainersEnqueueToBuffer: selectedContainerCache is empty, cannot do anything here.");
-        	return false;
-        }
+        ) {
+            if (container.isEmpty()) continue;
+            if (Word.isPrivate(container.getTermHash())) continue; // exclude private containers
 
-        // check all entries and split them to the partitions
-        try {
-            for (final ReferenceContainer<WordReference> container: selectedContainerCache) {
-                // init the new partitions
-                final ReferenceContainer<WordReference>[] partitionBuffer = splitContainer(container);
-                enqueueContainersToBuffer(container.getTermHash(), partitionBuffer);
+            // remove the whole container from the backend, but to avoid race conditions use the result from the delete
+            try {
+                container = termIndex.remove(container.getTermHash()); // be aware this might be null!
+            } catch (final IOException e) {
+                this.log.severe("selectContainersEnqueueToBuffer: removal of container failed", e);
+                break;
+            }
+            if (container == null || container.isEmpty()) continue;
+            if (this.log.isFine()) this.log.fine("selected " + container.size() + " urls for word '" + ASCII.String(container.getTermHash()) + "'");
+            refcount += container.size();
+            containerCount++;
+
+            // split the container and enqueue the partitions
+            try {
+                enqueueContainersToBuffer(container.getTermHash(), splitContainer(container));
+            } catch (final SpaceExceededException e) {
+                this.log.severe("selectContainersEnqueueToBuffer: splitContainer failed because of too low RAM", e);
+                try {
+                    this.segment.storeRWI(container);
+                } catch (final Exception e1) {
+                    ConcurrentLog.logException(e1);
+                }
+                break;
             }
-        } catch (final SpaceExceededException e) {
-            this.log.severe("splitContainer: splitContainers failed because of too low RAM", e);
-            return false;
         }
-    	this.log.info("selectContainersEnqueueToBuffer: splitContainerCache enqueued to the write buffer array which has now " + this.transmissionBuffer.size() + " entries.");
+
+        if (containerCount == 0) {
+        	this.log.info("selectContainersEnqueueToBuffer: no container selected, cannot do anything here.");
+        	return false;
+        }
+    	this.log.info("selectContainersEnqueueToBuffer: " + containerCount + " containers with " + refcount + " references enqueued for " + bufferSize() + " target peers.");
         return true;
     }
 
     /**
      * PROCESS(5)
-     * take the largest container from the write buffer and put it into the 'next' array,
-     * where it waits to be processed.
-     * This method returns true if a container was dequeued, false if not
+     * take a chunk from the queues and enqueue it to the transmission process: a full chunk
+     * or, if there is none, the largest chunk which is filled. Targets which receive the maximum
+     * number of concurrent chunks are skipped, and no chunk is taken if the number of bytes in flight
+     * would exceed the limit.
+     * This method returns true if a chunk was dequeued, false if not
      */
     public boolean dequeueContainer() {
-    	if (this.transmissionBuffer == null) return false;
-        if (this.indexingTransmissionProcessor.getQueueSize() > this.indexingTransmissionProcessor.getMaxConcurrency()) return false;
-        String maxtarget = null;
-        int maxsize = -1;
-        for (final Map.Entry<String, Transmission.Chunk> chunk: this.transmissionBuffer.entrySet()) {
-            if (chunk.getValue().containersSize() > maxsize) {
-                maxsize = chunk.getValue().containersSize();
-                maxtarget = chunk.getKey();
+        final WorkflowProcessor<Transmission.Chunk> processor = this.indexingTransmissionProcessor;
+        if (processor == null) return false;
+        if (processor.getQueueSize() > processor.getMaxConcurrency()) return false;
+        final Transmission.Chunk chunk = dequeue();
+        if (chunk == null) return false;
+        processor.enQueue(chunk);
+        return true;
+    }
+
+    /**
+     * Take the next chunk for the transmission from the queues and count it as in flight.
+     * The chunk must be handed to {@link #transmitted(Transmission.Chunk, boolean, long)} when its transmission is finished.
+     * @return the chunk or null if no chunk can be transmitted now
+     */
+    Transmission.Chunk dequeue() {
+        final Map<String, Target> t = this.targets;
+        if (t == null) return null;
+        final Transmission.Chunk chunk;
+        synchronized (t) {
+            Target best = null;
+            boolean bestReady = false;
+            int bestSize = 0;
+            for (final Target target: t.values()) {
+                synchronized (target) {
+                    if (target.inFlight >= this.maxConcurrentChunks) continue;
+                    final boolean ready = !target.ready.isEmpty();
+                    final int size = ready ? target.ready.peek().referencesSize() : target.open == null ? 0 : target.open.referencesSize();
+                    if (size == 0 || (bestReady && !ready)) continue;
+                    if ((ready && !bestReady) || size > bestSize) {
+                        best = target;
+                        bestReady = ready;
+                        bestSize = size;
+                    }
+                }
             }
+            if (best == null) return null;
+            if (this.inFlightBytes > 0 && this.inFlightBytes + (long) bestSize * REFERENCE_BYTES > this.maxInFlightBytes) return null;
+            final long bytes;
+            synchronized (best) {
+                if (bestReady) {
+                    chunk = best.ready.poll();
+                } else {
+                    chunk = best.open;
+                    best.open = null;
+                }
+                best.inFlight++;
+                // the open chunk may have grown since its size was checked; count the size it has when it leaves the queue
+                bytes = bytes(chunk);
+            }
+            this.inFlightBytes += bytes;
+            this.inFlightChunks.put(chunk, bytes);
         }
-        if (maxsize < 0) return false;
-        final Transmission.Chunk chunk = this.transmissionBuffer.remove(maxtarget);
-        this.indexingTransmissionProcessor.enQueue(chunk);
-        return true;
+        return chunk;
     }
     
     @Override
@@ -370,29 +573,82 @@ public class Dispatcher implements WorkflowTask<Transmission.Chunk> {
         while (Memory.load() > this.env.getConfigFloat(SwitchboardConstants.INDEX_DIST_LOADPREREQ, 2.0f)) try {Thread.sleep(10000);} catch (InterruptedException e) {break;}
         
         // do the transmission
-        final boolean success = chunk.transmit();
-        if (success) return chunk;
+        final long start = System.currentTimeMillis();
+        boolean success = false;
+        try {
+            success = chunk.transmit();
+        } finally {
+            // the chunk is not in flight any more, even if the transmission failed with an exception
+            final List<Transmission.Chunk> dropped = transmitted(chunk, success, System.currentTimeMillis() - start);
+            if (!success) {
+                this.log.info("STORE: Chunk " + chunk.dhtTarget().getName() + " does not respond or accept the dht index, putting back index to backend");
+                chunk.restore();
+                for (final Transmission.Chunk c: dropped) c.restore();
+            }
+        }
+        return success ? chunk : null;
+    }
 
-        this.log.info("STORE: Chunk " + chunk.dhtTarget().getName() + " does not respond or accept the dht index, putting back index to backend");
-        chunk.restore();
-        return null;
+    /**
+     * Count a finished transmission in the statistics of the target. If the transmission failed,
+     * the chunks which wait for the same target are removed from its queue.
+     * @return the removed chunks which must be put back to the index
+     */
+    List<Transmission.Chunk> transmitted(final Transmission.Chunk chunk, final boolean success, final long time) {
+        final List<Transmission.Chunk> dropped = new ArrayList<Transmission.Chunk>(0);
+        final Map<String, Target> t = this.targets;
+        if (t == null) return dropped;
+        synchronized (t) {
+            final Long inFlight = this.inFlightChunks.remove(chunk);
+            final long bytes = inFlight == null ? bytes(chunk) : inFlight.longValue();
+            if (inFlight != null) this.inFlightBytes -= bytes;
+            final Target target = t.get(chunk.dhtTarget().hash);
+            if (target == null) return dropped;
+            synchronized (target) {
+                target.inFlight--;
+                if (success) {
+                    target.chunks++;
+                    target.references += chunk.referencesSize();
+                    target.bytes += bytes;
+                    target.time += time;
+                } else {
+                    target.failures++;
+                    target.lastFailure = System.currentTimeMillis();
+                    dropped.addAll(target.ready);
+                    target.ready.clear();
+                    if (target.open != null) dropped.add(target.open);
+                    target.open = null;
+                }
+            }
+        }
+        return dropped;
     }
 
     public void close() {
         // removes all entries from the dispatcher and puts them back to a RAMRI
         if (this.indexingTransmissionProcessor != null) this.indexingTransmissionProcessor.shutdown();
-        if (this.transmissionBuffer != null) {
-        	outerLoop: for (final Map.Entry<String, Transmission.Chunk> e : this.transmissionBuffer.entrySet()) {
-        		for (final ReferenceContainer<WordReference> i : e.getValue()) try {
-        		    this.segment.storeRWI(i);
-        		} catch (final Exception e1) {
-        		    ConcurrentLog.logException(e1);
-        		    break outerLoop;
-        		}
-        	}
-        	this.transmissionBuffer.clear();
+        final Map<String, Target> t = this.targets;
+        if (t != null) {
+            synchronized (t) {
+                outerLoop: for (final Target target : t.values()) {
+                    synchronized (target) {
+                        if (target.open != null) target.ready.add(target.open);
+                        target.open = null;
+                        for (final Transmission.Chunk chunk : target.ready) {
+                            for (final ReferenceContainer<WordReference> i : chunk) try {
+                                this.segment.storeRWI(i);
+                            } catch (final Exception e1) {
+                                ConcurrentLog.logException(e1);
+                                break outerLoop;
+                            }
+                        }
+                        target.ready.clear();
+                    }
+                }
+                t.clear();
+            }
         }
-        this.transmissionBuffer = null;
+        this.targets = null;
         if (this.indexingTransmissionProcessor != null) {
         	this.indexingTransmissionProcessor.clear();
         }
@@ -92,6 +92,7 @@ import net.yacy.cora.order.Digest;
 import net.yacy.cora.protocol.ClientIdentification;
 import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.sorting.ClusteredScoreMap;
 import net.yacy.cora.sorting.ReversibleScoreMap;
 import net.yacy.cora.storage.HandleSet;
@@ -159,7 +160,7 @@ public final class Protocol {
             final String path,
             final Map<String, ContentBody> parts,
             final int timeout) throws IOException {
-            final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent);
+            final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, TrafficClass.PEER);
             httpClient.setTimout(timeout);
             MultiProtocolURL targetURL = new MultiProtocolURL(targetBaseURL, path);
 			this.result = httpClient.POSTbytes(targetURL, Seed.b64Hash2hexHash(targetHash) + ".yacyh", parts, false,
@@ -207,7 +208,7 @@ public final class Protocol {
             // send request
             final long start = System.currentTimeMillis();
             // final byte[] content = HTTPConnector.getConnector(MultiProtocolURI.yacybotUserAgent).post(new MultiProtocolURI("http://" + address + "/yacy/hello.html"), 30000, yacySeed.b64Hash2hexHash(otherHash) + ".yacyh", parts);
-            final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 30000);
+            final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 30000, TrafficClass.PEER);
             content =
                 httpClient.POSTbytes(
                     new MultiProtocolURL(targetBaseURL, "/yacy/hello.html"),
@@ -433,7 +434,7 @@ public final class Protocol {
         parts.put("count", UTF8.StringBody(Integer.toString(maxCount)));
         parts.put("time", UTF8.StringBody(Long.toString(maxTime)));
         // final byte[] result = HTTPConnector.getConnector(MultiProtocolURI.yacybotUserAgent).post(new MultiProtocolURI("http://" + target.getClusterAddress() + "/yacy/urls.xml"), (int) maxTime, target.getHexHash() + ".yacyh", parts);
-        final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, (int) maxTime);
+        final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, (int) maxTime, TrafficClass.PEER);
         RSSReader reader = null;
         for (final String ip: target.getIPs()) {
         	MultiProtocolURL targetBaseURL = null;
@@ -962,7 +963,7 @@ public final class Protocol {
                 //resultMap = FileUtils.table(HTTPConnector.getConnector(MultiProtocolURI.crawlerUserAgent).post(new MultiProtocolURI("http://" + target.getClusterAddress() + "/yacy/search.html"), 60000, target.getHexHash() + ".yacyh", parts));
             }
 
-            final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 8000);
+            final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 8000, TrafficClass.PEER);
             byte[] a = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL + "/yacy/search.html"), hostname, parts, false, true);
             if (a != null && a.length > 200000) {
                 // there is something wrong. This is too large, maybe a hack on the other side?
@@ -1623,7 +1624,7 @@ public final class Protocol {
 				}
 				parts.put("lurlEntry", UTF8.StringBody(crypt.simpleEncode(lurlstr, salt)));
 				// send request
-				final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 10000);
+				final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 10000, TrafficClass.PEER);
 				MultiProtocolURL targetBaseURL = target.getPublicMultiprotocolURL(ip, preferHttps);
 				byte[] content;
 				try {
@@ -1844,7 +1845,7 @@ public final class Protocol {
                 parts.put("wordc", UTF8.StringBody(Integer.toString(indexes.size())));
                 parts.put("entryc", UTF8.StringBody(Integer.toString(indexcount)));
                 parts.put("indexes", UTF8.StringBody(entrypost.toString()));
-                final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
+                final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout, TrafficClass.PEER);
                 byte[] content = null;
                 try {
 					content = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL, "/yacy/transferRWI.html"),
@@ -1948,7 +1949,7 @@ public final class Protocol {
                 MultiProtocolURL targetBaseURL = targetSeed.getPublicMultiprotocolURL(ip, preferHttps);
                 
                 parts.put("urlc", UTF8.StringBody(Integer.toString(urlc)));
-                final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
+                final HTTPClient httpClient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout, TrafficClass.PEER);
                 byte[] content = null;
                 try {
 					content = httpClient.POSTbytes(new MultiProtocolURL(targetBaseURL, "/yacy/transferURL.html"),
@@ -1996,7 +1997,7 @@ public final class Protocol {
             try {
                 final Map<String, ContentBody> parts =
                     basicRequestParts(sb, targetSeed.hash, salt);
-                final HTTPClient httpclient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 15000);
+                final HTTPClient httpclient = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, 15000, TrafficClass.PEER);
                 MultiProtocolURL targetBaseURL = targetSeed.getPublicMultiprotocolURL(ip, preferHttps);
                 byte[] content;
                 try {
@@ -52,6 +52,7 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.cora.util.SpaceExceededException;
@@ -897,7 +898,7 @@ public final class SeedDB implements AlternativeDomainNames {
         reqHeader.put(HeaderFramework.CACHE_CONTROL, "no-cache, no-store"); // httpc uses HTTP/1.0 is this necessary?
         reqHeader.put(HeaderFramework.USER_AGENT, ClientIdentification.yacyInternetCrawlerAgent.userAgent);
 
-        final HTTPClient client = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent);
+        final HTTPClient client = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, TrafficClass.PEER);
         client.setHeader(reqHeader.entrySet());
         byte[] content = null;
         try {
@@ -1130,7 +1131,7 @@ public final class SeedDB implements AlternativeDomainNames {
                     final RequestHeader reqHeader = new RequestHeader();
                     reqHeader.put(HeaderFramework.PRAGMA, "no-cache");
                     reqHeader.put(HeaderFramework.CACHE_CONTROL, "no-cache, no-store");
-                    final HTTPClient client = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout);
+                    final HTTPClient client = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, timeout, TrafficClass.PEER);
                     client.setHeader(reqHeader.entrySet());
 
                     client.HEADResponse(url.toNormalform(false), false);
@@ -66,10 +66,20 @@ public class Transmission {
             final ConcurrentLog log,
             final boolean gzipBody4Transfer,
             final int timeout4Transfer) {
+        this(env, log, env.index, env.peers, gzipBody4Transfer, timeout4Transfer);
+    }
+
+    Transmission(
+            final Switchboard env,
+            final ConcurrentLog log,
+            final Segment segment,
+            final SeedDB seeds,
+            final boolean gzipBody4Transfer,
+            final int timeout4Transfer) {
     	this.env = env;
         this.log = log;
-        this.segment = env.index;
-        this.seeds = env.peers;
+        this.segment = segment;
+        this.seeds = seeds;
         this.gzipBody4Transfer = gzipBody4Transfer;
         this.timeout4Transfer = timeout4Transfer;
     }
@@ -147,8 +157,7 @@ public class Transmission {
          * @throws SpaceExceededException
          */
         public void add(final ReferenceContainer<WordReference> container) throws SpaceExceededException {
-            int remaining = maxRWIsCount;
-            for (final ReferenceContainer<WordReference> ic : this) remaining -= ic.size();
+            final int remaining = maxRWIsCount - referencesSize();
             if (remaining <= 0) {
                 // No space left in this chunk
                 try {
@@ -207,6 +216,15 @@ public class Transmission {
             return this.containers.size();
         }
 
+        /**
+         * @return the number of references in all containers of the chunk
+         */
+        public int referencesSize() {
+            int size = 0;
+            for (final ReferenceContainer<WordReference> ic : this) size += ic.size();
+            return size;
+        }
+
         public Seed dhtTarget() {
             return this.dhtTarget;
         }
@@ -0,0 +1,237 @@
+/**
+ *  HostLinkIndex
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.peers.graphics;
+
+import java.util.Arrays;
+
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * The inverted index of the links between hosts: for each target host the source hosts which link to it,
+ * with the number of links.
+ *
+ * The host hashes (6 base64 characters) are packed into the lower 36 bits of a long. The targets are the keys
+ * of an open addressing hash table, the sources of a target are packed together with the link count
+ * (16 bits, as in the structure entries) into one long each and are kept in an array per target.
+ * The index is changed link by link, so an update or a look-up costs O(degree) of the target.
+ *
+ * All methods are synchronized.
+ */
+final class HostLinkIndex {
+
+    /** the maximum number of links between two hosts, as in the serialized structure entries */
+    static final int MAX_COUNT = 0xFFFF;
+
+    private static final long FREE = -1L;
+
+    private long[] keys;      // the packed target host hashes, FREE for a free slot
+    private long[][] sources; // the packed sources and counts of each target
+    private int[] degrees;    // the number of sources of each target
+    private int targets;      // the number of used slots
+    private long links;       // the number of links
+
+    HostLinkIndex() {
+        clear();
+    }
+
+    /**
+     * @param hosthash a host hash of 6 base64 characters
+     * @return the host hash packed into a long, or -1 if it is not a valid host hash
+     */
+    static long pack(final String hosthash) {
+        if (hosthash == null || hosthash.length() != 6) return -1L;
+        long key = 0;
+        for (int i = 0; i < 6; i++) {
+            final char c = hosthash.charAt(i);
+            if (c >= 128) return -1L;
+            final byte b = Base64Order.enhancedCoder.decodeByte(c);
+            if (b < 0) return -1L;
+            key = (key << 6) | b;
+        }
+        return key;
+    }
+
+    /**
+     * @param key a host hash packed by {@link #pack(String)}
+     * @return the host hash
+     */
+    static String unpack(final long key) {
+        final char[] c = new char[6];
+        for (int i = 5; i >= 0; i--) c[5 - i] = Base64Order.enhancedCoder.encodeByte((byte) ((key >>> (6 * i)) & 63));
+        return new String(c);
+    }
+
+    /**
+     * @return the source host hash of a link packed by {@link #incoming(long)}
+     */
+    static long source(final long link) {
+        return link >>> 16;
+    }
+
+    /**
+     * @return the count of a link packed by {@link #incoming(long)}
+     */
+    static int count(final long link) {
+        return (int) (link & MAX_COUNT);
+    }
+
+    private static int hash(final long key) {
+        final long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private int slot(final long key) {
+        final int mask = this.keys.length - 1;
+        int i = hash(key) & mask;
+        while (this.keys[i] != FREE && this.keys[i] != key) i = (i + 1) & mask;
+        return i;
+    }
+
+    private void grow() {
+        final long[] oldKeys = this.keys;
+        final long[][] oldSources = this.sources;
+        final int[] oldDegrees = this.degrees;
+        // targets without sources are not copied
+        int used = 0;
+        for (int i = 0; i < oldKeys.length; i++) if (oldKeys[i] != FREE && oldDegrees[i] > 0) used++;
+        int capacity = 16;
+        while (capacity < used * 2) capacity <<= 1;
+        allocate(capacity);
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == FREE || oldDegrees[i] == 0) continue;
+            final int s = slot(oldKeys[i]);
+            this.keys[s] = oldKeys[i];
+            this.sources[s] = oldSources[i];
+            this.degrees[s] = oldDegrees[i];
+            this.targets++;
+        }
+    }
+
+    private void allocate(final int capacity) {
+        this.keys = new long[capacity];
+        Arrays.fill(this.keys, FREE);
+        this.sources = new long[capacity][];
+        this.degrees = new int[capacity];
+        this.targets = 0;
+    }
+
+    /**
+     * Set the number of links from a source to a target host
+     * @param target the packed target host hash
+     * @param source the packed source host hash
+     * @param count the number of links, at least 1; larger numbers than {@link #MAX_COUNT} are cut
+     */
+    synchronized void set(final long target, final long source, final int count) {
+        if (target < 0 || source < 0) return;
+        final long link = (source << 16) | Math.max(1, Math.min(MAX_COUNT, count));
+        int s = slot(target);
+        if (this.keys[s] == FREE) {
+            if ((this.targets + 1) * 4 > this.keys.length * 3) {
+                grow();
+                s = slot(target);
+            }
+            this.keys[s] = target;
+            this.sources[s] = new long[2];
+            this.degrees[s] = 0;
+            this.targets++;
+        }
+        long[] a = this.sources[s];
+        final int d = this.degrees[s];
+        for (int i = 0; i < d; i++) {
+            if ((a[i] >>> 16) == source) {
+                a[i] = link;
+                return;
+            }
+        }
+        if (d == a.length) {
+            a = Arrays.copyOf(a, d * 2);
+            this.sources[s] = a;
+        }
+        a[d] = link;
+        this.degrees[s] = d + 1;
+        this.links++;
+    }
+
+    /**
+     * Remove the links from a source to a target host
+     * @param target the packed target host hash
+     * @param source the packed source host hash
+     */
+    synchronized void remove(final long target, final long source) {
+        if (target < 0 || source < 0) return;
+        final int s = slot(target);
+        if (this.keys[s] == FREE) return;
+        final long[] a = this.sources[s];
+        final int d = this.degrees[s];
+        for (int i = 0; i < d; i++) {
+            if ((a[i] >>> 16) == source) {
+                a[i] = a[d - 1]; // the order of the sources is not relevant
+                this.degrees[s] = d - 1;
+                this.links--;
+                if (d - 1 < a.length / 4 && a.length > 2) this.sources[s] = Arrays.copyOf(a, Math.max(2, a.length / 2));
+                return;
+            }
+        }
+    }
+
+    /**
+     * @param target the packed target host hash
+     * @return the links to the target, each with the packed source host hash and the count, see {@link #source(long)} and {@link #count(long)}
+     */
+    synchronized long[] incoming(final long target) {
+        if (target < 0) return new long[0];
+        final int s = slot(target);
+        if (this.keys[s] == FREE) return new long[0];
+        return Arrays.copyOf(this.sources[s], this.degrees[s]);
+    }
+
+    /**
+     * @param target the packed target host hash
+     * @return the number of source hosts which link to the target
+     */
+    synchronized int degree(final long target) {
+        if (target < 0) return 0;
+        final int s = slot(target);
+        return this.keys[s] == FREE ? 0 : this.degrees[s];
+    }
+
+    /**
+     * @return the packed host hashes of all targets with at least one source
+     */
+    synchronized long[] targets() {
+        final long[] t = new long[this.targets];
+        int c = 0;
+        for (int i = 0; i < this.keys.length; i++) if (this.keys[i] != FREE && this.degrees[i] > 0) t[c++] = this.keys[i];
+        return Arrays.copyOf(t, c);
+    }
+
+    /**
+     * @return the number of links between hosts in the index
+     */
+    synchronized long links() {
+        return this.links;
+    }
+
+    synchronized void clear() {
+        allocate(16);
+        this.links = 0;
+    }
+}
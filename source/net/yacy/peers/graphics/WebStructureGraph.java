@@ -31,6 +31,7 @@ import java.io.File;
 import java.io.Serializable;
 import java.text.ParseException;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -41,6 +42,7 @@ import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.date.GenericFormatter;
 import net.yacy.cora.date.MicroDate;
@@ -98,6 +100,12 @@ public class WebStructureGraph {
      *  */
     private final TreeMap<String, byte[]> structure_new;
     
+    /** The inverted index of the references of both structures: for each target host the source hosts and their reference counts */
+    private final HostLinkIndex incoming;
+    
+    /** Counter of the changes of the inverted index, used to validate the export of the complete index */
+    private final AtomicLong incomingVersion;
+    
     /** Queue used to receive new entries to store */
     private final BlockingQueue<LearnObject> publicRefDNSResolvingQueue;
     
@@ -133,6 +141,8 @@ public class WebStructureGraph {
     public WebStructureGraph(final File structureFile) {
         this.structure_old = new TreeMap<String, byte[]>();
         this.structure_new = new TreeMap<String, byte[]>();
+        this.incoming = new HostLinkIndex();
+        this.incomingVersion = new AtomicLong(0);
         this.structureFile = structureFile;
         this.publicRefDNSResolvingQueue = new LinkedBlockingQueue<LearnObject>();
 
@@ -171,6 +181,11 @@ public class WebStructureGraph {
             }
         }
 
+        // the inverted index of the loaded references is built once, afterwards it is maintained with each change
+        for ( final Map.Entry<String, byte[]> entry : this.structure_old.entrySet() ) {
+            updateIncoming(entry.getKey().substring(0, 6), Collections.<String, Integer>emptyMap());
+        }
+
         this.publicRefDNSResolvingWorker = new PublicRefDNSResolvingProcess();
         this.publicRefDNSResolvingWorker.start();
     }
@@ -201,6 +216,8 @@ public class WebStructureGraph {
     public void clear() {
         this.structure_old.clear();
         this.structure_new.clear();
+        this.incoming.clear();
+        this.incomingVersion.incrementAndGet();
     }
     
     public void generateCitationReference(final DigestURL url, final Document document) {
@@ -436,22 +453,11 @@ public class WebStructureGraph {
         if ( hostname == null ) {
             return null;
         }
-        // collect the references
-        WebStructureGraph.StructureEntry sentry;
-        final HashMap<String, Integer> hosthashes = new HashMap<String, Integer>();
-        Iterator<WebStructureGraph.StructureEntry> i = new StructureIterator(false);
-        while ( i.hasNext() ) {
-            sentry = i.next();
-            if ( sentry.references.containsKey(hosthash) ) {
-                hosthashes.put(sentry.hosthash, sentry.references.get(hosthash));
-            }
-        }
-        i = new StructureIterator(true);
-        while ( i.hasNext() ) {
-            sentry = i.next();
-            if ( sentry.references.containsKey(hosthash) ) {
-                hosthashes.put(sentry.hosthash, sentry.references.get(hosthash));
-            }
+        // collect the references from the inverted index
+        final long[] links = this.incoming.incoming(HostLinkIndex.pack(hosthash));
+        final HashMap<String, Integer> hosthashes = new HashMap<String, Integer>(links.length * 2);
+        for ( final long link : links ) {
+            hosthashes.put(HostLinkIndex.unpack(HostLinkIndex.source(link)), HostLinkIndex.count(link));
         }
         // construct a new structureEntry Object
         return new StructureEntry(
@@ -565,76 +571,101 @@ public class WebStructureGraph {
     }
 
     public static final HostReferenceFactory hostReferenceFactory = new HostReferenceFactory();
-    private static ReferenceContainerCache<HostReference> hostReferenceIndexCache = null;
-    private static long hostReferenceIndexCacheTime = 0;
-    private static final long hostReferenceIndexCacheTTL = 1000 * 60 * 60 * 12; // 12 hours time to live for cache
-
-    public synchronized ReferenceContainerCache<HostReference> incomingReferences() {
-        // we return a cache if the cache is filled and not stale
-        if ( hostReferenceIndexCache != null
-            && hostReferenceIndexCacheTime + hostReferenceIndexCacheTTL > System.currentTimeMillis() ) {
-            return hostReferenceIndexCache;
-        }
-
-        // collect the references
-        final ReferenceContainerCache<HostReference> idx =
-            new ReferenceContainerCache<HostReference>(hostReferenceFactory, Base64Order.enhancedCoder, 6);
-
-        // we iterate over all structure entries.
-        // one structure entry has information that a specific host links to a list of other hosts
-        incomingReferencesEnrich(idx, new StructureIterator(false), 3000);
-        incomingReferencesEnrich(idx, new StructureIterator(true), 3000);
+    
+    /** the last export of the inverted index, valid as long as the index has not been changed */
+    private ReferenceContainerCache<HostReference> incomingExport = null;
+    private long incomingExportVersion = -1;
+    private final Object incomingExportLock = new Object();
 
-        // fill the cache again and set fill time
-        hostReferenceIndexCache = idx;
-        hostReferenceIndexCacheTime = System.currentTimeMillis();
-        //incomingReferencesTest(hostReferenceIndexCache);
-        return hostReferenceIndexCache;
-    }
+    /**
+     * Export the complete inverted index of the references between hosts.
+     * The export is created from the incrementally maintained index and re-used until the index is changed;
+     * the look-up of the references of single hosts with {@link #incomingReferences(String)} does not wait for an export.
+     * @return for each target host the references from the source hosts. The returned cache must not be changed.
+     */
+    public ReferenceContainerCache<HostReference> incomingReferences() {
+        synchronized ( this.incomingExportLock ) {
+            final long version = this.incomingVersion.get();
+            if ( this.incomingExport != null && this.incomingExportVersion == version ) {
+                return this.incomingExport;
+            }
 
-    private void incomingReferencesEnrich(
-        final ReferenceContainerCache<HostReference> idx,
-        final Iterator<WebStructureGraph.StructureEntry> structureIterator,
-        final long time) {
-        // we iterate over all structure entries.
-        // one structure entry has information that a specific host links to a list of other hosts
-        final long timeout = time == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + time;
-        byte[] term;
-        HostReference hr;
-        WebStructureGraph.StructureEntry sentry;
-        structureLoop: while ( structureIterator.hasNext() ) {
-            sentry = structureIterator.next();
-            // then we loop over all the hosts that are linked from sentry.hosthash
-            refloop: for ( final Map.Entry<String, Integer> refhosthashandcounter : sentry.references
-                .entrySet() ) {
-                term = UTF8.getBytes(refhosthashandcounter.getKey());
-                try {
-                    hr =
-                        new HostReference(
-                            ASCII.getBytes(sentry.hosthash),
-                            GenericFormatter.SHORT_DAY_FORMATTER.parse(sentry.date, 0).getTime().getTime(),
-                            refhosthashandcounter.getValue().intValue());
-                } catch (final ParseException e ) {
-                    continue refloop;
-                }
-                // each term refers to an index entry. look if we already have such an entry
-                ReferenceContainer<HostReference> r = idx.get(term, null);
+            final ReferenceContainerCache<HostReference> idx =
+                new ReferenceContainerCache<HostReference>(hostReferenceFactory, Base64Order.enhancedCoder, 6);
+            final Map<Long, Long> lastModified = new HashMap<Long, Long>(); // the date of the structure entry of each source host
+            for ( final long target : this.incoming.targets() ) {
+                final byte[] term = ASCII.getBytes(HostLinkIndex.unpack(target));
+                final long[] links = this.incoming.incoming(target);
+                if ( links.length == 0 ) continue;
                 try {
-                    if ( r == null ) {
-                        r = new ReferenceContainer<HostReference>(hostReferenceFactory, term);
-                        r.add(hr);
-                        idx.add(r);
-                    } else {
-                        r.put(hr);
+                    final ReferenceContainer<HostReference> r = new ReferenceContainer<HostReference>(hostReferenceFactory, term, links.length);
+                    for ( final long link : links ) {
+                        final long source = HostLinkIndex.source(link);
+                        Long modified = lastModified.get(source);
+                        if ( modified == null ) {
+                            modified = lastModified(HostLinkIndex.unpack(source));
+                            lastModified.put(source, modified);
+                        }
+                        if ( modified.longValue() < 0 ) continue;
+                        r.add(new HostReference(ASCII.getBytes(HostLinkIndex.unpack(source)), modified.longValue(), HostLinkIndex.count(link)));
                     }
+                    if ( !r.isEmpty() ) idx.add(r);
                 } catch (final SpaceExceededException e ) {
-                    continue refloop;
+                    continue;
                 }
             }
-            if ( System.currentTimeMillis() > timeout ) {
-                break structureLoop;
+
+            this.incomingExport = idx;
+            this.incomingExportVersion = version;
+            return idx;
+        }
+    }
+
+    /**
+     * @param hosthash a source host hash
+     * @return the date of the latest structure entry of the host in milliseconds, or -1 if the host is unknown
+     */
+    private long lastModified(final String hosthash) {
+        String date = null;
+        SortedMap<String, byte[]> tailMap;
+        synchronized ( this.structure_new ) {
+            tailMap = this.structure_new.tailMap(hosthash);
+            if ( !tailMap.isEmpty() && tailMap.firstKey().startsWith(hosthash) ) {
+                date = UTF8.String(tailMap.get(tailMap.firstKey()));
+            }
+        }
+        if ( date == null ) synchronized ( this.structure_old ) {
+            tailMap = this.structure_old.tailMap(hosthash);
+            if ( !tailMap.isEmpty() && tailMap.firstKey().startsWith(hosthash) ) {
+                date = UTF8.String(tailMap.get(tailMap.firstKey()));
             }
         }
+        if ( date == null || date.length() < 8 ) return -1;
+        try {
+            return GenericFormatter.SHORT_DAY_FORMATTER.parse(date.substring(0, 8), 0).getTime().getTime();
+        } catch (final ParseException e ) {
+            return -1;
+        }
+    }
+
+    /**
+     * Update the inverted index after a change of the references of a source host: the index is set to the
+     * references of both structures, as they are returned by {@link #outgoingReferences(String)}.
+     * @param sourceHosthash the source host hash
+     * @param before the references of the source host before the change
+     */
+    private void updateIncoming(final String sourceHosthash, final Map<String, Integer> before) {
+        final long source = HostLinkIndex.pack(sourceHosthash);
+        if ( source < 0 ) return;
+        final StructureEntry after = outgoingReferences(sourceHosthash);
+        final Map<String, Integer> refs = after == null ? Collections.<String, Integer>emptyMap() : after.references;
+        for ( final String target : before.keySet() ) {
+            if ( !refs.containsKey(target) ) this.incoming.remove(HostLinkIndex.pack(target), source);
+        }
+        for ( final Map.Entry<String, Integer> ref : refs.entrySet() ) {
+            this.incoming.set(HostLinkIndex.pack(ref.getKey()), source, ref.getValue() == null ? 1 : ref.getValue().intValue());
+        }
+        this.incomingVersion.incrementAndGet();
     }
 
     /**
@@ -745,6 +776,7 @@ public class WebStructureGraph {
         // parse the new reference string and join it with the stored references
         final StructureEntry structure = outgoingReferences(sourceHosthash);
         final Map<String, Integer> refs = (structure == null) ? new HashMap<String, Integer>() : structure.references;
+        final Map<String, Integer> before = new HashMap<String, Integer>(refs);
         int c;
         for (final DigestURL u : lro.globalRefURLs) {
         	String domain = u.hosthash();
@@ -791,6 +823,7 @@ public class WebStructureGraph {
         // store the map back to the structure
         synchronized ( this.structure_new ) {
             this.structure_new.put(sourceHosthash + "," + url.getHost(), UTF8.getBytes(map2refstr(refs)));
+            updateIncoming(sourceHosthash, before);
         }
     }
 
@@ -818,8 +851,18 @@ public class WebStructureGraph {
      */
     public void joinOldNew() {
         synchronized ( this.structure_new ) {
+            // the references before the join, to update the inverted index
+            final Map<String, Map<String, Integer>> before = new HashMap<String, Map<String, Integer>>();
+            for ( final String key : this.structure_new.keySet() ) {
+                final String hosthash = key.substring(0, 6);
+                final StructureEntry structure = outgoingReferences(hosthash);
+                before.put(hosthash, structure == null ? Collections.<String, Integer>emptyMap() : structure.references);
+            }
             joinStructure(this.structure_old, this.structure_new);
             this.structure_new.clear();
+            for ( final Map.Entry<String, Map<String, Integer>> entry : before.entrySet() ) {
+                updateIncoming(entry.getKey(), entry.getValue());
+            }
         }
     }
 
@@ -42,8 +42,16 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.ConcurrentModificationException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 import java.util.regex.PatternSyntaxException;
 
@@ -58,6 +66,7 @@ import net.yacy.data.ListManager;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.index.RowHandleSet;
 import net.yacy.kelondro.util.FileUtils;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.kelondro.util.SetTools;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
@@ -66,6 +75,15 @@ public class Blacklist {
 	
 	private final static ConcurrentLog log = new ConcurrentLog(Blacklist.class.getSimpleName());
 
+	/** compiles the matchers in the background after a change of the blacklists, one at a time, so that
+	 * superseded compilations are cancelled while they wait */
+	private final static ThreadPoolExecutor matcherBuilder;
+	static {
+		matcherBuilder = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new NamePrefixThreadFactory(Blacklist.class.getSimpleName() + ".matcherBuilder"));
+		matcherBuilder.allowCoreThreadTimeOut(true);
+	}
+
     public enum BlacklistType {
         DHT, CRAWLER, PROXY, SEARCH, SURFTIPS, NEWS;
 
@@ -106,6 +124,7 @@ public class Blacklist {
     private final ConcurrentMap<BlacklistType, HandleSet> cachedUrlHashs;
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_matchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
     private final ConcurrentMap<BlacklistType, Map<String, Set<Pattern>>> hostpaths_notmatchable; // key=host, value=path; mapped url is http://host/path; path does not start with '/' here
+    private final ConcurrentMap<BlacklistType, FutureTask<BlacklistMatcher>> matchers; // compiled hostpaths, replaced on each change
 
     public Blacklist(final File rootPath) {
 
@@ -115,14 +134,65 @@ public class Blacklist {
         this.hostpaths_matchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.hostpaths_notmatchable = new ConcurrentHashMap<BlacklistType, Map<String, Set<Pattern>>>();
         this.cachedUrlHashs = new ConcurrentHashMap<BlacklistType, HandleSet>();
+        this.matchers = new ConcurrentHashMap<BlacklistType, FutureTask<BlacklistMatcher>>();
 
         for (final BlacklistType blacklistType : BlacklistType.values()) {
             this.hostpaths_matchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
             this.hostpaths_notmatchable.put(blacklistType, new ConcurrentHashMap<String, Set<Pattern>>());
+            rebuildMatcher(blacklistType);
             loadDHTCache(blacklistType);
         }
     }
 
+    /**
+     * Schedule the compilation of the blacklist entries of the given type; must be called after
+     * each change of the blacklist maps. The compilation runs in the background, but a blacklist
+     * check which comes first does it on its own, so that a check never uses outdated entries.
+     * @param blacklistType the changed blacklist type
+     */
+    private final void rebuildMatcher(final BlacklistType blacklistType) {
+        final FutureTask<BlacklistMatcher> task = new FutureTask<BlacklistMatcher>(new Callable<BlacklistMatcher>() {
+            @Override
+            public BlacklistMatcher call() {
+                while (true) {
+                    try {
+                        return new BlacklistMatcher(getBlacklistMap(blacklistType, true), getBlacklistMap(blacklistType, false));
+                    } catch (final ConcurrentModificationException e) {
+                        // the blacklist was changed while it was compiled, try again
+                    }
+                }
+            }
+        });
+        final FutureTask<BlacklistMatcher> superseded = this.matchers.put(blacklistType, task);
+        // a superseded compilation which has not started yet is skipped; it is not interrupted
+        // if it runs, because it may run in a thread which does a blacklist check
+        if (superseded != null) superseded.cancel(false);
+        matcherBuilder.execute(task);
+    }
+
+    /**
+     * @param blacklistType a blacklist type
+     * @return the compiled blacklist entries of the given type
+     */
+    private final BlacklistMatcher getMatcher(final BlacklistType blacklistType) {
+        while (true) {
+            final FutureTask<BlacklistMatcher> task = this.matchers.get(blacklistType);
+            task.run(); // does nothing if the task is running, done or cancelled
+            try {
+                return task.get();
+            } catch (final CancellationException e) {
+                // the task was superseded by a newer one, use that
+                continue;
+            } catch (final InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (final ExecutionException e) {
+                log.warn("could not compile the " + blacklistType + " blacklist: " + e.getMessage());
+            }
+            break;
+        }
+        return new BlacklistMatcher(getBlacklistMap(blacklistType, true), getBlacklistMap(blacklistType, false));
+    }
+
     /**
      * Close (shutdown) this "sub-system", add more here for shutdown.
      */
@@ -173,6 +243,9 @@ public class Blacklist {
         for (final HandleSet entry : this.cachedUrlHashs.values()) {
             entry.clear();
         }
+        for (final BlacklistType blacklistType : BlacklistType.values()) {
+            rebuildMatcher(blacklistType);
+        }
     }
 
     public final int size() {
@@ -256,6 +329,7 @@ public class Blacklist {
                 }
             }
         }
+        rebuildMatcher(blFile.getType());
     }
 
     public final void loadList(final BlacklistType blacklistType, final String fileNames, final String sep) {
@@ -279,6 +353,7 @@ public class Blacklist {
 
         final Map<String, Set<Pattern>> blacklistMapNotMatch = getBlacklistMap(blacklistType, false);
         removePatternFromMap(host, path, blacklistMapNotMatch);
+        rebuildMatcher(blacklistType);
 
         //TODO: check if delete from blacklist is desired, on reload entry will not be available in any blacklist
         //      even if remove (above) from internal maps (at runtime) is only done for given blacklistType
@@ -424,6 +499,7 @@ public class Blacklist {
 			} catch (final IOException e) {
 				ConcurrentLog.logException(e);
 			} finally {
+				rebuildMatcher(blacklistType);
 				if (pw != null) {
 					pw.close();
 					if (pw.checkError()) {
@@ -489,6 +565,7 @@ public class Blacklist {
                     blacklistMap.put(h, (hostList = new HashSet<Pattern>()));
                 }
                 hostList.add(pattern);
+                rebuildMatcher(supportedBlacklistType);
             }
         }
 
@@ -633,16 +710,13 @@ public class Blacklist {
             throw new IllegalArgumentException("path may not be null");
         }
 
-        // getting the proper blacklists
-        final Map<String, Set<Pattern>> blacklistMapMatched = getBlacklistMap(blacklistType, true);
-        
-        final Map<String, Set<Pattern>> blacklistMapNotMatched = getBlacklistMap(blacklistType, false);
-
-        return Blacklist.isListed(hostlow, path, blacklistMapMatched, blacklistMapNotMatched);
+        return getMatcher(blacklistType).isListed(hostlow, path);
     }
 
     /**
      * Check if the URL made of the specified host and path is blacklisted. All parameters must not be null.
+     * This method scans the blacklist maps, the blacklist checks of a Blacklist instance are done with
+     * a {@link BlacklistMatcher} which compiles the maps and gives the same result.
      * @param hostlow host part
      * @param path path on the host
      * @param blacklistMapMatched blacklist patterns indexed by matched hosts
@@ -0,0 +1,240 @@
+/**
+ *  BlacklistMatcher
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.repository;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An immutable matcher for the entries of one blacklist type, with the same results as
+ * {@link Blacklist#isListed(String, String, Map, Map)}.
+ *
+ * The matchable host entries are stored in two tries of host labels: the reversed labels
+ * for the entries "host" and "*.host" which apply to a host and its subdomains, the labels
+ * for the entries "host" and "host.*" which apply to hosts beginning with the entry.
+ * Host regular expressions are compiled once. The path patterns of all entries which apply
+ * to a host are combined into one regular expression, and hosts without any entry are
+ * remembered in a cache, so the next check of such a host costs only one lookup.
+ */
+final class BlacklistMatcher {
+
+    /** maximum number of hosts in the host cache, the cache is cleared when it gets larger */
+    private static final int HOSTCACHE_MAXSIZE = 100000;
+
+    /** the path matcher of hosts without any blacklist entry */
+    private static final PathMatcher NONE = new PathMatcher(new ArrayList<Pattern>(0));
+
+    private final LabelNode suffixes; // reversed host labels
+    private final LabelNode prefixes; // host labels
+    private final Pattern[] hostPatterns;
+    private final List<List<Pattern>> hostPatternPaths;
+    private final Map<String, PathMatcher> hostCache;
+    private final int size;
+
+    /**
+     * Compile the entries of a blacklist type
+     * @param blacklistMapMatched blacklist patterns indexed by matchable hosts
+     * @param blacklistMapNotMatched blacklist patterns indexed by host regular expressions
+     */
+    BlacklistMatcher(final Map<String, Set<Pattern>> blacklistMapMatched, final Map<String, Set<Pattern>> blacklistMapNotMatched) {
+        this.suffixes = new LabelNode();
+        this.prefixes = new LabelNode();
+        this.hostCache = new ConcurrentHashMap<String, PathMatcher>();
+        int size = 0;
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapMatched.entrySet()) {
+            final String key = entry.getKey();
+            final List<Pattern> paths = new ArrayList<Pattern>(entry.getValue());
+            size += paths.size();
+            if (key.startsWith("*.")) {
+                this.suffixes.reversed(key.substring(2)).subdomains.addAll(paths);
+            } else if (key.endsWith(".*")) {
+                this.prefixes.forward(key.substring(0, key.length() - 2)).prefix.addAll(paths);
+            } else {
+                this.suffixes.reversed(key).host.addAll(paths);
+                this.prefixes.forward(key).prefix.addAll(paths);
+            }
+        }
+        final List<Pattern> hostPatterns = new ArrayList<Pattern>();
+        this.hostPatternPaths = new ArrayList<List<Pattern>>();
+        for (final Map.Entry<String, Set<Pattern>> entry: blacklistMapNotMatched.entrySet()) {
+            final List<Pattern> paths = new ArrayList<Pattern>(entry.getValue());
+            size += paths.size();
+            try {
+                hostPatterns.add(Pattern.compile(entry.getKey()));
+                this.hostPatternPaths.add(paths);
+            } catch (final PatternSyntaxException e) {
+                // the entry can never match
+            }
+        }
+        this.hostPatterns = hostPatterns.toArray(new Pattern[hostPatterns.size()]);
+        this.size = size;
+    }
+
+    /**
+     * @return the number of path patterns
+     */
+    int size() {
+        return this.size;
+    }
+
+    /**
+     * @return the number of hosts in the host cache
+     */
+    int hostCacheSize() {
+        return this.hostCache.size();
+    }
+
+    /**
+     * Check if the URL made of the specified host and path is blacklisted
+     * @param hostlow host part in lower case
+     * @param path path on the host
+     * @return true when host/path is blacklisted
+     */
+    boolean isListed(final String hostlow, final String path) {
+        final PathMatcher matcher = pathMatcher(hostlow);
+        if (matcher == NONE) return false;
+        return matcher.matches((!path.isEmpty() && path.charAt(0) == '/') ? path.substring(1) : path);
+    }
+
+    private PathMatcher pathMatcher(final String hostlow) {
+        PathMatcher matcher = this.hostCache.get(hostlow);
+        if (matcher != null) return matcher;
+
+        // collect the path patterns of all entries which apply to the host
+        final Set<Pattern> paths = new LinkedHashSet<Pattern>();
+        final String[] labels = hostlow.split("\\.", -1);
+        LabelNode node = this.suffixes;
+        for (int i = labels.length - 1; i >= 0 && (node = node.child(labels[i])) != null; i--) {
+            paths.addAll(node.host);
+            if (i > 0) paths.addAll(node.subdomains);
+        }
+        node = this.prefixes;
+        for (int i = 0; i < labels.length - 1 && (node = node.child(labels[i])) != null; i++) {
+            paths.addAll(node.prefix);
+        }
+        for (int i = 0; i < this.hostPatterns.length; i++) {
+            if (this.hostPatterns[i].matcher(hostlow).matches()) paths.addAll(this.hostPatternPaths.get(i));
+        }
+
+        matcher = paths.isEmpty() ? NONE : new PathMatcher(paths);
+        if (this.hostCache.size() >= HOSTCACHE_MAXSIZE) this.hostCache.clear();
+        this.hostCache.put(hostlow, matcher);
+        return matcher;
+    }
+
+    /**
+     * A node in a trie of host labels
+     */
+    private static final class LabelNode {
+        private Map<String, LabelNode> children = null;
+        /** paths of the host entry which ends at this node */
+        private final List<Pattern> host = new ArrayList<Pattern>(0);
+        /** paths of the *.host entry which ends at this node */
+        private final List<Pattern> subdomains = new ArrayList<Pattern>(0);
+        /** paths of the host entry or of the host.* entry which ends at this node */
+        private final List<Pattern> prefix = new ArrayList<Pattern>(0);
+
+        private LabelNode child(final String label) {
+            return this.children == null ? null : this.children.get(label);
+        }
+
+        private LabelNode add(final String label) {
+            if (this.children == null) this.children = new HashMap<String, LabelNode>();
+            LabelNode node = this.children.get(label);
+            if (node == null) {
+                node = new LabelNode();
+                this.children.put(label, node);
+            }
+            return node;
+        }
+
+        private LabelNode reversed(final String host) {
+            final String[] labels = host.split("\\.", -1);
+            LabelNode node = this;
+            for (int i = labels.length - 1; i >= 0; i--) node = node.add(labels[i]);
+            return node;
+        }
+
+        private LabelNode forward(final String host) {
+            LabelNode node = this;
+            for (final String label: host.split("\\.", -1)) node = node.add(label);
+            return node;
+        }
+    }
+
+    /**
+     * A matcher of the path patterns which apply to a host. If possible, the patterns are
+     * combined into one alternation which is matched in one pass.
+     */
+    private static final class PathMatcher {
+        private final boolean all;
+        private final Pattern[] patterns;
+
+        private PathMatcher(final Collection<Pattern> paths) {
+            boolean all = false;
+            final List<Pattern> patterns = new ArrayList<Pattern>(paths.size());
+            for (final Pattern pattern: paths) {
+                if (".*".equals(pattern.pattern())) all = true; else patterns.add(pattern);
+            }
+            this.all = all;
+            final Pattern combined = all ? null : combine(patterns);
+            this.patterns = combined == null ? patterns.toArray(new Pattern[patterns.size()]) : new Pattern[]{combined};
+        }
+
+        private boolean matches(final String path) {
+            if (this.all) return true;
+            for (final Pattern pattern: this.patterns) {
+                if (pattern.matcher(path).matches()) return true;
+            }
+            return false;
+        }
+
+        /**
+         * @return the alternation of the patterns or null if they can not be combined
+         */
+        private static Pattern combine(final List<Pattern> patterns) {
+            if (patterns.size() < 2) return null;
+            final int flags = patterns.get(0).flags();
+            final StringBuilder alternation = new StringBuilder();
+            for (final Pattern pattern: patterns) {
+                final String p = pattern.pattern();
+                // group numbers, quotations and embedded flags or comments may change their meaning in an alternation
+                if (pattern.flags() != flags || p.contains("\\Q") || p.contains("(?") || p.contains("\\k") || p.matches(".*\\\\[1-9].*")) return null;
+                if (alternation.length() > 0) alternation.append('|');
+                alternation.append("(?:").append(p).append(')');
+            }
+            try {
+                return Pattern.compile(alternation.toString(), flags);
+            } catch (final PatternSyntaxException e) {
+                return null;
+            }
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ import java.util.Iterator;
 import java.util.Locale;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -53,6 +54,7 @@ import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
+import net.yacy.crawler.retrieval.AsyncHTTPLoader;
 import net.yacy.crawler.retrieval.FTPLoader;
 import net.yacy.crawler.retrieval.FileLoader;
 import net.yacy.crawler.retrieval.HTTPLoader;
@@ -81,6 +83,25 @@ public final class LoaderDispatcher {
     private final FileLoader fileLoader;
     private final ConcurrentHashMap<DigestURL, Semaphore> loaderSteering; // a map that delivers a 'finish' semaphore for urls
 
+    /**
+     * Receives the result of an asynchronous load, see {@link LoaderDispatcher#loadAsync}
+     */
+    public interface LoadListener {
+
+        /**
+         * called with the loaded response
+         * @param response the response with the content
+         */
+        public void loaded(Response response);
+
+        /**
+         * called when the resource could not be loaded
+         * @param request the request
+         * @param error the reason; as for the exceptions of {@link LoaderDispatcher#load}, a reason ending with "$" has already been pushed to the error cache
+         */
+        public void failed(Request request, String error);
+    }
+
     public LoaderDispatcher(final Switchboard sb) {
         this.sb = sb;
         this.supportedProtocols = new HashSet<String>(Arrays.asList(new String[]{"http","https","ftp","smb","file"}));
@@ -257,11 +278,21 @@ public final class LoaderDispatcher {
             throw new IOException("empty response (code " + response.getStatus() + ") for url " + url.toNormalform(true));
         }
 
+        storeToCache(response, crawlProfile);
+        return response;
+    }
+
+    /**
+     * Store a response loaded from the web to the cache if the crawl profile and the response allow this
+     * @param response the loaded response
+     * @param crawlProfile the crawl profile of the request, may be null
+     */
+    private void storeToCache(final Response response, final CrawlProfile crawlProfile) {
         // we got something. Now check if we want to store that to the cache
         // first check looks if we want to store the content to the cache
         if (crawlProfile == null || !crawlProfile.storeHTCache()) {
             // no caching wanted. Thats ok, do not write any message
-            return response;
+            return;
         }
         // second check tells us if the protocol tells us something about caching
         final String storeError = response.shallStoreCacheForCrawler();
@@ -278,7 +309,76 @@ public final class LoaderDispatcher {
         } else {
             LoaderDispatcher.log.warn("cannot write " + response.url() + " to Cache (4): " + storeError);
         }
-        return response;
+    }
+
+    /**
+     * Load a http(s) resource from the cache or from the web without blocking the calling thread:
+     * the request is sent by the {@link AsyncHTTPLoader} and the listener is called when it has been loaded.
+     * A response from the cache and a rejection are given to the listener before this method returns.
+     * The access delay for the host is applied by the asynchronous loader and not by a sleep of the calling thread.
+     * @param request the request essentials, the url must be a http or https url
+     * @param cacheStrategy strategy according to NOCACHE, IFFRESH, IFEXIST, CACHEONLY
+     * @param blacklistType the blacklist to check, may be null
+     * @param agent the agent identification
+     * @param executor the executor which processes a loaded response and calls the listener, so that the threads of the http client are not blocked
+     * @param listener the listener for the result
+     * @return true if the request has been handled or accepted; false if the asynchronous loader is saturated, then the listener is not called
+     */
+    public boolean loadAsync(final Request request, final CacheStrategy cacheStrategy, final BlacklistType blacklistType, final ClientIdentification.Agent agent, final Executor executor, final LoadListener listener) {
+        final DigestURL url = request.url();
+        final String host = url.getHost();
+        final CrawlProfile crawlProfile = request.profileHandle() == null ? null : this.sb.crawler.get(UTF8.getBytes(request.profileHandle()));
+
+        // check if url is in blacklist
+        if (blacklistType != null && host != null && Switchboard.urlBlacklist.isListed(blacklistType, host.toLowerCase(Locale.ROOT), url.getFile())) {
+            this.sb.crawlQueues.errorURL.push(request.url(), request.depth(), crawlProfile, FailCategory.FINAL_LOAD_CONTEXT, "url in blacklist", -1);
+            listener.failed(request, "DISPATCHER Rejecting URL '" + request.url().toString() + "'. URL is in blacklist.$");
+            return true;
+        }
+
+        // check if we have the page in the cache
+        try {
+            final Response response = loadFromCache(request, cacheStrategy, agent, url, crawlProfile);
+            if (response != null) {
+                listener.loaded(response);
+                return true;
+            }
+        } catch (final IOException e) {
+            listener.failed(request, e.getMessage());
+            return true;
+        }
+        if (cacheStrategy == CacheStrategy.CACHEONLY) {
+            listener.failed(request, "cache only strategy");
+            return true;
+        }
+
+        // load resource from the internet, the response is stored to the cache before it is given to the listener
+        return this.httpLoader.loadAsync(request, crawlProfile, protocolMaxFileSize(url), blacklistType, agent, executor, new LoadListener() {
+            @Override
+            public void loaded(final Response response) {
+                storeToCache(response, crawlProfile);
+                listener.loaded(response);
+            }
+
+            @Override
+            public void failed(final Request failedRequest, final String error) {
+                listener.failed(failedRequest, error);
+            }
+        });
+    }
+
+    /**
+     * @return the loader of the asynchronous loads, it is created at the first call
+     */
+    public AsyncHTTPLoader asyncLoader() {
+        return this.httpLoader.asyncLoader();
+    }
+
+    /**
+     * stop the asynchronous loader; pending asynchronous loads are cancelled
+     */
+    public void close() {
+        this.httpLoader.close();
     }
 
     /**
@@ -130,6 +130,7 @@ import net.yacy.cora.protocol.Domains;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.TimeoutRequest;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.protocol.http.ProxySettings;
 import net.yacy.cora.util.CommonPattern;
 import net.yacy.cora.util.ConcurrentLog;
@@ -144,6 +145,7 @@ import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.data.CrawlProfile;
 import net.yacy.crawler.data.CrawlProfile.CrawlAttribute;
 import net.yacy.crawler.data.CrawlQueues;
+import net.yacy.crawler.data.Latency;
 import net.yacy.crawler.data.NoticedURL;
 import net.yacy.crawler.data.NoticedURL.StackType;
 import net.yacy.crawler.data.ResultImages;
@@ -187,6 +189,7 @@ import net.yacy.gui.Tray;
 import net.yacy.http.YaCyHttpServer;
 import net.yacy.kelondro.blob.ArrayStack;
 import net.yacy.kelondro.blob.BEncodedHeap;
+import net.yacy.kelondro.blob.Compressor;
 import net.yacy.kelondro.blob.Tables;
 import net.yacy.kelondro.blob.Tables.SortDirection;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
@@ -201,6 +204,7 @@ import net.yacy.kelondro.workflow.BusyThread;
 import net.yacy.kelondro.workflow.InstantBusyThread;
 import net.yacy.kelondro.workflow.OneTimeBusyThread;
 import net.yacy.kelondro.workflow.WorkflowProcessor;
+import net.yacy.kelondro.workflow.WorkflowTuner;
 import net.yacy.kelondro.workflow.WorkflowTask;
 import net.yacy.kelondro.workflow.WorkflowThread;
 import net.yacy.peers.DHTSelection;
@@ -231,6 +235,7 @@ import net.yacy.search.ranking.RankingProfile;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
 import net.yacy.search.schema.WebgraphConfiguration;
+import net.yacy.search.snippet.SnippetWorkerPool;
 import net.yacy.search.snippet.TextSnippet;
 import net.yacy.server.serverCore;
 import net.yacy.server.serverSwitch;
@@ -307,6 +312,7 @@ public final class Switchboard extends serverSwitch {
     public WorkflowProcessor<IndexingQueueEntry> indexingCondensementProcessor;
     public WorkflowProcessor<IndexingQueueEntry> indexingAnalysisProcessor;
     public WorkflowProcessor<IndexingQueueEntry> indexingStorageProcessor;
+    public WorkflowTuner indexingTuner;
 
     public RobotsTxtConfig robotstxtConfig = null;
     public boolean useTailCache;
@@ -463,7 +469,13 @@ public final class Switchboard extends serverSwitch {
 		}
 
         // init global host name cache
-        Domains.init(new File(this.workPath, "globalhosts.list"));
+        Domains.setNameCache(
+                getConfigInt(SwitchboardConstants.HTTPC_NAME_CACHE_HIT_SIZE, SwitchboardConstants.HTTPC_NAME_CACHE_HIT_SIZE_DEFAULT),
+                getConfigInt(SwitchboardConstants.HTTPC_NAME_CACHE_MISS_SIZE, SwitchboardConstants.HTTPC_NAME_CACHE_MISS_SIZE_DEFAULT),
+                getConfigLong(SwitchboardConstants.HTTPC_NAME_CACHE_HIT_TTL, SwitchboardConstants.HTTPC_NAME_CACHE_HIT_TTL_DEFAULT) * 1000L,
+                getConfigLong(SwitchboardConstants.HTTPC_NAME_CACHE_MISS_TTL, SwitchboardConstants.HTTPC_NAME_CACHE_MISS_TTL_DEFAULT) * 1000L);
+        Domains.init(new File(this.workPath, "globalhosts.list"),
+                getConfigBool(SwitchboardConstants.HTTPC_NAME_CACHE_PERSISTENT, SwitchboardConstants.HTTPC_NAME_CACHE_PERSISTENT_DEFAULT) ? new File(this.workPath, "globalhosts.dns") : null);
 
         // init sessionid name file
         final String sessionidNamesFile = getConfig("sessionidNamesFile", "defaults/sessionid.names");
@@ -578,6 +590,10 @@ public final class Switchboard extends serverSwitch {
         ReferenceContainer.maxReferences = getConfigInt("index.maxReferences", 0);
         final File segmentsPath = new File(new File(indexPath, networkName), "SEGMENTS");
         try {this.index = new Segment(this.log, segmentsPath, archivePath, solrCollectionConfigurationWork, solrWebgraphConfigurationWork);} catch (IOException e) {ConcurrentLog.logException(e);}
+        this.index.setMergePolicy(
+                getConfigInt(SwitchboardConstants.INDEX_MERGE_CONCURRENCY, SwitchboardConstants.INDEX_MERGE_CONCURRENCY_DEFAULT),
+                getConfigLong(SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND, SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND_DEFAULT));
+        this.index.setMappedKeyIndex(getConfigBool(SwitchboardConstants.INDEX_MAPPED_KEY_INDEX, SwitchboardConstants.INDEX_MAPPED_KEY_INDEX_DEFAULT));
         if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) try {
             this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
         } catch (final IOException e) {ConcurrentLog.logException(e);}
@@ -769,6 +785,10 @@ public final class Switchboard extends serverSwitch {
 						SwitchboardConstants.HTCACHE_SYNC_LOCK_TIMEOUT_DEFAULT),
 				getConfigInt(SwitchboardConstants.HTCACHE_COMPRESSION_LEVEL,
 						SwitchboardConstants.HTCACHE_COMPRESSION_LEVEL_DEFAULT));
+		Cache.setCompressionCodec(Compressor.Codec.parse(getConfig(SwitchboardConstants.HTCACHE_COMPRESSION_CODEC,
+				SwitchboardConstants.HTCACHE_COMPRESSION_CODEC_DEFAULT)));
+		Cache.setRAMTierSize(1024L * 1024L * getConfigLong(SwitchboardConstants.HTCACHE_RAM_TIER_SIZE,
+				SwitchboardConstants.HTCACHE_RAM_TIER_SIZE_DEFAULT));
         final File transactiondir = new File(this.htCachePath, "snapshots");
         Transactions.init(transactiondir);
 
@@ -902,6 +922,9 @@ public final class Switchboard extends serverSwitch {
         // start a loader
         this.log.config("Starting Crawl Loader");
         this.loader = new LoaderDispatcher(this);
+        SnippetWorkerPool.configure(
+                getConfigInt(SwitchboardConstants.SEARCH_SNIPPET_WORKERS, SwitchboardConstants.SEARCH_SNIPPET_WORKERS_DEFAULT),
+                getConfigBool(SwitchboardConstants.SEARCH_SNIPPET_VIRTUAL_THREADS, SwitchboardConstants.SEARCH_SNIPPET_VIRTUAL_THREADS_DEFAULT));
         
         // load the robots.txt db
         this.log.config("Initializing robots.txt DB");
@@ -919,6 +942,8 @@ public final class Switchboard extends serverSwitch {
                 new File(appPath, "defaults/oaiListFriendsSource.xml"),
                 getDataPath());
         OAIListFriendsLoader.init(this.loader, oaiFriends, ClientIdentification.yacyInternetCrawlerAgent);
+        Latency.setMaxSize(getConfigInt(SwitchboardConstants.CRAWLER_LATENCY_MAXHOSTS, SwitchboardConstants.CRAWLER_LATENCY_MAXHOSTS_DEFAULT));
+        Latency.init(getConfigBool(SwitchboardConstants.CRAWLER_LATENCY_PERSISTENT, SwitchboardConstants.CRAWLER_LATENCY_PERSISTENT_DEFAULT) ? new File(this.workPath, "latency.list") : null);
         this.crawlQueues = new CrawlQueues(this, this.queuesRoot);
 
         // on startup, resume all crawls
@@ -1003,6 +1028,9 @@ public final class Switchboard extends serverSwitch {
         // possibly switch off localIP check
         Domains.setNoLocalCheck(isAllIPMode());
 
+        // set the memory budget of the search event cache; it is applied again in each cleanup job
+        SearchEventCache.setMaxMemory(getConfigLong(SwitchboardConstants.SEARCH_EVENTCACHE_MAXMEMORY, SwitchboardConstants.SEARCH_EVENTCACHE_MAXMEMORY_DEFAULT) * 1024L * 1024L);
+
         // check status of account configuration: when local url crawling is allowed, it is not allowed
         // that an automatic authorization of localhost is done, because in this case crawls from local
         // addresses are blocked to prevent attack szenarios where remote pages contain links to localhost
@@ -1094,6 +1122,16 @@ public final class Switchboard extends serverSwitch {
                 Math.max(20, WorkflowProcessor.availableCPU * 2), // it may happen that this is filled with new files from the search process. That means there should be enough place for two result pages
                 this.indexingCondensementProcessor,
                 WorkflowProcessor.availableCPU);
+        this.indexingStorageProcessor.setBatchSize(getConfigInt(SwitchboardConstants.INDEXER_STORAGE_BATCH_SIZE, SwitchboardConstants.INDEXER_STORAGE_BATCH_SIZE_DEFAULT));
+
+        // adapt the number of threads of the indexing processes to the load
+        int indexerMaxThreads = getConfigInt(SwitchboardConstants.INDEXER_POOL_MAX_THREADS, SwitchboardConstants.INDEXER_POOL_MAX_THREADS_DEFAULT);
+        if (indexerMaxThreads <= 0) indexerMaxThreads = 2 * WorkflowProcessor.availableCPU;
+        this.indexingTuner = new WorkflowTuner(getConfigBool(SwitchboardConstants.INDEXER_POOL_AUTOTUNE, SwitchboardConstants.INDEXER_POOL_AUTOTUNE_DEFAULT));
+        this.indexingTuner.add(this.indexingDocumentProcessor, 1, indexerMaxThreads);
+        this.indexingTuner.add(this.indexingCondensementProcessor, 1, indexerMaxThreads);
+        this.indexingTuner.add(this.indexingAnalysisProcessor, 1, indexerMaxThreads);
+        this.indexingTuner.add(this.indexingStorageProcessor, 1, getConfigInt(SwitchboardConstants.INDEXER_STORAGE_MAX_THREADS, SwitchboardConstants.INDEXER_STORAGE_MAX_THREADS_DEFAULT));
 
         // deploy busy threads
         this.log.config("Starting Threads");
@@ -1123,6 +1161,28 @@ public final class Switchboard extends serverSwitch {
 				},
                 60000); // all 10 minutes, wait 1 minute until first run
         
+        deployThread(
+                SwitchboardConstants.WORKFLOW_TUNER,
+                "Indexing Thread Tuning",
+                "adapts the number of threads of the indexing processes to the queue load",
+                "/PerformanceConcurrency_p.html",
+				new InstantBusyThread("Switchboard.indexingTuner", 10000, 10000) {
+					@Override
+					public boolean jobImpl() throws Exception {
+						return Switchboard.this.indexingTuner.tune();
+					}
+
+					@Override
+					public int getJobCount() {
+						return 0;
+					}
+
+					@Override
+					public void freememImpl() {
+					}
+				},
+                60000); // wait 1 minute until first run
+
         deployThread(
                 SwitchboardConstants.SCHEDULER,
                 "Scheduler",
@@ -1300,6 +1360,28 @@ public final class Switchboard extends serverSwitch {
 			setConfig(SwitchboardConstants.HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL, remoteSolrPoolMaxTotal);
 		}
 		RemoteInstance.initPoolMaxConnections(RemoteInstance.CONNECTION_MANAGER, remoteSolrPoolMaxTotal);
+
+		initOutgoingConnectionPool(TrafficClass.CRAWLER, SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL,
+				SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL_DEFAULT);
+		initOutgoingConnectionPool(TrafficClass.PEER, SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL,
+				SwitchboardConstants.HTTP_OUTGOING_POOL_PEER_MAX_TOTAL_DEFAULT);
+		initOutgoingConnectionPool(TrafficClass.PROXY, SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL,
+				SwitchboardConstants.HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL_DEFAULT);
+		HTTPClient.getPool(TrafficClass.CRAWLER).setMaxPerHost(getConfigInt(SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST,
+				SwitchboardConstants.HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST_DEFAULT));
+	}
+
+	/**
+	 * Initialize the maximum connections of the outgoing connections pool of a traffic class with the user defined setting
+	 */
+	private void initOutgoingConnectionPool(final TrafficClass trafficClass, final String key, final int defaultMaxTotal) {
+		int maxTotal = getConfigInt(key, defaultMaxTotal);
+		if (maxTotal <= 0) {
+			/* Fix eventually wrong value from the config file */
+			maxTotal = defaultMaxTotal;
+			setConfig(key, maxTotal);
+		}
+		HTTPClient.getPool(trafficClass).setMaxTotal(maxTotal);
 	}
 
     final String getSysinfo() {
@@ -1327,6 +1409,13 @@ public final class Switchboard extends serverSwitch {
             + this.indexingStorageProcessor.getQueueSize();
     }
 
+    /**
+     * @return the dispatcher of the DHT index distribution or null if there is no connected peer
+     */
+    public Dispatcher getDhtDispatcher() {
+        return this.dhtDispatcher;
+    }
+
     public void overwriteNetworkDefinition(final String sysinfo) throws FileNotFoundException, IOException {
 
         // load network configuration into settings
@@ -1510,6 +1599,10 @@ public final class Switchboard extends serverSwitch {
             final File segmentsPath = new File(new File(indexPrimaryPath, networkName), "SEGMENTS");
             final File archivePath = getDataPath(SwitchboardConstants.INDEX_ARCHIVE_PATH, SwitchboardConstants.INDEX_ARCHIVE_DEFAULT);
             this.index = new Segment(this.log, segmentsPath, archivePath, collectionConfiguration, webgraphConfiguration);
+            this.index.setMergePolicy(
+                    getConfigInt(SwitchboardConstants.INDEX_MERGE_CONCURRENCY, SwitchboardConstants.INDEX_MERGE_CONCURRENCY_DEFAULT),
+                    getConfigLong(SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND, SwitchboardConstants.INDEX_MERGE_MAX_BYTES_PER_SECOND_DEFAULT));
+            this.index.setMappedKeyIndex(getConfigBool(SwitchboardConstants.INDEX_MAPPED_KEY_INDEX, SwitchboardConstants.INDEX_MAPPED_KEY_INDEX_DEFAULT));
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_RWI, true)) this.index.connectRWI(wordCacheMaxCount, fileSizeMax);
             if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_CITATION, true)) this.index.connectCitation(wordCacheMaxCount, fileSizeMax);
 			if (this.getConfigBool(SwitchboardConstants.CORE_SERVICE_FULLTEXT,
@@ -1996,6 +2089,8 @@ public final class Switchboard extends serverSwitch {
         this.crawlStacker.announceClose();
         this.crawlStacker.close();
         this.crawlQueues.close();
+        this.loader.close();
+        Latency.close();
         this.robots.close();
         this.indexingDocumentProcessor.shutdown();
         this.indexingCondensementProcessor.shutdown();
@@ -2575,6 +2670,7 @@ public final class Switchboard extends serverSwitch {
         ConcurrentLog.ensureWorkerIsRunning();
         try {
             clearCaches();
+            SearchEventCache.setMaxMemory(getConfigLong(SwitchboardConstants.SEARCH_EVENTCACHE_MAXMEMORY, SwitchboardConstants.SEARCH_EVENTCACHE_MAXMEMORY_DEFAULT) * 1024L * 1024L);
 
             // clear caches if necessary
             if ( !MemoryControl.request(128000000L, false) ) {
@@ -4164,9 +4260,13 @@ public final class Switchboard extends serverSwitch {
         } else if ( kbytesUp > 256 ) {
             this.log.info("dhtTransferJob: too much upload(2), currently uploading: " + kbytesUp + " Kb");
         } else {
-            final boolean dequeued = this.dhtDispatcher.dequeueContainer();
-            hasDoneSomething = hasDoneSomething | dequeued;
-            this.log.info("dhtTransferJob: result from dequeueing: " + ((dequeued) ? "true" : "false"));
+            // start as many transmissions as the limits of the dispatcher allow
+            int dequeued = 0;
+            while ( this.dhtDispatcher.dequeueContainer() ) {
+                dequeued++;
+            }
+            hasDoneSomething = hasDoneSomething | dequeued > 0;
+            this.log.info("dhtTransferJob: result from dequeueing: " + dequeued + " chunks");
         }
         return hasDoneSomething;
     }
@@ -151,6 +151,14 @@ public final class SwitchboardConstants {
     public static final String SURROGATES_LOADPREREQ           = "70_surrogates_loadprereq";
     public static final String SURROGATES_IDLESLEEP            = "70_surrogates_idlesleep";
     public static final String SURROGATES_BUSYSLEEP            = "70_surrogates_busysleep";
+    // 80_workflowtuner
+    /**
+     * <p><code>public static final String <strong>WORKFLOW_TUNER</strong> = "80_workflowtuner"</code></p>
+     * <p>A thread that adapts the number of threads of the indexing processes to the queue load</p>
+     */
+    public static final String WORKFLOW_TUNER                  = "80_workflowtuner";
+    public static final String WORKFLOW_TUNER_IDLESLEEP        = "80_workflowtuner_idlesleep";
+    public static final String WORKFLOW_TUNER_BUSYSLEEP        = "80_workflowtuner_busysleep";
     // 85_scheduler
     /**
      * <p><code>public static final String <strong>SCHEDULER</strong> = "85_scheduler"</code></p>
@@ -193,6 +201,24 @@ public final class SwitchboardConstants {
      * <p>Name of the setting whether DHT chunks shall be transferred gzip-encodedly</p>
      */
     public static final String INDEX_DIST_GZIP_BODY             = "indexDistribution.gzipBody";
+    /**
+     * <p><code>public static final String <strong>INDEX_DIST_MAX_INFLIGHT_KBYTES</strong> = "indexDistribution.maxInFlightKBytes"</code></p>
+     * <p>Name of the setting for the maximum number of KBytes of the DHT chunks which are transmitted at the same time</p>
+     */
+    public static final String INDEX_DIST_MAX_INFLIGHT_KBYTES   = "indexDistribution.maxInFlightKBytes";
+    public static final long   INDEX_DIST_MAX_INFLIGHT_KBYTES_DEFAULT = 4096;
+    /**
+     * <p><code>public static final String <strong>INDEX_DIST_MAX_CONCURRENT_CHUNKS</strong> = "indexDistribution.maxConcurrentChunksPerPeer"</code></p>
+     * <p>Name of the setting for the maximum number of DHT chunks which are transmitted to the same peer at the same time</p>
+     */
+    public static final String INDEX_DIST_MAX_CONCURRENT_CHUNKS = "indexDistribution.maxConcurrentChunksPerPeer";
+    public static final int    INDEX_DIST_MAX_CONCURRENT_CHUNKS_DEFAULT = 2;
+    /**
+     * <p><code>public static final String <strong>INDEX_DIST_MAX_QUEUED_CHUNKS</strong> = "indexDistribution.maxQueuedChunksPerPeer"</code></p>
+     * <p>Name of the setting for the maximum number of full DHT chunks which wait for their transmission to the same peer</p>
+     */
+    public static final String INDEX_DIST_MAX_QUEUED_CHUNKS     = "indexDistribution.maxQueuedChunksPerPeer";
+    public static final int    INDEX_DIST_MAX_QUEUED_CHUNKS_DEFAULT = 16;
     /**
      * <p><code>public static final String <strong>INDEX_DIST_ALLOW</strong> = "allowDistributeIndex"</code></p>
      * <p>Name of the setting whether Index Distribution shall be allowed (and the DHT-thread therefore started) or not</p>
@@ -329,6 +355,18 @@ public final class SwitchboardConstants {
     /** Default value controlling whether a self-signed certificate is acceptable from a remote Solr instance with authentication credentials. */
     public static final boolean FEDERATED_SERVICE_SOLR_INDEXING_AUTHENTICATED_ALLOW_SELF_SIGNED_DEFAULT = false;
 
+    /** Key of the setting controlling the number of documents which are written together to the Solr indexes; 1 writes each document at once */
+    public static final String SOLR_INDEXING_BATCH_SIZE = "solr.indexing.batchSize";
+
+    /** Default number of documents which are written together to the Solr indexes */
+    public static final int SOLR_INDEXING_BATCH_SIZE_DEFAULT = 100;
+
+    /** Key of the setting controlling the maximum time in milliseconds that a document waits for the write of its batch */
+    public static final String SOLR_INDEXING_BATCH_MAXAGE = "solr.indexing.batchMaxAge";
+
+    /** Default maximum time in milliseconds that a document waits for the write of its batch */
+    public static final long SOLR_INDEXING_BATCH_MAXAGE_DEFAULT = 1000;
+
     /** Key of the setting controlling wheter to use or not an embedded Solr instance */
     public static final String CORE_SERVICE_FULLTEXT            = "core.service.fulltext";
     
@@ -346,6 +384,27 @@ public final class SwitchboardConstants {
     public static final String CRAWLER_THREADS_ACTIVE_MAX       = "crawler.MaxActiveThreads";
     public static final String CRAWLER_LATENCY_FACTOR           = "crawler.latencyFactor";
     public static final String CRAWLER_MAX_SAME_HOST_IN_QUEUE   = "crawler.MaxSameHostInQueue";
+
+    /** Key of the setting controlling the maximum number of hosts with latency statistics; the least recently accessed hosts are removed first */
+    public static final String CRAWLER_LATENCY_MAXHOSTS         = "crawler.latency.maxHosts";
+    public static final int CRAWLER_LATENCY_MAXHOSTS_DEFAULT    = 100000;
+
+    /** Key of the setting controlling whether the latency statistics of the hosts are saved at shutdown and loaded at startup */
+    public static final String CRAWLER_LATENCY_PERSISTENT       = "crawler.latency.persistent";
+    public static final boolean CRAWLER_LATENCY_PERSISTENT_DEFAULT = true;
+
+    /** Key of the setting controlling whether the crawler loads http(s) urls with the asynchronous loader instead of the loader threads */
+    public static final String CRAWLER_LOADER_ASYNC             = "crawler.loader.async";
+    public static final boolean CRAWLER_LOADER_ASYNC_DEFAULT    = false;
+
+    /** Key of the setting controlling the maximum number of concurrent requests of the asynchronous crawler loader */
+    public static final String CRAWLER_LOADER_ASYNC_MAXREQUESTS = "crawler.loader.async.maxRequests";
+    public static final int CRAWLER_LOADER_ASYNC_MAXREQUESTS_DEFAULT = 1000;
+
+    /** Key of the setting controlling the number of threads of the asynchronous crawler loader */
+    public static final String CRAWLER_LOADER_ASYNC_THREADS     = "crawler.loader.async.threads";
+    public static final int CRAWLER_LOADER_ASYNC_THREADS_DEFAULT = 8;
+
     public static final String CRAWLER_FOLLOW_REDIRECTS         = "crawler.http.FollowRedirects"; // ignore the target url and follow to the redirect
     public static final String CRAWLER_RECORD_REDIRECTS         = "crawler.http.RecordRedirects"; // record the ignored redirected page to the index store
     
@@ -387,6 +446,26 @@ public final class SwitchboardConstants {
      */
     public static final String WORDCACHE_MAX_COUNT              = "wordCacheMaxCount";
     public static final String HTTPC_NAME_CACHE_CACHING_PATTERNS_NO = "httpc.nameCacheNoCachingPatterns";
+
+    /** Key of the setting controlling the maximum number of resolved host names in the DNS cache (net.yacy.cora.protocol.Domains) */
+    public static final String HTTPC_NAME_CACHE_HIT_SIZE        = "httpc.nameCache.hit.size";
+    public static final int HTTPC_NAME_CACHE_HIT_SIZE_DEFAULT   = 100000;
+
+    /** Key of the setting controlling the maximum number of host names in the DNS cache which could not be resolved */
+    public static final String HTTPC_NAME_CACHE_MISS_SIZE       = "httpc.nameCache.miss.size";
+    public static final int HTTPC_NAME_CACHE_MISS_SIZE_DEFAULT  = 20000;
+
+    /** Key of the setting controlling the time in seconds until a resolved host name is resolved again */
+    public static final String HTTPC_NAME_CACHE_HIT_TTL         = "httpc.nameCache.hit.ttl";
+    public static final long HTTPC_NAME_CACHE_HIT_TTL_DEFAULT   = 3600;
+
+    /** Key of the setting controlling the time in seconds until a host name which could not be resolved is resolved again */
+    public static final String HTTPC_NAME_CACHE_MISS_TTL        = "httpc.nameCache.miss.ttl";
+    public static final long HTTPC_NAME_CACHE_MISS_TTL_DEFAULT  = 600;
+
+    /** Key of the setting controlling whether the resolved host names are saved at shutdown and loaded at startup */
+    public static final String HTTPC_NAME_CACHE_PERSISTENT      = "httpc.nameCache.persistent";
+    public static final boolean HTTPC_NAME_CACHE_PERSISTENT_DEFAULT = true;
     public static final String ROBOTS_TXT                       = "httpd.robots.txt";
     public static final String ROBOTS_TXT_DEFAULT               = RobotsTxtConfig.LOCKED + "," + RobotsTxtConfig.DIRS;
     /** Key of the setting configuring how many active robots.txt loading threads may be running on the same time at max */
@@ -417,12 +496,24 @@ public final class SwitchboardConstants {
     /** Default compression level for cached content */
     public static final int HTCACHE_COMPRESSION_LEVEL_DEFAULT = Deflater.BEST_COMPRESSION;
     
+    /** Key of the setting configuring the encoding of cached content: gzip or deflate (net.yacy.kelondro.blob.Compressor.Codec) */
+    public static final String HTCACHE_COMPRESSION_CODEC   = "proxyCache.compressionCodec";
+    
+    /** Default encoding of cached content */
+    public static final String HTCACHE_COMPRESSION_CODEC_DEFAULT = "gzip";
+    
     /** Key of the setting configuring Cache synchronization lock timeout on getContent/store operations*/
     public static final String HTCACHE_SYNC_LOCK_TIMEOUT   = "proxyCache.sync.lockTimeout";
     
     /** Default timeout value (in milliseconds) for acquiring a synchronization lock on getContent/store Cache operations */
     public static final long HTCACHE_SYNC_LOCK_TIMEOUT_DEFAULT = 2000;
     
+    /** Key of the setting configuring the size (in megabytes) of the RAM tier of the Cache, which keeps the decompressed content of hot documents */
+    public static final String HTCACHE_RAM_TIER_SIZE   = "proxyCache.ramTier.size";
+    
+    /** Default size (in megabytes) of the RAM tier of the Cache */
+    public static final long HTCACHE_RAM_TIER_SIZE_DEFAULT = 32;
+    
     public static final String RELEASE_PATH             = "releases";
     public static final String RELEASE_PATH_DEFAULT     = "DATA/RELEASE";
 
@@ -490,6 +581,18 @@ public final class SwitchboardConstants {
     
     /** Default setting value controlling whether HTTP responses should be compressed */
     public static final boolean SERVER_RESPONSE_COMPRESS_GZIP_DEFAULT = true;
+
+    /** Key of the setting controlling whether gzip variants of the static files are generated at startup and served to user-agents accepting them */
+    public static final String SERVER_RESPONSE_PRECOMPRESS = "server.response.precompress";
+
+    /** Default setting value controlling whether gzip variants of the static files are generated */
+    public static final boolean SERVER_RESPONSE_PRECOMPRESS_DEFAULT = true;
+
+    /** Key of the setting for the maximum total size in megabytes of the static files which are served from memory-mapped buffers */
+    public static final String SERVER_RESPONSE_MAPPED_CACHE = "server.response.mappedCache";
+
+    /** Default maximum total size in megabytes of the memory-mapped static files */
+    public static final long SERVER_RESPONSE_MAPPED_CACHE_DEFAULT = 64;
     
     
     /** Key of the setting controlling the maximum number of simultaneously open outgoing HTTP connections in the general pool (net.yacy.cora.protocol.http.HTTPClient) */
@@ -498,11 +601,77 @@ public final class SwitchboardConstants {
     /** Default setting value controlling the maximum number of simultaneously open outgoing HTTP connections in the general pool */
     public static final int HTTP_OUTGOING_POOL_GENERAL_MAX_TOTAL_DEFAULT = 200;
     
+    /** Key of the setting controlling the maximum number of simultaneously open outgoing HTTP connections in the crawler pool (net.yacy.cora.protocol.http.HTTPConnectionPool) */
+    public static final String HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL = "http.outgoing.pool.crawler.maxTotal";
+    
+    /** Default setting value controlling the maximum number of simultaneously open outgoing HTTP connections in the crawler pool */
+    public static final int HTTP_OUTGOING_POOL_CRAWLER_MAX_TOTAL_DEFAULT = 200;
+    
+    /** Key of the setting controlling the maximum number of connections of the crawler pool to one host with many waiting urls */
+    public static final String HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST = "http.outgoing.pool.crawler.maxPerHost";
+    
+    /** Default setting value controlling the maximum number of connections of the crawler pool to one host */
+    public static final int HTTP_OUTGOING_POOL_CRAWLER_MAX_PER_HOST_DEFAULT = 32;
+    
+    /** Key of the setting controlling the maximum number of simultaneously open outgoing HTTP connections to other peers (net.yacy.cora.protocol.http.HTTPConnectionPool) */
+    public static final String HTTP_OUTGOING_POOL_PEER_MAX_TOTAL = "http.outgoing.pool.peer.maxTotal";
+    
+    /** Default setting value controlling the maximum number of simultaneously open outgoing HTTP connections to other peers */
+    public static final int HTTP_OUTGOING_POOL_PEER_MAX_TOTAL_DEFAULT = 100;
+    
+    /** Key of the setting controlling the maximum number of simultaneously open outgoing HTTP connections of the proxy (net.yacy.cora.protocol.http.HTTPConnectionPool) */
+    public static final String HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL = "http.outgoing.pool.proxy.maxTotal";
+    
+    /** Default setting value controlling the maximum number of simultaneously open outgoing HTTP connections of the proxy */
+    public static final int HTTP_OUTGOING_POOL_PROXY_MAX_TOTAL_DEFAULT = 100;
+    
     /** Key of the setting controlling the maximum number of simultaneously open outgoing HTTP connections in the remote Solr pool (net.yacy.cora.federate.solr.instance.RemoteInstance) */
     public static final String HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL = "http.outgoing.pool.remoteSolr.maxTotal";
     
     /** Default setting value controlling the maximum number of simultaneously open outgoing HTTP connections in the remote Solr pool */
     public static final int HTTP_OUTGOING_POOL_REMOTE_SOLR_MAX_TOTAL_DEFAULT = 100;
+    
+    /** Key of the setting controlling the maximum number of RWI and citation index file merges running at the same time (net.yacy.kelondro.rwi.IODispatcher) */
+    public static final String INDEX_MERGE_CONCURRENCY = "index.merge.concurrency";
+    
+    /** Default setting value controlling the maximum number of concurrent index file merges */
+    public static final int INDEX_MERGE_CONCURRENCY_DEFAULT = 2;
+    
+    /** Key of the setting limiting the write speed of all index file merges together in bytes per second, 0 for no limit */
+    public static final String INDEX_MERGE_MAX_BYTES_PER_SECOND = "index.merge.maxBytesPerSecond";
+    
+    /** Default setting value limiting the write speed of index file merges: no limit */
+    public static final long INDEX_MERGE_MAX_BYTES_PER_SECOND_DEFAULT = 0;
+    
+    /** Key of the setting enabling memory-mapped key indexes for the RWI and citation index files instead of indexes in RAM (net.yacy.search.index.Segment) */
+    public static final String INDEX_MAPPED_KEY_INDEX = "index.mappedKeyIndex";
+    
+    /** Default setting value for memory-mapped key indexes: indexes are held in RAM */
+    public static final boolean INDEX_MAPPED_KEY_INDEX_DEFAULT = false;
+    
+    /** Key of the setting enabling the adaption of the thread numbers of the indexing processes to the load (net.yacy.kelondro.workflow.WorkflowTuner) */
+    public static final String INDEXER_POOL_AUTOTUNE = "indexer.pool.autotune";
+    
+    /** Default setting value for the adaption of the indexing thread numbers: enabled */
+    public static final boolean INDEXER_POOL_AUTOTUNE_DEFAULT = true;
+    
+    /** Key of the setting limiting the number of threads of each of the parsing, condensing and structure analysis processes, 0 for twice the number of processors */
+    public static final String INDEXER_POOL_MAX_THREADS = "indexer.pool.maxThreads";
+    
+    /** Default setting value limiting the number of threads of the indexing processes: twice the number of processors */
+    public static final int INDEXER_POOL_MAX_THREADS_DEFAULT = 0;
+    
+    /** Key of the setting limiting the number of threads of the index storage process */
+    public static final String INDEXER_STORAGE_MAX_THREADS = "indexer.storage.maxThreads";
+    
+    /** Default setting value limiting the number of threads of the index storage process */
+    public static final int INDEXER_STORAGE_MAX_THREADS_DEFAULT = 2;
+    
+    /** Key of the setting for the number of documents that a thread of the index storage process handles in one cycle */
+    public static final String INDEXER_STORAGE_BATCH_SIZE = "indexer.storage.batchSize";
+    
+    /** Default setting value for the number of documents stored in one cycle */
+    public static final int INDEXER_STORAGE_BATCH_SIZE_DEFAULT = 10;
 
 
     /*
@@ -609,6 +778,24 @@ public final class SwitchboardConstants {
     public static final String SEARCH_TARGET_SPECIAL_PATTERN  = "search.target.special.pattern"; // ie 'own' addresses in topframe, 'other' in iframe
     public static final String SEARCH_VERIFY  = "search.verify";
     public static final String SEARCH_VERIFY_DELETE = "search.verify.delete";
+
+    /** Key of the setting controlling the memory budget of the search event cache in megabytes; 0 means a quarter of the maximum heap space */
+    public static final String SEARCH_EVENTCACHE_MAXMEMORY = "search.eventcache.maxMemory";
+
+    /** Default memory budget of the search event cache in megabytes */
+    public static final long SEARCH_EVENTCACHE_MAXMEMORY_DEFAULT = 0;
+    
+    /** Key of the setting controlling the maximum number of concurrent workers computing the snippets of the search results of all search events */
+    public static final String SEARCH_SNIPPET_WORKERS = "search.snippet.workers";
+    
+    /** Default maximum number of concurrent snippet workers */
+    public static final int SEARCH_SNIPPET_WORKERS_DEFAULT = 32;
+    
+    /** Key of the setting controlling whether the snippet workers are virtual threads, when supported by the Java runtime */
+    public static final String SEARCH_SNIPPET_VIRTUAL_THREADS = "search.snippet.virtualThreads";
+    
+    /** Default setting value controlling whether the snippet workers are virtual threads */
+    public static final boolean SEARCH_SNIPPET_VIRTUAL_THREADS_DEFAULT = false;
     
 	/**
 	 * Key of the setting controlling whether content domain filtering is strict :
@@ -125,6 +125,9 @@ public class Segment {
     protected       IndexCell<CitationReference>   urlCitationIndex;
     protected       IndexTable                     firstSeenIndex;
     protected       IODispatcher                   merger = null; // shared iodispatcher for kelondro indexes
+    private         int                            mergeConcurrency = 1; // number of concurrent merges of kelondro index files
+    private         boolean                        mappedKeyIndex = false; // if true, the key indexes of the index files are memory-mapped
+    private         long                           mergeMaxBytesPerSecond = 0; // write speed limit of merges, 0 = no limit
 
     /**
      * create a new Segment
@@ -149,13 +152,47 @@ public class Segment {
         return this.termIndex != null;
     }
 
-    public void connectRWI(final int entityCacheMaxSize, final long maxFileSize) throws IOException {
-        if (this.termIndex != null) return;
-        
+    /**
+     * set the merge policy for the RWI and citation index files
+     * @param concurrency maximum number of index file merges that run at the same time
+     * @param maxBytesPerSecond limit of the write speed of all merges, 0 for no limit
+     */
+    public void setMergePolicy(final int concurrency, final long maxBytesPerSecond) {
+        this.mergeConcurrency = Math.max(1, concurrency);
+        this.mergeMaxBytesPerSecond = Math.max(0, maxBytesPerSecond);
+        if (this.merger != null) {
+            this.merger.setMergeConcurrency(this.mergeConcurrency);
+            this.merger.setMergeMaxBytesPerSecond(this.mergeMaxBytesPerSecond);
+        }
+    }
+
+    /**
+     * set if the key indexes of the RWI and citation index files are memory-mapped instead of loaded into RAM.
+     * This is used when the indexes are connected the next time.
+     * @param mappedKeyIndex true to map the key indexes
+     */
+    public void setMappedKeyIndex(final boolean mappedKeyIndex) {
+        this.mappedKeyIndex = mappedKeyIndex;
+    }
+
+    /**
+     * @return the shared dispatcher for dumps and merges of the RWI and citation index or null if none of them is connected
+     */
+    public IODispatcher merger() {
+        return this.merger;
+    }
+
+    private void startMerger() {
         if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2, 2, writeBufferSize);
+            this.merger = new IODispatcher(2, Math.max(2, 2 * this.mergeConcurrency), writeBufferSize, this.mergeConcurrency, this.mergeMaxBytesPerSecond);
             this.merger.start();
         }
+    }
+
+    public void connectRWI(final int entityCacheMaxSize, final long maxFileSize) throws IOException {
+        if (this.termIndex != null) return;
+        
+        startMerger();
         this.termIndex = new IndexCell<WordReference>(
                         new File(this.segmentPath, "default"),
                         termIndexName,
@@ -166,6 +203,7 @@ public class Segment {
                         targetFileSize,
                         maxFileSize,
                         writeBufferSize,
+                        this.mappedKeyIndex,
                         merger);
     }
 
@@ -182,10 +220,7 @@ public class Segment {
     public void connectCitation(final int entityCacheMaxSize, final long maxFileSize) throws IOException {
         if (this.urlCitationIndex != null) return;
 
-        if (this.merger == null) { // init shared iodispatcher if none running
-            this.merger = new IODispatcher(2,2,writeBufferSize);
-            this.merger.start();
-        }
+        startMerger();
         this.urlCitationIndex = new IndexCell<CitationReference>(
                         new File(this.segmentPath, "default"),
                         citationIndexName,
@@ -196,6 +231,7 @@ public class Segment {
                         targetFileSize,
                         maxFileSize,
                         writeBufferSize,
+                        this.mappedKeyIndex,
                         merger);
     }
 
@@ -28,6 +28,7 @@ package net.yacy.search.query;
 
 import java.net.MalformedURLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.ConcurrentModificationException;
 import java.util.Date;
@@ -41,10 +42,8 @@ import java.util.Set;
 import java.util.SortedMap;
 import java.util.SortedSet;
 import java.util.TreeMap;
-import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.Semaphore;
-import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Pattern;
@@ -83,6 +82,7 @@ import net.yacy.document.Tokenizer;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.Word;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceColumns;
 import net.yacy.kelondro.data.word.WordReferenceFactory;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.index.RowHandleSet;
@@ -106,6 +106,7 @@ import net.yacy.search.navigator.NavigatorPlugins;
 import net.yacy.search.ranking.ReferenceOrder;
 import net.yacy.search.schema.CollectionConfiguration;
 import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.snippet.SnippetWorkerPool;
 import net.yacy.search.snippet.TextSnippet;
 import net.yacy.search.snippet.TextSnippet.ResultClass;
 
@@ -117,6 +118,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
 
     private static final int max_results_rwi = 3000;
     private static final int max_results_node = 150;
+    /** the number of result pages which a local search requests at once from the local Solr index */
+    private static final int local_result_pages = 3;
 
     /*
     private static long noRobinsonLocalRWISearch = 0;
@@ -134,6 +137,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     
     /** Default count of words for topicnavigagtor */
     private static final int MAX_TOPWORDS = 12;
+    
+    /** Maximum number of snippet jobs of an event in the snippet worker pool, further results are added without loading */
+    private static final int MAX_PENDING_SNIPPET_JOBS = 10;
 
     private long eventTime;
     public QueryParams query;
@@ -154,6 +160,9 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     /** Offset of the next local Solr index request
      * Example : last local request with offset=10 and itemsPerPage=20, sets this attribute to 30. */
     private int localsolroffset;
+
+    /** Offset of the first result requested from the local Solr index by this event */
+    private final int localsolrstart;
     
     /** counter for referenced that had been sorted out for other reasons */
     private final AtomicInteger expectedRemoteReferences, maxExpectedRemoteReferences;
@@ -207,7 +216,10 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     
     /** flag counter */
     private final int[] flagcount;
-    private final AtomicInteger feedersAlive, feedersTerminated, snippetFetchAlive;
+    private final AtomicInteger feedersAlive, feedersTerminated;
+    
+    /** the snippet jobs of this event in the shared snippet worker pool */
+    private final SnippetWorkerPool.Batch snippetBatch;
     private boolean addRunning;
     private final AtomicInteger receivedRemoteReferences;
     private final ReferenceOrder order;
@@ -411,7 +423,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         }
         this.feedersAlive = new AtomicInteger(0);
         this.feedersTerminated = new AtomicInteger(0);
-        this.snippetFetchAlive = new AtomicInteger(0);
+        this.snippetBatch = SnippetWorkerPool.newBatch(this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : start + this.maxtime);
         this.addRunning = true;
         this.receivedRemoteReferences = new AtomicInteger(0);
         this.order = new ReferenceOrder(this.query.ranking, this.query.targetlang);
@@ -421,20 +433,32 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
             this.taggingPredicates.put(t.getName(), t.getPredicate());
         }
 
+        // a local search requests a window of several result pages from the local solr,
+        // so that the search event cache can serve the neighbour pages with this event
+        final int localsolrcount;
+        if (this.remote) {
+            this.localsolrstart = this.query.offset;
+            localsolrcount = this.query.itemsPerPage;
+        } else {
+            final int window = Math.max(1, local_result_pages * this.query.itemsPerPage);
+            this.localsolrstart = this.query.offset - this.query.offset % window;
+            localsolrcount = Math.max(window, this.query.offset + this.query.itemsPerPage - this.localsolrstart);
+        }
+
         // start a local solr search
         if (!Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.DEBUG_SEARCH_LOCAL_SOLR_OFF, false)) {
         	final boolean useSolrFacets = true;
 			this.localsolrsearch = RemoteSearch.solrRemoteSearch(this,
-					this.query.solrQuery(this.query.contentdom, this.query.isStrictContentDom(), useSolrFacets, this.excludeintext_image), this.query.offset,
-					this.query.itemsPerPage, null /* this peer */, 0, Switchboard.urlBlacklist, useSolrFacets, true);
+					this.query.solrQuery(this.query.contentdom, this.query.isStrictContentDom(), useSolrFacets, this.excludeintext_image), this.localsolrstart,
+					localsolrcount, null /* this peer */, 0, Switchboard.urlBlacklist, useSolrFacets, true);
         }
-        this.localsolroffset = this.query.offset + this.query.itemsPerPage;
+        this.localsolroffset = this.localsolrstart + localsolrcount;
         
         // start a local RWI search concurrently
         this.rwiProcess = null;
         if (query.getSegment().connectedRWI() && !Switchboard.getSwitchboard().getConfigBool(SwitchboardConstants.DEBUG_SEARCH_LOCAL_DHT_OFF, false)) {
             // we start the local search only if this peer is doing a remote search or when it is doing a local search and the peer is old
-            rwiProcess = new RWIProcess(this.localsolrsearch);
+            rwiProcess = new RWIProcess(this.localsolrsearch, generateAbstracts);
             rwiProcess.start();
         }
 
@@ -570,9 +594,13 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
     
         final Thread waitForThread;
         
-        public RWIProcess(final Thread waitForThread) {
+        /** true when the index abstracts are generated from the containers of all query terms */
+        final boolean completeInclusion;
+        
+        public RWIProcess(final Thread waitForThread, final boolean completeInclusion) {
             super("SearchEvent.RWIProcess(" + (waitForThread != null ? waitForThread.getName() : "") + ")");
             this.waitForThread = waitForThread;
+            this.completeInclusion = completeInclusion;
         }
         
         /**
@@ -599,7 +627,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                 SearchEvent.this.query.getQueryGoal().getExcludeHashes(),
                             null,
                             Segment.wordReferenceFactory,
-                            SearchEvent.this.query.maxDistance);
+                            SearchEvent.this.query.maxDistance,
+                            this.completeInclusion);
                 SearchEvent.this.localSearchInclusion = search.inclusion();
                 ReferenceContainer<WordReference> index = search.joined();
                 if ( !index.isEmpty() ) {
@@ -625,7 +654,8 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                                             SearchEvent.this.query.getQueryGoal().getExcludeHashes(),
                                         null,
                                         Segment.wordReferenceFactory,
-                                        SearchEvent.this.query.maxDistance);
+                                        SearchEvent.this.query.maxDistance,
+                                        this.completeInclusion);
                         SearchEvent.this.localSearchInclusion = search.inclusion();
                         index = search.joined();
                         if (!index.isEmpty()) {
@@ -674,9 +704,10 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         }
         long timer = System.currentTimeMillis();
 
-        // normalize entries
-        final BlockingQueue<WordReferenceVars> decodedEntries = this.order.normalizeWith(index, maxtime, local);
-        int is = index.size();
+        // decode and normalize entries, only the best entries are decoded into reference objects
+        final WordReferenceColumns columns = new WordReferenceColumns(index);
+        final long[] ranking = this.order.normalizeAndRank(columns);
+        int is = columns.size();
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(
             this.query.id(true),
             SearchEventType.NORMALIZING,
@@ -691,118 +722,107 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         // apply all constraints
         long timeout = maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + maxtime;
         int successcounter = 0;
+        final int[] accepted = new int[is];
         try {
-            WordReferenceVars iEntry;
-            long remaining;
-            String acceptableAlternativeSitehash = null;
+            byte[] acceptableAlternativeSitehash = null;
             if (this.query.modifier.sitehost != null && this.query.modifier.sitehost.length() > 0) try {
-                acceptableAlternativeSitehash = DigestURL.hosthash(this.query.modifier.sitehost.startsWith("www.") ? this.query.modifier.sitehost.substring(4) : "www." + this.query.modifier.sitehost, 80);
+                acceptableAlternativeSitehash = ASCII.getBytes(DigestURL.hosthash(this.query.modifier.sitehost.startsWith("www.") ? this.query.modifier.sitehost.substring(4) : "www." + this.query.modifier.sitehost, 80));
             } catch (MalformedURLException e1) {}
-            pollloop: while ( true ) {
-                remaining = timeout - System.currentTimeMillis();
-                if (remaining <= 0) {
-                    ConcurrentLog.warn("SearchEvent", "terminated 'add' loop before poll time-out = " + remaining + ", decodedEntries.size = " + decodedEntries.size());
-                    break;
-                }
-                iEntry = decodedEntries.poll(remaining, TimeUnit.MILLISECONDS);
-                if (iEntry == null) {
-                    ConcurrentLog.warn("SearchEvent", "terminated 'add' loop after poll time-out = " + remaining + ", decodedEntries.size = " + decodedEntries.size());
-                    break pollloop;
+            final byte[] sitehash = this.query.modifier.sitehash == null ? null : ASCII.getBytes(this.query.modifier.sitehash);
+            final byte[] language = this.query.modifier.language == null || this.query.modifier.language.isEmpty() ? null : ASCII.getBytes(this.query.modifier.language);
+            final byte[] urlhash = new byte[index.row().primaryKeyLength];
+            rowloop: for (int i = 0; i < is; i++) {
+                if ((i & 0x3ff) == 0 && System.currentTimeMillis() > timeout) {
+                    ConcurrentLog.warn("SearchEvent", "terminated 'add' loop after time-out, " + (is - i) + " entries left");
+                    break rowloop;
                 }
-                if (iEntry == WordReferenceVars.poison) {
-                    break pollloop;
-                }
-                assert (iEntry.urlhash().length == index.row().primaryKeyLength);
 
                 // doublecheck for urls
-                if (this.urlhashes.has(iEntry.urlhash())) {
+                columns.urlhash(i, urlhash);
+                if (this.urlhashes.has(urlhash)) {
                     if (log.isFine()) log.fine("dropped RWI: doublecheck");
-                    continue pollloop;
+                    continue rowloop;
                 }
                 
                 // increase flag counts
-                Bitfield flags = iEntry.flags();
+                final int flags = columns.flags(i);
                 for (int j = 0; j < 32; j++) {
-                    if (flags.get(j)) this.flagcount[j]++;
+                    if (((flags >>> j) & 1) != 0) this.flagcount[j]++;
                 }
 
                 // check constraints
                 if (!this.testFlags(flags)) {
                     if (log.isFine()) log.fine("dropped RWI: flag test failed");
-                    continue pollloop;
+                    continue rowloop;
                 }
 
                 // check document domain
                 if (this.query.contentdom.getCode() > 0) {
                 	boolean domainMatch = true;
                 	if(this.query.isStrictContentDom()) {
-                		if((this.query.contentdom == ContentDomain.AUDIO && iEntry.getType() != Response.DT_AUDIO) || 
-                                (this.query.contentdom == ContentDomain.VIDEO && iEntry.getType() != Response.DT_MOVIE) ||
-                                (this.query.contentdom == ContentDomain.IMAGE && iEntry.getType() != Response.DT_IMAGE) ||
-                                (this.query.contentdom == ContentDomain.APP && !(flags.get(Tokenizer.flag_cat_hasapp)))) {
+                		if((this.query.contentdom == ContentDomain.AUDIO && columns.type(i) != Response.DT_AUDIO) || 
+                                (this.query.contentdom == ContentDomain.VIDEO && columns.type(i) != Response.DT_MOVIE) ||
+                                (this.query.contentdom == ContentDomain.IMAGE && columns.type(i) != Response.DT_IMAGE) ||
+                                (this.query.contentdom == ContentDomain.APP && !(columns.flag(i, Tokenizer.flag_cat_hasapp)))) {
                                 	domainMatch = false;    	
                                 }
-                	} else if((this.query.contentdom == ContentDomain.AUDIO && !(flags.get(Tokenizer.flag_cat_hasaudio))) || 
-                                (this.query.contentdom == ContentDomain.VIDEO && !(flags.get(Tokenizer.flag_cat_hasvideo))) ||
-                                (this.query.contentdom == ContentDomain.IMAGE && !(flags.get(Tokenizer.flag_cat_hasimage))) ||
-                                (this.query.contentdom == ContentDomain.APP && !(flags.get(Tokenizer.flag_cat_hasapp)))) {
+                	} else if((this.query.contentdom == ContentDomain.AUDIO && !(columns.flag(i, Tokenizer.flag_cat_hasaudio))) || 
+                                (this.query.contentdom == ContentDomain.VIDEO && !(columns.flag(i, Tokenizer.flag_cat_hasvideo))) ||
+                                (this.query.contentdom == ContentDomain.IMAGE && !(columns.flag(i, Tokenizer.flag_cat_hasimage))) ||
+                                (this.query.contentdom == ContentDomain.APP && !(columns.flag(i, Tokenizer.flag_cat_hasapp)))) {
                 			domainMatch = false;
                 	}
                 	if(!domainMatch) {
                 		if (log.isFine()) {
                 			log.fine("dropped RWI: contentdom fail");
                 		}
-                		continue pollloop;
+                		continue rowloop;
                 	}
                 }
                 
                 // check language
-				if (this.query.modifier.language != null && !this.query.modifier.language.isEmpty()
-						&& !this.query.modifier.language.equals(iEntry.getLanguageString())) {
+				if (language != null && !columns.isLanguage(i, language)) {
                 	if (log.isFine()) {
                 		log.fine("dropped RWI: language constraint = " + this.query.modifier.language);
                 	}
-                	continue pollloop;
+                	continue rowloop;
                 }
                 
-                // count domZones
-                //this.domZones[DigestURI.domDomain(iEntry.metadataHash())]++;
-
                 // check site constraints
-                final String hosthash = iEntry.hosthash();
-                if ( this.query.modifier.sitehash == null ) {
-                    if (this.query.siteexcludes != null && this.query.siteexcludes.contains(hosthash)) {
+                if (sitehash == null) {
+                    if (this.query.siteexcludes != null && this.query.siteexcludes.contains(columns.hosthash(i))) {
                         if (log.isFine()) log.fine("dropped RWI: siteexcludes");
-                        continue pollloop;
+                        continue rowloop;
                     }
                 } else {
                     // filter out all domains that do not match with the site constraint
-                    if (!hosthash.equals(this.query.modifier.sitehash) && (acceptableAlternativeSitehash == null || !hosthash.equals(acceptableAlternativeSitehash))) {
+                    if (!columns.isHost(i, sitehash) && !columns.isHost(i, acceptableAlternativeSitehash)) {
                         if (log.isFine()) log.fine("dropped RWI: modifier.sitehash");
-                        continue pollloop;
+                        continue rowloop;
                     }
                 }
 
-                // finally extend the double-check and insert result to stack
-                this.urlhashes.putUnique(iEntry.urlhash());
-                rankingtryloop: while (true) {
-                    try {
-                        this.rwiStack.put(new ReverseElement<WordReferenceVars>(iEntry, this.order.cardinal(iEntry))); // inserts the element and removes the worst (which is smallest)
-                        break rankingtryloop;
-                    } catch (final ArithmeticException e ) {
-                        // this may happen if the concurrent normalizer changes values during cardinal computation
-                        if (log.isFine()) log.fine("dropped RWI: arithmetic exception");
-                        continue rankingtryloop;
-                    }
-                }
+                // finally extend the double-check and remember the entry for the stack
+                this.urlhashes.putUnique(columns.urlhash(i));
+                accepted[successcounter++] = i;
+
                 // increase counter for statistics
                 if (local) this.local_rwi_available.incrementAndGet(); else this.remote_rwi_available.incrementAndGet();
-                
-                successcounter++;
             }
-            if (System.currentTimeMillis() >= timeout) ConcurrentLog.warn("SearchEvent", "rwi normalization ended with timeout = " + maxtime);
 
-        } catch (final InterruptedException e ) {
+            // insert the best entries to the stack, worse entries would be removed from the stack anyway
+            long minranking = Long.MIN_VALUE;
+            if (successcounter > max_results_rwi) {
+                final long[] acceptedRanking = new long[successcounter];
+                for (int j = 0; j < successcounter; j++) acceptedRanking[j] = ranking[accepted[j]];
+                Arrays.sort(acceptedRanking);
+                minranking = acceptedRanking[successcounter - max_results_rwi];
+            }
+            for (int j = 0; j < successcounter; j++) {
+                final int i = accepted[j];
+                if (ranking[i] < minranking) continue;
+                this.rwiStack.put(new ReverseElement<WordReferenceVars>(columns.vars(i, local), ranking[i])); // inserts the element and removes the worst (which is smallest)
+            }
         } catch (final SpaceExceededException e ) {
         }
 
@@ -824,9 +844,40 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         this.eventTime = System.currentTimeMillis();
     }
 
+    /**
+     * check if a result page of a local search can be served by this event
+     * @param offset the offset of the first result of the page
+     * @param itemsPerPage the number of results of the page
+     * @return true if the page lies in the window of results which this event requested from the local solr
+     */
+    protected boolean coversPage(final int offset, final int itemsPerPage) {
+        return offset >= this.localsolrstart && offset + itemsPerPage <= this.localsolroffset;
+    }
+
+    /**
+     * estimate the heap space used by the results and the intermediate data of this event.
+     * The estimation counts the entries of the large data structures; it is cheap but not exact.
+     * @return the estimated size in bytes
+     */
+    protected long sizeEstimate() {
+        long size = 16 * 1024; // the event object, navigators and thread handles
+        size += (long) (this.resultList.sizeAvailable() + this.nodeStack.sizeAvailable()) * 8 * 1024; // solr documents with text fields
+        size += (long) this.rwiStack.sizeAvailable() * 256;
+        for (final WeakPriorityBlockingQueue<WordReferenceVars> q: this.doubleDomCache.values()) size += (long) q.sizeAvailable() * 256;
+        size += (long) this.urlhashes.size() * 32;
+        size += (long) this.snippets.size() * 512;
+        final SortedMap<byte[], ReferenceContainer<WordReference>> inclusion = this.localSearchInclusion;
+        if (inclusion != null) {
+            for (final ReferenceContainer<WordReference> container: inclusion.values()) size += container.mem();
+        }
+        size += (long) (this.imageViewed.size() + this.imageSpareGood.size() + this.imageSpareBad.size()) * 1024;
+        return size;
+    }
+
     protected void cleanup() {
 
         // stop all threads
+        this.snippetBatch.cancel();
         if (this.localsolrsearch != null) {
             if (localsolrsearch.isAlive()) synchronized (this.localsolrsearch) {this.localsolrsearch.interrupt();}
         }
@@ -1830,36 +1881,14 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
      */
 	private boolean drainRWIStackToResult(boolean concurrentSnippetFetch) {
 		boolean success = false;
-		if (SearchEvent.this.snippetFetchAlive.get() >= 10 || MemoryControl.shortStatus() || !concurrentSnippetFetch) {
-            // too many concurrent processes
-            final URIMetadataNode noderwi = pullOneFilteredFromRWI(true);
-            if (noderwi != null) {
-                addResult(getSnippet(noderwi, null), noderwi.score());
-                success = true;
-            }
+		final URIMetadataNode noderwi = pullOneFilteredFromRWI(true);
+		if (noderwi == null) return false;
+		if (this.query.snippetCacheStrategy == null || this.snippetBatch.pending() >= MAX_PENDING_SNIPPET_JOBS || MemoryControl.shortStatus() || !concurrentSnippetFetch) {
+            // no snippet wanted or too many concurrent jobs
+            addResult(getSnippet(noderwi, null), noderwi.score());
+            success = true;
         } else {
-            Thread t = new Thread("SearchEvent.drainStacksToResult.oneFilteredFromRWI") {
-                @Override
-                public void run() {
-                    SearchEvent.this.oneFeederStarted();
-                    try {
-                        final URIMetadataNode noderwi = pullOneFilteredFromRWI(true);
-                        if (noderwi != null) {
-                            SearchEvent.this.snippetFetchAlive.incrementAndGet();
-                            try {
-                                addResult(getSnippet(noderwi, SearchEvent.this.query.snippetCacheStrategy), noderwi.score());
-                            } catch (final Throwable e) {
-                                ConcurrentLog.logException(e);
-                            } finally {    
-                                SearchEvent.this.snippetFetchAlive.decrementAndGet();
-                            }
-                        }
-                    } catch (final Throwable e) {} finally {
-                        SearchEvent.this.oneFeederTerminated();
-                    }
-                }
-            };
-            if (SearchEvent.this.query.snippetCacheStrategy == null) t.run(); else t.start(); //no need for concurrency if there is no latency
+            submitSnippetJob(noderwi, noderwi.score());
         }
         return success;
 	}
@@ -1894,34 +1923,47 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
                 success = true;
             } else {
                 // we don't have a snippet from solr, try to get it in our way (by reloading, if necessary)
-                if (SearchEvent.this.snippetFetchAlive.get() >= 10 || !concurrentSnippetFetch) {
-                    // too many concurrent processes
+                if (this.query.snippetCacheStrategy == null || this.snippetBatch.pending() >= MAX_PENDING_SNIPPET_JOBS || !concurrentSnippetFetch) {
+                    // no snippet wanted or too many concurrent jobs
                     addResult(getSnippet(node, null), localEntryElement.getWeight());
                     success = true;
                 } else {
-
-                    new Thread("SearchEvent.drainStacksToResult.getSnippet") {
-                        @Override
-                        public void run() {
-                            SearchEvent.this.oneFeederStarted();
-                            try {
-                                SearchEvent.this.snippetFetchAlive.incrementAndGet();
-                                try {
-                                    addResult(getSnippet(node, SearchEvent.this.query.snippetCacheStrategy), localEntryElement.getWeight());
-                                } catch (final Throwable e) {} finally {
-                                    SearchEvent.this.snippetFetchAlive.decrementAndGet();
-                                }
-                            } catch (final Throwable e) {} finally {
-                                SearchEvent.this.oneFeederTerminated();
-                            }
-                        }
-                    }.start();
+                    submitSnippetJob(node, localEntryElement.getWeight());
                 }
             }
         }
 		return success;
 	}
     
+    /**
+     * Compute the snippet of a result in the snippet worker pool and add the result to the result list.
+     * The result is added without snippet if the pool is saturated.
+     * @param node the result
+     * @param score the ranking of the result, the jobs of the best results are computed first
+     */
+    private void submitSnippetJob(final URIMetadataNode node, final long score) {
+        this.oneFeederStarted();
+        final boolean queued = this.snippetBatch.submit(new SnippetWorkerPool.Job() {
+            @Override
+            public void run(final boolean expired) {
+                try {
+                    addResult(getSnippetCacheFirst(node, SearchEvent.this.query.snippetCacheStrategy, expired), score);
+                } finally {
+                    SearchEvent.this.oneFeederTerminated();
+                }
+            }
+
+            @Override
+            public void cancel() {
+                SearchEvent.this.oneFeederTerminated();
+            }
+        }, score);
+        if (!queued) {
+            this.feedersAlive.decrementAndGet();
+            addResult(getSnippet(node, null), score);
+        }
+    }
+
     /**
      * place the result to the result vector and apply post-ranking
      * post-ranking is added to the current score, 
@@ -2018,17 +2060,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         ContentDomain contentDomain = page.getContentDomain();
         if (contentDomain == Classification.ContentDomain.TEXT || contentDomain == Classification.ContentDomain.ALL) {
             // attach text snippet
-            long startTime = System.currentTimeMillis();
-            final TextSnippet snippet = new TextSnippet(
-                    this.loader,
-                    page,
-                    this.snippetFetchWords,
-                    this.snippetFetchWordHashes,
-                    cacheStrategy,
-                    ((this.query.constraint != null) && (this.query.constraint.get(Tokenizer.flag_cat_indexof))),
-                    180,
-                    !this.query.isLocal());
-            SearchEvent.log.info("text snippet load time for " + page.url().toNormalform(true) + ": " + (System.currentTimeMillis() - startTime) + " ms, " + (!snippet.getErrorCode().fail() ? "snippet found" : ("no snippet found (" + snippet.getError() + ")")));
+            final TextSnippet snippet = loadTextSnippet(page, cacheStrategy);
 
             if (!snippet.getErrorCode().fail()) {
                 // we loaded the file and found the snippet
@@ -2053,6 +2085,39 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         }
         return page.makeResultEntry(this.query.getSegment(), this.peers, null); // result without snippet
     }
+
+    /**
+     * Compute the snippet of a result like {@link #getSnippet(URIMetadataNode, CacheStrategy)},
+     * but try the HTCache before a document is loaded from the network
+     * @param expired when true, the deadline of the snippet jobs has passed and nothing is loaded from the network:
+     *        a result whose document is not in the cache is returned without snippet
+     */
+    private URIMetadataNode getSnippetCacheFirst(final URIMetadataNode page, final CacheStrategy cacheStrategy, final boolean expired) {
+        if (page == null) return null;
+        if (cacheStrategy == null || cacheStrategy.mustBeOffline()) return getSnippet(page, cacheStrategy);
+        final ContentDomain contentDomain = page.getContentDomain();
+        if (contentDomain == Classification.ContentDomain.TEXT || contentDomain == Classification.ContentDomain.ALL) {
+            final TextSnippet snippet = loadTextSnippet(page, CacheStrategy.CACHEONLY);
+            if (!snippet.getErrorCode().fail()) return page.makeResultEntry(this.query.getSegment(), this.peers, snippet);
+            if (expired) return page.makeResultEntry(this.query.getSegment(), this.peers, null); // result without snippet
+        }
+        return getSnippet(page, cacheStrategy);
+    }
+
+    private TextSnippet loadTextSnippet(final URIMetadataNode page, final CacheStrategy cacheStrategy) {
+        final long startTime = System.currentTimeMillis();
+        final TextSnippet snippet = new TextSnippet(
+                this.loader,
+                page,
+                this.snippetFetchWords,
+                this.snippetFetchWordHashes,
+                cacheStrategy,
+                ((this.query.constraint != null) && (this.query.constraint.get(Tokenizer.flag_cat_indexof))),
+                180,
+                !this.query.isLocal());
+        SearchEvent.log.info("text snippet load time for " + page.url().toNormalform(true) + " (" + cacheStrategy.name() + "): " + (System.currentTimeMillis() - startTime) + " ms, " + (!snippet.getErrorCode().fail() ? "snippet found" : ("no snippet found (" + snippet.getError() + ")")));
+        return snippet;
+    }
     
     /**
      * This is the access point for the search interface to retrive ranked results.
@@ -2066,6 +2131,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         // check if we already retrieved this item
         // (happens if a search pages is accessed a second time)
         final long finishTime = timeout == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + timeout;
+        this.snippetBatch.extendDeadline(finishTime); // the snippets of the requested page may be loaded until then
         EventTracker.update(EventTracker.EClass.SEARCH, new ProfilingGraph.EventSearch(this.query.id(true), SearchEventType.ONERESULT, "started, item = " + item + ", available = " + this.getResultCount(), 0, 0), false);
 		
         // wait until a local solr is finished, we must do that to be able to check if we need more
@@ -2114,7 +2180,7 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         if (this.remote) {
         	resultListIndex = item;
         } else {
-        	resultListIndex = item - (this.localsolroffset - this.query.itemsPerPage);
+        	resultListIndex = item - this.localsolrstart;
         }
         while ( this.resultList.sizeAvailable() <= resultListIndex &&
                 (this.rwiQueueSize() > 0 || this.nodeStack.sizeQueue() > 0 ||
@@ -2434,6 +2500,20 @@ public final class SearchEvent implements ScoreMapUpdatesListener {
         return c;
     }
     
+    /**
+     * @param flags the flags as a number, the bit n is the flag n
+     * @see #testFlags(Bitfield)
+     */
+    protected boolean testFlags(final int flags) {
+        if (this.query.constraint == null) return true;
+        int constraint = 0;
+        for (int i = 0; i < 32; i++) {
+            if (this.query.constraint.get(i)) constraint |= 1 << i;
+        }
+        if (this.query.allofconstraint) return (flags & constraint) == constraint;
+        return (flags & constraint) != 0;
+    }
+
     protected boolean testFlags(final Bitfield flags) {
         if (this.query.constraint == null) return true;
         // test if ientry matches with filter
@@ -26,10 +26,13 @@
 
 package net.yacy.search.query;
 
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
+import java.util.concurrent.atomic.AtomicLong;
 
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.data.WorkTables;
@@ -39,19 +42,53 @@ import net.yacy.repository.LoaderDispatcher;
 import net.yacy.search.Switchboard;
 import net.yacy.search.SwitchboardConstants;
 
+/**
+ * A cache of search events, so that the result pages of a search can be computed from the same event.
+ * The key of an event is the id of its query, which does not contain the result page or the client,
+ * so an event of a remote search serves all pages of the same search for all users, and an event of
+ * a local search serves the pages in the window of results it requested from the local index.
+ * The cache is limited by the estimated memory of the events: when the sum of the event sizes exceeds
+ * the memory budget, the least recently used events are removed.
+ */
 public class SearchEventCache {
 
-    private volatile static LinkedHashMap<String, SearchEvent> lastEvents = new LinkedHashMap<String, SearchEvent>(); // a cache for objects from this class: re-use old search requests
+    private final static LinkedHashMap<String, SearchEvent> lastEvents = new LinkedHashMap<String, SearchEvent>(16, 0.75f, true); // a cache for objects from this class: re-use old search requests; in order of access
     private static final long eventLifetimeBigMem = 600000; // the time an event will stay in the cache when available memory is high, 10 Minutes
     private static final long eventLifetimeMediumMem = 60000; // the time an event will stay in the cache when available memory is medium, 1 Minute
     private static final long eventLifetimeShortMem = 10000; // the time an event will stay in the cache when memory is low, 10 seconds
     private static final long memlimitHigh = 600 * 1024 * 1024; // 400 MB
     private static final long memlimitMedium = 200 * 1024 * 1024; // 100 MB
     public volatile static String lastEventID = "";
-    public static long cacheInsert = 0, cacheHit = 0, cacheMiss = 0, cacheDelete = 0;
+    public static final AtomicLong cacheInsert = new AtomicLong(0), cacheHit = new AtomicLong(0), cacheMiss = new AtomicLong(0), cacheDelete = new AtomicLong(0);
+    /** the number of events which have been removed because the cache exceeded its memory budget */
+    public static final AtomicLong cacheEvict = new AtomicLong(0);
+    private volatile static long maxMemory = MemoryControl.maxMemory() / 4; // the memory budget of the cache in bytes
+    private volatile static long memory = 0; // the estimated memory of all events at the last check
 
     public static int size() {
-        return lastEvents.size();
+        synchronized (lastEvents) {
+            return lastEvents.size();
+        }
+    }
+
+    /**
+     * @return the estimated memory of the cached events in bytes, as computed at the last check of the memory budget
+     */
+    public static long memory() {
+        return memory;
+    }
+
+    public static long getMaxMemory() {
+        return maxMemory;
+    }
+
+    /**
+     * set the memory budget of the cache
+     * @param bytes the maximum estimated memory of all cached events in bytes; zero or a negative value means a quarter of the maximum heap space
+     */
+    public static void setMaxMemory(final long bytes) {
+        maxMemory = bytes > 0 ? bytes : MemoryControl.maxMemory() / 4;
+        evictEvents();
     }
 
     protected static void put(final String eventID, final SearchEvent event) {
@@ -59,8 +96,53 @@ public class SearchEventCache {
         lastEventID = eventID;
         synchronized (lastEvents) {
             final SearchEvent oldEvent = lastEvents.put(eventID, event);
-            if (oldEvent == null) cacheInsert++;
+            if (oldEvent == null) cacheInsert.incrementAndGet();
         }
+        evictEvents();
+    }
+
+    /**
+     * remove the least recently used events until the estimated memory of the remaining events fits into the memory budget.
+     * The sizes are estimated again at each check because the events grow while their searches are running.
+     * The most recently used event is never removed.
+     */
+    private static void evictEvents() {
+        synchronized (lastEvents) {
+            final long[] sizes = new long[lastEvents.size()];
+            int c = 0;
+            for (final SearchEvent event: lastEvents.values()) {
+                sizes[c++] = event == null ? 0 : event.sizeEstimate();
+            }
+            final List<SearchEvent> evicted = new ArrayList<SearchEvent>();
+            memory = evict(lastEvents, sizes, maxMemory, evicted);
+            for (final SearchEvent event: evicted) {
+                if (event != null) event.cleanup();
+                cacheEvict.incrementAndGet();
+                cacheDelete.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * remove the first entries of a map until the sum of the sizes of the remaining entries fits into a budget.
+     * The last entry is never removed.
+     * @param map the entries, the first one is removed first
+     * @param sizes the sizes of the entries in the iteration order of the map
+     * @param budget the maximum sum of the sizes of the remaining entries
+     * @param evicted the removed values are added to this list
+     * @return the sum of the sizes of the remaining entries
+     */
+    static <V> long evict(final Map<String, V> map, final long[] sizes, final long budget, final List<V> evicted) {
+        long total = 0;
+        for (final long size: sizes) total += size;
+        final Iterator<V> i = map.values().iterator();
+        int c = 0;
+        while (total > budget && c < sizes.length - 1 && i.hasNext()) {
+            evicted.add(i.next());
+            total -= sizes[c++];
+            i.remove();
+        }
+        return total;
     }
 
     public static boolean delete(final String urlhash) {
@@ -89,10 +171,11 @@ public class SearchEventCache {
                 if (all || event.getEventTime() + acceptTime < System.currentTimeMillis()) {
                     event.cleanup();
                     i.remove();
-                    cacheDelete++;
+                    cacheDelete.incrementAndGet();
                 }
             }
         }
+        evictEvents();
     }
     
     public static void cleanupEvents(int maxsize) {
@@ -100,7 +183,7 @@ public class SearchEventCache {
         if (MemoryControl.shortStatus()) {cleanupEvents(true); return;}
         Map.Entry<String, SearchEvent> eventEntry;
         synchronized (lastEvents) {
-            final Iterator<Map.Entry<String, SearchEvent>> i = lastEvents.entrySet().iterator(); // iterates in order of entry
+            final Iterator<Map.Entry<String, SearchEvent>> i = lastEvents.entrySet().iterator(); // iterates in order of access, least recently used first
             int dc = lastEvents.size() - maxsize;
             if (dc <= 0) return;
             SearchEvent event;
@@ -110,7 +193,7 @@ public class SearchEventCache {
                 if (event == null) continue;
                 event.cleanup();
                 i.remove();
-                cacheDelete++;
+                cacheDelete.incrementAndGet();
                 dc--;
                 if (dc <= 0) break;            
             }
@@ -118,16 +201,11 @@ public class SearchEventCache {
     }
 
     public static SearchEvent getEvent(final String eventID) {
-        SearchEvent event = lastEvents.get(eventID);
-        if (event == null) {
-            synchronized (lastEvents) {
-                event = lastEvents.get(eventID);
-                if (event == null) cacheMiss++; else cacheHit++;
-            }
-            cacheMiss++;
-        } else {
-            cacheHit++;
+        final SearchEvent event;
+        synchronized (lastEvents) {
+            event = lastEvents.get(eventID); // this also moves the event to the end of the eviction order
         }
+        if (event == null) cacheMiss.incrementAndGet(); else cacheHit.incrementAndGet();
         return event;
     }
 
@@ -151,28 +229,25 @@ public class SearchEventCache {
             synchronized (lastEvents) {
                 lastEvents.remove(id);
             }
-            cacheDelete++;
+            cacheDelete.incrementAndGet();
             event = null;
         } else {
+            if (event != null && query.isLocal() && !event.coversPage(query.offset, query.itemsPerPage)) {
+                /* Searching the local index only : a local event holds a window of some result pages, starting at the page it was created for.
+                 * For a page outside of this window a new event is created at the requested offset. This allow to request last result pages
+                 * of large result sets (larger than SearchEvent.max_results_node) without the need to retrieve all the beginning pages */
+                synchronized (lastEvents) {
+                    lastEvents.remove(id);
+                }
+                cacheDelete.incrementAndGet();
+                event = null;
+            }
             if (event != null) {
-            	if(query.isLocal()) {
-            		/* Searching the local index only : we do not reuse the cached event each time the page size or offset changes.
-            		 * This allow to request last result pages of large result sets (larger than SearchEvent.max_results_node) 
-            		 * without the need to retrieve all the beginning pages */
-            		if(event.query.offset != query.offset || event.query.itemsPerPage != query.itemsPerPage) {
-                        synchronized (lastEvents) {
-                            lastEvents.remove(id);
-                        }
-                        cacheDelete++;
-                        event = null;
-            		}
-            	} else {
-            		//re-new the event time for this event, so it is not deleted next time too early
-            		event.resetEventTime();
-            		// replace the current result offset
-            		event.query.offset = query.offset;
-            		event.query.itemsPerPage = query.itemsPerPage;
-            	}
+                //re-new the event time for this event, so it is not deleted next time too early
+                event.resetEventTime();
+                // replace the current result offset
+                event.query.offset = query.offset;
+                event.query.itemsPerPage = query.itemsPerPage;
             }
         }
         if (event == null) {
@@ -0,0 +1,271 @@
+/**
+ *  CitationGraph
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.ranking;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The graph of the links between the documents of one host, used for the citation rank computation.
+ *
+ * The documents are mapped to the node numbers 0..size-1. The links are stored in compressed sparse row form:
+ * the links to a node n are the sources <code>in[inOffset[n]]..in[inOffset[n+1]-1]</code> and the links from
+ * a node the targets <code>out[outOffset[n]]..out[outOffset[n+1]-1]</code>.
+ * The rank vectors are primitive double arrays indexed by the node number.
+ *
+ * A graph is created with a {@link Builder} and is immutable afterwards, so it can be read concurrently.
+ */
+public final class CitationGraph {
+
+    private final String[] ids;
+    private final int[] inOffset, in;
+    private final int[] outOffset, out;
+    private final double[] weight; // the factor of the rank of a node for each of its links: 1 / number of links
+
+    private CitationGraph(final String[] ids, final int[] linkCount, final long[] links, final int linksSize) {
+        final int n = ids.length;
+        this.ids = ids;
+        this.inOffset = new int[n + 1];
+        this.outOffset = new int[n + 1];
+        this.in = new int[linksSize];
+        this.out = new int[linksSize];
+        for (int i = 0; i < linksSize; i++) {
+            this.inOffset[target(links[i]) + 1]++;
+            this.outOffset[source(links[i]) + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            this.inOffset[i + 1] += this.inOffset[i];
+            this.outOffset[i + 1] += this.outOffset[i];
+        }
+        final int[] inPos = Arrays.copyOf(this.inOffset, n);
+        final int[] outPos = Arrays.copyOf(this.outOffset, n);
+        for (int i = 0; i < linksSize; i++) {
+            final int s = source(links[i]), t = target(links[i]);
+            this.in[inPos[t]++] = s;
+            this.out[outPos[s]++] = t;
+        }
+        this.weight = new double[n];
+        for (int i = 0; i < n; i++) {
+            // the number of links of a document may be smaller than the number of known links if the document is outdated
+            final int c = Math.max(linkCount[i], outDegree(i));
+            this.weight[i] = c == 0 ? 0.0d : 1.0d / c;
+        }
+    }
+
+    private static int source(final long link) {
+        return (int) (link >>> 32);
+    }
+
+    private static int target(final long link) {
+        return (int) link;
+    }
+
+    /**
+     * @return the number of nodes
+     */
+    public int size() {
+        return this.ids.length;
+    }
+
+    /**
+     * @return the number of links
+     */
+    public int links() {
+        return this.in.length;
+    }
+
+    /**
+     * @param node a node number
+     * @return the document id of the node
+     */
+    public String id(final int node) {
+        return this.ids[node];
+    }
+
+    public int inDegree(final int node) {
+        return this.inOffset[node + 1] - this.inOffset[node];
+    }
+
+    public int outDegree(final int node) {
+        return this.outOffset[node + 1] - this.outOffset[node];
+    }
+
+    /**
+     * @return the node numbers of the nodes which link to the given node
+     */
+    public int[] inLinks(final int node) {
+        return Arrays.copyOfRange(this.in, this.inOffset[node], this.inOffset[node + 1]);
+    }
+
+    /**
+     * @return the node numbers of the nodes which are linked from the given node
+     */
+    public int[] outLinks(final int node) {
+        return Arrays.copyOfRange(this.out, this.outOffset[node], this.outOffset[node + 1]);
+    }
+
+    /**
+     * @return the initial rank vector with the same rank for all nodes
+     */
+    public double[] initialRank() {
+        final double[] rank = new double[size()];
+        Arrays.fill(rank, 1.0d / Math.max(1, size()));
+        return rank;
+    }
+
+    /**
+     * Compute the next generation of the rank values:
+     * <code>next[n] = (1 - damping) / size + damping * sum(rank[s] / links(s))</code> over all nodes s which link to n
+     * @param rank the current rank values
+     * @param next the array for the next rank values
+     * @param damping the damping factor
+     */
+    public void rankStep(final double[] rank, final double[] next, final double damping) {
+        final double df = (1.0d - damping) / size();
+        for (int n = 0; n < next.length; n++) {
+            double ncr = 0.0d;
+            for (int i = this.inOffset[n]; i < this.inOffset[n + 1]; i++) {
+                final int s = this.in[i];
+                ncr += rank[s] * this.weight[s];
+            }
+            next[n] = df + damping * ncr;
+        }
+    }
+
+    /**
+     * Compute the normalized rank values: the nodes are ordered by their rank and divided into classes,
+     * the lowest class containing the lower half of the nodes, the next class the half of the remaining nodes and so on,
+     * up to the highest class 10. Nodes with the same rank are in the same class.
+     * @param rank the rank values
+     * @return the class of each node, at most 10
+     */
+    public static int[] normalize(final double[] rank) {
+        final int n = rank.length;
+        final double[] sorted = rank.clone();
+        Arrays.sort(sorted);
+        // the distinct rank values in ascending order
+        int distinct = 0;
+        for (int i = 0; i < n; i++) if (i == 0 || sorted[i] != sorted[distinct - 1]) sorted[distinct++] = sorted[i];
+        final int[] groupSize = new int[distinct];
+        for (int i = 0; i < n; i++) groupSize[Arrays.binarySearch(sorted, 0, distinct, rank[i])]++;
+        // assign the classes to the groups, starting with the lowest ranks and the largest class
+        final int[] groupCrn = new int[distinct];
+        int nextcount = (n + 1) / 2;
+        int nextcrn = 0;
+        int g = 0;
+        while (g < distinct) {
+            int count = nextcount;
+            while (g < distinct && count > 0) {
+                count -= groupSize[g];
+                groupCrn[g++] = nextcrn;
+            }
+            nextcrn++;
+            nextcount = Math.max(1, (nextcount + count + 1) / 2);
+        }
+        // finally, increase the crn number in such a way that the maximum is always 10
+        final int inc = 11 - nextcrn; // nextcrn is +1
+        final int[] crn = new int[n];
+        for (int i = 0; i < n; i++) crn[i] = groupCrn[Arrays.binarySearch(sorted, 0, distinct, rank[i])] + inc;
+        return crn;
+    }
+
+    /**
+     * Collects the nodes and links of a graph
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> nodes; // only used while the graph is built
+        private String[] ids;
+        private int[] linkCount;
+        private long[] links; // source node << 32 | target node
+        private int linksSize;
+
+        /**
+         * @param expectedNodes the expected number of nodes
+         */
+        public Builder(final int expectedNodes) {
+            final int capacity = Math.max(16, expectedNodes);
+            this.nodes = new HashMap<String, Integer>(capacity * 4 / 3 + 1);
+            this.ids = new String[capacity];
+            this.linkCount = new int[capacity];
+            this.links = new long[capacity];
+            this.linksSize = 0;
+        }
+
+        /**
+         * Add a node
+         * @param id the document id
+         * @param linkCount the number of links from the document to documents of the same host, including links to unknown documents
+         * @return the node number
+         */
+        public int addNode(final String id, final int linkCount) {
+            final Integer node = this.nodes.get(id);
+            if (node != null) return node.intValue();
+            final int n = this.nodes.size();
+            if (n == this.ids.length) {
+                this.ids = Arrays.copyOf(this.ids, n * 2);
+                this.linkCount = Arrays.copyOf(this.linkCount, n * 2);
+            }
+            this.ids[n] = id;
+            this.linkCount[n] = Math.max(0, linkCount);
+            this.nodes.put(id, n);
+            return n;
+        }
+
+        /**
+         * @return the node number of the document or -1 if the document is not a node
+         */
+        public int node(final String id) {
+            final Integer node = this.nodes.get(id);
+            return node == null ? -1 : node.intValue();
+        }
+
+        /**
+         * @return the document id of a node
+         */
+        public String id(final int node) {
+            return this.ids[node];
+        }
+
+        public int size() {
+            return this.nodes.size();
+        }
+
+        /**
+         * Add a link between two nodes
+         * @param source the node number of the linking document
+         * @param target the node number of the linked document
+         */
+        public void addLink(final int source, final int target) {
+            if (this.linksSize == this.links.length) this.links = Arrays.copyOf(this.links, this.linksSize * 2);
+            this.links[this.linksSize++] = (((long) source) << 32) | (target & 0xFFFFFFFFL);
+        }
+
+        public CitationGraph build() {
+            final int n = this.nodes.size();
+            this.nodes.clear();
+            final CitationGraph graph = new CitationGraph(Arrays.copyOf(this.ids, n), this.linkCount, this.links, this.linksSize);
+            this.links = null;
+            return graph;
+        }
+    }
+}
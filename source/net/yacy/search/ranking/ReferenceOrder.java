@@ -42,6 +42,7 @@ import net.yacy.document.LargeNumberCache;
 import net.yacy.document.Tokenizer;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
 import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceColumns;
 import net.yacy.kelondro.data.word.WordReferenceRow;
 import net.yacy.kelondro.data.word.WordReferenceVars;
 import net.yacy.kelondro.rwi.ReferenceContainer;
@@ -52,19 +53,37 @@ public class ReferenceOrder {
 
     private static int cores = Runtime.getRuntime().availableProcessors();
 
+    /** the criteria of the {@link WordReferenceColumns} where a smaller value gives a better ranking */
+    private static final boolean[] descendingCriteria = new boolean[WordReferenceColumns.CRITERIA];
+    static {
+        descendingCriteria[WordReferenceColumns.URLCOMPS] = true;
+        descendingCriteria[WordReferenceColumns.URLLENGTH] = true;
+        descendingCriteria[WordReferenceColumns.POSINTEXT] = true;
+        descendingCriteria[WordReferenceColumns.POSOFPHRASE] = true;
+        descendingCriteria[WordReferenceColumns.POSINPHRASE] = true;
+        descendingCriteria[WordReferenceColumns.DISTANCE] = true;
+    }
+
     private       int maxdomcount;
-    private       WordReferenceVars min, max;
+    private final int[] min, max; // the minimum and maximum of the criteria of the WordReferenceColumns
+    private       double minTermFrequency, maxTermFrequency;
     private final ConcurrentScoreMap<String> doms; // collected for "authority" heuristic
     private final RankingProfile ranking;
     private final String language;
+    private final byte[] languageBytes;
 
     public ReferenceOrder(final RankingProfile profile, final String language) {
-        this.min = null;
-        this.max = null;
+        this.min = new int[WordReferenceColumns.CRITERIA];
+        this.max = new int[WordReferenceColumns.CRITERIA];
+        Arrays.fill(this.min, Integer.MAX_VALUE);
+        Arrays.fill(this.max, Integer.MIN_VALUE);
+        this.minTermFrequency = Double.MAX_VALUE;
+        this.maxTermFrequency = -Double.MAX_VALUE;
         this.ranking = profile;
         this.doms = new ConcurrentScoreMap<String>();
         this.maxdomcount = 0;
         this.language = language;
+        this.languageBytes = language == null ? null : ASCII.getBytes(language);
     }
 
     public BlockingQueue<WordReferenceVars> normalizeWith(final ReferenceContainer<WordReference> container, long maxtime, final boolean local) {
@@ -78,6 +97,159 @@ public class ReferenceOrder {
         return out;
     }
 
+    /**
+     * Normalize the ranking with the references of a container and compute the ranking of all of them.
+     * The result is the same as with {@link #normalizeWith(ReferenceContainer, long, boolean)} followed by
+     * {@link #cardinal(WordReference)} for each reference, but the references are not decoded into objects:
+     * the minimum and maximum of each criterion are computed and the ranking is summed up criterion by criterion
+     * on the primitive arrays of the decoded columns.
+     * @param columns the decoded references of a container
+     * @return the ranking of each reference, indexed as the columns: the higher the number, the better the ranking
+     */
+    public long[] normalizeAndRank(final WordReferenceColumns columns) {
+        final int size = columns.size();
+        final long[] r = new long[size];
+        if (size == 0) return r;
+
+        // find min/max of the container
+        final int[] cmin = new int[WordReferenceColumns.CRITERIA];
+        final int[] cmax = new int[WordReferenceColumns.CRITERIA];
+        for (int c = 0; c < WordReferenceColumns.CRITERIA; c++) {
+            final int[] v = columns.criterion(c);
+            int lo = v[0], hi = v[0];
+            for (int i = 1; i < size; i++) {
+                if (v[i] < lo) lo = v[i]; else if (v[i] > hi) hi = v[i];
+            }
+            cmin[c] = lo;
+            cmax[c] = hi;
+        }
+        double tflo = Double.MAX_VALUE, tfhi = -Double.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            final double tf = columns.termFrequency(i);
+            if (tf < tflo) tflo = tf;
+            if (tf > tfhi) tfhi = tf;
+        }
+
+        // count the references of each host: the host keys are sorted and counted in runs
+        final long[] hostkeys = new long[size];
+        for (int i = 0; i < size; i++) hostkeys[i] = columns.hostkey(i);
+        final long[] hosts = hostkeys.clone();
+        Arrays.sort(hosts);
+        final int[] hostcount = new int[size];
+        int hostsize = 0;
+        for (int i = 0; i < size; i++) {
+            if (hostsize == 0 || hosts[hostsize - 1] != hosts[i]) hosts[hostsize++] = hosts[i];
+            hostcount[hostsize - 1]++;
+        }
+        final String[] hosthashes = new String[hostsize];
+        for (int h = 0; h < hostsize; h++) hosthashes[h] = hosthash(hosts[h]);
+
+        // extend the normalization and take a consistent copy of it
+        final int[] lo, hi;
+        final int maxdomcount;
+        synchronized (this) {
+            for (int c = 0; c < WordReferenceColumns.CRITERIA; c++) {
+                if (cmin[c] < this.min[c]) this.min[c] = cmin[c];
+                if (cmax[c] > this.max[c]) this.max[c] = cmax[c];
+            }
+            if (tflo < this.minTermFrequency) this.minTermFrequency = tflo;
+            if (tfhi > this.maxTermFrequency) this.maxTermFrequency = tfhi;
+            tflo = this.minTermFrequency;
+            tfhi = this.maxTermFrequency;
+            lo = this.min.clone();
+            hi = this.max.clone();
+            for (int h = 0; h < hostsize; h++) this.doms.inc(hosthashes[h], hostcount[h]);
+            this.maxdomcount = this.doms.getMaxScore();
+            maxdomcount = this.maxdomcount;
+        }
+
+        // sum up the ranking criterion by criterion
+        final int[] coeff = coefficients();
+        for (int c = 0; c < WordReferenceColumns.CRITERIA; c++) {
+            final int l = lo[c], d = hi[c] - l, shift = coeff[c];
+            if (d == 0) continue;
+            final int[] v = columns.criterion(c);
+            if (descendingCriteria[c]) {
+                for (int i = 0; i < size; i++) r[i] += (256 - (((v[i] - l) << 8) / d)) << shift;
+            } else {
+                for (int i = 0; i < size; i++) r[i] += (((v[i] - l) << 8) / d) << shift;
+            }
+        }
+        if (tfhi != tflo) {
+            for (int i = 0; i < size; i++) r[i] += ((int) (((columns.termFrequency(i) - tflo) * 256.0) / (tfhi - tflo))) << this.ranking.coeff_termfrequency;
+        }
+        int[] authority = null;
+        if (this.ranking.coeff_authority > 12) {
+            authority = new int[hostsize];
+            for (int h = 0; h < hostsize; h++) authority[h] = ((this.doms.get(hosthashes[h]) << 8) / (1 + maxdomcount)) << this.ranking.coeff_authority;
+        }
+        for (int i = 0; i < size; i++) {
+            r[i] += ((256 - columns.domLengthNormalized(i)) << this.ranking.coeff_domlength)
+                  + flagRanking(columns.flags(i))
+                  + (columns.isLanguage(i, this.languageBytes) ? 255 << this.ranking.coeff_language : 0);
+            if (authority != null) r[i] += authority[Arrays.binarySearch(hosts, 0, hostsize, hostkeys[i])];
+        }
+        return r;
+    }
+
+    /**
+     * @return the ranking coefficients of the criteria of the {@link WordReferenceColumns}
+     */
+    private int[] coefficients() {
+        final int[] coeff = new int[WordReferenceColumns.CRITERIA];
+        coeff[WordReferenceColumns.URLCOMPS] = this.ranking.coeff_urlcomps;
+        coeff[WordReferenceColumns.URLLENGTH] = this.ranking.coeff_urllength;
+        coeff[WordReferenceColumns.POSINTEXT] = this.ranking.coeff_posintext;
+        coeff[WordReferenceColumns.POSOFPHRASE] = this.ranking.coeff_posofphrase;
+        coeff[WordReferenceColumns.POSINPHRASE] = this.ranking.coeff_posinphrase;
+        coeff[WordReferenceColumns.DISTANCE] = this.ranking.coeff_worddistance;
+        coeff[WordReferenceColumns.VIRTUALAGE] = this.ranking.coeff_date;
+        coeff[WordReferenceColumns.WORDSINTITLE] = this.ranking.coeff_wordsintitle;
+        coeff[WordReferenceColumns.WORDSINTEXT] = this.ranking.coeff_wordsintext;
+        coeff[WordReferenceColumns.PHRASESINTEXT] = this.ranking.coeff_phrasesintext;
+        coeff[WordReferenceColumns.LLOCAL] = this.ranking.coeff_llocal;
+        coeff[WordReferenceColumns.LOTHER] = this.ranking.coeff_lother;
+        coeff[WordReferenceColumns.HITCOUNT] = this.ranking.coeff_hitcount;
+        return coeff;
+    }
+
+    /**
+     * @param hostkey a host hash packed into a number by {@link WordReferenceColumns#hostkey(int)}
+     * @return the host hash
+     */
+    private static String hosthash(final long hostkey) {
+        final byte[] b = new byte[6];
+        for (int j = 0; j < 6; j++) b[j] = (byte) (hostkey >>> ((5 - j) << 3));
+        return ASCII.String(b);
+    }
+
+    /**
+     * extend the minimum and maximum of the ranking criteria with a reference
+     */
+    private synchronized void extend(final WordReference t) {
+        final int[] v = new int[WordReferenceColumns.CRITERIA];
+        v[WordReferenceColumns.URLCOMPS] = t.urlcomps();
+        v[WordReferenceColumns.URLLENGTH] = t.urllength();
+        v[WordReferenceColumns.POSINTEXT] = t.posintext();
+        v[WordReferenceColumns.POSOFPHRASE] = t.posofphrase();
+        v[WordReferenceColumns.POSINPHRASE] = t.posinphrase();
+        v[WordReferenceColumns.DISTANCE] = t.distance();
+        v[WordReferenceColumns.VIRTUALAGE] = t.virtualAge();
+        v[WordReferenceColumns.WORDSINTITLE] = t.wordsintitle();
+        v[WordReferenceColumns.WORDSINTEXT] = t.wordsintext();
+        v[WordReferenceColumns.PHRASESINTEXT] = t.phrasesintext();
+        v[WordReferenceColumns.LLOCAL] = t.llocal();
+        v[WordReferenceColumns.LOTHER] = t.lother();
+        v[WordReferenceColumns.HITCOUNT] = t.hitcount();
+        for (int c = 0; c < WordReferenceColumns.CRITERIA; c++) {
+            if (v[c] < this.min[c]) this.min[c] = v[c];
+            if (v[c] > this.max[c]) this.max[c] = v[c];
+        }
+        final double tf = t.termFrequency();
+        if (tf < this.minTermFrequency) this.minTermFrequency = tf;
+        if (tf > this.maxTermFrequency) this.maxTermFrequency = tf;
+    }
+
     private final class NormalizeDistributor extends Thread {
 
         ReferenceContainer<WordReference> container;
@@ -170,9 +342,8 @@ public class ReferenceOrder {
                 long timeout = this.maxtime == Long.MAX_VALUE ? Long.MAX_VALUE : System.currentTimeMillis() + this.maxtime;
                 while ((iEntry = this.decodedEntries.take()) != WordReferenceVars.poison) {
                     // find min/max
-                    if (ReferenceOrder.this.min == null) ReferenceOrder.this.min = iEntry.clone(); else ReferenceOrder.this.min.min(iEntry);
-                    if (ReferenceOrder.this.max == null) ReferenceOrder.this.max = iEntry.clone(); else ReferenceOrder.this.max.max(iEntry);
-                    this.out.put(iEntry); // must be after the min/max check to prevent that min/max is null in cardinal()
+                    extend(iEntry);
+                    this.out.put(iEntry); // must be after the min/max check to prevent that min/max is not set in cardinal()
                     // update domcount
                     dom = iEntry.hosthash();
                     count = doms0.get(dom);
@@ -215,6 +386,40 @@ public class ReferenceOrder {
         return (this.doms.get(hostHash) << 8) / (1 + this.maxdomcount);
     }
 
+    private static int ascending(final int value, final int min, final int max, final int shift) {
+        return (max == min) ? 0 : (((value - min) << 8) / (max - min)) << shift;
+    }
+
+    private static int descending(final int value, final int min, final int max, final int shift) {
+        return (max == min) ? 0 : (256 - (((value - min) << 8) / (max - min))) << shift;
+    }
+
+    /**
+     * @return the ranking of the flags of a reference
+     */
+    private long flagRanking(final int flags) {
+        return (((flags >>> WordReferenceRow.flag_app_dc_identifier)  & 1) != 0 ? 255 << this.ranking.coeff_appurl             : 0)
+             + (((flags >>> WordReferenceRow.flag_app_dc_title)       & 1) != 0 ? 255 << this.ranking.coeff_app_dc_title       : 0)
+             + (((flags >>> WordReferenceRow.flag_app_dc_creator)     & 1) != 0 ? 255 << this.ranking.coeff_app_dc_creator     : 0)
+             + (((flags >>> WordReferenceRow.flag_app_dc_subject)     & 1) != 0 ? 255 << this.ranking.coeff_app_dc_subject     : 0)
+             + (((flags >>> WordReferenceRow.flag_app_dc_description) & 1) != 0 ? 255 << this.ranking.coeff_app_dc_description : 0)
+             + (((flags >>> WordReferenceRow.flag_app_emphasized)     & 1) != 0 ? 255 << this.ranking.coeff_appemph            : 0)
+             + (((flags >>> Tokenizer.flag_cat_indexof)      & 1) != 0 ? 255 << this.ranking.coeff_catindexof         : 0)
+             + (((flags >>> Tokenizer.flag_cat_hasimage)     & 1) != 0 ? 255 << this.ranking.coeff_cathasimage        : 0)
+             + (((flags >>> Tokenizer.flag_cat_hasaudio)     & 1) != 0 ? 255 << this.ranking.coeff_cathasaudio        : 0)
+             + (((flags >>> Tokenizer.flag_cat_hasvideo)     & 1) != 0 ? 255 << this.ranking.coeff_cathasvideo        : 0)
+             + (((flags >>> Tokenizer.flag_cat_hasapp)       & 1) != 0 ? 255 << this.ranking.coeff_cathasapp          : 0);
+    }
+
+    /**
+     * @return the first 32 flags of a bitfield as a number, the bit n is the flag n
+     */
+    private static int flags(final Bitfield flags) {
+        int f = 0;
+        for (int i = 0; i < 32; i++) if (flags.get(i)) f |= 1 << i;
+        return f;
+    }
+
     /**
      * return the ranking of a given word entry
      * @param t
@@ -222,42 +427,31 @@ public class ReferenceOrder {
      */
     public long cardinal(final WordReference t) {
         // the normalizedEntry must be a normalized indexEntry
-        assert this.min != null;
-        assert this.max != null;
+        assert this.max[WordReferenceColumns.HITCOUNT] >= this.min[WordReferenceColumns.HITCOUNT] : "not normalized";
         assert t != null;
         assert this.ranking != null;
-        final Bitfield flags = t.flags();
-        final long tf = ((this.max.termFrequency() == this.min.termFrequency()) ? 0 : (((int)(((t.termFrequency()-this.min.termFrequency())*256.0)/(this.max.termFrequency() - this.min.termFrequency())))) << this.ranking.coeff_termfrequency);
-        //System.out.println("tf(" + t.urlHash + ") = " + Math.floor(1000 * t.termFrequency()) + ", min = " + Math.floor(1000 * min.termFrequency()) + ", max = " + Math.floor(1000 * max.termFrequency()) + ", tf-normed = " + tf);
+        final int[] min = this.min, max = this.max;
+        final double minTermFrequency = this.minTermFrequency, maxTermFrequency = this.maxTermFrequency;
+        final long tf = ((maxTermFrequency == minTermFrequency) ? 0 : (((int)(((t.termFrequency()-minTermFrequency)*256.0)/(maxTermFrequency - minTermFrequency)))) << this.ranking.coeff_termfrequency);
         final long r =
              ((256 - DigestURL.domLengthNormalized(t.urlhash())) << this.ranking.coeff_domlength)
-           + ((this.max.urlcomps()      == this.min.urlcomps()   )   ? 0 : (256 - (((t.urlcomps()     - this.min.urlcomps()    ) << 8) / (this.max.urlcomps()    - this.min.urlcomps())    )) << this.ranking.coeff_urlcomps)
-           + ((this.max.urllength()     == this.min.urllength()  )   ? 0 : (256 - (((t.urllength()    - this.min.urllength()   ) << 8) / (this.max.urllength()   - this.min.urllength())   )) << this.ranking.coeff_urllength)
-           + ((this.max.posintext()     == this.min.posintext())     ? 0 : (256 - (((t.posintext()    - this.min.posintext()   ) << 8) / (this.max.posintext()   - this.min.posintext())   )) << this.ranking.coeff_posintext)
-           + ((this.max.posofphrase()   == this.min.posofphrase())   ? 0 : (256 - (((t.posofphrase()  - this.min.posofphrase() ) << 8) / (this.max.posofphrase() - this.min.posofphrase()) )) << this.ranking.coeff_posofphrase)
-           + ((this.max.posinphrase()   == this.min.posinphrase())   ? 0 : (256 - (((t.posinphrase()  - this.min.posinphrase() ) << 8) / (this.max.posinphrase() - this.min.posinphrase()) )) << this.ranking.coeff_posinphrase)
-           + ((this.max.distance()      == this.min.distance()   )   ? 0 : (256 - (((t.distance()     - this.min.distance()    ) << 8) / (this.max.distance()    - this.min.distance())    )) << this.ranking.coeff_worddistance)
-           + ((this.max.virtualAge()    == this.min.virtualAge())    ? 0 :        (((t.virtualAge()   - this.min.virtualAge()  ) << 8) / (this.max.virtualAge()  - this.min.virtualAge())   ) << this.ranking.coeff_date)
-           + ((this.max.wordsintitle()  == this.min.wordsintitle())  ? 0 : (((t.wordsintitle() - this.min.wordsintitle()  ) << 8) / (this.max.wordsintitle() - this.min.wordsintitle())  ) << this.ranking.coeff_wordsintitle)
-           + ((this.max.wordsintext()   == this.min.wordsintext())   ? 0 : (((t.wordsintext()  - this.min.wordsintext()   ) << 8) / (this.max.wordsintext()  - this.min.wordsintext())   ) << this.ranking.coeff_wordsintext)
-           + ((this.max.phrasesintext() == this.min.phrasesintext()) ? 0 : (((t.phrasesintext()- this.min.phrasesintext() ) << 8) / (this.max.phrasesintext()- this.min.phrasesintext()) ) << this.ranking.coeff_phrasesintext)
-           + ((this.max.llocal()        == this.min.llocal())        ? 0 : (((t.llocal()       - this.min.llocal()        ) << 8) / (this.max.llocal()       - this.min.llocal())        ) << this.ranking.coeff_llocal)
-           + ((this.max.lother()        == this.min.lother())        ? 0 : (((t.lother()       - this.min.lother()        ) << 8) / (this.max.lother()       - this.min.lother())        ) << this.ranking.coeff_lother)
-           + ((this.max.hitcount()      == this.min.hitcount())      ? 0 : (((t.hitcount()     - this.min.hitcount()      ) << 8) / (this.max.hitcount()     - this.min.hitcount())      ) << this.ranking.coeff_hitcount)
+           + descending(t.urlcomps(),     min[WordReferenceColumns.URLCOMPS],      max[WordReferenceColumns.URLCOMPS],      this.ranking.coeff_urlcomps)
+           + descending(t.urllength(),    min[WordReferenceColumns.URLLENGTH],     max[WordReferenceColumns.URLLENGTH],     this.ranking.coeff_urllength)
+           + descending(t.posintext(),    min[WordReferenceColumns.POSINTEXT],     max[WordReferenceColumns.POSINTEXT],     this.ranking.coeff_posintext)
+           + descending(t.posofphrase(),  min[WordReferenceColumns.POSOFPHRASE],   max[WordReferenceColumns.POSOFPHRASE],   this.ranking.coeff_posofphrase)
+           + descending(t.posinphrase(),  min[WordReferenceColumns.POSINPHRASE],   max[WordReferenceColumns.POSINPHRASE],   this.ranking.coeff_posinphrase)
+           + descending(t.distance(),     min[WordReferenceColumns.DISTANCE],      max[WordReferenceColumns.DISTANCE],      this.ranking.coeff_worddistance)
+           + ascending(t.virtualAge(),    min[WordReferenceColumns.VIRTUALAGE],    max[WordReferenceColumns.VIRTUALAGE],    this.ranking.coeff_date)
+           + ascending(t.wordsintitle(),  min[WordReferenceColumns.WORDSINTITLE],  max[WordReferenceColumns.WORDSINTITLE],  this.ranking.coeff_wordsintitle)
+           + ascending(t.wordsintext(),   min[WordReferenceColumns.WORDSINTEXT],   max[WordReferenceColumns.WORDSINTEXT],   this.ranking.coeff_wordsintext)
+           + ascending(t.phrasesintext(), min[WordReferenceColumns.PHRASESINTEXT], max[WordReferenceColumns.PHRASESINTEXT], this.ranking.coeff_phrasesintext)
+           + ascending(t.llocal(),        min[WordReferenceColumns.LLOCAL],        max[WordReferenceColumns.LLOCAL],        this.ranking.coeff_llocal)
+           + ascending(t.lother(),        min[WordReferenceColumns.LOTHER],        max[WordReferenceColumns.LOTHER],        this.ranking.coeff_lother)
+           + ascending(t.hitcount(),      min[WordReferenceColumns.HITCOUNT],      max[WordReferenceColumns.HITCOUNT],      this.ranking.coeff_hitcount)
            + tf
            + ((this.ranking.coeff_authority > 12) ? (authority(t.hosthash()) << this.ranking.coeff_authority) : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_identifier))  ? 255 << this.ranking.coeff_appurl             : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_title))       ? 255 << this.ranking.coeff_app_dc_title       : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_creator))     ? 255 << this.ranking.coeff_app_dc_creator     : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_subject))     ? 255 << this.ranking.coeff_app_dc_subject     : 0)
-           + ((flags.get(WordReferenceRow.flag_app_dc_description)) ? 255 << this.ranking.coeff_app_dc_description : 0)
-           + ((flags.get(WordReferenceRow.flag_app_emphasized))     ? 255 << this.ranking.coeff_appemph            : 0)
-           + ((flags.get(Tokenizer.flag_cat_indexof))      ? 255 << this.ranking.coeff_catindexof         : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasimage))     ? 255 << this.ranking.coeff_cathasimage        : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasaudio))     ? 255 << this.ranking.coeff_cathasaudio        : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasvideo))     ? 255 << this.ranking.coeff_cathasvideo        : 0)
-           + ((flags.get(Tokenizer.flag_cat_hasapp))       ? 255 << this.ranking.coeff_cathasapp          : 0)
-           + ((Arrays.equals(t.getLanguage(), ASCII.getBytes(this.language))) ? 255 << this.ranking.coeff_language    : 0);
+           + flagRanking(flags(t.flags()))
+           + ((Arrays.equals(t.getLanguage(), this.languageBytes)) ? 255 << this.ranking.coeff_language    : 0);
 
         //if (searchWords != null) r += (yacyURL.probablyWordURL(t.urlHash(), searchWords) != null) ? 256 << ranking.coeff_appurl : 0;
 
@@ -46,6 +46,10 @@ import java.util.Set;
 import java.util.TreeMap;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
@@ -98,14 +102,15 @@ import net.yacy.document.parser.html.IconEntry;
 import net.yacy.document.parser.html.ImageEntry;
 import net.yacy.kelondro.data.citation.CitationReference;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
-import net.yacy.kelondro.index.RowHandleMap;
 import net.yacy.kelondro.rwi.ReferenceContainer;
 import net.yacy.kelondro.util.Bitfield;
 import net.yacy.kelondro.util.MemoryControl;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
 import net.yacy.search.index.Segment;
 import net.yacy.search.index.Segment.ReferenceReport;
 import net.yacy.search.index.Segment.ReferenceReportCache;
 import net.yacy.search.query.QueryParams;
+import net.yacy.search.ranking.CitationGraph;
 
 
 public class CollectionConfiguration extends SchemaConfiguration implements Serializable {
@@ -1327,6 +1332,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
 			final AtomicInteger allcount) {
 		final Map<String, Long> hostExtentCache = new HashMap<String, Long>(); // a mapping from the host id to the number of documents which contain this host-id
         final Set<String> uniqueURLs = ConcurrentHashMap.newKeySet(); // will be used in a concurrent environment
+        final SignatureIndex signatureIndex = new SignatureIndex(segment.fulltext().getDefaultConnector()); // the signatures of each host, loaded when the host is postprocessed the first time
         final Set<String> localOmitFields = new HashSet<String>();
         localOmitFields.add(CollectionSchema.process_sxt.getSolrFieldName());
         localOmitFields.add(CollectionSchema.harvestkey_s.getSolrFieldName());
@@ -1435,7 +1441,7 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                                             if (tagtype == ProcessType.UNIQUE) {
                                                 postprocessing_http_unique(segment, doc, sid, url);
                                                 postprocessing_www_unique(segment, doc, sid, url);
-                                                postprocessing_doublecontent(segment, uniqueURLs, doc, sid, url);
+                                                postprocessing_doublecontent(segment, uniqueURLs, signatureIndex, doc, sid, url);
                                             }
                                             
                                         } catch (IllegalArgumentException e) {}
@@ -1652,7 +1658,6 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             int concurrency = Math.min(collection1hosts.size(), Runtime.getRuntime().availableProcessors());
             postprocessingActivity = "collecting cr for " + collection1hosts.size() + " hosts, concurrency = " + concurrency;
             ConcurrentLog.info("CollectionConfiguration", postprocessingActivity);
-            int countcheck = 0;
             for (String host: collection1hosts.keyList(true)) {
                 // Patch the citation index for links with canonical tags.
                 // This shall fulfill the following requirement:
@@ -1695,32 +1700,55 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                     ConcurrentLog.logException(e);
                 }
                 if (patchquerycount != patchquerycountcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous patchquery count for host " + host + ": expected=" + patchquerycount + ", counted=" + patchquerycountcheck);
-                
-                // do the citation rank computation
-                if (collection1hosts.get(host) <= 0) continue;
-                // select all documents for each host
-                CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
-                int convergence_attempts = 0;
-                while (convergence_attempts++ < 30) {
-                    ConcurrentLog.info("CollectionConfiguration", "convergence step " + convergence_attempts + " for host " + host + " ...");
-                    if (crh.convergenceStep()) break;
-                    if (MemoryControl.shortStatus()) {
-                        ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
-                        break;
-                    }
+            }
+            
+            // do the citation rank computation, concurrently for the hosts after all citations have been patched
+            final AtomicInteger hostcount = new AtomicInteger(0);
+            final ExecutorService service = Executors.newFixedThreadPool(Math.max(1, concurrency),
+                    new NamePrefixThreadFactory(CollectionConfiguration.class.getSimpleName() + ".createRankingMap"));
+            try {
+                final List<Future<?>> tasks = new ArrayList<Future<?>>();
+                for (final String host: collection1hosts.keyList(true)) {
+                    if (collection1hosts.get(host) <= 0) continue;
+                    tasks.add(service.submit(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (MemoryControl.shortStatus()) {
+                                ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
+                                return;
+                            }
+                            // select all documents for each host
+                            CRHost crh = new CRHost(segment, rrCache, host, 0.85d, 6);
+                            int convergence_attempts = 0;
+                            while (convergence_attempts++ < 30) {
+                                if (crh.convergenceStep()) break;
+                                if (MemoryControl.shortStatus()) {
+                                    ConcurrentLog.warn("CollectionConfiguration", "terminated convergenceStep during postprocessing because of short memory");
+                                    break;
+                                }
+                            }
+                            ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
+                            // we have now the cr for all documents of a specific host; we store them for later use
+                            Map<String, CRV> crn = crh.normalize();
+                            //crh.log(crn);
+                            rankings.putAll(crn); // accumulate this here for usage in document update later
+                            hostcount.incrementAndGet();
+                        }
+                    }));
                 }
-                ConcurrentLog.info("CollectionConfiguration", "convergence for host " + host + " after " + convergence_attempts + " steps");
-                // we have now the cr for all documents of a specific host; we store them for later use
-                Map<String, CRV> crn = crh.normalize();
-                //crh.log(crn);
-                rankings.putAll(crn); // accumulate this here for usage in document update later
-                if (MemoryControl.shortStatus()) {
-                    ConcurrentLog.warn("CollectionConfiguration", "terminated crn akkumulation during postprocessing because of short memory");
-                    break;
+                for (final Future<?> task: tasks) {
+                    try {
+                        task.get();
+                    } catch (final ExecutionException e) {
+                        ConcurrentLog.logException(e);
+                    }
                 }
-                countcheck++;
+            } catch (final InterruptedException e) {
+                ConcurrentLog.logException(e);
+            } finally {
+                service.shutdownNow();
             }
-            if (collection1hosts.size() != countcheck) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + countcheck);
+            if (collection1hosts.size() != hostcount.get()) ConcurrentLog.warn("CollectionConfiguration", "ambiguous host count: expected=" + collection1hosts.size() + ", counted=" + hostcount.get());
         } catch (final IOException e2) {
             ConcurrentLog.logException(e2);
             collection1hosts = new ClusteredScoreMap<String>(true);
@@ -1776,7 +1804,18 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         if (sbb == obb) sid.setField(field.getSolrFieldName(), !sbb);
     }
     
-    public void postprocessing_doublecontent(Segment segment, Set<String> uniqueURLs, SolrDocument doc, final SolrInputDocument sid, final DigestURL url) {
+    /**
+     * Find out if the document is a double document within its host and set the unique flags and copy counts of the signatures.
+     * The signatures of the other documents of the host are looked up in the signature index; only if the index of the
+     * host could not be loaded, the Solr index is queried for the document.
+     * @param segment Solr segment
+     * @param uniqueURLs the ids of the postprocessed documents, used only with the Solr query
+     * @param signatureIndex the signature index or null to query the Solr index
+     * @param doc the document
+     * @param sid the changes of the document
+     * @param url the url of the document
+     */
+    public void postprocessing_doublecontent(Segment segment, Set<String> uniqueURLs, final SignatureIndex signatureIndex, SolrDocument doc, final SolrInputDocument sid, final DigestURL url) {
         // FIND OUT IF THIS IS A DOUBLE DOCUMENT
         // term to describe documents which are indexable:
         // - no noindex in meta oder x-robots
@@ -1791,58 +1830,31 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         
         String urlhash = ASCII.String(url.hash());
         String hostid = url.hosthash();
-        Disjunction dnf = new Disjunction();
         CollectionSchema[][] doccheckschema = new CollectionSchema[][]{
                 {CollectionSchema.exact_signature_l, CollectionSchema.exact_signature_unique_b, CollectionSchema.exact_signature_copycount_i},
                 {CollectionSchema.fuzzy_signature_l, CollectionSchema.fuzzy_signature_unique_b, CollectionSchema.fuzzy_signature_copycount_i}};
-        uniquecheck: for (CollectionSchema[] checkfields: doccheckschema) {
+        final SignatureIndex.HostSignatures signatures = signatureIndex == null ? null : signatureIndex.getHostSignatures(hostid);
+        final boolean indexable = SignatureIndex.isIndexable(doc); // if true, the document itself is counted in the signature index
+        if (signatures != null) uniquecheck: for (CollectionSchema[] checkfields: doccheckschema) {
             CollectionSchema signaturefield = checkfields[0];
             CollectionSchema uniquefield = checkfields[1];
             CollectionSchema countfield = checkfields[2];
 
             if (this.contains(signaturefield) && this.contains(uniquefield) && this.contains(countfield)) {
-                // lookup the document with the same signature
+                // lookup the documents with the same signature
                 Long signature = (Long) doc.getFieldValue(signaturefield.getSolrFieldName());
                 if (signature == null) continue uniquecheck;
-                //con.addOperand(new Negation(new Literal(CollectionSchema.id, urlhash)));
-                //con.addOperand(new Literal(CollectionSchema.host_id_s, hostid));
-                dnf.addOperand(new LongLiteral(signaturefield, signature));
-            }
-        }
-        Conjunction con = (Conjunction) ValidDocTermTemplate.clone();
-        con.addOperand(dnf);
-        con.addOperand(new Negation(new StringLiteral(CollectionSchema.id, urlhash)));
-        con.addOperand(new StringLiteral(CollectionSchema.host_id_s, hostid));
-        String query = con.toString();
-        SolrDocumentList docsAkk;
-        try {
-             docsAkk = segment.fulltext().getDefaultConnector().getDocumentListByQuery(query, null, 0, 1000,
-                     CollectionSchema.id.getSolrFieldName(), CollectionSchema.exact_signature_l.getSolrFieldName(), CollectionSchema.fuzzy_signature_l.getSolrFieldName());
-        } catch (final IOException e) {
-            ConcurrentLog.logException(e);
-            docsAkk = new SolrDocumentList(); 
-        }
-        if (docsAkk.getNumFound() > 0) uniquecheck: for (CollectionSchema[] checkfields: doccheckschema) {
-            CollectionSchema signaturefield = checkfields[0];
-            CollectionSchema uniquefield = checkfields[1];
-            CollectionSchema countfield = checkfields[2];
-
-            if (this.contains(signaturefield) && this.contains(uniquefield) && this.contains(countfield)) {
-                // lookup the document with the same signature
-                Long signature = (Long) doc.getFieldValue(signaturefield.getSolrFieldName());
-                if (signature == null) continue uniquecheck;
-                SolrDocumentList docs = new StringLiteral(signaturefield, signature.toString()).apply(docsAkk);
-                if (docs.getNumFound() == 0) {
+                int others = signatures.count(signaturefield, signature.longValue()) - (indexable ? 1 : 0);
+                if (others <= 0) {
                     sid.setField(uniquefield.getSolrFieldName(), true);
                     sid.setField(countfield.getSolrFieldName(), 1);
                 } else {
-                    boolean firstappearance = true;
-                    for (SolrDocument d: docs) {if (uniqueURLs.contains(d.getFieldValue(CollectionSchema.id.getSolrFieldName()))) firstappearance = false; break;}
-                    sid.setField(uniquefield.getSolrFieldName(), firstappearance);
-                    sid.setField(countfield.getSolrFieldName(), docs.getNumFound() + 1); // the current url was excluded from search but is included in count
+                    // the document with the smallest id of the group is the unique one
+                    sid.setField(uniquefield.getSolrFieldName(), indexable && urlhash.equals(signatures.firstID(signaturefield, signature.longValue())));
+                    sid.setField(countfield.getSolrFieldName(), others + 1); // the current url is included in count
                 }
             }
-        }
+        } else postprocessing_doublecontent_query(segment, uniqueURLs, doc, sid, ValidDocTermTemplate, urlhash, hostid, doccheckschema);
         
         // CHECK IF TITLE AND DESCRIPTION IS UNIQUE (this is by default not switched on)
         // in case that the document has no status code 200, has a noindex attribute
@@ -1871,6 +1883,10 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                     if (signature == null) {
                         continue uniquecheck;
                     }
+                    if (signatures != null) {
+                        sid.setField(uniquefield.getSolrFieldName(), signatures.count(signaturefield, signature.longValue()) - (indexable ? 1 : 0) <= 0);
+                        continue uniquecheck;
+                    }
                     try {
                         Conjunction doccountterm = (Conjunction) ValidDocTermTemplate.clone();
                         doccountterm.addOperand(new Negation(new StringLiteral(CollectionSchema.id, urlhash)));
@@ -1885,6 +1901,62 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
         uniqueURLs.add(urlhash);
     }
 
+    /**
+     * Find out if the document is a double document with a Solr query for the documents of the host with the same signatures
+     */
+    private void postprocessing_doublecontent_query(final Segment segment, final Set<String> uniqueURLs, final SolrDocument doc, final SolrInputDocument sid,
+            final Conjunction ValidDocTermTemplate, final String urlhash, final String hostid, final CollectionSchema[][] doccheckschema) {
+        Disjunction dnf = new Disjunction();
+        uniquecheck: for (CollectionSchema[] checkfields: doccheckschema) {
+            CollectionSchema signaturefield = checkfields[0];
+            CollectionSchema uniquefield = checkfields[1];
+            CollectionSchema countfield = checkfields[2];
+
+            if (this.contains(signaturefield) && this.contains(uniquefield) && this.contains(countfield)) {
+                // lookup the document with the same signature
+                Long signature = (Long) doc.getFieldValue(signaturefield.getSolrFieldName());
+                if (signature == null) continue uniquecheck;
+                //con.addOperand(new Negation(new Literal(CollectionSchema.id, urlhash)));
+                //con.addOperand(new Literal(CollectionSchema.host_id_s, hostid));
+                dnf.addOperand(new LongLiteral(signaturefield, signature));
+            }
+        }
+        Conjunction con = (Conjunction) ValidDocTermTemplate.clone();
+        con.addOperand(dnf);
+        con.addOperand(new Negation(new StringLiteral(CollectionSchema.id, urlhash)));
+        con.addOperand(new StringLiteral(CollectionSchema.host_id_s, hostid));
+        String query = con.toString();
+        SolrDocumentList docsAkk;
+        try {
+             docsAkk = segment.fulltext().getDefaultConnector().getDocumentListByQuery(query, null, 0, 1000,
+                     CollectionSchema.id.getSolrFieldName(), CollectionSchema.exact_signature_l.getSolrFieldName(), CollectionSchema.fuzzy_signature_l.getSolrFieldName());
+        } catch (final IOException e) {
+            ConcurrentLog.logException(e);
+            docsAkk = new SolrDocumentList(); 
+        }
+        if (docsAkk.getNumFound() > 0) uniquecheck: for (CollectionSchema[] checkfields: doccheckschema) {
+            CollectionSchema signaturefield = checkfields[0];
+            CollectionSchema uniquefield = checkfields[1];
+            CollectionSchema countfield = checkfields[2];
+
+            if (this.contains(signaturefield) && this.contains(uniquefield) && this.contains(countfield)) {
+                // lookup the document with the same signature
+                Long signature = (Long) doc.getFieldValue(signaturefield.getSolrFieldName());
+                if (signature == null) continue uniquecheck;
+                SolrDocumentList docs = new StringLiteral(signaturefield, signature.toString()).apply(docsAkk);
+                if (docs.getNumFound() == 0) {
+                    sid.setField(uniquefield.getSolrFieldName(), true);
+                    sid.setField(countfield.getSolrFieldName(), 1);
+                } else {
+                    boolean firstappearance = true;
+                    for (SolrDocument d: docs) {if (uniqueURLs.contains(d.getFieldValue(CollectionSchema.id.getSolrFieldName()))) firstappearance = false; break;}
+                    sid.setField(uniquefield.getSolrFieldName(), firstappearance);
+                    sid.setField(countfield.getSolrFieldName(), docs.getNumFound() + 1); // the current url was excluded from search but is included in count
+                }
+            }
+        }
+    }
+
     public boolean postprocessing_references(final ReferenceReportCache rrCache, final SolrInputDocument sid, final DigestURL url, final Map<String, Long> hostExtentCount) {
         if (!(this.contains(CollectionSchema.references_i) ||
               this.contains(CollectionSchema.references_internal_i) ||
@@ -1956,25 +2028,26 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
      */
     private static final class CRHost {
         private final Segment segment;
-        private final Map<String, double[]> crt;
+        private final CitationGraph graph;
+        private double[] cr, ncr; // {old value, new value} for each node of the graph
         private final int cr_host_count;
-        private final RowHandleMap internal_links_counter;
         private double damping;
         private int converge_eq_factor;
-        private ReferenceReportCache rrCache;
         public CRHost(final Segment segment, final ReferenceReportCache rrCache, final String host, final double damping, final int converge_digits) {
             this.segment = segment;
             this.damping = damping;
-            this.rrCache = rrCache;
             this.converge_eq_factor = (int) Math.pow(10.0d, converge_digits);
             SolrConnector connector = segment.fulltext().getDefaultConnector();
-            this.crt = new ConcurrentHashMap<String, double[]>();
+            final CitationGraph.Builder builder = new CitationGraph.Builder(1000);
             try {
-                // select all documents for each host
-                BlockingQueue<String> ids = connector.concurrentIDsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1);
-                String id;
-                while ((id = ids.take()) != AbstractSolrConnector.POISON_ID) {
-                    this.crt.put(id, new double[]{0.0d,0.0d}); //{old value, new value}
+                // select all documents for each host, together with the number of internal links which is the dividend for the ranking of the linked documents
+                BlockingQueue<SolrDocument> docs = connector.concurrentDocumentsByQuery("{!cache=false raw f=" + CollectionSchema.host_s.getSolrFieldName() + "}" + host, CollectionSchema.url_chars_i.getSolrFieldName() + " asc", 0, 100000000, 86400000, 200, 1, false,
+                        CollectionSchema.id.getSolrFieldName(), CollectionSchema.inboundlinkscount_i.getSolrFieldName());
+                SolrDocument doc;
+                while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                    Object x = doc.getFieldValue(CollectionSchema.inboundlinkscount_i.getSolrFieldName());
+                    int il = (x == null) ? 0 : (x instanceof Integer) ? ((Integer) x).intValue() : (x instanceof Long) ? ((Long) x).intValue() : 0;
+                    builder.addNode((String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName()), il);
                     if (MemoryControl.shortStatus()) {
                         ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost collection during postprocessing because of short memory");
                         break;
@@ -1982,41 +2055,38 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
                 }
             } catch (final InterruptedException e2) {
             }
-            this.cr_host_count = this.crt.size();
-            double initval = 1.0d / cr_host_count;
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) entry.getValue()[0] = initval;
-            this.internal_links_counter = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 100, "internal_links_counter");
+            // collect the internal links of all documents once; the convergence steps then only read the graph
+            for (int node = 0; node < builder.size(); node++) {
+                try {
+                    final String id = builder.id(node);
+                    ReferenceReport rr = rrCache.getReferenceReport(id, false);
+                    for (byte[] iid: rr.getInternallIDs()) {
+                        int source = builder.node(ASCII.String(iid));
+                        if (source >= 0) builder.addLink(source, node); // links from documents which are not in the index are ignored
+                    }
+                } catch (final IOException e) {
+                    ConcurrentLog.logException(e);
+                }
+                if (MemoryControl.shortStatus()) {
+                    ConcurrentLog.warn("CollectionConfiguration", "terminated CRHost link collection during postprocessing because of short memory");
+                    break;
+                }
+            }
+            this.graph = builder.build();
+            this.cr_host_count = this.graph.size();
+            this.cr = this.graph.initialRank();
+            this.ncr = new double[this.cr_host_count];
         }
         /**
          * produce a map from IDs to CRV records, normalization entries containing the values that are stored to solr.
          * @return
          */
         public Map<String, CRV> normalize() {
-            final TreeMap<Double, List<byte[]>> reorder = new TreeMap<Double, List<byte[]>>();
-            for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                Double d = entry.getValue()[0];
-                List<byte[]> ds = reorder.get(d);
-                if (ds == null) {ds = new ArrayList<byte[]>(); reorder.put(d, ds);}
-                ds.add(ASCII.getBytes(entry.getKey()));
+            final int[] crn = CitationGraph.normalize(this.cr);
+            Map<String, CRV> r = new HashMap<String, CRV>(this.cr_host_count * 4 / 3 + 1);
+            for (int node = 0; node < this.cr_host_count; node++) {
+                r.put(this.graph.id(node), new CRV(this.cr_host_count, this.cr[node], crn[node]));
             }
-            int nextcount = (this.cr_host_count + 1) / 2;
-            int nextcrn = 0;
-            Map<String, CRV> r = new HashMap<String, CRV>();
-            while (reorder.size() > 0) {
-                int count = nextcount;
-                while (reorder.size() > 0 && count > 0) {
-                    Map.Entry<Double, List<byte[]>> next = reorder.pollFirstEntry();
-                    List<byte[]> ids = next.getValue();
-                    count -= ids.size();
-                    double cr = next.getKey();
-                    for (byte[] id: ids) r.put(ASCII.String(id), new CRV(this.cr_host_count, cr, nextcrn));
-                }
-                nextcrn++;
-                nextcount = Math.max(1, (nextcount + count + 1) / 2);
-            }
-            // finally, increase the crn number in such a way that the maximum is always 10
-            int inc = 11 - nextcrn; // nextcrn is +1
-            for (Map.Entry<String, CRV> entry: r.entrySet()) entry.getValue().crn += inc;
             return r;
         }
         /**
@@ -2039,74 +2109,22 @@ public class CollectionConfiguration extends SchemaConfiguration implements Seri
             }
         }
         /**
-         * Calculate the number of internal links from a specific document, denoted by the document ID.
-         * This is a very important attribute for the ranking computation because it is the dividend for the previous ranking attribute.
-         * The internalLinks value will be requested several times for the same id during the convergenceStep()-steps; therefore it should use a cache.
-         * This cache is part of the CRHost data structure.
-         * @param id
-         * @return the number of links from the document, denoted by the ID to documents within the same domain
-         */
-        public int getInternalLinks(final byte[] id) {
-            int il = (int) this.internal_links_counter.get(id);
-            if (il >= 0) return il;
-            SolrConnector connector = this.segment.fulltext().getDefaultConnector();
-            if (connector == null) return 0;
-            try {
-                SolrDocument doc = connector.getDocumentById(ASCII.String(id), CollectionSchema.inboundlinkscount_i.getSolrFieldName());
-                if (doc == null) {
-                    this.internal_links_counter.put(id, 0);
-                    return 0;
-                }
-                Object x = doc.getFieldValue(CollectionSchema.inboundlinkscount_i.getSolrFieldName());
-                il = (x == null) ? 0 : (x instanceof Integer) ? ((Integer) x).intValue() : (x instanceof Long) ? ((Long) x).intValue() : 0;
-                this.internal_links_counter.put(id, il);
-                return il;
-            } catch (final IOException e) {
-                ConcurrentLog.logException(e);
-            } catch (final SpaceExceededException e) {
-                ConcurrentLog.logException(e);
-            }
-            try {this.internal_links_counter.put(id, 0);} catch (final SpaceExceededException e) {}
-            return 0;
-        }
-        /**
-         * Use the crt cache to compute the next generation of crt values.
-         * @return
+         * Compute the next generation of cr values from the graph.
+         * @return true if the values converged
          */
         public boolean convergenceStep() {
+            this.graph.rankStep(this.cr, this.ncr, this.damping);
             boolean convergence = true;
-            double df = (1.0d - damping) / this.cr_host_count;
-            try {
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    String id = entry.getKey();
-                    ReferenceReport rr = this.rrCache.getReferenceReport(id, false);
-                    // sum up the cr of the internal links
-                    HandleSet iids = rr.getInternallIDs();
-                    double ncr = 0.0d;
-                    for (byte[] iid: iids) {
-                        int ilc = getInternalLinks(iid);
-                        if (ilc > 0) { // if (ilc == 0) then the reference report is wrong!
-                            double[] d = this.crt.get(ASCII.String(iid));
-                            // d[] could be empty at some situations
-                            if (d != null && d.length > 0) {
-                                ncr += d[0] / ilc;
-                            } else {
-                                // Output a warning that d[] is empty
-                                ConcurrentLog.warn("COLLECTION", "d[] is empty, iid="  + ASCII.String(iid));
-                                break;
-                            }
-                        }
-                    }
-                    ncr = df + damping * ncr;
-                    if (convergence && !eqd(ncr, entry.getValue()[0])) convergence = false;
-                    entry.getValue()[1] = ncr;
-                }
-                // after the loop, replace the old value with the new value in crt
-                for (Map.Entry<String, double[]> entry: this.crt.entrySet()) {
-                    entry.getValue()[0] = entry.getValue()[1];
+            for (int node = 0; node < this.cr_host_count; node++) {
+                if (!eqd(this.ncr[node], this.cr[node])) {
+                    convergence = false;
+                    break;
                 }
-            } catch (final IOException e) {
             }
+            // replace the old value with the new value
+            final double[] t = this.cr;
+            this.cr = this.ncr;
+            this.ncr = t;
             return convergence;
         }
         /**
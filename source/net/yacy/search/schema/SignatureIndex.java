@@ -0,0 +1,285 @@
+/**
+ *  SignatureIndex
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.schema;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.solr.common.SolrDocument;
+
+import net.yacy.cora.federate.solr.connector.AbstractSolrConnector;
+import net.yacy.cora.federate.solr.connector.SolrConnector;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.MemoryControl;
+
+/**
+ * An in-memory index of the content signatures of the documents of each host, used by the postprocessing
+ * to find double content without a Solr query for each document.
+ *
+ * The index of a host is loaded with one streaming query when it is requested the first time. It contains for
+ * each signature field and signature the number of indexable documents of the host with that signature and the
+ * smallest id of these documents, which is the one document of the group that is marked as unique.
+ * A document is indexable if it has the http status 200, no canonical tag pointing to another url and no noindex flag,
+ * as in the Solr query of {@link CollectionConfiguration#postprocessing_doublecontent}.
+ */
+public class SignatureIndex {
+
+    private final static ConcurrentLog log = new ConcurrentLog(SignatureIndex.class.getName());
+
+    /** the signature fields which are indexed */
+    public static final CollectionSchema[] SIGNATURE_FIELDS = new CollectionSchema[]{
+            CollectionSchema.exact_signature_l, CollectionSchema.fuzzy_signature_l,
+            CollectionSchema.title_exact_signature_l, CollectionSchema.description_exact_signature_l};
+
+    private final SolrConnector connector;
+    private final Map<String, HostEntry> cache;
+
+    /**
+     * @param connector the connector of the collection, i.e. the default connector of the fulltext
+     */
+    public SignatureIndex(final SolrConnector connector) {
+        this.connector = connector;
+        this.cache = new ConcurrentHashMap<String, HostEntry>();
+    }
+
+    /**
+     * Get the signatures of a host, they are loaded at the first request
+     * @param hostid the host hash
+     * @return the signatures or null if they could not be loaded; then the Solr index must be queried
+     */
+    public HostSignatures getHostSignatures(final String hostid) {
+        if (MemoryControl.shortStatus()) this.cache.clear();
+        HostEntry entry = this.cache.get(hostid);
+        if (entry == null) {
+            final HostEntry newEntry = new HostEntry();
+            entry = this.cache.putIfAbsent(hostid, newEntry);
+            if (entry == null) entry = newEntry;
+        }
+        return entry.get(hostid); // concurrent requests for the same host wait for the same load
+    }
+
+    /**
+     * @return the number of hosts in the index
+     */
+    public int size() {
+        return this.cache.size();
+    }
+
+    private class HostEntry {
+        private boolean loaded = false;
+        private HostSignatures signatures = null;
+
+        private synchronized HostSignatures get(final String hostid) {
+            if (!this.loaded) {
+                this.signatures = load(hostid);
+                this.loaded = true; // also when the load failed, the host is then checked with single queries
+            }
+            return this.signatures;
+        }
+    }
+
+    private HostSignatures load(final String hostid) {
+        final long start = System.currentTimeMillis();
+        final String query = "{!cache=false}" + CollectionSchema.host_id_s.getSolrFieldName() + ":\"" + hostid + "\" AND " + CollectionSchema.httpstatus_i.getSolrFieldName() + ":200";
+        final String[] fields = new String[SIGNATURE_FIELDS.length + 4];
+        fields[0] = CollectionSchema.id.getSolrFieldName();
+        fields[1] = CollectionSchema.httpstatus_i.getSolrFieldName();
+        fields[2] = CollectionSchema.canonical_equal_sku_b.getSolrFieldName();
+        fields[3] = CollectionSchema.robots_i.getSolrFieldName();
+        for (int i = 0; i < SIGNATURE_FIELDS.length; i++) fields[i + 4] = SIGNATURE_FIELDS[i].getSolrFieldName();
+        final BlockingQueue<SolrDocument> docs = this.connector.concurrentDocumentsByQuery(query, null, 0, 100000000, Long.MAX_VALUE, 200, 1, false, fields);
+        final Builder builder = new Builder();
+        SolrDocument doc = null;
+        try {
+            while ((doc = docs.take()) != AbstractSolrConnector.POISON_DOCUMENT) {
+                if (MemoryControl.shortStatus()) {
+                    log.warn("not enough memory to load the signatures of host " + hostid);
+                    return null;
+                }
+                builder.add(doc);
+            }
+        } catch (final InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } finally {
+            // the producer of the bounded queue blocks until the queue is read to its end
+            if (doc != AbstractSolrConnector.POISON_DOCUMENT) drain(docs, hostid);
+        }
+        final HostSignatures signatures = builder.build();
+        log.info("loaded signatures of " + builder.documents + " documents of host " + hostid + " in " + (System.currentTimeMillis() - start) + " milliseconds");
+        return signatures;
+    }
+
+    /**
+     * Read the remaining documents of an abandoned query in a separate thread, so that the producer of the queue can terminate
+     * @param docs a queue which is terminated with {@link AbstractSolrConnector#POISON_DOCUMENT}
+     * @param hostid the host hash of the query
+     */
+    private static void drain(final BlockingQueue<SolrDocument> docs, final String hostid) {
+        final Thread t = new Thread("SignatureIndex.drain(" + hostid + ")") {
+            @Override
+            public void run() {
+                try {
+                    while (docs.take() != AbstractSolrConnector.POISON_DOCUMENT) {}
+                } catch (final InterruptedException e) {}
+            }
+        };
+        t.setDaemon(true);
+        t.start();
+    }
+
+    /**
+     * Check if a document is indexable: this must be the same condition as the valid document term in
+     * {@link CollectionConfiguration#postprocessing_doublecontent}
+     * @param doc a document with the fields httpstatus_i, canonical_equal_sku_b and robots_i
+     * @return true if the document is counted in the signature index
+     */
+    public static boolean isIndexable(final SolrDocument doc) {
+        final Object httpstatus = doc.getFieldValue(CollectionSchema.httpstatus_i.getSolrFieldName());
+        if (!(httpstatus instanceof Integer) || ((Integer) httpstatus).intValue() != 200) return false;
+        final Object canonical_equal_sku = doc.getFieldValue(CollectionSchema.canonical_equal_sku_b.getSolrFieldName());
+        if (canonical_equal_sku != null && !((Boolean) canonical_equal_sku).booleanValue()) return false;
+        final Object robots = doc.getFieldValue(CollectionSchema.robots_i.getSolrFieldName());
+        if (robots instanceof Integer) {
+            final int r = ((Integer) robots).intValue();
+            if (r == 8 || r == 24 || r == 512 || r == 1536) return false; // noindex, noindex + nofollow in html metas and http X-ROBOTS
+        }
+        return true;
+    }
+
+    /**
+     * The signatures of the indexable documents of one host: for each signature field sorted arrays
+     * of the signatures, the number of documents and the smallest document id.
+     */
+    public static final class HostSignatures {
+
+        private final long[][] signatures;
+        private final int[][] counts;
+        private final String[][] firstIDs;
+
+        private HostSignatures(final long[][] signatures, final int[][] counts, final String[][] firstIDs) {
+            this.signatures = signatures;
+            this.counts = counts;
+            this.firstIDs = firstIDs;
+        }
+
+        private int position(final CollectionSchema field, final long signature) {
+            final int f = fieldIndex(field);
+            if (f < 0) return -1;
+            final int p = Arrays.binarySearch(this.signatures[f], signature);
+            return p < 0 ? -1 : p;
+        }
+
+        /**
+         * @param field one of the {@link SignatureIndex#SIGNATURE_FIELDS}
+         * @param signature a signature
+         * @return the number of indexable documents of the host with the signature
+         */
+        public int count(final CollectionSchema field, final long signature) {
+            final int p = position(field, signature);
+            return p < 0 ? 0 : this.counts[fieldIndex(field)][p];
+        }
+
+        /**
+         * @param field one of the {@link SignatureIndex#SIGNATURE_FIELDS}
+         * @param signature a signature
+         * @return the smallest id of the indexable documents of the host with the signature, or null if there is no such document
+         */
+        public String firstID(final CollectionSchema field, final long signature) {
+            final int p = position(field, signature);
+            return p < 0 ? null : this.firstIDs[fieldIndex(field)][p];
+        }
+    }
+
+    private static int fieldIndex(final CollectionSchema field) {
+        for (int i = 0; i < SIGNATURE_FIELDS.length; i++) if (SIGNATURE_FIELDS[i] == field) return i;
+        return -1;
+    }
+
+    /**
+     * Collects the signatures of the documents of a host
+     */
+    static final class Builder {
+
+        private static final class Group {
+            private int count = 0;
+            private String firstID = null;
+        }
+
+        private final List<Map<Long, Group>> groups; // for each signature field
+        private int documents;
+
+        Builder() {
+            this.groups = new ArrayList<Map<Long, Group>>(SIGNATURE_FIELDS.length);
+            for (int i = 0; i < SIGNATURE_FIELDS.length; i++) this.groups.add(new HashMap<Long, Group>());
+            this.documents = 0;
+        }
+
+        /**
+         * add a document, it is ignored if it is not indexable
+         */
+        void add(final SolrDocument doc) {
+            if (!isIndexable(doc)) return;
+            final String id = (String) doc.getFieldValue(CollectionSchema.id.getSolrFieldName());
+            if (id == null) return;
+            for (int i = 0; i < SIGNATURE_FIELDS.length; i++) {
+                final Object signature = doc.getFieldValue(SIGNATURE_FIELDS[i].getSolrFieldName());
+                if (!(signature instanceof Long)) continue;
+                Group group = this.groups.get(i).get(signature);
+                if (group == null) {
+                    group = new Group();
+                    this.groups.get(i).put((Long) signature, group);
+                }
+                group.count++;
+                if (group.firstID == null || id.compareTo(group.firstID) < 0) group.firstID = id;
+            }
+            this.documents++;
+        }
+
+        HostSignatures build() {
+            final long[][] signatures = new long[SIGNATURE_FIELDS.length][];
+            final int[][] counts = new int[SIGNATURE_FIELDS.length][];
+            final String[][] firstIDs = new String[SIGNATURE_FIELDS.length][];
+            for (int i = 0; i < SIGNATURE_FIELDS.length; i++) {
+                final Map<Long, Group> g = this.groups.get(i);
+                final long[] s = new long[g.size()];
+                int c = 0;
+                for (final Long signature: g.keySet()) s[c++] = signature.longValue();
+                Arrays.sort(s);
+                counts[i] = new int[s.length];
+                firstIDs[i] = new String[s.length];
+                for (int p = 0; p < s.length; p++) {
+                    final Group group = g.get(s[p]);
+                    counts[i][p] = group.count;
+                    firstIDs[i][p] = group.firstID;
+                }
+                signatures[i] = s;
+                g.clear();
+            }
+            return new HostSignatures(signatures, counts, firstIDs);
+        }
+    }
+}
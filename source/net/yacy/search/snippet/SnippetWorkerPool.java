@@ -0,0 +1,352 @@
+/**
+ *  SnippetWorkerPool
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.search.snippet;
+
+import java.lang.reflect.Method;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * A shared and bounded pool of workers which compute the snippets of search results,
+ * which may require to load the documents from the cache or from the web.
+ *
+ * The jobs of a search event are submitted in a {@link Batch} which has a deadline and can be cancelled.
+ * The queued jobs are ordered by the deadline of their batch and then by their rank, so the best results
+ * of the most urgent search event are computed first. A job which starts after the deadline of its batch
+ * is told so and must not load anything from the network. When the queue is full, new jobs are rejected
+ * and the caller has to compute the result without loading.
+ *
+ * The workers are platform threads or, if configured and supported by the Java runtime, virtual threads.
+ */
+public final class SnippetWorkerPool {
+
+    private final static ConcurrentLog log = new ConcurrentLog(SnippetWorkerPool.class.getName());
+
+    /** Default maximum number of concurrent workers */
+    public static final int DEFAULT_WORKERS = 32;
+
+    /** the maximum number of queued jobs for each worker */
+    private static final int QUEUED_PER_WORKER = 4;
+
+    /**
+     * The job of a search result
+     */
+    public interface Job {
+
+        /**
+         * compute the result
+         * @param expired true when the deadline of the batch has passed: the result must be computed without loading from the network
+         */
+        public void run(boolean expired);
+
+        /**
+         * called instead of {@link #run(boolean)} when the batch has been cancelled before the job started
+         */
+        public void cancel();
+    }
+
+    private static volatile ThreadPoolExecutor executor = createExecutor(DEFAULT_WORKERS, null);
+    private static volatile int maxQueued = DEFAULT_WORKERS * QUEUED_PER_WORKER;
+    private static volatile boolean virtualRequested = false;
+    private static volatile boolean virtual = false;
+
+    private static final AtomicLong sequence = new AtomicLong(0);
+    private static final AtomicLong submitted = new AtomicLong(0);
+    private static final AtomicLong rejected = new AtomicLong(0);
+    private static final AtomicLong expired = new AtomicLong(0);
+    private static final AtomicLong cancelled = new AtomicLong(0);
+
+    private SnippetWorkerPool() {}
+
+    private static ThreadPoolExecutor createExecutor(final int workers, final ThreadFactory virtualThreadFactory) {
+        final ThreadFactory factory = virtualThreadFactory == null ? new NamePrefixThreadFactory("SnippetWorkerPool.worker") : virtualThreadFactory;
+        final ThreadPoolExecutor pool = new ThreadPoolExecutor(workers, workers, 30, TimeUnit.SECONDS, new PriorityBlockingQueue<Runnable>(), factory);
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * @return a factory of virtual threads, or null if the Java runtime does not support virtual threads (before Java 21)
+     */
+    private static ThreadFactory virtualThreadFactory(final String prefix) {
+        try {
+            final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            final Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            final Object namedBuilder = builderClass.getMethod("name", String.class, long.class).invoke(builder, prefix + "_", 0L);
+            final Method factory = builderClass.getMethod("factory");
+            return (ThreadFactory) factory.invoke(namedBuilder);
+        } catch (final Throwable e) {
+            log.info("virtual threads are not supported by this Java runtime, using platform threads");
+            return null;
+        }
+    }
+
+    /**
+     * Change the number of workers. The pool is only replaced when the settings changed;
+     * the jobs of the previous pool are still computed.
+     * @param workers the maximum number of concurrent workers, at least 1
+     * @param virtualThreads when true, use virtual threads if the Java runtime supports them
+     */
+    public static synchronized void configure(final int workers, final boolean virtualThreads) {
+        final int w = Math.max(1, workers);
+        if (w == executor.getMaximumPoolSize() && virtualThreads == virtualRequested) return;
+        final ThreadFactory virtualThreadFactory = virtualThreads ? virtualThreadFactory("SnippetWorkerPool.worker") : null;
+        final ThreadPoolExecutor previous = executor;
+        executor = createExecutor(w, virtualThreadFactory);
+        maxQueued = w * QUEUED_PER_WORKER;
+        virtualRequested = virtualThreads;
+        virtual = virtualThreadFactory != null;
+        previous.shutdown();
+    }
+
+    /**
+     * @param deadline the time in milliseconds after which the jobs of the batch must not load from the network
+     * @return a new batch for the jobs of a search event
+     */
+    public static Batch newBatch(final long deadline) {
+        return new Batch(deadline);
+    }
+
+    /**
+     * The jobs of a search event
+     */
+    public static final class Batch {
+
+        private volatile long deadline;
+        private volatile boolean isCancelled;
+
+        /** the submitted jobs which have not yet finished */
+        private final Set<Task> pending;
+
+        private Batch(final long deadline) {
+            this.deadline = deadline;
+            this.isCancelled = false;
+            this.pending = ConcurrentHashMap.<Task>newKeySet();
+        }
+
+        /**
+         * Extend the deadline, i.e. when a further result page is requested
+         * @param newDeadline the new deadline in milliseconds, it is ignored if it is before the current one
+         */
+        public void extendDeadline(final long newDeadline) {
+            if (newDeadline > this.deadline) this.deadline = newDeadline;
+        }
+
+        public long getDeadline() {
+            return this.deadline;
+        }
+
+        public boolean isExpired() {
+            return System.currentTimeMillis() > this.deadline;
+        }
+
+        public boolean isCancelled() {
+            return this.isCancelled;
+        }
+
+        /**
+         * @return the number of submitted jobs which have not yet finished
+         */
+        public int pending() {
+            return this.pending.size();
+        }
+
+        /**
+         * Submit a job
+         * @param job the job
+         * @param rank the rank of the result, jobs with a higher rank are computed first
+         * @return true if the job has been queued, false if the batch is cancelled or the pool is saturated;
+         *         then the job is not called and the caller must compute the result without loading
+         */
+        public boolean submit(final Job job, final long rank) {
+            if (this.isCancelled) return false;
+            final ThreadPoolExecutor pool = executor;
+            if (pool.getQueue().size() >= maxQueued) {
+                rejected.incrementAndGet();
+                return false;
+            }
+            final Task task = new Task(this, job, rank);
+            this.pending.add(task);
+            try {
+                pool.execute(task);
+            } catch (final RuntimeException e) {
+                // the pool has been shut down by a re-configuration
+                this.pending.remove(task);
+                rejected.incrementAndGet();
+                return false;
+            }
+            submitted.incrementAndGet();
+            return true;
+        }
+
+        /**
+         * Cancel the batch: queued jobs are not started and running jobs are interrupted
+         */
+        public void cancel() {
+            this.isCancelled = true;
+            for (final Task task: this.pending) {
+                synchronized (task) {
+                    if (task.worker != null) task.worker.interrupt();
+                }
+            }
+        }
+    }
+
+    private static final class Task implements Runnable, Comparable<Task> {
+
+        private final Batch batch;
+        private final Job job;
+        private final long deadline; // the deadline of the batch at submission, the order of queued tasks must not change
+        private final long rank;
+        private final long seq;
+        private Thread worker; // the running thread, guarded by the task
+
+        private Task(final Batch batch, final Job job, final long rank) {
+            this.batch = batch;
+            this.job = job;
+            this.deadline = batch.deadline;
+            this.rank = rank;
+            this.seq = sequence.incrementAndGet();
+            this.worker = null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (this.batch.isCancelled) {
+                    cancelled.incrementAndGet();
+                    this.job.cancel();
+                    return;
+                }
+                synchronized (this) {
+                    this.worker = Thread.currentThread();
+                }
+                final boolean isExpired = this.batch.isExpired();
+                if (isExpired) expired.incrementAndGet();
+                this.job.run(isExpired);
+            } catch (final Throwable e) {
+                ConcurrentLog.logException(e);
+            } finally {
+                synchronized (this) {
+                    this.worker = null;
+                    Thread.interrupted(); // clear an interrupt by a cancel after the job has finished
+                }
+                this.batch.pending.remove(this);
+            }
+        }
+
+        @Override
+        public int compareTo(final Task other) {
+            int c = Long.compare(this.deadline, other.deadline);
+            if (c != 0) return c;
+            c = Long.compare(other.rank, this.rank);
+            if (c != 0) return c;
+            return Long.compare(this.seq, other.seq);
+        }
+
+        @Override
+        public boolean equals(final Object o) {
+            return this == o;
+        }
+
+        @Override
+        public int hashCode() {
+            return (int) (this.seq ^ (this.seq >>> 32));
+        }
+    }
+
+    /**
+     * @return the maximum number of concurrent workers
+     */
+    public static int getMaxWorkers() {
+        return executor.getMaximumPoolSize();
+    }
+
+    /**
+     * @return the number of workers which are computing a job
+     */
+    public static int getActiveWorkers() {
+        return executor.getActiveCount();
+    }
+
+    /**
+     * @return the number of queued jobs
+     */
+    public static int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    /**
+     * @return the maximum number of queued jobs, more jobs are rejected
+     */
+    public static int getMaxQueueSize() {
+        return maxQueued;
+    }
+
+    /**
+     * @return the proportion of busy workers and queued jobs over the capacity of the pool, 1.0 when new jobs are rejected
+     */
+    public static double getSaturation() {
+        final ThreadPoolExecutor pool = executor;
+        final int capacity = pool.getMaximumPoolSize() + maxQueued;
+        return Math.min(1.0d, ((double) (pool.getActiveCount() + pool.getQueue().size())) / capacity);
+    }
+
+    public static boolean isVirtual() {
+        return virtual;
+    }
+
+    /**
+     * @return the number of submitted jobs since start
+     */
+    public static long getSubmitted() {
+        return submitted.get();
+    }
+
+    /**
+     * @return the number of jobs which have been rejected because the pool was saturated
+     */
+    public static long getRejected() {
+        return rejected.get();
+    }
+
+    /**
+     * @return the number of jobs which started after the deadline of their batch
+     */
+    public static long getExpired() {
+        return expired.get();
+    }
+
+    /**
+     * @return the number of jobs which were not started because their batch has been cancelled
+     */
+    public static long getCancelled() {
+        return cancelled.get();
+    }
+}
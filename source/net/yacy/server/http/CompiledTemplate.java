@@ -0,0 +1,473 @@
+/**
+ *  CompiledTemplate
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.server.http;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ByteBuffer;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverCore;
+import net.yacy.server.serverObjects;
+
+/**
+ * A template which is parsed once into an immutable tree of nodes.
+ * The syntax and the substitution rules are those of the {@link TemplateEngine}:
+ * normal templates #[key]#, multi templates #{key}#..#{/key}#, alternatives #(key)#..::..#(/key)#
+ * and includes #%file%#. Rendering a compiled template is a walk over the node tree, the
+ * template source is not scanned again.
+ *
+ * Compiled templates of files are cached and re-compiled when the file is changed. Because the
+ * localized version of a servlet template is a different file, the cache holds one template for
+ * each file and language.
+ */
+public final class CompiledTemplate {
+
+    private final static byte hashChar = (byte) '#';
+    private final static byte[] pClose = {']', '#'};
+    private final static byte[] mClose = {'}', '#'};
+    private final static byte[] aClose = {')', '#'};
+    private final static byte[] iClose = {'%', '#'};
+    private final static byte[] dpdpa = {':', ':'};
+    private final static byte[] PP = {'%', '%'};
+    private final static byte[] UNRESOLVED_PATTERN = "-UNRESOLVED_PATTERN-".getBytes();
+
+    private final static Map<String, CacheEntry> templateCache = new ConcurrentHashMap<String, CacheEntry>();
+    private final static Map<String, CacheEntry> includeCache = new ConcurrentHashMap<String, CacheEntry>();
+
+    private final String name;
+    private final byte[] source;
+    private final Node[] nodes;
+
+    private CompiledTemplate(final String name, final byte[] source) {
+        this.name = name;
+        this.source = source;
+        this.nodes = compile(name, source, 0, source.length);
+    }
+
+    /**
+     * Compile a template
+     * @param name the name of the template, used for log messages
+     * @param source the template source
+     * @return the compiled template
+     */
+    public static CompiledTemplate compile(final String name, final byte[] source) {
+        return new CompiledTemplate(name, source);
+    }
+
+    /**
+     * Get the compiled template of a file. The template is taken from the cache unless the file
+     * was modified since it was compiled.
+     * @param file a template file
+     * @return the compiled template
+     * @throws IOException when the file cannot be read
+     */
+    public static CompiledTemplate get(final File file) throws IOException {
+        return get(file, false);
+    }
+
+    /**
+     * Get the compiled template of an include file. As in the {@link TemplateEngine}, the lines of an
+     * include file are terminated with CRLF.
+     */
+    static CompiledTemplate getInclude(final File file) throws IOException {
+        return get(file, true);
+    }
+
+    private static CompiledTemplate get(final File file, final boolean include) throws IOException {
+        final Map<String, CacheEntry> cache = include ? includeCache : templateCache;
+        final String key = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final CacheEntry entry = cache.get(key);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) return entry.template;
+        final CompiledTemplate template = new CompiledTemplate(file.getName(), include ? readInclude(file) : FileUtils.read(file));
+        cache.put(key, new CacheEntry(lastModified, length, template));
+        return template;
+    }
+
+    /**
+     * @return the number of cached templates
+     */
+    public static int cacheSize() {
+        return templateCache.size() + includeCache.size();
+    }
+
+    public static void clearCache() {
+        templateCache.clear();
+        includeCache.clear();
+    }
+
+    private static byte[] readInclude(final File file) throws IOException {
+        final ByteBuffer include = new ByteBuffer();
+        final byte[] crlf = ASCII.getBytes(serverCore.CRLF_STRING);
+        try (final BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                include.append(UTF8.getBytes(line)).append(crlf);
+            }
+        }
+        final byte[] b = include.getBytes();
+        include.close();
+        return b;
+    }
+
+    /**
+     * Write the template with replaced patterns
+     * @param out the output stream
+     * @param pattern the pattern values; if null, the template source is written unchanged
+     * @throws IOException
+     */
+    public void write(final OutputStream out, final serverObjects pattern) throws IOException {
+        if (pattern == null) {
+            out.write(this.source);
+        } else {
+            write(this.nodes, out, pattern, "");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.name;
+    }
+
+    /**
+     * Walk a node list; stops after a node which terminates the rendering of its level
+     */
+    private static void write(final Node[] nodes, final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+        for (final Node node: nodes) {
+            if (!node.write(out, pattern, prefix)) return;
+        }
+    }
+
+    private static Node[] compile(final String name, final byte[] src, final int start, final int end) {
+        final List<Node> nodes = new ArrayList<Node>();
+        int literal = start;
+        int p = start;
+        while (p < end) {
+            if (src[p] != hashChar) {
+                p++;
+                continue;
+            }
+            if (p > literal) nodes.add(new Literal(src, literal, p - literal));
+            if (p + 1 >= end) {
+                literal = p;
+                p = end;
+                break;
+            }
+            final byte bb = src[p + 1];
+            if (bb == '{') { // multi
+                final int keyEnd = indexOf(src, mClose, p + 2, end);
+                if (keyEnd < 0) return done(nodes);
+                final String key = UTF8.String(src, p + 2, keyEnd - p - 2);
+                final int body = killNewline(src, keyEnd + 2, end);
+                final byte[] close = UTF8.getBytes("#{/" + key + "}#");
+                final int bodyEnd = indexOf(src, close, body, end);
+                if (bodyEnd < 0) {
+                    ConcurrentLog.severe("TEMPLATE", "No Close Key found for #{" + key + "}#" + " in " + name);
+                    return done(nodes);
+                }
+                nodes.add(new Multi(key, compile(name, src, body, bodyEnd)));
+                p = killNewline(src, bodyEnd + close.length, end);
+            } else if (bb == '(') { // alternative
+                final int keyEnd = indexOf(src, aClose, p + 2, end);
+                final String key = UTF8.String(src, p + 2, (keyEnd < 0 ? end : keyEnd) - p - 2);
+                final int body = keyEnd < 0 ? end : keyEnd + 2;
+                final Alternative alternative = new Alternative(name, key, src, body, end);
+                nodes.add(alternative);
+                if (alternative.end < 0) return done(nodes);
+                p = alternative.end;
+            } else if (bb == '[') { // normal
+                final int keyEnd = indexOf(src, pClose, p + 2, end);
+                if (keyEnd < 0) return done(nodes);
+                nodes.add(new Pattern(UTF8.String(src, p + 2, keyEnd - p - 2)));
+                p = keyEnd + 2;
+            } else if (bb == '%') { // include
+                final int keyEnd = indexOf(src, iClose, p + 2, end);
+                if (keyEnd < 0) return done(nodes);
+                if (keyEnd > p + 2) {
+                    final String filename = UTF8.String(src, p + 2, keyEnd - p - 2);
+                    if (filename.length() >= 2 && filename.charAt(0) == '[' && filename.charAt(filename.length() - 1) == ']') {
+                        nodes.add(new Include(null, filename.substring(1, filename.length() - 1)));
+                    } else {
+                        nodes.add(new Include(filename, null));
+                    }
+                }
+                p = keyEnd + 2;
+            } else { // a '#' without meaning, written together with the following character
+                literal = p;
+                p += 2;
+                continue;
+            }
+            literal = p;
+        }
+        if (end > literal) nodes.add(new Literal(src, literal, end - literal));
+        return done(nodes);
+    }
+
+    private static Node[] done(final List<Node> nodes) {
+        return nodes.toArray(new Node[nodes.size()]);
+    }
+
+    private static int killNewline(final byte[] src, final int p, final int end) {
+        return p < end && src[p] == '\n' ? p + 1 : p;
+    }
+
+    /**
+     * Search a pattern in the same way as the transfer of the TemplateEngine does it
+     */
+    private static int indexOf(final byte[] src, final byte[] pattern, final int start, final int end) {
+        loop: for (int i = start; i <= end - pattern.length; i++) {
+            for (int j = 0; j < pattern.length; j++) {
+                if ((src[i + j] & 0xFF) != pattern[j]) continue loop;
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static byte[] replacePattern(final String key, final serverObjects pattern) {
+        final String value = pattern.get(key);
+        return value == null ? UNRESOLVED_PATTERN : UTF8.getBytes(value);
+    }
+
+    private static class CacheEntry {
+        private final long lastModified, length;
+        private final CompiledTemplate template;
+        private CacheEntry(final long lastModified, final long length, final CompiledTemplate template) {
+            this.lastModified = lastModified;
+            this.length = length;
+            this.template = template;
+        }
+    }
+
+    private static abstract class Node {
+        /**
+         * write the node
+         * @return false if the rendering of the current level must be terminated
+         */
+        abstract boolean write(OutputStream out, serverObjects pattern, String prefix) throws IOException;
+    }
+
+    private static final class Literal extends Node {
+        private final byte[] src;
+        private final int offset, length;
+        private Literal(final byte[] src, final int offset, final int length) {
+            this.src = src;
+            this.offset = offset;
+            this.length = length;
+        }
+        @Override
+        boolean write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            out.write(this.src, this.offset, this.length);
+            return true;
+        }
+    }
+
+    private static final class Pattern extends Node {
+        private final String key;
+        private Pattern(final String key) {
+            this.key = key;
+        }
+        @Override
+        boolean write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            out.write(replacePattern(prefix + this.key, pattern));
+            return true;
+        }
+    }
+
+    private static final class Multi extends Node {
+        private final String key;
+        private final Node[] body;
+        private Multi(final String key, final Node[] body) {
+            this.key = key;
+            this.body = body;
+        }
+        @Override
+        boolean write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String value = pattern.get(patternKey);
+            int num = 0;
+            if (value != null && !value.isEmpty()) {
+                try {
+                    num = Integer.parseInt(value); // key contains the iteration number as string
+                } catch (final NumberFormatException e) {
+                    ConcurrentLog.logException(e);
+                }
+            }
+            final String p = patternKey + "_";
+            for (int i = 0; i < num; i++) {
+                CompiledTemplate.write(this.body, out, pattern, p + i + "_");
+            }
+            return true;
+        }
+    }
+
+    private static final class Alternative extends Node {
+        private final String name, key;
+        private final Node[][] alternatives;
+        private final byte[] src;
+        private final int body, levelEnd;
+        /** the position after the closing tag of the alternative or -1 if there is no closing tag */
+        private final int end;
+        /** the alternatives which are selected by name, compiled at their first use */
+        private final Map<String, Node[]> named = new ConcurrentHashMap<String, Node[]>();
+
+        private Alternative(final String name, final String key, final byte[] src, final int body, final int levelEnd) {
+            this.name = name;
+            this.key = key;
+            this.src = src;
+            this.body = body;
+            this.levelEnd = levelEnd;
+
+            // split the alternatives at '::' outside of nested alternatives
+            final byte[] close = UTF8.getBytes("/" + key);
+            final List<Node[]> alternatives = new ArrayList<Node[]>();
+            int others = 0;
+            int segment = body;
+            int p = body;
+            int end = -1;
+            while (p < levelEnd) {
+                final byte b = src[p];
+                if (b == hashChar && p + 1 < levelEnd && src[p + 1] == '(') {
+                    final int tagEnd = indexOf(src, aClose, p + 2, levelEnd);
+                    if (tagEnd < 0) break;
+                    final int tagLength = tagEnd - p - 2;
+                    if (tagLength == close.length && ByteBuffer.equals(src, p + 2, close, 0, close.length)) {
+                        alternatives.add(compile(name, src, segment, p));
+                        end = tagEnd + 2;
+                        break;
+                    }
+                    if (others > 0 && tagLength > 0 && src[p + 2] == '/') others--; else others++;
+                    p = tagEnd + 2;
+                } else if (b == ':' && others == 0) {
+                    if (p + 1 < levelEnd && src[p + 1] == ':') {
+                        alternatives.add(compile(name, src, segment, p));
+                        p += 2;
+                        segment = p;
+                    } else {
+                        p += 2;
+                    }
+                } else {
+                    p++;
+                }
+            }
+            if (end < 0) {
+                ConcurrentLog.severe("TEMPLATE", "No Close Key found for #(" + key + ")# in " + name);
+                alternatives.add(compile(name, src, segment, levelEnd));
+            }
+            this.end = end;
+            this.alternatives = alternatives.toArray(new Node[alternatives.size()][]);
+        }
+
+        @Override
+        boolean write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            final String patternKey = prefix + this.key;
+            final String patternId = pattern.get(patternKey);
+            // lazy parsing of pattern value; numeric values, "true", "false" and no value allowed
+            int whichPattern = 0;
+            if (patternId != null) {
+                if ("true".equals(patternId)) {
+                    whichPattern = 1;
+                } else if (!"false".equals(patternId)) try {
+                    whichPattern = Integer.parseInt(patternId);
+                } catch (final NumberFormatException e) {
+                    return writeByName(out, pattern, patternKey, patternId);
+                }
+            }
+            // an alternative out of range selects the last one
+            final int last = this.alternatives.length - 1;
+            CompiledTemplate.write(this.alternatives[whichPattern >= 0 && whichPattern < last ? whichPattern : last], out, pattern, patternKey + "_");
+            return this.end >= 0;
+        }
+
+        /**
+         * write the alternative which is marked with %%name in the template
+         */
+        private boolean writeByName(final OutputStream out, final serverObjects pattern, final String patternKey, final String patternId) throws IOException {
+            Node[] nodes = this.named.get(patternId);
+            if (nodes != null) {
+                CompiledTemplate.write(nodes, out, pattern, patternKey + "_");
+                return true;
+            }
+            final byte[] patternName = UTF8.getBytes(patternId);
+            final byte[] marker = new byte[PP.length + patternName.length];
+            System.arraycopy(PP, 0, marker, 0, PP.length);
+            System.arraycopy(patternName, 0, marker, PP.length, patternName.length);
+            final int p = indexOf(this.src, marker, this.body, this.levelEnd);
+            if (p < 0 || p + marker.length == this.levelEnd) {
+                ConcurrentLog.severe("TEMPLATE", "Bad Key-Value pair in #()# construct: key=\"" + patternKey + "\", value=\"" + UTF8.String(patternName) + "\" in " + this.name);
+                return false;
+            }
+            final int start = p + marker.length;
+            final int q = indexOf(this.src, dpdpa, start, this.levelEnd);
+            nodes = compile(this.name, this.src, start, q < 0 ? this.levelEnd : q);
+            CompiledTemplate.write(nodes, out, pattern, patternKey + "_");
+            if (q < 0 || this.end < 0) {
+                ConcurrentLog.severe("TEMPLATE", "No Close Key found for #(" + this.key + ")# (by Name) in " + this.name);
+                return false;
+            }
+            // only names which are marked in the template are kept, so the map is limited by the template
+            this.named.put(patternId, nodes);
+            return true;
+        }
+    }
+
+    private static final class Include extends Node {
+        private final String filename, key;
+        private Include(final String filename, final String key) {
+            this.filename = filename;
+            this.key = key;
+        }
+        @Override
+        boolean write(final OutputStream out, final serverObjects pattern, final String prefix) throws IOException {
+            String filename = this.filename;
+            if (filename == null) {
+                final byte[] f = replacePattern(prefix + this.key, pattern);
+                if (f.length == 0 || f == UNRESOLVED_PATTERN) return true;
+                filename = UTF8.String(f);
+            }
+            final CompiledTemplate include;
+            try {
+                include = getInclude(HTTPDFileHandler.getLocalizedFile(filename, pattern.get("clientlanguage")));
+            } catch (final IOException e) {
+                // file not found?
+                ConcurrentLog.severe("FILEHANDLER", "Include Error with file " + filename + ": " + e.getMessage());
+                return true;
+            }
+            CompiledTemplate.write(include.nodes, out, pattern, ""); // clear pattern prefix for include
+            return true;
+        }
+    }
+
+}
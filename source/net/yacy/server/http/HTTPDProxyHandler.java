@@ -77,6 +77,7 @@ import net.yacy.cora.protocol.HeaderFramework;
 import net.yacy.cora.protocol.RequestHeader;
 import net.yacy.cora.protocol.ResponseHeader;
 import net.yacy.cora.protocol.http.HTTPClient;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
 import net.yacy.cora.util.ConcurrentLog;
 import net.yacy.crawler.data.Cache;
 import net.yacy.crawler.retrieval.Request;
@@ -767,7 +768,7 @@ public final class HTTPDProxyHandler {
      */
     private static HTTPClient setupHttpClient(final RequestHeader requestHeader, final ClientIdentification.Agent agent) {
         // setup HTTP-client
-    	final HTTPClient client = new HTTPClient(agent, timeout);
+    	final HTTPClient client = new HTTPClient(agent, timeout, TrafficClass.PROXY);
     	client.setHeader(requestHeader.entrySet());
     	client.setRedirecting(false);
         return client;
@@ -0,0 +1,600 @@
+/**
+ *  StaticFile
+ *  Copyright 2026 by the YaCy contributors
+ *  First released 18.10.2026 at http://yacy.net
+ *
+ *  This library is free software; you can redistribute it and/or
+ *  modify it under the terms of the GNU Lesser General Public
+ *  License as published by the Free Software Foundation; either
+ *  version 2.1 of the License, or (at your option) any later version.
+ *
+ *  This library is distributed in the hope that it will be useful,
+ *  but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *  MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ *  Lesser General Public License for more details.
+ *
+ *  You should have received a copy of the GNU Lesser General Public License
+ *  along with this program in the file lgpl21.txt
+ *  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package net.yacy.server.http;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+import net.yacy.cora.order.Digest;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.kelondro.util.NamePrefixThreadFactory;
+
+/**
+ * A static file as it is served by the http server: its content is memory-mapped once and
+ * written to the connection from the mapped buffer, it has a strong entity tag for
+ * conditional requests and it may have pre-compressed variants.
+ *
+ * A gzip variant is a sibling file with the extension .gz or a file which is generated in the
+ * directory set with {@link #setCompressedPath(File, File...)}, a brotli variant is a sibling file with
+ * the extension .br (there is no brotli encoder in the libraries, such files must be provided).
+ * Variants are generated only for the files in the given root directories, in the background.
+ * As with the {@link CompiledTemplate}, the files are cached and read again if they are changed.
+ */
+public final class StaticFile {
+
+    public final static String GZIP = "gzip";
+    public final static String BROTLI = "br";
+
+    /** files larger than this are not mapped but copied from their channel */
+    private final static long MAP_MAXSIZE = 4 * 1024 * 1024;
+    /** files smaller than this are not compressed, the gain would be eaten by the headers */
+    private final static long COMPRESS_MINSIZE = 256;
+    /** the extensions of the files which are compressed, other formats are compressed already */
+    private final static Set<String> COMPRESSIBLE = new HashSet<String>(Arrays.asList(
+            "html", "htm", "css", "js", "json", "xml", "xsl", "rss", "svg", "txt", "csv", "ttf", "eot", "otf"));
+
+    /** the maximum number of cached files; when there are more, the least recently requested are removed */
+    private final static int CACHE_MAXSIZE = 4096;
+
+    private final static Map<String, StaticFile> cache = new ConcurrentHashMap<String, StaticFile>();
+    private final static ReentrantLock evictionLock = new ReentrantLock();
+    private final static AtomicLong mappedSize = new AtomicLong(0);
+    private static volatile long mappedLimit = 64 * 1024 * 1024;
+    private static volatile File compressedPath = null;
+    private static volatile String[] compressedRoots = new String[0];
+
+    /** generates the gzip variants which are requested, so that no request waits for a compression */
+    private final static ThreadPoolExecutor compressor;
+    static {
+        compressor = new ThreadPoolExecutor(1, 1, 30, TimeUnit.SECONDS, new ArrayBlockingQueue<Runnable>(100),
+                new NamePrefixThreadFactory("StaticFile.compressor"));
+        compressor.allowCoreThreadTimeOut(true);
+    }
+
+    private final File file;
+    private final long lastModified;
+    private final long length;
+    private final String etag;
+    private final String encoding;
+    private final ByteBuffer content;
+    private final boolean compressible;
+    private volatile StaticFile gzip = null, brotli = null;
+    private volatile boolean variants = false, compressing = false, released = false;
+    private volatile long lastAccess;
+
+    private StaticFile(final File file, final long lastModified, final long length, final String etag, final String encoding) throws IOException {
+        this.file = file;
+        this.lastModified = lastModified;
+        this.length = length;
+        this.etag = etag;
+        this.encoding = encoding;
+        this.compressible = encoding == null && length >= COMPRESS_MINSIZE && length <= MAP_MAXSIZE &&
+                COMPRESSIBLE.contains(extension(file.getName())) && inRoots(file);
+        this.content = map(file, length);
+        this.lastAccess = System.currentTimeMillis();
+    }
+
+    /**
+     * Set the directory for the generated gzip variants; without this directory only the variants
+     * which are provided as sibling files are served
+     * @param path a directory or null to generate no variants
+     * @param roots the directories with the files for which variants are generated, i.e. the htroot
+     */
+    public static void setCompressedPath(final File path, final File... roots) {
+        if (path != null) path.mkdirs();
+        final String[] r = new String[roots.length];
+        for (int i = 0; i < roots.length; i++) r[i] = roots[i].getAbsolutePath() + File.separator;
+        compressedRoots = r;
+        compressedPath = path;
+        // the variants of the cached files are searched again
+        clear();
+    }
+
+    private static boolean inRoots(final File file) {
+        final String path = file.getAbsolutePath();
+        for (final String root: compressedRoots) {
+            if (path.startsWith(root)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Set the total size of the mapped file contents. Files which do not fit into this limit
+     * are copied from their channel for each request.
+     * @param bytes the limit in bytes
+     */
+    public static void setMappedLimit(final long bytes) {
+        mappedLimit = bytes;
+    }
+
+    /**
+     * Get a static file. The file is taken from the cache unless it was modified since it was cached.
+     * @param file a readable file
+     * @return the static file, its content is not encoded
+     * @throws IOException when the file cannot be mapped
+     */
+    public static StaticFile get(final File file) throws IOException {
+        final String key = file.getAbsolutePath();
+        final long lastModified = file.lastModified();
+        final long length = file.length();
+        final StaticFile entry = cache.get(key);
+        if (entry != null && entry.lastModified == lastModified && entry.length == length) {
+            entry.lastAccess = System.currentTimeMillis();
+            return entry;
+        }
+        final StaticFile staticFile = new StaticFile(file, lastModified, length, etag(lastModified, length, null), null);
+        final StaticFile old = cache.put(key, staticFile);
+        if (old != null) {
+            old.release();
+        } else if (cache.size() > CACHE_MAXSIZE + CACHE_MAXSIZE / 10) {
+            // evict in steps to amortize the cost of finding the least recently requested files
+            evict(CACHE_MAXSIZE);
+        }
+        return staticFile;
+    }
+
+    /**
+     * remove the least recently requested files until at most maxSize files remain.
+     * Only one thread evicts at a time, other threads do not wait for it.
+     * @param maxSize
+     */
+    private static void evict(final int maxSize) {
+        if (!evictionLock.tryLock()) return;
+        try {
+            final long[] acc = new long[cache.size() + 100];
+            int n = 0;
+            for (final StaticFile f: cache.values()) {
+                if (n >= acc.length) break;
+                acc[n++] = f.lastAccess;
+            }
+            if (n <= maxSize) return;
+            Arrays.sort(acc, 0, n);
+            final long threshold = acc[n - maxSize - 1];
+            for (final Map.Entry<String, StaticFile> e: cache.entrySet()) {
+                if (e.getValue().lastAccess <= threshold && cache.remove(e.getKey(), e.getValue())) e.getValue().release();
+            }
+        } finally {
+            evictionLock.unlock();
+        }
+    }
+
+    /**
+     * @return the number of cached files
+     */
+    public static int size() {
+        return cache.size();
+    }
+
+    /**
+     * Remove all files from the cache
+     */
+    public static void clear() {
+        final Iterator<Map.Entry<String, StaticFile>> i = cache.entrySet().iterator();
+        while (i.hasNext()) {
+            final Map.Entry<String, StaticFile> e = i.next();
+            // an entry which was replaced meanwhile is released by the replacing thread
+            if (cache.remove(e.getKey(), e.getValue())) e.getValue().release();
+        }
+    }
+
+    /**
+     * @return the total size of the mapped file contents in bytes
+     */
+    public static long mappedSize() {
+        return mappedSize.get();
+    }
+
+    /**
+     * Generate the gzip variants of all compressible files in a directory and its sub-directories.
+     * Files which are processed by a servlet are skipped, they are not static. The compression is
+     * done in the calling thread.
+     * @param dir a directory
+     * @return the number of gzip variants
+     */
+    public static int precompress(final File dir) {
+        final String[] names = dir.list();
+        if (names == null) return 0;
+        int count = 0;
+        for (final String name: names) {
+            final File f = new File(dir, name);
+            if (f.isDirectory()) {
+                count += precompress(f);
+            } else if (COMPRESSIBLE.contains(extension(name))) {
+                final int p = name.lastIndexOf('.');
+                if (new File(dir, name.substring(0, p) + ".class").exists()) continue;
+                try {
+                    final StaticFile staticFile = get(f);
+                    if (staticFile.variant(GZIP) != null || staticFile.compressVariant()) count++;
+                } catch (final IOException e) {
+                    ConcurrentLog.warn("FILEHANDLER", "StaticFile: cannot compress " + f.getAbsolutePath() + ": " + e.getMessage());
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Delete the generated gzip variants of the files which do not exist any more in the root directories
+     * @return the number of deleted files
+     */
+    public static int deleteUnused() {
+        final File path = compressedPath;
+        if (path == null) return 0;
+        final Set<String> used = new HashSet<String>();
+        for (final String root: compressedRoots) collectVariantNames(new File(root), used);
+        final String[] names = path.list();
+        if (names == null) return 0;
+        int count = 0;
+        for (final String name: names) {
+            if (used.contains(name)) continue;
+            final File f = new File(path, name);
+            // a temporary file may be written by a running compression
+            if (name.endsWith(".tmp") && f.lastModified() > System.currentTimeMillis() - 3600000L) continue;
+            if (f.delete()) count++;
+        }
+        return count;
+    }
+
+    private static void collectVariantNames(final File dir, final Set<String> names) {
+        final File[] files = dir.listFiles();
+        if (files == null) return;
+        for (final File f: files) {
+            if (f.isDirectory()) {
+                collectVariantNames(f, names);
+            } else if (COMPRESSIBLE.contains(extension(f.getName()))) {
+                names.add(Digest.encodeMD5Hex(f.getAbsolutePath()) + ".gz");
+            }
+        }
+    }
+
+    /**
+     * @return the representation for a request with this Accept-Encoding header: a brotli or gzip
+     * variant if the client accepts it and if it exists, else this file. If the client accepts gzip
+     * and there is no gzip variant yet, the variant is generated in the background for the next requests.
+     */
+    public StaticFile select(final String acceptEncoding) throws IOException {
+        if (acceptEncoding == null || this.encoding != null) return this;
+        if (accepts(acceptEncoding, BROTLI)) {
+            final StaticFile variant = variant(BROTLI);
+            if (variant != null) return variant;
+        }
+        if (accepts(acceptEncoding, GZIP)) {
+            final StaticFile variant = variant(GZIP);
+            if (variant != null) return variant;
+            compressInBackground();
+        }
+        return this;
+    }
+
+    /**
+     * @param encoding {@link #GZIP} or {@link #BROTLI}
+     * @return the variant with this content encoding or null if there is none; no variant is generated here
+     */
+    public StaticFile variant(final String encoding) throws IOException {
+        if (this.encoding != null) return null;
+        if (!this.variants) {
+            synchronized (this) {
+                if (!this.variants && !this.released) {
+                    this.brotli = variant(new File(this.file.getPath() + ".br"), BROTLI);
+                    File gz = new File(this.file.getPath() + ".gz");
+                    if (!gz.isFile() || gz.lastModified() < this.lastModified) gz = compressed();
+                    this.gzip = variant(gz, GZIP);
+                    this.variants = true;
+                }
+            }
+        }
+        return BROTLI.equals(encoding) ? this.brotli : GZIP.equals(encoding) ? this.gzip : null;
+    }
+
+    /**
+     * @return true if the file has variants, then the responses vary with the Accept-Encoding header;
+     * also a file which is compressible has variants, because its gzip variant is generated on request
+     */
+    public boolean hasVariants() throws IOException {
+        return (this.compressible && compressedPath != null) || variant(GZIP) != null || variant(BROTLI) != null;
+    }
+
+    /**
+     * let the compressor thread generate the gzip variant; if it is busy, a later request tries again
+     */
+    private void compressInBackground() {
+        if (!this.compressible || compressedPath == null || this.compressing) return;
+        this.compressing = true;
+        try {
+            compressor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        compressVariant();
+                    } finally {
+                        StaticFile.this.compressing = false;
+                    }
+                }
+            });
+        } catch (final RejectedExecutionException e) {
+            this.compressing = false;
+        }
+    }
+
+    /**
+     * generate the gzip variant and use it for the next requests
+     * @return true if there is a gzip variant now
+     */
+    private boolean compressVariant() {
+        final File gz = compress();
+        if (gz == null) return false;
+        final StaticFile variant;
+        try {
+            variant = variant(gz, GZIP);
+        } catch (final IOException e) {
+            ConcurrentLog.warn("FILEHANDLER", "StaticFile: cannot map " + gz.getAbsolutePath() + ": " + e.getMessage());
+            return false;
+        }
+        if (variant == null) return false;
+        synchronized (this) {
+            if (this.released) {
+                variant.release();
+                return false;
+            }
+            final StaticFile old = this.gzip;
+            this.gzip = variant;
+            if (old != null) old.release();
+        }
+        return true;
+    }
+
+    private StaticFile variant(final File f, final String encoding) throws IOException {
+        if (f == null || !f.isFile() || f.lastModified() < this.lastModified) return null;
+        return new StaticFile(f, f.lastModified(), f.length(), etag(this.lastModified, this.length, encoding), encoding);
+    }
+
+    /**
+     * @return the generated gzip variant if it exists and is up-to-date, else null
+     */
+    private File compressed() {
+        final File path = compressedPath;
+        if (path == null || !this.compressible) return null;
+        final File gz = new File(path, Digest.encodeMD5Hex(this.file.getAbsolutePath()) + ".gz");
+        return gz.isFile() && gz.lastModified() == this.lastModified ? gz : null;
+    }
+
+    /**
+     * Generate the gzip variant in the directory of the compressed files; the modification time
+     * of the variant is the one of the file, this is the check if the variant is up-to-date.
+     * @return the variant or null if the file is not compressible or the compression gains nothing
+     */
+    private File compress() {
+        final File path = compressedPath;
+        if (path == null || !this.compressible) return null;
+        final File gz = new File(path, Digest.encodeMD5Hex(this.file.getAbsolutePath()) + ".gz");
+        if (gz.isFile() && gz.lastModified() == this.lastModified) return gz;
+        final File tmp = new File(path, gz.getName() + "." + Thread.currentThread().getId() + ".tmp");
+        try {
+            final InputStream in = new FileInputStream(this.file);
+            try {
+                final OutputStream out = new GZIPOutputStream(new FileOutputStream(tmp), 8192) {{this.def.setLevel(Deflater.BEST_COMPRESSION);}};
+                try {
+                    FileUtils.copy(in, out);
+                } finally {
+                    out.close();
+                }
+            } finally {
+                in.close();
+            }
+            if (tmp.length() > this.length * 9 / 10) {
+                // not worth it, i.e. a file which contains compressed data
+                FileUtils.deletedelete(tmp);
+                return null;
+            }
+            tmp.setLastModified(this.lastModified);
+            if (gz.exists()) FileUtils.deletedelete(gz);
+            if (!tmp.renameTo(gz)) throw new IOException("cannot rename " + tmp.getName());
+            return gz;
+        } catch (final IOException e) {
+            ConcurrentLog.warn("FILEHANDLER", "StaticFile: cannot compress " + this.file.getAbsolutePath() + ": " + e.getMessage());
+            FileUtils.deletedelete(tmp);
+            return null;
+        }
+    }
+
+    private static ByteBuffer map(final File file, final long length) throws IOException {
+        if (length > MAP_MAXSIZE || mappedSize.addAndGet(length) > mappedLimit) {
+            if (length <= MAP_MAXSIZE) mappedSize.addAndGet(-length);
+            return null;
+        }
+        final FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            // the mapping remains valid when the channel is closed
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, length).asReadOnlyBuffer();
+        } catch (final IOException e) {
+            mappedSize.addAndGet(-length);
+            throw e;
+        } finally {
+            channel.close();
+        }
+    }
+
+    private synchronized void release() {
+        if (this.released) return;
+        this.released = true;
+        // the mapping itself is released by the garbage collector
+        if (this.content != null) mappedSize.addAndGet(-this.length);
+        final StaticFile gz = this.gzip, br = this.brotli;
+        if (gz != null) gz.release();
+        if (br != null) br.release();
+    }
+
+    /**
+     * @param acceptEncoding the value of an Accept-Encoding header
+     * @param encoding a content encoding
+     * @return true if the encoding is listed without a quality value of zero, or if * is listed
+     */
+    public static boolean accepts(final String acceptEncoding, final String encoding) {
+        boolean accepted = false;
+        for (final String token: acceptEncoding.split(",")) {
+            final String[] params = token.split(";");
+            final String name = params[0].trim().toLowerCase(Locale.ROOT);
+            if (!name.equals(encoding) && !name.equals("*")) continue;
+            double q = 1.0d;
+            for (int i = 1; i < params.length; i++) {
+                final String param = params[i].trim();
+                if (param.startsWith("q=")) {
+                    try {
+                        q = Double.parseDouble(param.substring(2));
+                    } catch (final NumberFormatException e) {
+                        q = 0.0d;
+                    }
+                }
+            }
+            if (name.equals(encoding)) return q > 0.0d; // an explicit entry overrules *
+            accepted = q > 0.0d;
+        }
+        return accepted;
+    }
+
+    /**
+     * Check an If-None-Match header. As required for this header, the entity tags are compared
+     * with the weak comparison, i.e. a W/ prefix is ignored.
+     * @param ifNoneMatch the value of an If-None-Match header
+     * @return true if the header matches the entity tag of this file
+     */
+    public boolean matches(final String ifNoneMatch) {
+        if (ifNoneMatch == null) return false;
+        for (String tag: ifNoneMatch.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*")) return true;
+            if (tag.startsWith("W/")) tag = tag.substring(2);
+            if (tag.equals(this.etag)) return true;
+        }
+        return false;
+    }
+
+    private static String etag(final long lastModified, final long length, final String encoding) {
+        return "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(length) + (encoding == null ? "" : encoding.equals(GZIP) ? "-gz" : "-" + encoding) + "\"";
+    }
+
+    private static String extension(final String name) {
+        final int p = name.lastIndexOf('.');
+        return p < 0 ? "" : name.substring(p + 1).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * @return the strong entity tag, including the quotes
+     */
+    public String etag() {
+        return this.etag;
+    }
+
+    /**
+     * @return the content encoding or null if the content is not encoded
+     */
+    public String encoding() {
+        return this.encoding;
+    }
+
+    /**
+     * @return the length of the content, for a variant the length of the encoded content
+     */
+    public long length() {
+        return this.length;
+    }
+
+    /**
+     * @return true if the content is memory-mapped
+     */
+    public boolean isMapped() {
+        return this.content != null;
+    }
+
+    /**
+     * @param offset the first byte
+     * @param count the number of bytes
+     * @return a buffer with this part of the mapped content or null if the content is not mapped.
+     * The buffer is shared with other requests and must not be changed.
+     */
+    public ByteBuffer content(final long offset, final long count) {
+        if (this.content == null) return null;
+        final ByteBuffer buffer = this.content.duplicate();
+        buffer.position((int) offset);
+        buffer.limit((int) (offset + count));
+        return buffer.slice();
+    }
+
+    /**
+     * @return a new channel of the file, i.e. for files which are not mapped
+     */
+    public FileChannel channel() throws IOException {
+        return FileChannel.open(this.file.toPath(), StandardOpenOption.READ);
+    }
+
+    /**
+     * Write a part of the content
+     * @param out the output stream
+     * @param offset the first byte
+     * @param count the number of bytes
+     */
+    public void writeTo(final OutputStream out, final long offset, final long count) throws IOException {
+        final WritableByteChannel target = Channels.newChannel(out);
+        final ByteBuffer buffer = content(offset, count);
+        if (buffer != null) {
+            while (buffer.hasRemaining()) target.write(buffer);
+            return;
+        }
+        final FileChannel channel = channel();
+        try {
+            long position = offset, remaining = count;
+            while (remaining > 0) {
+                final long n = channel.transferTo(position, remaining, target);
+                if (n <= 0) break;
+                position += n;
+                remaining -= n;
+            }
+        } finally {
+            channel.close();
+        }
+    }
+
+}
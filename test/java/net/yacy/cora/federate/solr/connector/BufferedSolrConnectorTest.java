@@ -0,0 +1,146 @@
+package net.yacy.cora.federate.solr.connector;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrInputDocument;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import net.yacy.cora.federate.solr.connector.SolrConnector.LoadTimeURL;
+import net.yacy.cora.federate.solr.instance.EmbeddedInstance;
+import net.yacy.search.schema.CollectionSchema;
+import net.yacy.search.schema.WebgraphSchema;
+
+/**
+ * Unit tests for the {@link BufferedSolrConnector} class.
+ */
+public class BufferedSolrConnectorTest {
+
+    static EmbeddedSolrConnector solr;
+    static EmbeddedInstance instance;
+
+    @BeforeClass
+    public static void initTesting() throws IOException {
+        final File solr_config = new File("defaults/solr");
+        final File storage = new File("test/DATA/INDEX/buffered/SEGMENTS/text/solr/");
+        storage.mkdirs();
+        instance = new EmbeddedInstance(solr_config, storage, CollectionSchema.CORE_NAME, new String[]{CollectionSchema.CORE_NAME, WebgraphSchema.CORE_NAME});
+        solr = new EmbeddedSolrConnector(instance);
+    }
+
+    @AfterClass
+    public static void finalizeTesting() {
+        instance.close();
+    }
+
+    @Before
+    public void clear() throws IOException {
+        solr.clear();
+    }
+
+    private static SolrInputDocument doc(final String id, final String title) {
+        final SolrInputDocument doc = new SolrInputDocument();
+        doc.addField(CollectionSchema.id.name(), id);
+        doc.addField(CollectionSchema.sku.name(), "http://yacy.net/" + id + ".html");
+        doc.addField(CollectionSchema.title.name(), title);
+        doc.addField(CollectionSchema.load_date_dt.name(), new Date(1000000000000L));
+        return doc;
+    }
+
+    /**
+     * Test of getDocumentById and getLoadTimeURL methods: buffered documents are found before they are written
+     */
+    @Test
+    public void testReadAfterWrite() throws IOException {
+        final BufferedSolrConnector buffered = new BufferedSolrConnector(solr, 100, 60000);
+        try {
+            buffered.add(doc("buffered0001", "Lorem ipsum"));
+            assertEquals(1, buffered.bufferSize());
+            assertNull(solr.getDocumentById("buffered0001"));
+
+            final SolrDocument sd = buffered.getDocumentById("buffered0001", CollectionSchema.title.name());
+            assertNotNull(sd);
+            assertEquals("Lorem ipsum", sd.getFirstValue(CollectionSchema.title.name()));
+            assertNull(sd.getFieldValue(CollectionSchema.sku.name()));
+            final LoadTimeURL md = buffered.getLoadTimeURL("buffered0001");
+            assertNotNull(md);
+            assertEquals("http://yacy.net/buffered0001.html", md.url);
+            assertEquals(1000000000000L, md.date);
+
+            // a document added again replaces the buffered version
+            buffered.add(doc("buffered0001", "dolor sit amet"));
+            assertEquals(1, buffered.bufferSize());
+            buffered.commit(true);
+            assertEquals(0, buffered.bufferSize());
+            assertEquals("dolor sit amet", solr.getDocumentById("buffered0001").getFirstValue(CollectionSchema.title.name()));
+        } finally {
+            buffered.stop();
+        }
+    }
+
+    /**
+     * Test of add method: a full batch is written at once
+     */
+    @Test
+    public void testBatchSize() throws IOException {
+        final BufferedSolrConnector buffered = new BufferedSolrConnector(solr, 3, 60000);
+        try {
+            buffered.add(doc("buffered0002", "a"));
+            buffered.add(doc("buffered0003", "b"));
+            assertEquals(2, buffered.bufferSize());
+            buffered.add(doc("buffered0004", "c"));
+            assertEquals(0, buffered.bufferSize());
+            solr.commit(true);
+            assertEquals(3, solr.getCountByQuery("*:*"));
+        } finally {
+            buffered.stop();
+        }
+    }
+
+    /**
+     * Test of the flusher thread: a batch is written when its oldest document is too old
+     */
+    @Test
+    public void testMaxAge() throws Exception {
+        final BufferedSolrConnector buffered = new BufferedSolrConnector(solr, 100, 100);
+        try {
+            buffered.add(doc("buffered0005", "a"));
+            for (int i = 0; i < 100 && buffered.bufferSize() > 0; i++) Thread.sleep(20);
+            assertEquals(0, buffered.bufferSize());
+            solr.commit(true);
+            assertNotNull(solr.getDocumentById("buffered0005"));
+        } finally {
+            buffered.stop();
+        }
+    }
+
+    /**
+     * Test of deleteById method: a buffered document is not written after its deletion
+     */
+    @Test
+    public void testDelete() throws IOException {
+        final BufferedSolrConnector buffered = new BufferedSolrConnector(solr, 100, 60000);
+        try {
+            buffered.add(doc("buffered0006", "a"));
+            buffered.add(doc("buffered0007", "b"));
+            buffered.deleteById("buffered0006");
+            assertNull(buffered.getDocumentById("buffered0006"));
+            assertEquals(1, buffered.bufferSize());
+            buffered.flush();
+            solr.commit(true);
+            assertNull(solr.getDocumentById("buffered0006"));
+            assertNotNull(solr.getDocumentById("buffered0007"));
+        } finally {
+            buffered.stop();
+        }
+    }
+}
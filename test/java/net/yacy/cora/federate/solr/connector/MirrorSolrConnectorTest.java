@@ -0,0 +1,77 @@
+package net.yacy.cora.federate.solr.connector;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Comparator;
+
+import org.apache.solr.common.SolrDocument;
+import org.apache.solr.common.SolrDocumentList;
+import org.junit.Test;
+
+import net.yacy.search.schema.CollectionSchema;
+
+/**
+ * Unit tests for the {@link MirrorSolrConnector} class.
+ */
+public class MirrorSolrConnectorTest {
+
+    private static SolrDocumentList list(final Object[][] docs) {
+        final SolrDocumentList list = new SolrDocumentList();
+        for (final Object[] d: docs) {
+            final SolrDocument doc = new SolrDocument();
+            doc.setField(CollectionSchema.id.getSolrFieldName(), d[0]);
+            doc.setField("score", d[1]);
+            list.add(doc);
+        }
+        list.setNumFound(list.size());
+        return list;
+    }
+
+    private static String ids(final SolrDocumentList list) {
+        final StringBuilder s = new StringBuilder();
+        for (final SolrDocument doc: list) s.append(doc.getFieldValue(CollectionSchema.id.getSolrFieldName()));
+        return s.toString();
+    }
+
+    /**
+     * Test of merge method: sorted lists are merged by score, mirrored documents are taken once
+     */
+    @Test
+    public void testMergeSorted() {
+        final SolrDocumentList l0 = list(new Object[][]{{"a", 9.0f}, {"c", 5.0f}, {"e", 1.0f}});
+        final SolrDocumentList l1 = list(new Object[][]{{"b", 7.0f}, {"c", 5.0f}, {"d", 3.0f}});
+        l0.setMaxScore(9.0f);
+        l1.setMaxScore(7.0f);
+        final Comparator<SolrDocument> score = MirrorSolrConnector.sortComparator(null);
+        assertEquals("abcde", ids(MirrorSolrConnector.merge(l0, l1, score, 0, 10)));
+        assertEquals("ab", ids(MirrorSolrConnector.merge(l0, l1, score, 0, 2)));
+        final SolrDocumentList page = MirrorSolrConnector.merge(l0, l1, score, 2, 2);
+        assertEquals("cd", ids(page));
+        assertEquals(2, page.getStart());
+        assertEquals(6, page.getNumFound());
+        assertEquals(9.0f, page.getMaxScore().floatValue(), 0.0f);
+    }
+
+    /**
+     * Test of merge method: without comparator the documents of the first list come first
+     */
+    @Test
+    public void testMergeUnsorted() {
+        final SolrDocumentList l0 = list(new Object[][]{{"a", null}, {"c", null}});
+        final SolrDocumentList l1 = list(new Object[][]{{"b", null}, {"a", null}});
+        assertEquals("acb", ids(MirrorSolrConnector.merge(l0, l1, null, 0, 10)));
+        assertEquals("acb", ids(MirrorSolrConnector.merge(l0, l1, MirrorSolrConnector.sortComparator(null), 0, 10)));
+    }
+
+    /**
+     * Test of sortComparator method with several sort clauses
+     */
+    @Test
+    public void testSortComparator() {
+        final SolrDocumentList l0 = list(new Object[][]{{"a", 1.0f}, {"b", 1.0f}, {"c", 2.0f}});
+        final Comparator<SolrDocument> c = MirrorSolrConnector.sortComparator("score asc, id desc");
+        assertEquals(1, Integer.signum(c.compare(l0.get(0), l0.get(1))));
+        assertEquals(-1, Integer.signum(c.compare(l0.get(1), l0.get(2))));
+        assertEquals(0, c.compare(l0.get(2), l0.get(2)));
+    }
+}
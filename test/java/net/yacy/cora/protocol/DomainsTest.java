@@ -19,8 +19,22 @@
  */
 package net.yacy.cora.protocol;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -86,4 +100,86 @@ public class DomainsTest {
             assertEquals(teststr, expectedHost, host);
         }
     }
+
+    /**
+     * Test that addresses are resolved without blocking and that concurrent lookups of a host are joined
+     */
+    @Test
+    public void testDnsResolveAsync() throws Exception {
+        final CompletableFuture<InetAddress> ip = Domains.dnsResolveAsync("192.0.2.1");
+        assertTrue(ip.isDone());
+        assertEquals(InetAddress.getByName("192.0.2.1"), ip.get());
+        assertEquals(InetAddress.getByName("192.0.2.1"), Domains.dnsResolveFromCache("192.0.2.1"));
+
+        assertNull(Domains.dnsResolveAsync(null).get());
+        assertNull(Domains.dnsResolveAsync("").get());
+
+        final CompletableFuture<InetAddress> lookup1 = Domains.dnsResolveAsync("unknown-host.invalid");
+        final CompletableFuture<InetAddress> lookup2 = Domains.dnsResolveAsync("unknown-host.invalid");
+        assertTrue("the second lookup joins the first one", lookup1 == lookup2 || lookup1.isDone());
+        assertNull(lookup1.get(30, TimeUnit.SECONDS));
+        assertNull("a host which is not resolved is cached", Domains.dnsResolveFromCache("unknown-host.invalid"));
+    }
+
+    /**
+     * Test the loading of the resolved addresses which are not expired
+     */
+    @Test
+    public void testNameCachePersistence() throws IOException {
+        final File file = File.createTempFile("DomainsTest", ".dns");
+        try {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8)) {
+                writer.write("fresh.example.org 192.0.2.7 " + (System.currentTimeMillis() + 60000) + "\n");
+                writer.write("expired.example.org 192.0.2.8 " + (System.currentTimeMillis() - 1000) + "\n");
+                writer.write("invalid line\n");
+            }
+            Domains.init(null, file);
+            assertEquals(InetAddress.getByName("192.0.2.7"), Domains.dnsResolveFromCache("fresh.example.org"));
+            assertEquals("fresh.example.org", Domains.getHostName(InetAddress.getByName("192.0.2.7")));
+            try {
+                Domains.dnsResolveFromCache("expired.example.org");
+                fail("expired entries are not loaded");
+            } catch (final UnknownHostException e) {
+                // expected
+            }
+        } finally {
+            Domains.init(null);
+            file.delete();
+        }
+    }
+
+    /**
+     * Test the saving of the resolved addresses: the saved file is loaded again
+     */
+    @Test
+    public void testNameCacheSave() throws Exception {
+        final File file = File.createTempFile("DomainsTest", ".dns");
+        try {
+            Domains.setNameCache(1000, 100, 60000, 60000);
+            final long now = System.currentTimeMillis();
+            assertEquals(InetAddress.getByName("192.0.2.9"), Domains.dnsResolveAsync("192.0.2.9").get());
+            Domains.saveNameCache(file);
+            final StringBuilder content = new StringBuilder();
+            try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+                final char[] buffer = new char[1024];
+                int n;
+                while ((n = reader.read(buffer)) > 0) content.append(buffer, 0, n);
+            }
+            final String[] line = content.toString().trim().split(" ");
+            assertEquals(3, line.length);
+            assertEquals("192.0.2.9", line[0]);
+            assertEquals("192.0.2.9", line[1]);
+            assertTrue(Long.parseLong(line[2]) >= now + 60000);
+
+            // the saved entries are loaded into empty caches
+            Domains.setNameCache(1000, 100, 60000, 60000);
+            assertEquals(0, Domains.nameCacheHitSize());
+            Domains.init(null, file);
+            assertEquals(1, Domains.nameCacheHitSize());
+            assertEquals(InetAddress.getByName("192.0.2.9"), Domains.dnsResolveFromCache("192.0.2.9"));
+        } finally {
+            Domains.init(null);
+            file.delete();
+        }
+    }
 }
@@ -0,0 +1,158 @@
+package net.yacy.cora.protocol.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.protocol.ClientIdentification;
+import net.yacy.cora.protocol.http.HTTPConnectionPool.TrafficClass;
+
+/**
+ * Unit tests for the {@link HTTPConnectionPool} class, using a local http server.
+ */
+public class HTTPConnectionPoolTest {
+
+    private static final byte[] PAGE = "<html><body>pool</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    private Server server;
+    private int port;
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new Server();
+        final ServerConnector connector = new ServerConnector(this.server);
+        connector.setPort(0);
+        this.server.addConnector(connector);
+        this.server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(final String target, final org.eclipse.jetty.server.Request baseRequest, final HttpServletRequest request,
+                    final HttpServletResponse response) throws IOException {
+                response.setStatus(200);
+                response.setContentLength(PAGE.length);
+                response.getOutputStream().write(PAGE);
+                baseRequest.setHandled(true);
+            }
+        });
+        this.server.start();
+        this.port = connector.getLocalPort();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.server.stop();
+    }
+
+    private void load(final TrafficClass trafficClass, final int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            final HTTPClient client = new HTTPClient(ClientIdentification.yacyInternetCrawlerAgent, trafficClass);
+            assertArrayEquals(PAGE, client.GETbytes("http://127.0.0.1:" + this.port + "/page" + i, null, null, false));
+        }
+    }
+
+    /**
+     * Test of the keep-alive of the crawler pool: the requests to one host reuse the connection
+     */
+    @Test
+    public void testCrawlerReusesConnections() throws IOException {
+        final HTTPConnectionPool pool = HTTPClient.getPool(TrafficClass.CRAWLER);
+        assertTrue(pool.isKeepAlive());
+        final long requests = pool.getRequests(), connections = pool.getConnections(), handshakes = pool.getHandshakes();
+        load(TrafficClass.CRAWLER, 5);
+        assertEquals(requests + 5, pool.getRequests());
+        assertEquals(connections + 1, pool.getConnections());
+        assertEquals(handshakes, pool.getHandshakes());
+        assertTrue(pool.getReuseRatio() > 0.0d);
+        assertEquals(1, pool.getStats().getAvailable());
+    }
+
+    /**
+     * Test of the general pool: each request opens a new connection
+     */
+    @Test
+    public void testGeneralClosesConnections() throws IOException {
+        final HTTPConnectionPool pool = HTTPClient.getPool(TrafficClass.GENERAL);
+        assertFalse(pool.isKeepAlive());
+        final long requests = pool.getRequests(), connections = pool.getConnections();
+        load(TrafficClass.GENERAL, 3);
+        assertEquals(requests + 3, pool.getRequests());
+        assertEquals(connections + 3, pool.getConnections());
+    }
+
+    /**
+     * Test of setHostDemand: the number of connections to a host grows with the waiting requests, up to the maximum
+     */
+    @Test
+    public void testSetHostDemand() {
+        final HTTPConnectionPool pool = HTTPClient.getPool(TrafficClass.CRAWLER);
+        final int defaultMax = pool.getMaxPerHost("https", "demand.example.org", 443);
+        final int sized = pool.getSizedHosts();
+
+        // a few waiting requests do not change the default
+        pool.setHostDemand("https", "demand.example.org", 443, 1);
+        assertEquals(defaultMax, pool.getMaxPerHost("https", "demand.example.org", 443));
+        assertEquals(sized, pool.getSizedHosts());
+
+        pool.setMaxPerHost(defaultMax + 2);
+        pool.setHostDemand("https", "demand.example.org", 443, HTTPConnectionPool.QUEUED_PER_CONNECTION * (defaultMax + 1));
+        assertEquals(defaultMax + 2, pool.getMaxPerHost("https", "demand.example.org", -1));
+        assertEquals(sized + 1, pool.getSizedHosts());
+        // other hosts and ports are not changed
+        assertEquals(defaultMax, pool.getMaxPerHost("http", "demand.example.org", 80));
+        assertEquals(defaultMax, pool.getMaxPerHost("https", "demand.example.org", 8443));
+
+        // the limit is cut at the maximum per host
+        pool.setHostDemand("https", "demand.example.org", 443, HTTPConnectionPool.QUEUED_PER_CONNECTION * 1000);
+        assertEquals(defaultMax + 2, pool.getMaxPerHost("https", "demand.example.org", 443));
+
+        // and goes back to the default when the queue of the host is empty, the host has then no own limit
+        pool.setHostDemand("https", "demand.example.org", 443, 0);
+        assertEquals(defaultMax, pool.getMaxPerHost("https", "demand.example.org", 443));
+        assertEquals(sized, pool.getSizedHosts());
+
+        // other protocols are ignored
+        pool.setHostDemand("ftp", "demand.example.org", 21, 1000);
+        assertEquals(sized, pool.getSizedHosts());
+    }
+
+    /**
+     * Test of setHostDemand: when the maximum number of sized hosts is reached, the least recently sized host is reset
+     */
+    @Test
+    public void testSetHostDemandEvictsLeastRecentlySized() {
+        final HTTPConnectionPool pool = HTTPClient.getPool(TrafficClass.CRAWLER);
+        final int defaultMax = pool.getMaxPerHost("http", "lru.example.org", 80);
+        pool.setMaxPerHost(defaultMax + 2);
+        final int queued = HTTPConnectionPool.QUEUED_PER_CONNECTION * (defaultMax + 1);
+        try {
+            for (int i = 0; i < HTTPConnectionPool.MAX_SIZED_HOSTS; i++) pool.setHostDemand("http", "lru" + i + ".example.org", 80, queued);
+            assertEquals(HTTPConnectionPool.MAX_SIZED_HOSTS, pool.getSizedHosts());
+
+            // lru0 is sized again and is now the most recently sized host, lru1 is the least recently sized host
+            pool.setHostDemand("http", "lru0.example.org", 80, queued);
+            pool.setHostDemand("http", "lrunew.example.org", 80, queued);
+            assertEquals(HTTPConnectionPool.MAX_SIZED_HOSTS, pool.getSizedHosts());
+            assertEquals(defaultMax + 2, pool.getMaxPerHost("http", "lrunew.example.org", 80));
+            assertEquals(defaultMax + 2, pool.getMaxPerHost("http", "lru0.example.org", 80));
+            assertEquals(defaultMax, pool.getMaxPerHost("http", "lru1.example.org", 80));
+            assertEquals(defaultMax + 2, pool.getMaxPerHost("http", "lru2.example.org", 80));
+        } finally {
+            for (int i = 0; i < HTTPConnectionPool.MAX_SIZED_HOSTS; i++) pool.setHostDemand("http", "lru" + i + ".example.org", 80, 0);
+            pool.setHostDemand("http", "lrunew.example.org", 80, 0);
+        }
+        assertEquals(0, pool.getSizedHosts());
+    }
+}
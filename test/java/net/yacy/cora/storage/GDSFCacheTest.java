@@ -0,0 +1,88 @@
+package net.yacy.cora.storage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link GDSFCache} class.
+ */
+public class GDSFCacheTest {
+
+    /**
+     * Test the cache operations and the size accounting
+     */
+    @Test
+    public void testPutGetRemove() {
+        final GDSFCache<String> cache = new GDSFCache<String>(100000, 100);
+        final byte[] a = new byte[1000];
+        assertTrue(cache.put("a", a));
+        assertArrayEquals(a, cache.get("a"));
+        assertNull(cache.get("b"));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+        assertEquals(0.5, cache.hitRate(), 0.001);
+        final long used = cache.usedBytes();
+        assertTrue(used >= 1000);
+
+        // replacing a value does not count its size twice
+        assertTrue(cache.put("a", new byte[2000]));
+        assertEquals(1, cache.size());
+        assertEquals(used + 1000, cache.usedBytes());
+
+        cache.remove("a");
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.usedBytes());
+
+        // values larger than a quarter of the cache are not admitted
+        assertFalse(cache.put("large", new byte[30000]));
+        assertEquals(1, cache.rejected());
+    }
+
+    /**
+     * Test that large documents which are read rarely are evicted before small documents which are read often
+     */
+    @Test
+    public void testSizeAwareEviction() {
+        final GDSFCache<String> cache = new GDSFCache<String>(40000, 100);
+        assertTrue(cache.put("large", new byte[9000]));
+        for (int i = 0; i < 20; i++) {
+            assertTrue(cache.put("small" + i, new byte[1000]));
+            cache.get("small" + i);
+            cache.get("small" + i);
+        }
+        // make the candidate frequent enough to be admitted
+        for (int i = 0; i < 3; i++) cache.get("new");
+        assertTrue(cache.put("new", new byte[9000]));
+        assertFalse(cache.containsKey("large"));
+        for (int i = 0; i < 20; i++) assertTrue(cache.containsKey("small" + i));
+        assertTrue(cache.evicted() > 0);
+        assertTrue(cache.usedBytes() <= cache.maxBytes());
+    }
+
+    /**
+     * Test that a document which is read once does not evict a more frequent one
+     */
+    @Test
+    public void testAdmission() {
+        final GDSFCache<String> cache = new GDSFCache<String>(10000, 100);
+        assertTrue(cache.put("hot", new byte[2000]));
+        for (int i = 0; i < 5; i++) cache.get("hot");
+        assertTrue(cache.put("warm", new byte[2000]));
+        for (int i = 0; i < 5; i++) cache.get("warm");
+        assertFalse(cache.put("once", new byte[2400]));
+        assertTrue(cache.containsKey("hot"));
+        assertTrue(cache.containsKey("warm"));
+
+        // shrinking the cache evicts entries
+        cache.setMaxBytes(3000);
+        assertEquals(1, cache.size());
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(0, cache.hits());
+    }
+}
@@ -0,0 +1,111 @@
+package net.yacy.crawler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link HostScheduler} class.
+ */
+public class HostSchedulerTest {
+
+    /**
+     * Test of poll method: hosts are returned by due time, larger queues first within the same time slot
+     */
+    @Test
+    public void testPollOrder() {
+        final HostScheduler scheduler = new HostScheduler();
+        final long now = 1000000L;
+        scheduler.offer("late", now + 5000, 100);
+        scheduler.offer("small", now, 1);
+        scheduler.offer("large", now + 10, 50);
+        scheduler.offer("early", now - 1000, 1);
+        assertEquals("early", scheduler.poll().hosthash);
+        assertEquals("large", scheduler.poll().hosthash);
+        assertEquals("small", scheduler.poll().hosthash);
+        assertEquals("late", scheduler.poll().hosthash);
+        assertNull(scheduler.poll());
+    }
+
+    /**
+     * Test of offer and schedule method: a taken host is not offered again until it is scheduled
+     */
+    @Test
+    public void testTakenHost() {
+        final HostScheduler scheduler = new HostScheduler();
+        assertTrue(scheduler.offer("a", 0, 1));
+        assertFalse(scheduler.offer("a", 0, 1));
+        assertEquals("a", scheduler.poll().hosthash);
+        assertTrue(scheduler.isKnown("a"));
+        assertFalse(scheduler.offer("a", 0, 1));
+        assertNull(scheduler.poll());
+        scheduler.schedule("a", 0, 1);
+        assertEquals("a", scheduler.poll().hosthash);
+        scheduler.remove("a");
+        assertFalse(scheduler.isKnown("a"));
+        assertTrue(scheduler.offer("a", 0, 1));
+    }
+
+    /**
+     * Test of schedule method: a rescheduled host replaces its previous schedule
+     */
+    @Test
+    public void testReschedule() {
+        final HostScheduler scheduler = new HostScheduler();
+        scheduler.offer("a", 0, 1);
+        scheduler.offer("b", 1000, 1);
+        scheduler.schedule("a", 2000, 1);
+        assertEquals("b", scheduler.poll().hosthash);
+        final HostScheduler.Entry a = scheduler.poll();
+        assertEquals("a", a.hosthash);
+        assertEquals(2000, a.due);
+        assertNull(scheduler.poll());
+    }
+
+    /**
+     * Test of concurrent poll and schedule operations: a host is never taken by two threads at the same time
+     */
+    @Test
+    public void testConcurrentPoll() throws Exception {
+        final HostScheduler scheduler = new HostScheduler();
+        for (int i = 0; i < 100; i++) scheduler.offer("host" + i, i, 1);
+        final Set<String> taken = java.util.Collections.synchronizedSet(new HashSet<String>());
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() {
+                        for (int i = 0; i < 10000; i++) {
+                            final HostScheduler.Entry entry = scheduler.poll();
+                            if (entry == null) continue;
+                            if (!taken.add(entry.hosthash)) return false;
+                            taken.remove(entry.hosthash);
+                            scheduler.schedule(entry.hosthash, entry.due + 1, 1);
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (final Future<Boolean> result: results) assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        int c = 0;
+        while (scheduler.poll() != null) c++;
+        assertEquals(100, c);
+    }
+}
@@ -138,6 +138,63 @@ public class CacheTest {
 		assertArrayEquals(fileContent, Cache.getContent(urlHash));
 	}
 
+	/**
+	 * Test the RAM tier and its statistics
+	 */
+	@Test
+	public void testRAMTier() throws MalformedURLException, IOException {
+		final ResponseHeader okResponse = new ResponseHeader(HttpStatus.SC_OK);
+		final DigestURL url = new DigestURL("http://yacy.net");
+		final byte[] urlHash = url.hash();
+		final byte[] fileContent = TEXT_CONTENT.getBytes(StandardCharsets.UTF_8);
+
+		try {
+			/* the stored content is admitted to the empty RAM tier */
+			Cache.store(url, okResponse, fileContent);
+			assertEquals(1, Cache.getRAMTierDocCount());
+			assertArrayEquals(fileContent, Cache.getContent(urlHash));
+			assertEquals(1, Cache.getContentRequests());
+			assertEquals(1, Cache.getRAMTierHits());
+			assertEquals(0, Cache.getDiskHits());
+
+			/* a deleted entry is also removed from the RAM tier */
+			Cache.delete(urlHash);
+			assertEquals(0, Cache.getRAMTierDocCount());
+			assertNull(Cache.getContent(urlHash));
+
+			/* without RAM tier the content is read from disk */
+			Cache.setRAMTierSize(0);
+			Cache.store(url, okResponse, fileContent);
+			assertArrayEquals(fileContent, Cache.getContent(urlHash));
+			assertEquals(1, Cache.getDiskHits());
+			assertEquals(0, Cache.getRAMTierDocCount());
+
+			/* a disk hit is promoted to the RAM tier */
+			Cache.setRAMTierSize(Cache.DEFAULT_RAM_TIER_SIZE);
+			assertArrayEquals(fileContent, Cache.getContent(urlHash));
+			assertEquals(2, Cache.getDiskHits());
+			assertArrayEquals(fileContent, Cache.getContent(urlHash));
+			assertEquals(2, Cache.getRAMTierHits());
+			assertEquals(0.4, Cache.getRAMTierHitRate(), 0.001);
+			assertEquals(2.0 / 3.0, Cache.getDiskHitRate(), 0.001);
+
+			/* a resized RAM tier keeps its documents as long as they fit */
+			Cache.setRAMTierSize(2 * Cache.DEFAULT_RAM_TIER_SIZE);
+			assertEquals(2 * Cache.DEFAULT_RAM_TIER_SIZE, Cache.getRAMTierSize());
+			assertEquals(1, Cache.getRAMTierDocCount());
+			Cache.setRAMTierSize(1);
+			assertEquals(0, Cache.getRAMTierDocCount());
+			Cache.setRAMTierSize(Cache.DEFAULT_RAM_TIER_SIZE);
+
+			/* clear resets the RAM tier and the statistics */
+			Cache.clear();
+			assertEquals(0, Cache.getRAMTierDocCount());
+			assertEquals(0, Cache.getContentRequests());
+		} finally {
+			Cache.setRAMTierSize(Cache.DEFAULT_RAM_TIER_SIZE);
+		}
+	}
+
 	@Test
 	public void testDelete() throws MalformedURLException, IOException {
 		final ResponseHeader okResponse = new ResponseHeader(HttpStatus.SC_OK);
@@ -0,0 +1,102 @@
+package net.yacy.crawler.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.net.MalformedURLException;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.search.SwitchboardConstants;
+
+/**
+ * Unit tests for the {@link Latency} class.
+ */
+public class LatencyTest {
+
+    @After
+    public void tearDown() {
+        Latency.setMaxSize(SwitchboardConstants.CRAWLER_LATENCY_MAXHOSTS_DEFAULT);
+    }
+
+    private static Latency.Host host(final DigestURL url) {
+        final Iterator<Map.Entry<String, Latency.Host>> i = Latency.iterator();
+        while (i.hasNext()) {
+            final Map.Entry<String, Latency.Host> e = i.next();
+            if (e.getKey().equals(url.hosthash())) return e.getValue();
+        }
+        return null;
+    }
+
+    /**
+     * Test of the decayed average latency
+     */
+    @Test
+    public void testDecay() throws MalformedURLException {
+        final DigestURL url = new DigestURL("http://decay.latency.test/");
+        Latency.updateAfterLoad(url, 100);
+        final Latency.Host h = host(url);
+        assertNotNull(h);
+        assertEquals(100, h.average());
+        for (int i = 0; i < 100; i++) Latency.updateAfterLoad(url, i % 10 == 0 ? 2000 : 100);
+        assertEquals(101, h.count());
+        // the average is between the usual latency and the outliers
+        assertTrue(h.average() > 100 && h.average() < 500);
+        // the statistics follow a change of the latency
+        for (int i = 0; i < 100; i++) Latency.updateAfterLoad(url, 1000);
+        assertTrue(h.average() > 990);
+    }
+
+    /**
+     * Test of the eviction of the least recently accessed hosts
+     */
+    @Test
+    public void testEviction() throws Exception {
+        Latency.setMaxSize(100);
+        final DigestURL recent = new DigestURL("http://recent.latency.test/");
+        Latency.updateAfterLoad(recent, 100);
+        Thread.sleep(5);
+        for (int i = 0; i < 105; i++) Latency.updateAfterLoad(new DigestURL("http://h" + i + ".latency.test/"), 100);
+        Thread.sleep(5);
+        Latency.updateBeforeLoad(recent);
+        for (int i = 105; i < 150; i++) Latency.updateAfterLoad(new DigestURL("http://h" + i + ".latency.test/"), 100);
+        assertTrue(Latency.size() <= 110);
+        assertNotNull(host(recent));
+        assertNull(host(new DigestURL("http://h0.latency.test/")));
+    }
+
+    /**
+     * Test of saving and loading the statistics
+     */
+    @Test
+    public void testPersistence() throws Exception {
+        final File file = File.createTempFile("latency", ".list");
+        try {
+            file.delete();
+            Latency.init(file);
+            final DigestURL url = new DigestURL("http://persistent.latency.test/");
+            Latency.updateAfterLoad(url, 300);
+            Latency.updateAfterLoad(url, 600);
+            final Latency.Host h = host(url);
+            Latency.close();
+            assertTrue(file.exists());
+            Latency.init(file);
+            final Latency.Host loaded = host(url);
+            assertNotNull(loaded);
+            assertEquals(h.average(), loaded.average());
+            assertEquals(2, loaded.count());
+            assertEquals(h.lastacc(), loaded.lastacc());
+            assertEquals("persistent.latency.test", loaded.host());
+        } finally {
+            Latency.init(null);
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package net.yacy.crawler.retrieval;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.MalformedURLException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.Server;
+import org.eclipse.jetty.server.ServerConnector;
+import org.eclipse.jetty.server.handler.AbstractHandler;
+import org.eclipse.jetty.util.thread.QueuedThreadPool;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.federate.solr.FailCategory;
+import net.yacy.cora.protocol.HeaderFramework;
+import net.yacy.cora.protocol.RequestHeader;
+import net.yacy.cora.protocol.ResponseHeader;
+
+/**
+ * Unit tests for the {@link AsyncHTTPLoader} class, using a local http server.
+ */
+public class AsyncHTTPLoaderTest {
+
+    private static final byte[] PAGE = "<html><body>async</body></html>".getBytes(StandardCharsets.UTF_8);
+
+    private Server server;
+    private int port;
+    private AsyncHTTPLoader loader;
+
+    /** the number of requests which are processed by the server at the same time, and the maximum */
+    private final AtomicInteger running = new AtomicInteger(0);
+    private final AtomicInteger maxRunning = new AtomicInteger(0);
+
+    /** the start times of the requests for each host */
+    private final Map<String, List<Long>> starts = new ConcurrentHashMap<String, List<Long>>();
+
+    @Before
+    public void setUp() throws Exception {
+        this.server = new Server(new QueuedThreadPool(200, 8));
+        final ServerConnector connector = new ServerConnector(this.server);
+        connector.setPort(0);
+        this.server.addConnector(connector);
+        this.server.setHandler(new AbstractHandler() {
+            @Override
+            public void handle(final String target, final org.eclipse.jetty.server.Request baseRequest, final HttpServletRequest request,
+                    final HttpServletResponse response) throws IOException {
+                final int r = AsyncHTTPLoaderTest.this.running.incrementAndGet();
+                synchronized (AsyncHTTPLoaderTest.this.maxRunning) {
+                    if (r > AsyncHTTPLoaderTest.this.maxRunning.get()) AsyncHTTPLoaderTest.this.maxRunning.set(r);
+                }
+                List<Long> hostStarts = AsyncHTTPLoaderTest.this.starts.get(request.getServerName());
+                if (hostStarts == null) {
+                    AsyncHTTPLoaderTest.this.starts.putIfAbsent(request.getServerName(), Collections.synchronizedList(new ArrayList<Long>()));
+                    hostStarts = AsyncHTTPLoaderTest.this.starts.get(request.getServerName());
+                }
+                hostStarts.add(System.currentTimeMillis());
+                try {
+                    if (target.equals("/slow")) {
+                        try {
+                            Thread.sleep(500);
+                        } catch (final InterruptedException e) {
+                        }
+                        response.setStatus(200);
+                        response.getOutputStream().write(PAGE);
+                    } else if (target.equals("/redirect")) {
+                        response.setStatus(301);
+                        response.setHeader(HeaderFramework.LOCATION, "/page");
+                    } else if (target.equals("/big")) {
+                        response.setStatus(200);
+                        response.getOutputStream().write(new byte[100000]);
+                    } else if (target.equals("/gzip")) {
+                        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                        final GZIPOutputStream gzip = new GZIPOutputStream(bytes);
+                        gzip.write(PAGE);
+                        gzip.close();
+                        response.setStatus(200);
+                        response.setHeader(HeaderFramework.CONTENT_ENCODING, "gzip");
+                        response.getOutputStream().write(bytes.toByteArray());
+                    } else {
+                        response.setStatus(200);
+                        response.getOutputStream().write(PAGE);
+                    }
+                } finally {
+                    AsyncHTTPLoaderTest.this.running.decrementAndGet();
+                    baseRequest.setHandled(true);
+                }
+            }
+        });
+        this.server.start();
+        this.port = connector.getLocalPort();
+        this.loader = new AsyncHTTPLoader(100, 4, 10000);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        this.loader.close();
+        this.server.stop();
+    }
+
+    /**
+     * Collects the results of the requests
+     */
+    private static class Results implements AsyncHTTPLoader.Listener {
+
+        private final CountDownLatch done;
+        private final Map<String, ResponseHeader> headers = new ConcurrentHashMap<String, ResponseHeader>();
+        private final Map<String, byte[]> contents = new ConcurrentHashMap<String, byte[]>();
+        private final Map<String, FailCategory> failures = new ConcurrentHashMap<String, FailCategory>();
+        private final AtomicInteger started = new AtomicInteger(0);
+        private final List<Long> startTimes = Collections.synchronizedList(new ArrayList<Long>());
+
+        private Results(final int count) {
+            this.done = new CountDownLatch(count);
+        }
+
+        @Override
+        public void started(final Request request) {
+            this.started.incrementAndGet();
+            this.startTimes.add(System.currentTimeMillis());
+        }
+
+        @Override
+        public void completed(final Request request, final ResponseHeader responseHeader, final byte[] content) {
+            this.headers.put(request.url().toNormalform(true), responseHeader);
+            this.contents.put(request.url().toNormalform(true), content);
+            this.done.countDown();
+        }
+
+        @Override
+        public void failed(final Request request, final FailCategory category, final String reason) {
+            this.failures.put(request.url().toNormalform(true), category);
+            this.done.countDown();
+        }
+
+        private boolean await() throws InterruptedException {
+            return this.done.await(30, TimeUnit.SECONDS);
+        }
+    }
+
+    private String url(final String host, final String path) {
+        return "http://" + host + ":" + this.port + path;
+    }
+
+    private boolean load(final String url, final int maxFileSize, final long delay, final Results results) throws MalformedURLException {
+        final DigestURL u = new DigestURL(url);
+        final RequestHeader requestHeader = new RequestHeader();
+        requestHeader.put(HeaderFramework.USER_AGENT, "yacybot (test)");
+        requestHeader.put(HeaderFramework.ACCEPT_ENCODING, "gzip,deflate");
+        return this.loader.load(new Request(u, null), u, requestHeader, maxFileSize, delay, results);
+    }
+
+    /**
+     * Test of load method: the requests to different hosts are processed concurrently
+     */
+    @Test
+    public void testLoadConcurrently() throws Exception {
+        final int hosts = 40;
+        final Results results = new Results(hosts);
+        final long start = System.currentTimeMillis();
+        for (int i = 0; i < hosts; i++) {
+            // all addresses of 127.0.0.0/8 are local addresses, each is another host for the politeness
+            assertTrue(load(url("127.0.0." + (i + 1), "/slow"), -1, 1000, results));
+        }
+        assertTrue(results.await());
+        final long time = System.currentTimeMillis() - start;
+        assertEquals(hosts, results.contents.size());
+        assertEquals(hosts, results.started.get());
+        for (final Map.Entry<String, byte[]> entry: results.contents.entrySet()) {
+            assertEquals(200, results.headers.get(entry.getKey()).getStatusCode());
+            assertArrayEquals(PAGE, entry.getValue());
+        }
+        // the requests wait 500 milliseconds each in the server, with four threads of the client
+        assertTrue("time = " + time, time < hosts * 500 / 4);
+        assertTrue("max running = " + this.maxRunning.get(), this.maxRunning.get() > 4);
+        assertEquals(0, this.loader.size());
+    }
+
+    /**
+     * Test of load method: the requests to the same host are sent one after another with the given delay
+     */
+    @Test
+    public void testHostDelay() throws Exception {
+        final Results results = new Results(4);
+        for (int i = 0; i < 4; i++) assertTrue(load(url("localhost", "/page?p=" + i), -1, 300, results));
+        assertTrue(results.await());
+        assertEquals(4, results.contents.size());
+        assertEquals(4, this.starts.get("localhost").size());
+        // the distance is measured when the client sends the requests, the arrival at the server also depends on the connection setup
+        final List<Long> hostStarts = results.startTimes;
+        assertEquals(4, hostStarts.size());
+        for (int i = 1; i < hostStarts.size(); i++) {
+            assertTrue("distance " + (hostStarts.get(i) - hostStarts.get(i - 1)), hostStarts.get(i) - hostStarts.get(i - 1) >= 290);
+        }
+        assertEquals(1, this.maxRunning.get());
+    }
+
+    /**
+     * Test of load method: redirects are not followed, gzip content is decoded and too large content is rejected
+     */
+    @Test
+    public void testResponses() throws Exception {
+        final Results results = new Results(3);
+        assertTrue(load(url("127.0.0.1", "/redirect"), -1, 0, results));
+        assertTrue(load(url("127.0.0.2", "/gzip"), -1, 0, results));
+        assertTrue(load(url("127.0.0.3", "/big"), 1000, 0, results));
+        assertTrue(results.await());
+
+        final ResponseHeader redirect = results.headers.get(url("127.0.0.1", "/redirect"));
+        assertEquals(301, redirect.getStatusCode());
+        assertTrue(redirect.get(HeaderFramework.LOCATION).endsWith("/page"));
+
+        final ResponseHeader gzip = results.headers.get(url("127.0.0.2", "/gzip"));
+        assertEquals(200, gzip.getStatusCode());
+        assertNull(gzip.get(HeaderFramework.CONTENT_ENCODING));
+        assertArrayEquals(PAGE, results.contents.get(url("127.0.0.2", "/gzip")));
+
+        assertEquals(FailCategory.FINAL_PROCESS_CONTEXT, results.failures.get(url("127.0.0.3", "/big")));
+    }
+
+    /**
+     * Test of load method: no more requests than the maximum are accepted
+     */
+    @Test
+    public void testMaxRequests() throws Exception {
+        this.loader.close();
+        this.loader = new AsyncHTTPLoader(2, 4, 10000);
+        final Results results = new Results(2);
+        assertTrue(load(url("127.0.0.1", "/slow"), -1, 0, results));
+        assertTrue(load(url("127.0.0.2", "/slow"), -1, 0, results));
+        assertFalse(load(url("127.0.0.3", "/slow"), -1, 0, results));
+        assertEquals(0, this.loader.remainingCapacity());
+        assertEquals(2, this.loader.requests().size());
+        assertTrue(results.await());
+        assertEquals(2, this.loader.remainingCapacity());
+    }
+}
@@ -166,6 +166,34 @@ public class ContentScraperTest {
         }
         scraper.close();
     }
+
+    /**
+     * Test that the complete content of tags with a class mapped to a vocabulary is recorded,
+     * even for tags whose content is otherwise not buffered or limited while parsing.
+     */
+    @Test
+    public void testClassVocabularyContent() throws MalformedURLException, IOException {
+        final DigestURL root = new DigestURL("http://test.org/test.html");
+        final StringBuilder longText = new StringBuilder();
+        while (longText.length() <= 2048) longText.append("long list item text ");
+        final String page = "<html><body>"
+                + "<div class=\"author\">Jane Doe</div>"
+                + "<ul><li class=\"summary\">" + longText + "</li></ul>"
+                + "</body></html>";
+
+        final VocabularyScraper vocabularyScraper = new VocabularyScraper("{\"authors\":{\"class\":\"author\"},\"summaries\":{\"class\":\"summary\"}}");
+        final ContentScraper scraper = new ContentScraper(root, 10, new HashSet<String>(), vocabularyScraper, 0);
+        try (final Writer writer = new TransformerWriter(null, null, scraper, false)) {
+            FileUtils.copy(new StringReader(page), writer);
+        } finally {
+            scraper.close();
+        }
+
+        final Map<String, String> vocMap = vocabularyScraper.removeVocMap(root);
+        Assert.assertNotNull(vocMap);
+        Assert.assertEquals("Jane Doe", vocMap.get("authors"));
+        Assert.assertEquals(longText.toString(), vocMap.get("summaries"));
+    }
     
     /**
      * Test absolute URLs detection in plain text
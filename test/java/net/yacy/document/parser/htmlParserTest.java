@@ -351,6 +351,66 @@ public class htmlParserTest extends TestCase {
 			}
 		}
     }
+
+	/**
+	 * Test that the htmlParser.parseWithLimits() method stops reading the content
+	 * as soon as the maxLinks limit is exceeded.
+	 * 
+	 * @throws Exception
+	 *             when an unexpected error occurred
+	 */
+	@Test
+	public void testParseWithLimitsStopsOnAnchors() throws Exception {
+		final AnchorURL url = new AnchorURL("http://localhost/test.html");
+		final String mimetype = "text/html";
+		final String charset = StandardCharsets.UTF_8.name();
+		final StringBuilder testHtml = new StringBuilder("<!DOCTYPE html><html><body><p>firstword ");
+		testHtml.append("<a href=\"http://localhost/doc1.html\">First link</a>");
+		testHtml.append("<a href=\"http://localhost/doc2.html\">Second link</a>");
+		testHtml.append("</p>");
+		for (int i = 0; i < 10000; i++) {
+			testHtml.append("<p>filler text</p>");
+		}
+		testHtml.append("<p>lastword</p></body></html>");
+
+		final htmlParser parser = new htmlParser();
+		try (InputStream sourceStream = new ByteArrayInputStream(testHtml.toString().getBytes(StandardCharsets.UTF_8));) {
+			final Document doc = parser.parseWithLimits(url, mimetype, charset, new VocabularyScraper(), 0, sourceStream,
+					1, Long.MAX_VALUE)[0];
+			assertEquals(1, doc.getAnchors().size());
+			assertTrue(doc.isPartiallyParsed());
+			assertTrue(doc.getTextString().contains("firstword"));
+			assertFalse("Parsing should have stopped after the links limit", doc.getTextString().contains("lastword"));
+		}
+	}
+
+	/**
+	 * Test that the tag contents used by the scraper are complete, whereas the
+	 * content of other tags is not collected while parsing.
+	 */
+	@Test
+	public void testParseToScraperTagContents() throws IOException {
+		final AnchorURL url = new AnchorURL("http://localhost/");
+		final String charset = StandardCharsets.UTF_8.name();
+		final StringBuilder longText = new StringBuilder();
+		for (int i = 0; i < 200; i++) {
+			longText.append("long text ");
+		}
+		final String testHtml = "<html><body><div><div><nav><h1><span>Main <b>title</b></span></h1></nav>"
+				+ "<article><div><span>" + longText + "</span> and <i>end</i></div></article>"
+				+ "<h2><span>" + longText + "</span></h2>"
+				+ "<a href=\"http://localhost/doc1.html\"><span>link</span> text</a></div></div></body></html>";
+
+		final ContentScraper scraper = parseToScraper(url, charset, new HashSet<String>(), new VocabularyScraper(), 0,
+				testHtml, Integer.MAX_VALUE, Integer.MAX_VALUE);
+		assertEquals(1, scraper.getHeadlines(1).length);
+		assertEquals("Main title", scraper.getHeadlines(1)[0]);
+		assertEquals("Headlines longer than 1024 characters are ignored", 0, scraper.getHeadlines(2).length);
+		assertEquals(1, scraper.getArticles().size());
+		assertEquals(longText + "and end", scraper.getArticles().get(0));
+		assertEquals(1, scraper.getAnchors().size());
+		assertEquals("link text", scraper.getAnchors().iterator().next().getTextProperty().replaceAll("\\s+", " "));
+	}
     
     /**
      * Test of parseToScraper method, of class htmlParser.
@@ -0,0 +1,79 @@
+// ArrayStackPerfTest.java
+// -----------------------
+// part of YaCy
+// Copyright 2026 by the YaCy contributors
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.kelondro.blob;
+
+import java.io.File;
+import java.util.Random;
+
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Comparing the performances of multi-file lookups in an {@link ArrayStack} with and without the key filters of the BLOB files
+ */
+public class ArrayStackPerfTest {
+
+	/**
+	 * Run the benchmark with 5, 50 and 200 mounted files
+	 * @param args [number of keys per file] [number of lookups]
+	 */
+	public static void main(final String[] args) throws Exception {
+		final int keysPerFile = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		final int lookups = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+		final File location = new File(System.getProperty("java.io.tmpdir"), "ArrayStackPerfTest");
+		try {
+			for (final int files : new int[] { 5, 50, 200 }) {
+				FileUtils.deletedelete(location);
+				final ArrayStack stack = new ArrayStack(location, "bench", NaturalOrder.naturalOrder, 12, 0, true, true);
+				for (int i = 0; i < files; i++) {
+					ArrayStackTest.mount(stack, i * keysPerFile, keysPerFile);
+				}
+				final int maxKey = files * keysPerFile;
+				for (final boolean filter : new boolean[] { false, true, false, true }) {
+					ArrayStack.useKeyFilter = filter;
+					final Random r = new Random(0);
+					int found = 0;
+					final long start = System.nanoTime();
+					for (int i = 0; i < lookups; i++) {
+						// half of the lookups are for keys which do not exist
+						final byte[] key = ArrayStackTest.key(r.nextInt(maxKey * 2));
+						if (stack.containsKey(key)) {
+							found++;
+						}
+						for (@SuppressWarnings("unused") final byte[] b : stack.getAll(key)) {
+							found++;
+						}
+					}
+					final long time = System.nanoTime() - start;
+					System.out.println(files + " files, key filter " + (filter ? "on " : "off") + ": "
+							+ (time / lookups / 1000) + " microseconds per lookup (" + found + " hits)");
+				}
+				ArrayStack.useKeyFilter = true;
+				stack.close(false);
+			}
+		} finally {
+			ArrayStack.useKeyFilter = true;
+			FileUtils.deletedelete(location);
+			ArrayStack.shutdownDeleteService();
+			ConcurrentLog.shutdown();
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.kelondro.util.FileUtils;
+
+public class ArrayStackTest {
+
+    private File location;
+    private ArrayStack stack;
+
+    @Before
+    public void setUp() throws Exception {
+        this.location = new File(System.getProperty("java.io.tmpdir"), "ArrayStackTest");
+        FileUtils.deletedelete(this.location);
+        this.stack = new ArrayStack(this.location, "test", NaturalOrder.naturalOrder, 12, 0, true, true);
+    }
+
+    @After
+    public void tearDown() {
+        if (this.stack != null) this.stack.close(false);
+        FileUtils.deletedelete(this.location);
+    }
+
+    /**
+     * write a heap file with a single entry of the given size and mount it into the stack
+     */
+    private File mount(final int size) throws Exception {
+        final File f = this.stack.newBLOB(new Date());
+        final HeapWriter writer = new HeapWriter(new File(f.getParentFile(), f.getName() + ".prt"), f, 12, NaturalOrder.naturalOrder, 1024);
+        final byte[] b = new byte[size];
+        Arrays.fill(b, (byte) 'x');
+        writer.add(ASCII.getBytes("aaaaaaaaaaaa"), b);
+        writer.close(true);
+        this.stack.mountBLOB(f, false);
+        return f;
+    }
+
+    static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    /**
+     * write a heap file with the keys first..first+count-1 and mount it into the given stack
+     */
+    static File mount(final ArrayStack stack, final int first, final int count) throws IOException, SpaceExceededException {
+        final File f = stack.newBLOB(new Date());
+        final HeapWriter writer = new HeapWriter(new File(f.getParentFile(), f.getName() + ".prt"), f, 12, NaturalOrder.naturalOrder, 64 * 1024);
+        for (int i = first; i < first + count; i++) writer.add(key(i), key(i));
+        writer.close(true);
+        stack.mountBLOB(f, false);
+        return f;
+    }
+
+    /**
+     * Test of newBLOB method: file names must be unique also when requested within the same millisecond
+     */
+    @Test
+    public void testNewBLOBUnique() {
+        final Date d = new Date();
+        final Set<String> names = new HashSet<String>();
+        for (int i = 0; i < 100; i++) {
+            assertTrue(names.add(this.stack.newBLOB(d).getName()));
+        }
+        assertEquals(100, names.size());
+    }
+
+    /**
+     * Test of unmountTier method: only files of the same size class are selected
+     * and repeated calls return disjoint pairs of files
+     */
+    @Test
+    public void testUnmountTier() throws Exception {
+        final File small1 = mount(100);
+        final File large1 = mount(100000);
+        final File small2 = mount(200);
+        final File large2 = mount(150000);
+        assertEquals(4, this.stack.entries());
+
+        File[] ff = this.stack.unmountTier(4.0f, 1000, Long.MAX_VALUE);
+        assertNotNull(ff);
+        assertEquals(small1, ff[0]);
+        assertEquals(small2, ff[1]);
+        assertEquals(2, this.stack.entries());
+
+        ff = this.stack.unmountTier(4.0f, 1000, Long.MAX_VALUE);
+        assertNotNull(ff);
+        assertEquals(large1, ff[0]);
+        assertEquals(large2, ff[1]);
+        assertEquals(0, this.stack.entries());
+
+        assertNull(this.stack.unmountTier(4.0f, 1000, Long.MAX_VALUE));
+    }
+
+    /**
+     * Test of unmountTier method: files are not selected if the merged file would exceed the limit
+     */
+    @Test
+    public void testUnmountTierMaxResultSize() throws Exception {
+        mount(100000);
+        mount(150000);
+        assertNull(this.stack.unmountTier(4.0f, 1000, 100000));
+        assertEquals(2, this.stack.entries());
+    }
+
+    /**
+     * Test of lookups with key filters: a key filter dump is written beside the index dump
+     * and keys are found in exactly the files that contain them
+     */
+    @Test
+    public void testKeyFilterLookup() throws Exception {
+        final File f0 = mount(this.stack, 0, 100);
+        mount(this.stack, 100, 100);
+        mount(this.stack, 200, 100);
+        final String[] names = this.location.list();
+        boolean hasFilterDump = false;
+        for (final String name: names) if (name.startsWith(f0.getName()) && name.endsWith(".blm")) hasFilterDump = true;
+        assertTrue(hasFilterDump);
+
+        for (int i = 0; i < 300; i++) {
+            assertTrue(this.stack.containsKey(key(i)));
+            assertTrue(Arrays.equals(key(i), this.stack.get(key(i))));
+            int c = 0;
+            for (final Long l: this.stack.lengthAll(key(i))) {
+                assertEquals(12, l.longValue());
+                c++;
+            }
+            assertEquals(1, c);
+        }
+        for (int i = 300; i < 1000; i++) {
+            assertFalse(this.stack.containsKey(key(i)));
+            assertNull(this.stack.get(key(i)));
+            assertFalse(this.stack.getAll(key(i)).iterator().hasNext());
+        }
+
+        // after a delete the key must also be gone when the stack is opened again with the key filter dumps
+        this.stack.delete(key(150));
+        assertFalse(this.stack.containsKey(key(150)));
+        this.stack.close(true);
+        this.stack = new ArrayStack(this.location, "test", NaturalOrder.naturalOrder, 12, 0, true, true);
+        assertEquals(3, this.stack.entries());
+        assertFalse(this.stack.containsKey(key(150)));
+        assertTrue(this.stack.containsKey(key(151)));
+    }
+
+    /**
+     * Test of the cleanup when the stack is opened: index, gap and key filter dumps of deleted BLOB files are removed
+     */
+    @Test
+    public void testOrphanDumpsDeleted() throws Exception {
+        final File f0 = mount(this.stack, 0, 100);
+        this.stack.close(true);
+        final String[] orphans = new String[] {"test.20000101000000000.blob.AAAAAAAAAAAA.idx",
+                "test.20000101000000000.blob.AAAAAAAAAAAA.gap", "test.20000101000000000.blob.AAAAAAAAAAAA.blm"};
+        for (final String orphan: orphans) assertTrue(new File(this.location, orphan).createNewFile());
+        this.stack = new ArrayStack(this.location, "test", NaturalOrder.naturalOrder, 12, 0, true, true);
+        for (final String orphan: orphans) assertFalse(orphan, new File(this.location, orphan).exists());
+        // the dumps of the existing file are kept
+        boolean hasFilterDump = false;
+        for (final String name: this.location.list()) if (name.startsWith(f0.getName()) && name.endsWith(".blm")) hasFilterDump = true;
+        assertTrue(hasFilterDump);
+        assertTrue(this.stack.containsKey(key(0)));
+    }
+
+    /**
+     * Test of lookups with memory-mapped key indexes: the stack must give the same results as with indexes in RAM
+     */
+    @Test
+    public void testMappedIndexLookup() throws Exception {
+        mount(this.stack, 0, 100);
+        mount(this.stack, 100, 100);
+        this.stack.close(true);
+        this.stack = new ArrayStack(this.location, "test", NaturalOrder.naturalOrder, 12, 0, true, true, true);
+        for (int i = 0; i < 200; i++) assertTrue(Arrays.equals(key(i), this.stack.get(key(i))));
+        assertFalse(this.stack.containsKey(key(200)));
+        this.stack.delete(key(50));
+        assertFalse(this.stack.containsKey(key(50)));
+        this.stack.close(true);
+        this.stack = new ArrayStack(this.location, "test", NaturalOrder.naturalOrder, 12, 0, true, true, true);
+        assertFalse(this.stack.containsKey(key(50)));
+        assertTrue(this.stack.containsKey(key(51)));
+        assertEquals(199, this.stack.size());
+        // there is one index dump for each file; outdated dumps were deleted
+        int idx = 0;
+        for (final String name: this.location.list()) if (name.endsWith(".idx")) idx++;
+        assertEquals(2, idx);
+    }
+}
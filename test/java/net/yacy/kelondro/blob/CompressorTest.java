@@ -0,0 +1,170 @@
+package net.yacy.kelondro.blob;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.Deflater;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.NaturalOrder;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Unit tests for the {@link Compressor} class.
+ */
+public class CompressorTest {
+
+    private File heapFile;
+    private Heap backend;
+
+    @Before
+    public void setUp() throws Exception {
+        this.heapFile = new File(System.getProperty("java.io.tmpdir"), "CompressorTest.heap");
+        HeapWriter.delete(this.heapFile);
+        this.backend = new Heap(this.heapFile, 12, NaturalOrder.naturalOrder, 1024 * 1024);
+    }
+
+    @After
+    public void tearDown() {
+        this.backend.close(false);
+        HeapWriter.delete(this.heapFile);
+    }
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    private static byte[] content(final int i) {
+        final StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < 100; j++) sb.append("content of entry ").append(i).append(' ');
+        return ASCII.getBytes(sb.toString());
+    }
+
+    private void testCodec(final Compressor.Codec codec) throws Exception {
+        final Compressor compressor = new Compressor(this.backend, 20000, 1000, Deflater.BEST_SPEED, codec);
+        for (int i = 0; i < 100; i++) compressor.insert(key(i), content(i));
+        for (int i = 0; i < 100; i++) {
+            assertTrue(compressor.containsKey(key(i)));
+            assertArrayEquals(content(i), compressor.get(key(i)));
+            assertEquals(content(i).length, compressor.length(key(i)));
+        }
+        compressor.flushAll();
+        assertEquals(100, compressor.size());
+        for (int i = 0; i < 100; i++) {
+            // entries in the backend are compressed
+            assertTrue(this.backend.get(key(i)).length < content(i).length);
+            assertArrayEquals(content(i), compressor.get(key(i)));
+        }
+        compressor.delete(key(0));
+        assertFalse(compressor.containsKey(key(0)));
+        assertNull(compressor.get(key(0)));
+    }
+
+    /**
+     * Test of insert and get with gzip encoding
+     */
+    @Test
+    public void testGzip() throws Exception {
+        testCodec(Compressor.Codec.GZIP);
+    }
+
+    /**
+     * Test of insert and get with raw deflate encoding
+     */
+    @Test
+    public void testDeflate() throws Exception {
+        testCodec(Compressor.Codec.DEFLATE);
+    }
+
+    /**
+     * Test of the codec switch: entries that were written with another codec can still be read
+     */
+    @Test
+    public void testMixedCodecs() throws Exception {
+        final Compressor compressor = new Compressor(this.backend, 20000, 1000, Deflater.BEST_SPEED, Compressor.Codec.GZIP);
+        compressor.insert(key(1), content(1));
+        compressor.flushAll();
+        compressor.setCodec(Compressor.Codec.DEFLATE);
+        compressor.insert(key(2), content(2));
+        compressor.flushAll();
+        assertArrayEquals(content(1), compressor.get(key(1)));
+        assertArrayEquals(content(2), compressor.get(key(2)));
+    }
+
+    /**
+     * Test of concurrent get and insert operations: readers must always find inserted entries
+     */
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        final Compressor compressor = new Compressor(this.backend, 50000, 10000, Deflater.BEST_SPEED, Compressor.Codec.DEFLATE);
+        final ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+            for (int t = 0; t < 8; t++) {
+                final int first = t * 100;
+                results.add(executor.submit(new Callable<Boolean>() {
+                    @Override
+                    public Boolean call() throws Exception {
+                        for (int i = first; i < first + 100; i++) {
+                            compressor.insert(key(i), content(i));
+                            for (int j = first; j <= i; j += 7) {
+                                if (!java.util.Arrays.equals(content(j), compressor.get(key(j)))) return false;
+                            }
+                        }
+                        return true;
+                    }
+                }));
+            }
+            for (final Future<Boolean> result: results) assertTrue(result.get());
+        } finally {
+            executor.shutdown();
+        }
+        compressor.flushAll();
+        assertEquals(800, compressor.size());
+        for (int i = 0; i < 800; i++) assertArrayEquals(content(i), compressor.get(key(i)));
+    }
+
+    /**
+     * Test of insert replacing an existing entry: a concurrent reader never misses the key
+     */
+    @Test
+    public void testConcurrentReplace() throws Exception {
+        final Compressor compressor = new Compressor(this.backend, 50000, 10000, Deflater.BEST_SPEED, Compressor.Codec.DEFLATE);
+        compressor.insert(key(0), content(0));
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final Future<Boolean> reader = executor.submit(new Callable<Boolean>() {
+                @Override
+                public Boolean call() throws Exception {
+                    for (int i = 0; i < 20000; i++) {
+                        if (compressor.get(key(0)) == null) return false;
+                    }
+                    return true;
+                }
+            });
+            int i = 0;
+            while (!reader.isDone()) {
+                compressor.insert(key(0), content(i++ % 10));
+                if (i % 3 == 0) compressor.flushAll();
+            }
+            assertTrue(reader.get());
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals(1, compressor.size());
+    }
+}
@@ -0,0 +1,71 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Unit tests for the {@link BloomFilter} class.
+ */
+public class BloomFilterTest {
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("k%011d", i));
+    }
+
+    /**
+     * Test of mightContain method: there must be no false negatives
+     * and the false positive rate must be near the requested rate
+     */
+    @Test
+    public void testMightContain() {
+        final BloomFilter filter = new BloomFilter(10000, 0.01d);
+        for (int i = 0; i < 10000; i++) filter.add(key(i));
+        for (int i = 0; i < 10000; i++) assertTrue(filter.mightContain(key(i)));
+        int falsePositives = 0;
+        for (int i = 10000; i < 110000; i++) if (filter.mightContain(key(i))) falsePositives++;
+        assertTrue("false positives: " + falsePositives, falsePositives < 2000);
+    }
+
+    /**
+     * Test of dump method and file constructor: a filter read from a dump must give the same answers
+     */
+    @Test
+    public void testDump() throws IOException {
+        final File f = new File(System.getProperty("java.io.tmpdir"), "BloomFilterTest.blm");
+        try {
+            final BloomFilter filter = new BloomFilter(1000, 0.01d);
+            for (int i = 0; i < 1000; i++) filter.add(key(i));
+            filter.dump(f);
+            final BloomFilter loaded = new BloomFilter(f);
+            assertEquals(filter.mem(), loaded.mem());
+            for (int i = 0; i < 2000; i++) assertEquals(filter.mightContain(key(i)), loaded.mightContain(key(i)));
+        } finally {
+            FileUtils.deletedelete(f);
+        }
+    }
+
+    /**
+     * Test of file constructor: a damaged file must be rejected
+     */
+    @Test(expected = IOException.class)
+    public void testDamagedDump() throws IOException {
+        final File f = new File(System.getProperty("java.io.tmpdir"), "BloomFilterTest.blm");
+        try {
+            final BloomFilter filter = new BloomFilter(1000, 0.01d);
+            filter.dump(f);
+            FileUtils.copy(new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13}, f);
+            assertFalse(new BloomFilter(f).mightContain(key(0)));
+        } finally {
+            FileUtils.deletedelete(f);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package net.yacy.kelondro.index;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.Iterator;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Unit tests for the {@link MappedHandleMap} class.
+ */
+public class MappedHandleMapTest {
+
+    private File dump, dump2;
+
+    @Before
+    public void setUp() throws Exception {
+        this.dump = new File(System.getProperty("java.io.tmpdir"), "MappedHandleMapTest.idx");
+        this.dump2 = new File(System.getProperty("java.io.tmpdir"), "MappedHandleMapTest2.idx");
+        // write a dump in the format of RowHandleMap, inserted in reverse order
+        final RowHandleMap map = new RowHandleMap(12, Base64Order.enhancedCoder, 8, 1000, "test");
+        for (int i = 999; i >= 0; i -= 2) map.put(key(i), i * 100L);
+        map.dump(this.dump);
+        map.close();
+    }
+
+    @After
+    public void tearDown() {
+        FileUtils.deletedelete(this.dump);
+        FileUtils.deletedelete(this.dump2);
+    }
+
+    private static byte[] key(final int i) {
+        return ASCII.getBytes(String.format("key_%08d", i));
+    }
+
+    /**
+     * Test of get method: all entries of the dump are found with their values, no other keys are found
+     */
+    @Test
+    public void testGet() throws Exception {
+        final MappedHandleMap map = new MappedHandleMap(12, Base64Order.enhancedCoder, 8, this.dump);
+        assertEquals(500, map.size());
+        for (int i = 0; i < 1000; i++) {
+            if (i % 2 == 1) {
+                assertEquals(i * 100L, map.get(key(i)));
+            } else {
+                assertEquals(-1, map.get(key(i)));
+            }
+        }
+        assertArrayEquals(key(1), map.smallestKey());
+        assertArrayEquals(key(999), map.largestKey());
+        map.close();
+    }
+
+    /**
+     * Test of remove and dump method: removed entries are not found and not written again
+     */
+    @Test
+    public void testRemoveAndDump() throws Exception {
+        final MappedHandleMap map = new MappedHandleMap(12, Base64Order.enhancedCoder, 8, this.dump);
+        final long mem = map.mem();
+        assertEquals(100L, map.remove(key(1)));
+        assertEquals(-1, map.remove(key(1)));
+        assertEquals(-1, map.remove(key(2)));
+        assertEquals(499, map.size());
+        assertFalse(map.has(key(1)));
+        assertArrayEquals(key(3), map.smallestKey());
+        assertEquals(mem, map.mem());
+
+        assertEquals(499, map.dump(this.dump2));
+        map.close();
+        final RowHandleMap ram = new RowHandleMap(12, Base64Order.enhancedCoder, 8, this.dump2);
+        assertEquals(499, ram.size());
+        assertEquals(-1, ram.get(key(1)));
+        assertEquals(300L, ram.get(key(3)));
+        ram.close();
+    }
+
+    /**
+     * Test of dump method into the mapped file itself: the file is unmapped, replaced and mapped again
+     */
+    @Test
+    public void testDumpToMappedFile() throws Exception {
+        final MappedHandleMap map = new MappedHandleMap(12, Base64Order.enhancedCoder, 8, this.dump);
+        assertEquals(100L, map.remove(key(1)));
+        assertEquals(499, map.dump(this.dump));
+        assertEquals(499, map.size());
+        assertEquals(-1, map.get(key(1)));
+        assertEquals(300L, map.get(key(3)));
+        assertEquals(499, map.dump(this.dump));
+        map.close();
+        final RowHandleMap ram = new RowHandleMap(12, Base64Order.enhancedCoder, 8, this.dump);
+        assertEquals(499, ram.size());
+        ram.close();
+    }
+
+    /**
+     * Test of keys method: iteration in both directions from a start key
+     */
+    @Test
+    public void testKeys() throws Exception {
+        final MappedHandleMap map = new MappedHandleMap(12, Base64Order.enhancedCoder, 8, this.dump);
+        map.remove(key(5));
+        Iterator<byte[]> i = map.keys(true, key(2));
+        assertArrayEquals(key(3), i.next());
+        assertArrayEquals(key(7), i.next());
+        i = map.keys(false, key(8));
+        assertArrayEquals(key(7), i.next());
+        assertArrayEquals(key(3), i.next());
+        int c = 0;
+        i = map.keys(true, null);
+        while (i.hasNext()) {
+            i.next();
+            c++;
+        }
+        assertEquals(499, c);
+        assertTrue(map.iterator().hasNext());
+        map.close();
+    }
+}
@@ -0,0 +1,127 @@
+package net.yacy.kelondro.rwi;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.net.MalformedURLException;
+import java.util.Iterator;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.id.DigestURL;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.storage.HandleSet;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.index.RowHandleSet;
+import net.yacy.kelondro.util.Bitfield;
+
+/**
+ * Unit tests for the {@link TermSearch} class.
+ */
+public class TermSearchTest {
+
+    private static final ReferenceFactory<WordReference> FACTORY = new WordReferenceFactory();
+
+    private static byte[] urlhash(final int i) throws MalformedURLException {
+        return new DigestURL("http://www.example" + i + ".org/").hash();
+    }
+
+    /**
+     * Add references to the documents first, first + step, ... below end for a term
+     */
+    private static void add(final ReferenceContainerCache<WordReference> index, final String word, final int first, final int end, final int step) throws MalformedURLException, SpaceExceededException {
+        for (int i = first; i < end; i += step) {
+            index.add(Word.word2hash(word), new WordReferenceVars(urlhash(i), 20, 1, 0, 1, 1, 1, 1, new LinkedBlockingQueue<Integer>(), 1, 1, 0, "en",
+                    Response.DT_TEXT, 0, 0, new Bitfield(4), 0.0d));
+        }
+    }
+
+    private static HandleSet hashes(final String... words) throws SpaceExceededException {
+        final HandleSet set = new RowHandleSet(Word.commonHashLength, Word.commonHashOrder, words.length);
+        for (final String word: words) set.put(Word.word2hash(word));
+        return set;
+    }
+
+    private static ReferenceContainerCache<WordReference> index() throws MalformedURLException, SpaceExceededException {
+        final ReferenceContainerCache<WordReference> index = new ReferenceContainerCache<WordReference>(FACTORY, Base64Order.enhancedCoder, Word.commonHashLength);
+        add(index, "common", 0, 1000, 1);
+        add(index, "even", 0, 1000, 2);
+        add(index, "third", 0, 300, 3);
+        add(index, "fifth", 0, 1000, 5);
+        add(index, "low", 0, 10, 1);
+        add(index, "high", 10, 20, 1);
+        return index;
+    }
+
+    /**
+     * Test the join of the query terms and the exclusion of the excluded terms
+     */
+    @Test
+    public void testJoinAndExclude() throws Exception {
+        final ReferenceContainerCache<WordReference> index = index();
+        for (final boolean completeInclusion: new boolean[]{true, false}) {
+            final TermSearch<WordReference> search = new TermSearch<WordReference>(index, hashes("common", "even", "third"), hashes("fifth", "unknown"),
+                    null, FACTORY, Integer.MAX_VALUE, completeInclusion);
+            int expected = 0;
+            for (int i = 0; i < 300; i += 6) {
+                if (i % 5 != 0) {
+                    expected++;
+                    assertTrue(search.joined().has(urlhash(i)));
+                }
+            }
+            assertEquals(expected, search.joined().size());
+            assertEquals(3, search.inclusion().size());
+        }
+
+        // the containers of the index are not changed by the exclusion
+        final TermSearch<WordReference> search = new TermSearch<WordReference>(index, hashes("even"), hashes("fifth"), null, FACTORY, Integer.MAX_VALUE, false);
+        assertEquals(400, search.joined().size());
+        assertEquals(500, index.count(Word.word2hash("even")));
+    }
+
+    /**
+     * Test that the remaining containers are only loaded for a complete inclusion when the join is empty
+     */
+    @Test
+    public void testEmptyJoin() throws Exception {
+        final ReferenceContainerCache<WordReference> index = index();
+        TermSearch<WordReference> search = new TermSearch<WordReference>(index, hashes("common", "low", "high"), hashes(), null, FACTORY, Integer.MAX_VALUE, false);
+        assertTrue(search.joined().isEmpty());
+        assertEquals("the largest container is not loaded", 2, search.inclusion().size());
+
+        search = new TermSearch<WordReference>(index, hashes("common", "low", "high"), hashes(), null, FACTORY, Integer.MAX_VALUE, true);
+        assertTrue(search.joined().isEmpty());
+        assertEquals(3, search.inclusion().size());
+
+        // a conjunction with an unknown term has no result
+        search = new TermSearch<WordReference>(index, hashes("common", "unknown"), hashes(), null, FACTORY, Integer.MAX_VALUE, true);
+        assertTrue(search.joined().isEmpty());
+        assertTrue(search.inclusion().isEmpty());
+    }
+
+    private static void assertJoined(final String word, final ReferenceContainer<WordReference> expected, final ReferenceContainer<WordReference> joined) {
+        assertEquals(word, expected.size(), joined.size());
+        final Iterator<WordReference> i = expected.entries();
+        while (i.hasNext()) assertTrue(word, joined.has(i.next().urlhash()));
+    }
+
+    /**
+     * Test the join of containers with very different sizes, which uses the galloping search, and with similar sizes
+     */
+    @Test
+    public void testJoinConstructive() throws Exception {
+        final ReferenceContainerCache<WordReference> index = index();
+        final ReferenceContainer<WordReference> common = index.get(Word.word2hash("common"), null);
+        for (final String word: new String[]{"low", "high", "third", "even"}) {
+            final ReferenceContainer<WordReference> other = index.get(Word.word2hash(word), null);
+            assertJoined(word, other, ReferenceContainer.joinConstructive(FACTORY, common, other, Integer.MAX_VALUE));
+            assertJoined(word, other, ReferenceContainer.joinConstructive(FACTORY, other, common, Integer.MAX_VALUE));
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package net.yacy.kelondro.workflow;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link WorkflowTuner} class.
+ */
+public class WorkflowTunerTest {
+
+    private static WorkflowProcessor<WorkflowJob> processor(final AtomicInteger processed, final long sleep, final int queueSize) {
+        return new WorkflowProcessor<WorkflowJob>("WorkflowTunerTest", "test", new String[0], new WorkflowTask<WorkflowJob>() {
+            @Override
+            public WorkflowJob process(final WorkflowJob in) throws Exception {
+                if (sleep > 0) Thread.sleep(sleep);
+                processed.incrementAndGet();
+                return null;
+            }
+        }, queueSize, null, 1);
+    }
+
+    private static void await(final AtomicInteger processed, final int count) throws InterruptedException {
+        for (int i = 0; i < 500 && processed.get() < count; i++) Thread.sleep(20);
+    }
+
+    /**
+     * Test of tune method: a processor with a filled queue gets more executors, an idle processor less
+     */
+    @Test
+    public void testTune() throws Exception {
+        final AtomicInteger processed = new AtomicInteger(0);
+        final WorkflowProcessor<WorkflowJob> p = processor(processed, 20, 60);
+        try {
+            final WorkflowTuner tuner = new WorkflowTuner(true);
+            tuner.add(p, 1, 4);
+            for (int i = 0; i < 55; i++) p.enQueue(new WorkflowJob());
+            Thread.sleep(300);
+            assertTrue(tuner.tune());
+            assertEquals(2, p.getMaxConcurrency());
+            await(processed, 55);
+            assertEquals(55, processed.get());
+            tuner.tune();
+            Thread.sleep(300);
+            assertTrue(tuner.tune());
+            assertEquals(1, p.getMaxConcurrency());
+            assertTrue(tuner.stages().get(0).getThroughput() == 0.0d);
+        } finally {
+            p.shutdown();
+        }
+    }
+
+    /**
+     * Test of the tuner switch: the statistics are computed but the executors are not changed
+     */
+    @Test
+    public void testDisabled() throws Exception {
+        final AtomicInteger processed = new AtomicInteger(0);
+        final WorkflowProcessor<WorkflowJob> p = processor(processed, 20, 60);
+        try {
+            final WorkflowTuner tuner = new WorkflowTuner(false);
+            tuner.add(p, 1, 4);
+            for (int i = 0; i < 55; i++) p.enQueue(new WorkflowJob());
+            Thread.sleep(300);
+            assertFalse(tuner.tune());
+            assertEquals(1, p.getMaxConcurrency());
+            assertTrue(tuner.stages().get(0).getThroughput() > 0.0d);
+        } finally {
+            p.shutdown();
+        }
+    }
+
+    /**
+     * Test of batch processing and of the reduction of executors
+     */
+    @Test
+    public void testBatchAndRetire() throws Exception {
+        final AtomicInteger processed = new AtomicInteger(0);
+        final WorkflowProcessor<WorkflowJob> p = processor(processed, 5, 100);
+        try {
+            p.setMaxConcurrency(4);
+            p.setBatchSize(10);
+            for (int i = 0; i < 90; i++) p.enQueue(new WorkflowJob());
+            await(processed, 90);
+            assertEquals(90, processed.get());
+            assertEquals(90, p.getExecCount());
+            // surplus executors terminate after their next job
+            p.setMaxConcurrency(1);
+            p.setBatchSize(1);
+            int count = 90;
+            while (count < 200 && p.getExecutors() > 1) {
+                p.enQueue(new WorkflowJob());
+                count++;
+                Thread.sleep(10);
+            }
+            await(processed, count);
+            assertEquals(count, processed.get());
+            assertEquals(1, p.getExecutors());
+        } finally {
+            p.shutdown();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+package net.yacy.peers;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.ASCII;
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceRow;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.search.index.Segment;
+
+/**
+ * Unit tests for the queues of the {@link Dispatcher} class.
+ */
+public class DispatcherTest {
+
+    /**
+     * A transmission with chunks which count the added references instead of checking them against the index
+     */
+    private static class TestTransmission extends Transmission {
+
+        private TestTransmission() {
+            super(null, new ConcurrentLog("DispatcherTest"), null, null, false, 0);
+        }
+
+        @Override
+        public Chunk newChunk(final Seed dhtTarget) {
+            return new TestChunk(dhtTarget);
+        }
+
+        private class TestChunk extends Chunk {
+
+            private int size = 0;
+
+            private TestChunk(final Seed dhtTarget) {
+                super(dhtTarget);
+            }
+
+            @Override
+            public void add(final ReferenceContainer<WordReference> container) {
+                this.size += container.size();
+            }
+
+            @Override
+            public int referencesSize() {
+                return this.size;
+            }
+        }
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        ConcurrentLog.shutdown();
+    }
+
+    private static Seed seed(final String name) {
+        return new Seed(ASCII.String(Word.word2hash(name)), new ConcurrentHashMap<String, String>());
+    }
+
+    private static ReferenceContainer<WordReference> container(final String term, final int count) throws SpaceExceededException {
+        final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(Segment.wordReferenceFactory, Word.word2hash(term), count);
+        final long now = System.currentTimeMillis();
+        for (int i = 0; i < count; i++) {
+            container.add(new WordReferenceRow(Word.word2hash(term + i), 20, 3, 0, 1, 1, now, now, UTF8.getBytes("en"), Response.DT_TEXT, 0, 0));
+        }
+        return container;
+    }
+
+    private static Dispatcher.Target target(final Dispatcher dispatcher, final Seed seed) {
+        for (final Dispatcher.Target target : dispatcher.targets()) {
+            if (target.getSeed() == seed) return target;
+        }
+        return null;
+    }
+
+    /**
+     * Test of enqueue method: the references are split into full chunks and a chunk which is filled
+     */
+    @Test
+    public void testEnqueue() throws SpaceExceededException {
+        final Dispatcher dispatcher = new Dispatcher(new TestTransmission(), Long.MAX_VALUE, 2, 16);
+        final Seed peer = seed("peer");
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>();
+        dispatcher.enqueue(peer, container("alpha", 1500), overflow);
+        dispatcher.enqueue(peer, container("beta", 1000), overflow);
+        assertTrue(overflow.isEmpty());
+        assertEquals(1, dispatcher.bufferSize());
+        assertEquals(3, target(dispatcher, peer).queuedChunks());
+
+        // the full chunks are dequeued first
+        assertEquals(Transmission.maxRWIsCount, dispatcher.dequeue().referencesSize());
+        assertEquals(Transmission.maxRWIsCount, dispatcher.dequeue().referencesSize());
+        assertEquals(1, target(dispatcher, peer).queuedChunks());
+    }
+
+    /**
+     * Test of enqueue method: the full chunks which exceed the queue of a target are returned as overflow
+     */
+    @Test
+    public void testEnqueueOverflow() throws SpaceExceededException {
+        final Dispatcher dispatcher = new Dispatcher(new TestTransmission(), Long.MAX_VALUE, 2, 2);
+        final Seed peer = seed("peer");
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>();
+        dispatcher.enqueue(peer, container("alpha", 4500), overflow);
+        assertEquals(2, overflow.size());
+        for (final Transmission.Chunk chunk : overflow) assertEquals(Transmission.maxRWIsCount, chunk.referencesSize());
+        // two full chunks and the chunk which is filled
+        assertEquals(3, target(dispatcher, peer).queuedChunks());
+        // other targets have their own queue
+        final Seed other = seed("other");
+        overflow.clear();
+        dispatcher.enqueue(other, container("beta", 2000), overflow);
+        assertTrue(overflow.isEmpty());
+        assertEquals(2, target(dispatcher, other).queuedChunks());
+    }
+
+    /**
+     * Test of dequeue method: the number of chunks in flight per target is limited until their transmission is finished
+     */
+    @Test
+    public void testDequeueConcurrentChunks() throws SpaceExceededException {
+        final Dispatcher dispatcher = new Dispatcher(new TestTransmission(), Long.MAX_VALUE, 2, 16);
+        final Seed peer = seed("peer");
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>();
+        dispatcher.enqueue(peer, container("alpha", 3000), overflow);
+        final Transmission.Chunk first = dispatcher.dequeue();
+        final Transmission.Chunk second = dispatcher.dequeue();
+        assertNotNull(first);
+        assertNotNull(second);
+        assertNull(dispatcher.dequeue());
+        final Dispatcher.Target target = target(dispatcher, peer);
+        assertEquals(2, target.inFlight());
+        assertEquals(2L * Transmission.maxRWIsCount * 128, dispatcher.inFlightBytes());
+
+        assertTrue(dispatcher.transmitted(first, true, 10).isEmpty());
+        assertEquals(1, target.inFlight());
+        assertEquals(1, target.transmittedChunks());
+        assertEquals(Transmission.maxRWIsCount, target.transmittedReferences());
+        assertNotNull(dispatcher.dequeue());
+        assertEquals(0, target.queuedChunks());
+    }
+
+    /**
+     * Test of dequeue method: a chunk is only dequeued if the bytes in flight stay below the limit
+     */
+    @Test
+    public void testDequeueInFlightBytes() throws SpaceExceededException {
+        final Dispatcher dispatcher = new Dispatcher(new TestTransmission(), 1000, 2, 16);
+        final Seed a = seed("a"), b = seed("b");
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>();
+        dispatcher.enqueue(a, container("alpha", 100), overflow);
+        dispatcher.enqueue(b, container("beta", 50), overflow);
+        // the first chunk is always taken, even if it exceeds the limit alone; the largest chunk comes first
+        final Transmission.Chunk chunk = dispatcher.dequeue();
+        assertSame(a, chunk.dhtTarget());
+        assertNull(dispatcher.dequeue());
+        dispatcher.transmitted(chunk, true, 10);
+        assertEquals(0, dispatcher.inFlightBytes());
+        assertSame(b, dispatcher.dequeue().dhtTarget());
+    }
+
+    /**
+     * Test of transmitted method: the bytes which a chunk added when it was dequeued are removed, even if its size changed in flight
+     */
+    @Test
+    public void testTransmittedChangedSize() throws SpaceExceededException {
+        final Dispatcher dispatcher = new Dispatcher(new TestTransmission(), Long.MAX_VALUE, 2, 16);
+        final Seed peer = seed("peer");
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>();
+        dispatcher.enqueue(peer, container("alpha", 2000), overflow);
+        final Transmission.Chunk first = dispatcher.dequeue();
+        final Transmission.Chunk second = dispatcher.dequeue();
+        assertEquals(2L * Transmission.maxRWIsCount * 128, dispatcher.inFlightBytes());
+        first.add(container("beta", 100));
+        dispatcher.transmitted(first, true, 10);
+        assertEquals((long) Transmission.maxRWIsCount * 128, dispatcher.inFlightBytes());
+        dispatcher.transmitted(second, true, 10);
+        assertEquals(0, dispatcher.inFlightBytes());
+    }
+
+    /**
+     * Test of transmitted method: a failed transmission returns the other chunks of the target
+     */
+    @Test
+    public void testTransmittedFailure() throws SpaceExceededException {
+        final Dispatcher dispatcher = new Dispatcher(new TestTransmission(), Long.MAX_VALUE, 1, 16);
+        final Seed peer = seed("peer");
+        final List<Transmission.Chunk> overflow = new ArrayList<Transmission.Chunk>();
+        dispatcher.enqueue(peer, container("alpha", 2500), overflow);
+        final Transmission.Chunk chunk = dispatcher.dequeue();
+        assertNull(dispatcher.dequeue());
+        final List<Transmission.Chunk> dropped = dispatcher.transmitted(chunk, false, 10);
+        // the full chunk and the chunk which is filled
+        assertEquals(2, dropped.size());
+        assertEquals(Transmission.maxRWIsCount, dropped.get(0).referencesSize());
+        assertEquals(500, dropped.get(1).referencesSize());
+        final Dispatcher.Target target = target(dispatcher, peer);
+        assertEquals(0, target.inFlight());
+        assertEquals(0, target.queuedChunks());
+        assertEquals(1, target.failures());
+        assertEquals(0, dispatcher.inFlightBytes());
+        assertNull(dispatcher.dequeue());
+    }
+}
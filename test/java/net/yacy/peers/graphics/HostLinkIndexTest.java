@@ -0,0 +1,72 @@
+package net.yacy.peers.graphics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link HostLinkIndex} class.
+ */
+public class HostLinkIndexTest {
+
+    /**
+     * Test the packing of host hashes
+     */
+    @Test
+    public void testPack() {
+        for (final String hosthash: new String[]{"AAAAAA", "____--", "a1B2c3", "zzzzzz"}) {
+            final long key = HostLinkIndex.pack(hosthash);
+            assertTrue(key >= 0 && key < (1L << 36));
+            assertEquals(hosthash, HostLinkIndex.unpack(key));
+        }
+        assertEquals(-1L, HostLinkIndex.pack(null));
+        assertEquals(-1L, HostLinkIndex.pack("short"));
+        assertEquals(-1L, HostLinkIndex.pack("abc+de"));
+    }
+
+    /**
+     * Test setting, replacing and removing links, also beyond the initial capacity
+     */
+    @Test
+    public void testSetAndRemove() {
+        final HostLinkIndex index = new HostLinkIndex();
+        final long target = HostLinkIndex.pack("target");
+        final int sources = 1000;
+        for (int i = 0; i < sources; i++) {
+            index.set(target, i, 1);
+            index.set(i + 1000000L, i, i + 1); // a target for each source
+        }
+        index.set(target, 7, 5); // replace
+        index.set(target, 8, HostLinkIndex.MAX_COUNT + 10); // cut
+        assertEquals(sources, index.degree(target));
+        assertEquals(2 * sources, index.links());
+        assertEquals(sources + 1, index.targets().length);
+
+        Map<Long, Integer> links = incoming(index, target);
+        assertEquals(Integer.valueOf(5), links.get(7L));
+        assertEquals(Integer.valueOf(HostLinkIndex.MAX_COUNT), links.get(8L));
+        assertEquals(Integer.valueOf(1), links.get(9L));
+        assertEquals(Integer.valueOf(42), incoming(index, 1000041L).get(41L));
+
+        for (int i = 0; i < sources; i += 2) index.remove(target, i);
+        index.remove(target, 1000000000L); // unknown source
+        assertEquals(sources / 2, index.degree(target));
+        links = incoming(index, target);
+        for (int i = 0; i < sources; i++) assertEquals(i % 2 == 1, links.containsKey((long) i));
+
+        index.clear();
+        assertEquals(0, index.degree(target));
+        assertEquals(0, index.links());
+        assertEquals(0, index.targets().length);
+    }
+
+    private static Map<Long, Integer> incoming(final HostLinkIndex index, final long target) {
+        final Map<Long, Integer> links = new HashMap<Long, Integer>();
+        for (final long link: index.incoming(target)) links.put(HostLinkIndex.source(link), HostLinkIndex.count(link));
+        return links;
+    }
+}
@@ -29,8 +29,12 @@ import java.util.Set;
 import org.junit.Assert;
 import org.junit.Test;
 
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.rwi.ReferenceContainerCache;
+import net.yacy.peers.graphics.WebStructureGraph.HostReference;
 import net.yacy.peers.graphics.WebStructureGraph.LearnObject;
 import net.yacy.peers.graphics.WebStructureGraph.StructureEntry;
 
@@ -313,6 +317,46 @@ public class WebStructureGraphTest {
 		}
 	}
 	
+	/**
+	 * Check that the export of all incoming references follows the changes of the structure
+	 */
+	@Test
+	public void testIncomingReferencesExport() throws MalformedURLException {
+
+		WebStructureGraph graph = new WebStructureGraph(null);
+		try {
+			final DigestURL source1 = new DigestURL("http://source1.net/index.html");
+			final DigestURL source2 = new DigestURL("http://source2.net/index.html");
+			final DigestURL target = new DigestURL("http://target.com/index.html");
+			final byte[] targetHash = ASCII.getBytes(target.hosthash());
+			Set<DigestURL> targets = new HashSet<>();
+			targets.add(target);
+
+			graph.learnrefs(new LearnObject(source1, targets));
+			ReferenceContainerCache<HostReference> idx = graph.incomingReferences();
+			ReferenceContainer<HostReference> refs = idx.get(targetHash, null);
+			Assert.assertNotNull(refs);
+			Assert.assertEquals(1, refs.size());
+			Assert.assertNotNull(refs.getReference(ASCII.getBytes(source1.hosthash())));
+			/* The export is re-used as long as the structure is not changed */
+			Assert.assertSame(idx, graph.incomingReferences());
+
+			graph.joinOldNew();
+			graph.learnrefs(new LearnObject(source2, targets));
+			idx = graph.incomingReferences();
+			refs = idx.get(targetHash, null);
+			Assert.assertNotNull(refs);
+			Assert.assertEquals(2, refs.size());
+			Assert.assertNotNull(refs.getReference(ASCII.getBytes(source1.hosthash())));
+			Assert.assertNotNull(refs.getReference(ASCII.getBytes(source2.hosthash())));
+
+			graph.clear();
+			Assert.assertNull(graph.incomingReferences().get(targetHash, null));
+		} finally {
+			graph.close();
+		}
+	}
+
 	/**
 	 * Simple performance measurements with a test structure filled to its limits.
 	 */
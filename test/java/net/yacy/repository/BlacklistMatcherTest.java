@@ -0,0 +1,78 @@
+package net.yacy.repository;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link BlacklistMatcher} class.
+ */
+public class BlacklistMatcherTest {
+
+    private static void put(final Map<String, Set<Pattern>> map, final String host, final String... paths) {
+        final Set<Pattern> patterns = new HashSet<>();
+        for (final String path: paths) patterns.add(Pattern.compile(path, Pattern.CASE_INSENSITIVE));
+        map.put(host, patterns);
+    }
+
+    /**
+     * Test that the matcher gives the same results as the static isListed method
+     */
+    @Test
+    public void testSameAsIsListed() {
+        final Map<String, Set<Pattern>> matched = new HashMap<>();
+        put(matched, "stats.example.com", ".*");
+        put(matched, "example.org", "ads/.*", "(.*/|)banner.*");
+        put(matched, "*.tracker.net", ".*");
+        put(matched, "ftp.*", ".*");
+        put(matched, "cdn.static", "img/\\d+\\.gif");
+        put(matched, "single.de", "index\\.html", "\\Qa+b\\E.*", "(a)\\1");
+        final Map<String, Set<Pattern>> notMatched = new HashMap<>();
+        put(notMatched, "mobil\\..*", ".*");
+        put(notMatched, ".*samples.fr", "counter\\?.*");
+        put(notMatched, "[invalid", ".*");
+
+        final String[] hosts = {"stats.example.com", "www.stats.example.com", "example.com", "example.org", "www.example.org",
+                "a.b.example.org", "tracker.net", "t.tracker.net", "ftp.gnu.org", "ftp", "ftpx.gnu.org", "cdn.static.org",
+                "cdn.static", "x.cdn.static", "single.de", "mobil.news.fr", "news.mobil.fr", "www.samples.fr", "yacy.net", ""};
+        final String[] paths = {"", "/", "/index.html", "/ads/x.html", "/a/banner.gif", "/BANNER", "/img/12.gif", "/img/x.gif",
+                "/counter?id=1", "/a+b/c", "/aa", "/Index.HTML"};
+        final BlacklistMatcher matcher = new BlacklistMatcher(matched, notMatched);
+        assertEquals(12, matcher.size());
+        for (final String host: hosts) {
+            for (final String path: paths) {
+                assertEquals(host + path, Blacklist.isListed(host, path, matched, notMatched), matcher.isListed(host, path));
+            }
+        }
+        assertEquals(hosts.length, matcher.hostCacheSize());
+    }
+
+    /**
+     * Test of the host rules of the matchable blacklist entries
+     */
+    @Test
+    public void testHosts() {
+        final Map<String, Set<Pattern>> matched = new HashMap<>();
+        put(matched, "example.com", ".*");
+        put(matched, "*.sub.net", ".*");
+        put(matched, "www.prefix.*", ".*");
+        final BlacklistMatcher matcher = new BlacklistMatcher(matched, new HashMap<String, Set<Pattern>>());
+        assertTrue(matcher.isListed("example.com", "/"));
+        assertTrue(matcher.isListed("www.example.com", "/"));
+        assertTrue(matcher.isListed("example.com.org", "/"));
+        assertFalse(matcher.isListed("myexample.com", "/"));
+        assertFalse(matcher.isListed("sub.net", "/"));
+        assertTrue(matcher.isListed("a.sub.net", "/"));
+        assertTrue(matcher.isListed("www.prefix.de", "/"));
+        assertFalse(matcher.isListed("www.prefix", "/"));
+        assertFalse(matcher.isListed("wwwprefix.de", "/"));
+    }
+}
@@ -0,0 +1,129 @@
+// BlacklistPerfTest.java
+// -----------------------
+// part of YaCy
+// Copyright 2026 by the YaCy contributors
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.repository;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.SetTools;
+
+/**
+ * Comparing the performances of the blacklist check by scanning the blacklist
+ * maps ({@link Blacklist#isListed(String, String, Map, Map)}) and by the
+ * {@link BlacklistMatcher}
+ */
+public class BlacklistPerfTest {
+
+	private static void add(final Map<String, Set<Pattern>> map, final String host, final String path) {
+		Set<Pattern> paths = map.get(host);
+		if (paths == null) {
+			paths = new HashSet<>();
+			map.put(host, paths);
+		}
+		paths.add(Pattern.compile(path, Pattern.CASE_INSENSITIVE));
+	}
+
+	/**
+	 * Check generated URLs against a blacklist. The blacklist is either loaded
+	 * from a blacklist file (one host/path entry per line) or generated with
+	 * the given number of entries.
+	 *
+	 * @param args
+	 *            parameters: [blacklistFilePath or number of entries] [number
+	 *            of checks]
+	 */
+	public static void main(final String[] args) {
+		try {
+			run(args);
+		} finally {
+			ConcurrentLog.shutdown();
+		}
+	}
+
+	private static void run(final String[] args) {
+		final Map<String, Set<Pattern>> matched = new HashMap<>();
+		final Map<String, Set<Pattern>> notMatched = new HashMap<>();
+		final Random random = new Random(42);
+
+		if (args.length >= 1 && new File(args[0]).isFile()) {
+			for (final Map.Entry<String, List<String>> entry : SetTools.loadMapMultiValsPerKey(args[0], "/").entrySet()) {
+				for (final String path : entry.getValue()) {
+					add(Blacklist.isMatchable(entry.getKey()) ? matched : notMatched, entry.getKey(), path.equals("*") ? ".*" : path);
+				}
+			}
+		} else {
+			final int entries = args.length >= 1 ? Integer.parseInt(args[0]) : 100000;
+			/* most entries of public lists block complete domains, some block paths or use wildcards and regular expressions */
+			for (int i = 0; i < entries; i++) {
+				final int kind = random.nextInt(1000);
+				if (kind < 800) {
+					add(matched, "domain" + i + ".com", ".*");
+				} else if (kind < 900) {
+					add(matched, "*.ads" + i + ".net", ".*");
+				} else if (kind < 999) {
+					add(matched, "www.site" + i + ".org", "(.*/|)banner" + i + ".*");
+				} else {
+					add(notMatched, "track" + i + "\\..*", ".*");
+				}
+			}
+		}
+		final int checks = args.length >= 2 ? Integer.parseInt(args[1]) : 20000;
+		System.out.println((matched.size() + notMatched.size()) + " blacklist hosts, " + notMatched.size() + " host regular expressions");
+
+		/* a crawl visits hosts several times, only few of them are blacklisted */
+		final String[] hosts = new String[checks];
+		final String[] paths = new String[checks];
+		for (int i = 0; i < checks; i++) {
+			final int h = random.nextInt(Math.max(1, checks / 10));
+			hosts[i] = h % 10 == 0 ? "www.domain" + h + ".com" : "www.host" + h + ".de";
+			paths[i] = "/path" + random.nextInt(100) + "/page" + i + ".html";
+		}
+
+		long beginTime = System.nanoTime();
+		final BlacklistMatcher matcher = new BlacklistMatcher(matched, notMatched);
+		final long compileTime = System.nanoTime() - beginTime;
+
+		int listedMaps = 0, listedMatcher = 0;
+		beginTime = System.nanoTime();
+		for (int i = 0; i < checks; i++) {
+			if (Blacklist.isListed(hosts[i], paths[i], matched, notMatched)) listedMaps++;
+		}
+		final long mapsTime = System.nanoTime() - beginTime;
+
+		beginTime = System.nanoTime();
+		for (int i = 0; i < checks; i++) {
+			if (matcher.isListed(hosts[i], paths[i])) listedMatcher++;
+		}
+		final long matcherTime = System.nanoTime() - beginTime;
+
+		System.out.println(checks + " checks, " + listedMaps + " listed" + (listedMaps == listedMatcher ? "" : " (matcher: " + listedMatcher + "!)"));
+		System.out.println("Compilation of the matcher : " + (compileTime / 1000000) + " ms");
+		System.out.println("Blacklist maps             : " + (mapsTime / checks) + " ns per check");
+		System.out.println("BlacklistMatcher           : " + (matcherTime / checks) + " ns per check");
+	}
+
+}
@@ -0,0 +1,67 @@
+package net.yacy.search.query;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link SearchEventCache} class.
+ */
+public class SearchEventCacheTest {
+
+    private static LinkedHashMap<String, String> events(final int count) {
+        final LinkedHashMap<String, String> map = new LinkedHashMap<String, String>(16, 0.75f, true);
+        for (int i = 0; i < count; i++) map.put("event" + i, "value" + i);
+        return map;
+    }
+
+    /**
+     * Test of evict method: the least recently used entries are removed until the budget is met
+     */
+    @Test
+    public void testEvict() {
+        final LinkedHashMap<String, String> map = events(4);
+        map.get("event0"); // event0 is now the most recently used entry
+        final List<String> evicted = new ArrayList<String>();
+        // the sizes are given in the order of access: event1, event2, event3, event0
+        assertEquals(700L, SearchEventCache.evict(map, new long[] {100, 200, 300, 400}, 700, evicted));
+        // event1 (100) and event2 (200) are removed, event3 (300) and event0 (400) remain
+        assertEquals(2, evicted.size());
+        assertEquals("value1", evicted.get(0));
+        assertEquals("value2", evicted.get(1));
+        assertEquals(2, map.size());
+        assertTrue(map.containsKey("event0"));
+        assertTrue(map.containsKey("event3"));
+    }
+
+    /**
+     * Test of evict method: nothing is removed within the budget
+     */
+    @Test
+    public void testEvictWithinBudget() {
+        final LinkedHashMap<String, String> map = events(3);
+        final List<String> evicted = new ArrayList<String>();
+        assertEquals(600L, SearchEventCache.evict(map, new long[] {100, 200, 300}, 600, evicted));
+        assertTrue(evicted.isEmpty());
+        assertEquals(3, map.size());
+    }
+
+    /**
+     * Test of evict method: the most recently used entry is kept even when it exceeds the budget alone
+     */
+    @Test
+    public void testEvictKeepsLastEntry() {
+        final LinkedHashMap<String, String> map = events(3);
+        final List<String> evicted = new ArrayList<String>();
+        assertEquals(1000L, SearchEventCache.evict(map, new long[] {100, 200, 1000}, 500, evicted));
+        assertEquals(2, evicted.size());
+        assertEquals(1, map.size());
+        assertTrue(map.containsKey("event2"));
+        assertEquals(0L, SearchEventCache.evict(new LinkedHashMap<String, String>(), new long[0], 500, evicted));
+    }
+}
@@ -0,0 +1,156 @@
+// CitationGraphPerfTest.java
+// -----------------------
+// part of YaCy
+// Copyright 2026 by the YaCy contributors
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.ranking;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+import net.yacy.cora.order.Base64Order;
+
+/**
+ * Comparing the performances of the citation rank computation of a large synthetic host
+ * with maps of document ids, as done before by the CRHost class of the postprocessing,
+ * and with the compressed sparse rows of the {@link CitationGraph}
+ */
+public class CitationGraphPerfTest {
+
+	private static final double DAMPING = 0.85d;
+	private static final int CONVERGE_EQ_FACTOR = 1000000;
+	private static final int MAX_STEPS = 30;
+
+	private static String id(final int n) {
+		final char[] c = new char[12];
+		for (int j = 0; j < 6; j++) {
+			c[j] = Base64Order.enhancedCoder.encodeByte((byte) ((n >>> (6 * j)) & 63));
+			c[6 + j] = 'A'; // all documents on the same host
+		}
+		return new String(c);
+	}
+
+	private static boolean eqd(final double a, final double b) {
+		return ((int) (a * CONVERGE_EQ_FACTOR)) == ((int) (b * CONVERGE_EQ_FACTOR));
+	}
+
+	/**
+	 * The rank computation with maps: for each document the internal ids which link to it,
+	 * the number of internal links of each document and the {old value, new value} ranks
+	 */
+	private static int rankMaps(final Map<String, List<String>> references, final Map<String, Integer> internalLinks) {
+		final Map<String, double[]> crt = new ConcurrentHashMap<String, double[]>();
+		for (final String id: references.keySet()) crt.put(id, new double[]{1.0d / references.size(), 0.0d});
+		final double df = (1.0d - DAMPING) / crt.size();
+		int steps = 0;
+		while (steps++ < MAX_STEPS) {
+			boolean convergence = true;
+			for (final Map.Entry<String, double[]> entry: crt.entrySet()) {
+				double ncr = 0.0d;
+				for (final String iid: references.get(entry.getKey())) {
+					final int ilc = internalLinks.get(iid).intValue();
+					if (ilc > 0) ncr += crt.get(iid)[0] / ilc;
+				}
+				ncr = df + DAMPING * ncr;
+				if (convergence && !eqd(ncr, entry.getValue()[0])) convergence = false;
+				entry.getValue()[1] = ncr;
+			}
+			for (final double[] d: crt.values()) d[0] = d[1];
+			if (convergence) break;
+		}
+		return steps;
+	}
+
+	/**
+	 * The rank computation with the graph
+	 */
+	private static int rankGraph(final CitationGraph graph) {
+		double[] cr = graph.initialRank();
+		double[] ncr = new double[graph.size()];
+		int steps = 0;
+		while (steps++ < MAX_STEPS) {
+			graph.rankStep(cr, ncr, DAMPING);
+			boolean convergence = true;
+			for (int n = 0; n < cr.length; n++) if (!eqd(ncr[n], cr[n])) {convergence = false; break;}
+			final double[] t = cr; cr = ncr; ncr = t;
+			if (convergence) break;
+		}
+		CitationGraph.normalize(cr);
+		return steps;
+	}
+
+	/**
+	 * Rank a synthetic host with both variants
+	 *
+	 * @param args
+	 *            parameters: [number of documents] [average number of internal links of a document]
+	 */
+	public static void main(final String[] args) {
+		final int size = args.length >= 1 ? Integer.parseInt(args[0]) : 1000000;
+		final int linksPerDocument = args.length >= 2 ? Integer.parseInt(args[1]) : 10;
+		final Random random = new Random(42);
+
+		/* a power-law like link structure: a few documents are linked from many others */
+		final String[] ids = new String[size];
+		for (int i = 0; i < size; i++) ids[i] = id(i);
+		final int[][] outlinks = new int[size][];
+		long links = 0;
+		for (int i = 0; i < size; i++) {
+			final int count = 1 + random.nextInt(2 * linksPerDocument);
+			outlinks[i] = new int[count];
+			for (int j = 0; j < count; j++) {
+				final double r = random.nextDouble();
+				outlinks[i][j] = (int) (size * r * r * r);
+			}
+			links += count;
+		}
+		System.out.println("Synthetic host with " + size + " documents and " + links + " internal links");
+
+		long beginTime = System.nanoTime();
+		final Map<String, List<String>> references = new HashMap<String, List<String>>();
+		final Map<String, Integer> internalLinks = new HashMap<String, Integer>();
+		for (int i = 0; i < size; i++) {
+			references.put(ids[i], new ArrayList<String>());
+			internalLinks.put(ids[i], outlinks[i].length);
+		}
+		for (int i = 0; i < size; i++) for (final int t: outlinks[i]) references.get(ids[t]).add(ids[i]);
+		final long mapsBuildTime = System.nanoTime() - beginTime;
+		beginTime = System.nanoTime();
+		final int mapsSteps = rankMaps(references, internalLinks);
+		final long mapsTime = System.nanoTime() - beginTime;
+		references.clear();
+		internalLinks.clear();
+
+		beginTime = System.nanoTime();
+		final CitationGraph.Builder builder = new CitationGraph.Builder(size);
+		for (int i = 0; i < size; i++) builder.addNode(ids[i], outlinks[i].length);
+		for (int i = 0; i < size; i++) for (final int t: outlinks[i]) builder.addLink(builder.node(ids[i]), builder.node(ids[t]));
+		final CitationGraph graph = builder.build();
+		final long graphBuildTime = System.nanoTime() - beginTime;
+		beginTime = System.nanoTime();
+		final int graphSteps = rankGraph(graph);
+		final long graphTime = System.nanoTime() - beginTime;
+
+		System.out.println("Maps          : build " + (mapsBuildTime / 1000000) + " ms, " + mapsSteps + " steps in " + (mapsTime / 1000000) + " ms");
+		System.out.println("CitationGraph : build " + (graphBuildTime / 1000000) + " ms, " + graphSteps + " steps in " + (graphTime / 1000000) + " ms (including normalization)");
+	}
+
+}
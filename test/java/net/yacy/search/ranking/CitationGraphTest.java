@@ -0,0 +1,90 @@
+package net.yacy.search.ranking;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link CitationGraph} class.
+ */
+public class CitationGraphTest {
+
+    /**
+     * Test the compressed rows of the links
+     */
+    @Test
+    public void testLinks() {
+        final CitationGraph.Builder builder = new CitationGraph.Builder(2);
+        final int a = builder.addNode("AAAAAAAAAAAA", 2);
+        final int b = builder.addNode("BBBBBBBBBBBB", 1);
+        final int c = builder.addNode("CCCCCCCCCCCC", 0);
+        assertEquals(a, builder.addNode("AAAAAAAAAAAA", 5));
+        assertEquals(-1, builder.node("DDDDDDDDDDDD"));
+        builder.addLink(a, b);
+        builder.addLink(a, c);
+        builder.addLink(b, c);
+        builder.addLink(c, a);
+        final CitationGraph graph = builder.build();
+
+        assertEquals(3, graph.size());
+        assertEquals(4, graph.links());
+        assertEquals("BBBBBBBBBBBB", graph.id(b));
+        assertArrayEquals(new int[]{b, c}, graph.outLinks(a));
+        assertArrayEquals(new int[]{a, b}, graph.inLinks(c));
+        assertEquals(1, graph.inDegree(a));
+        assertEquals(1, graph.outDegree(c));
+
+        // c has no counted links, it divides its rank by the number of known links
+        final double[] rank = new double[]{0.5d, 0.3d, 0.2d};
+        final double[] next = new double[3];
+        graph.rankStep(rank, next, 0.85d);
+        final double df = 0.15d / 3;
+        assertEquals(df + 0.85d * 0.2d, next[a], 1e-12);
+        assertEquals(df + 0.85d * 0.5d / 2, next[b], 1e-12);
+        assertEquals(df + 0.85d * (0.5d / 2 + 0.3d), next[c], 1e-12);
+    }
+
+    /**
+     * Test that the normalization gives the same classes as the ordered map of the previous implementation
+     */
+    @Test
+    public void testNormalize() {
+        final Random random = new Random(7);
+        for (final int n: new int[]{1, 2, 3, 10, 100, 1000}) {
+            final double[] rank = new double[n];
+            for (int i = 0; i < n; i++) rank[i] = random.nextInt(Math.max(1, n / 3)) / 100.0d; // with equal ranks
+            assertArrayEquals(normalizeWithMap(rank), CitationGraph.normalize(rank));
+        }
+    }
+
+    private static int[] normalizeWithMap(final double[] rank) {
+        final TreeMap<Double, List<Integer>> reorder = new TreeMap<Double, List<Integer>>();
+        for (int i = 0; i < rank.length; i++) {
+            List<Integer> ds = reorder.get(rank[i]);
+            if (ds == null) {ds = new ArrayList<Integer>(); reorder.put(rank[i], ds);}
+            ds.add(i);
+        }
+        int nextcount = (rank.length + 1) / 2;
+        int nextcrn = 0;
+        final int[] r = new int[rank.length];
+        while (reorder.size() > 0) {
+            int count = nextcount;
+            while (reorder.size() > 0 && count > 0) {
+                Map.Entry<Double, List<Integer>> next = reorder.pollFirstEntry();
+                count -= next.getValue().size();
+                for (int i: next.getValue()) r[i] = nextcrn;
+            }
+            nextcrn++;
+            nextcount = Math.max(1, (nextcount + count + 1) / 2);
+        }
+        for (int i = 0; i < r.length; i++) r[i] += 11 - nextcrn;
+        return r;
+    }
+}
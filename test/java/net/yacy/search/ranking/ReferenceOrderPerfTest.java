@@ -0,0 +1,176 @@
+// ReferenceOrderPerfTest.java
+// -----------------------
+// part of YaCy
+// Copyright 2026 by the YaCy contributors
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.search.ranking;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import net.yacy.cora.document.analysis.Classification;
+import net.yacy.cora.order.Base64Order;
+import net.yacy.cora.sorting.WeakPriorityBlockingQueue;
+import net.yacy.cora.sorting.WeakPriorityBlockingQueue.ReverseElement;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Response;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceColumns;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
+
+/**
+ * Comparing the performances of the ranking of a large reference container with
+ * the decoding into {@link WordReferenceVars} objects
+ * ({@link ReferenceOrder#normalizeWith(ReferenceContainer, long, boolean)}) and
+ * with the decoding into {@link WordReferenceColumns}
+ * ({@link ReferenceOrder#normalizeAndRank(WordReferenceColumns)})
+ */
+public class ReferenceOrderPerfTest {
+
+	/** the number of best references which are kept, as in the search event */
+	private static final int TOPK = 3000;
+
+	private static ReferenceContainer<WordReference> container(final int size, final Random random) throws SpaceExceededException {
+		final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(new WordReferenceFactory(), Word.word2hash("test"), size);
+		final byte[] urlhash = new byte[Word.commonHashLength];
+		for (int i = 0; i < size; i++) {
+			/* a synthetic url hash: 6 bytes for the url, 6 bytes for one of size / 20 hosts */
+			final long url = (i * 0x9E3779B1L) & 0xfffffffffL; // unique for each reference
+			final long host = random.nextInt(Math.max(1, size / 20));
+			for (int j = 0; j < 6; j++) {
+				urlhash[j] = (byte) Base64Order.enhancedCoder.encodeByte((byte) ((url >>> (6 * j)) & 63));
+				urlhash[6 + j] = (byte) Base64Order.enhancedCoder.encodeByte((byte) ((host >>> (6 * j)) & 63));
+			}
+			final int posintext = 1 + random.nextInt(1000);
+			final LinkedBlockingQueue<Integer> positions = new LinkedBlockingQueue<Integer>();
+			if (random.nextBoolean()) positions.add(posintext + 1 + random.nextInt(50));
+			final Bitfield flags = new Bitfield(4);
+			for (int f = 0; f < 32; f++) flags.set(f, random.nextInt(4) == 0);
+			container.add(new WordReferenceVars(urlhash.clone(), 20 + random.nextInt(200), random.nextInt(10), random.nextInt(20),
+					1 + random.nextInt(50), 10 + random.nextInt(5000), 1 + random.nextInt(300), posintext, positions, random.nextInt(30),
+					random.nextInt(200), System.currentTimeMillis() - random.nextInt(1000) * 86400000L, random.nextBoolean() ? "en" : "de",
+					Response.DT_TEXT, random.nextInt(100), random.nextInt(100), flags, 0.0d));
+		}
+		container.sort();
+		return container;
+	}
+
+	private static long gcCount() {
+		long count = 0;
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) count += Math.max(0, gc.getCollectionCount());
+		return count;
+	}
+
+	private static long gcTime() {
+		long time = 0;
+		for (final GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) time += Math.max(0, gc.getCollectionTime());
+		return time;
+	}
+
+	/**
+	 * The ranking with reference objects: all references are decoded, normalized
+	 * and put on a stack which keeps the best of them
+	 */
+	private static WeakPriorityBlockingQueue<WordReferenceVars> rankObjects(final ReferenceContainer<WordReference> container, final RankingProfile profile) throws InterruptedException {
+		final ReferenceOrder order = new ReferenceOrder(profile, "en");
+		final WeakPriorityBlockingQueue<WordReferenceVars> stack = new WeakPriorityBlockingQueue<WordReferenceVars>(TOPK, false);
+		final BlockingQueue<WordReferenceVars> decoded = order.normalizeWith(container, Long.MAX_VALUE, true);
+		WordReferenceVars reference;
+		while ((reference = decoded.take()) != WordReferenceVars.poison) {
+			stack.put(new ReverseElement<WordReferenceVars>(reference, order.cardinal(reference)));
+		}
+		return stack;
+	}
+
+	/**
+	 * The ranking with columns: the references are decoded into columns and
+	 * ranked, only the best of them are decoded into reference objects
+	 */
+	private static WeakPriorityBlockingQueue<WordReferenceVars> rankColumns(final ReferenceContainer<WordReference> container, final RankingProfile profile) {
+		final ReferenceOrder order = new ReferenceOrder(profile, "en");
+		final WeakPriorityBlockingQueue<WordReferenceVars> stack = new WeakPriorityBlockingQueue<WordReferenceVars>(TOPK, false);
+		final WordReferenceColumns columns = new WordReferenceColumns(container);
+		final long[] ranking = order.normalizeAndRank(columns);
+		long minranking = Long.MIN_VALUE;
+		if (ranking.length > TOPK) {
+			final long[] sorted = ranking.clone();
+			Arrays.sort(sorted);
+			minranking = sorted[sorted.length - TOPK];
+		}
+		for (int i = 0; i < ranking.length; i++) {
+			if (ranking[i] >= minranking) stack.put(new ReverseElement<WordReferenceVars>(columns.vars(i, true), ranking[i]));
+		}
+		return stack;
+	}
+
+	/**
+	 * Rank a synthetic container with both variants
+	 *
+	 * @param args
+	 *            parameters: [number of references] [number of runs]
+	 */
+	public static void main(final String[] args) throws InterruptedException, SpaceExceededException {
+		try {
+			run(args);
+		} finally {
+			ConcurrentLog.shutdown();
+		}
+	}
+
+	private static void run(final String[] args) throws InterruptedException, SpaceExceededException {
+		final int size = args.length >= 1 ? Integer.parseInt(args[0]) : 500000;
+		final int runs = args.length >= 2 ? Integer.parseInt(args[1]) : 5;
+		final RankingProfile profile = new RankingProfile(Classification.ContentDomain.TEXT);
+		profile.coeff_authority = 13; // include the host counts
+		final ReferenceContainer<WordReference> container = container(size, new Random(42));
+		System.out.println("Container with " + container.size() + " references, " + runs + " runs, best " + TOPK + " kept");
+
+		/* warm up both variants before measuring */
+		rankObjects(container, profile);
+		rankColumns(container, profile);
+
+		long gcCount = gcCount(), gcTime = gcTime();
+		long beginTime = System.nanoTime();
+		WeakPriorityBlockingQueue<WordReferenceVars> objects = null;
+		for (int i = 0; i < runs; i++) objects = rankObjects(container, profile);
+		final long objectsTime = System.nanoTime() - beginTime;
+		final long objectsGcCount = gcCount() - gcCount, objectsGcTime = gcTime() - gcTime;
+
+		gcCount = gcCount();
+		gcTime = gcTime();
+		beginTime = System.nanoTime();
+		WeakPriorityBlockingQueue<WordReferenceVars> columns = null;
+		for (int i = 0; i < runs; i++) columns = rankColumns(container, profile);
+		final long columnsTime = System.nanoTime() - beginTime;
+		final long columnsGcCount = gcCount() - gcCount, columnsGcTime = gcTime() - gcTime;
+
+		/* the rankings differ: with reference objects each reference is ranked as soon as it is decoded, with the normalization at that time */
+		System.out.println("Stack sizes " + objects.sizeQueue() + " / " + columns.sizeQueue());
+		System.out.println("WordReferenceVars    : " + (objectsTime / runs / 1000000) + " ms per run, " + objectsGcCount + " collections in " + objectsGcTime + " ms");
+		System.out.println("WordReferenceColumns : " + (columnsTime / runs / 1000000) + " ms per run, " + columnsGcCount + " collections in " + columnsGcTime + " ms");
+	}
+
+}
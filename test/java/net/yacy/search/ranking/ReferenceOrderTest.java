@@ -3,12 +3,29 @@ package net.yacy.search.ranking;
 import java.io.File;
 import java.io.IOException;
 import java.net.MalformedURLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
 import net.yacy.cora.document.analysis.Classification;
+import net.yacy.cora.document.encoding.ASCII;
 import net.yacy.cora.document.id.DigestURL;
 import net.yacy.cora.util.SpaceExceededException;
+import net.yacy.crawler.retrieval.Response;
 import net.yacy.kelondro.data.meta.URIMetadataNode;
+import net.yacy.kelondro.data.word.Word;
+import net.yacy.kelondro.data.word.WordReference;
+import net.yacy.kelondro.data.word.WordReferenceColumns;
+import net.yacy.kelondro.data.word.WordReferenceFactory;
+import net.yacy.kelondro.data.word.WordReferenceVars;
+import net.yacy.kelondro.rwi.ReferenceContainer;
+import net.yacy.kelondro.util.Bitfield;
 import net.yacy.search.schema.CollectionConfiguration;
 import org.apache.solr.common.SolrInputDocument;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import org.junit.Test;
 
@@ -49,4 +66,75 @@ public class ReferenceOrderTest {
 
     }
 
+    /**
+     * @return a container with references with random properties
+     */
+    static ReferenceContainer<WordReference> randomContainer(final int size, final Random random) throws MalformedURLException, SpaceExceededException {
+        final ReferenceContainer<WordReference> container = new ReferenceContainer<WordReference>(new WordReferenceFactory(), Word.word2hash("test"), size);
+        for (int i = 0; i < size; i++) {
+            final int posintext = 1 + random.nextInt(1000);
+            final LinkedBlockingQueue<Integer> positions = new LinkedBlockingQueue<Integer>();
+            if (random.nextBoolean()) positions.add(posintext + 1 + random.nextInt(50)); // the word distance of a joined reference
+            final Bitfield flags = new Bitfield(4);
+            for (int f = 0; f < 32; f++) flags.set(f, random.nextInt(4) == 0);
+            container.add(new WordReferenceVars(
+                    new DigestURL("http://www.host" + random.nextInt(1 + size / 10) + (random.nextBoolean() ? ".org" : ".info") + "/page" + i + ".html").hash(),
+                    20 + random.nextInt(200), random.nextInt(10), random.nextInt(20), 1 + random.nextInt(50), 10 + random.nextInt(5000), 1 + random.nextInt(300),
+                    posintext, positions, random.nextInt(30), random.nextInt(200), System.currentTimeMillis() - random.nextInt(1000) * 86400000L,
+                    random.nextBoolean() ? "en" : "de", Response.DT_TEXT, random.nextInt(100), random.nextInt(100), flags, 0.0d));
+        }
+        return container;
+    }
+
+    /**
+     * Test that the ranking of the decoded columns is the same as the cardinal of the normalized references
+     */
+    @Test
+    public void testNormalizeAndRank() throws Exception {
+        final ReferenceContainer<WordReference> container = randomContainer(2000, new Random(42));
+        final WordReferenceColumns columns = new WordReferenceColumns(container);
+        assertEquals(container.size(), columns.size());
+
+        final RankingProfile authority = new RankingProfile(Classification.ContentDomain.TEXT);
+        authority.coeff_authority = 13;
+        for (final RankingProfile profile: new RankingProfile[]{new RankingProfile(Classification.ContentDomain.TEXT), authority}) {
+            final ReferenceOrder objects = new ReferenceOrder(profile, "en");
+            final BlockingQueue<WordReferenceVars> decoded = objects.normalizeWith(container, Long.MAX_VALUE, true);
+            final Map<String, WordReferenceVars> references = new HashMap<String, WordReferenceVars>();
+            WordReferenceVars reference;
+            while ((reference = decoded.take()) != WordReferenceVars.poison) references.put(ASCII.String(reference.urlhash()), reference);
+            assertEquals(container.size(), references.size());
+
+            final long[] ranking = new ReferenceOrder(profile, "en").normalizeAndRank(columns);
+            for (int i = 0; i < columns.size(); i++) {
+                reference = references.get(ASCII.String(columns.urlhash(i)));
+                assertEquals(objects.cardinal(reference), ranking[i]);
+                assertEquals(objects.cardinal(reference), objects.cardinal(columns.vars(i, true)));
+            }
+        }
+    }
+
+    /**
+     * Test the decoding of the properties of the references into columns
+     */
+    @Test
+    public void testColumns() throws Exception {
+        final ReferenceContainer<WordReference> container = randomContainer(100, new Random(7));
+        final WordReferenceColumns columns = new WordReferenceColumns(container);
+        for (int i = 0; i < columns.size(); i++) {
+            final WordReferenceVars reference = columns.vars(i, true);
+            assertArrayEquals(reference.urlhash(), columns.urlhash(i));
+            assertEquals(reference.hosthash(), columns.hosthash(i));
+            assertTrue(columns.isHost(i, ASCII.getBytes(reference.hosthash())));
+            assertTrue(columns.isLanguage(i, reference.getLanguage()));
+            assertEquals(reference.getType(), columns.type(i));
+            assertEquals(reference.hitcount(), columns.criterion(WordReferenceColumns.HITCOUNT)[i]);
+            assertEquals(reference.distance(), columns.criterion(WordReferenceColumns.DISTANCE)[i]);
+            assertEquals(reference.virtualAge(), columns.criterion(WordReferenceColumns.VIRTUALAGE)[i]);
+            assertEquals(reference.wordsintext(), columns.criterion(WordReferenceColumns.WORDSINTEXT)[i]);
+            assertEquals(reference.termFrequency(), columns.termFrequency(i), 0.0d);
+            for (int f = 0; f < 32; f++) assertEquals(reference.flags().get(f), columns.flag(i, f));
+        }
+    }
+
 }
@@ -0,0 +1,63 @@
+package net.yacy.search.schema;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.solr.common.SolrDocument;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link SignatureIndex} class.
+ */
+public class SignatureIndexTest {
+
+    private static SolrDocument doc(final String id, final int httpstatus, final Boolean canonicalEqualSku, final Integer robots, final Long exactSignature, final Long fuzzySignature) {
+        final SolrDocument doc = new SolrDocument();
+        doc.setField(CollectionSchema.id.getSolrFieldName(), id);
+        doc.setField(CollectionSchema.httpstatus_i.getSolrFieldName(), httpstatus);
+        if (canonicalEqualSku != null) doc.setField(CollectionSchema.canonical_equal_sku_b.getSolrFieldName(), canonicalEqualSku);
+        if (robots != null) doc.setField(CollectionSchema.robots_i.getSolrFieldName(), robots);
+        if (exactSignature != null) doc.setField(CollectionSchema.exact_signature_l.getSolrFieldName(), exactSignature);
+        if (fuzzySignature != null) doc.setField(CollectionSchema.fuzzy_signature_l.getSolrFieldName(), fuzzySignature);
+        return doc;
+    }
+
+    /**
+     * Test the condition for indexable documents
+     */
+    @Test
+    public void testIsIndexable() {
+        assertTrue(SignatureIndex.isIndexable(doc("AAAAAAAAAAAA", 200, null, null, null, null)));
+        assertTrue(SignatureIndex.isIndexable(doc("AAAAAAAAAAAA", 200, true, 0, null, null)));
+        assertFalse(SignatureIndex.isIndexable(doc("AAAAAAAAAAAA", 404, null, null, null, null)));
+        assertFalse(SignatureIndex.isIndexable(doc("AAAAAAAAAAAA", 200, false, null, null, null)));
+        assertFalse(SignatureIndex.isIndexable(doc("AAAAAAAAAAAA", 200, null, 8, null, null)));
+        assertFalse(SignatureIndex.isIndexable(doc("AAAAAAAAAAAA", 200, null, 1536, null, null)));
+    }
+
+    /**
+     * Test the counts and the first ids of the signatures
+     */
+    @Test
+    public void testHostSignatures() {
+        final SignatureIndex.Builder builder = new SignatureIndex.Builder();
+        builder.add(doc("CCCCCCCCCCCC", 200, null, null, 1L, 10L));
+        builder.add(doc("BBBBBBBBBBBB", 200, true, null, 1L, 20L));
+        builder.add(doc("DDDDDDDDDDDD", 200, null, null, 1L, 30L));
+        builder.add(doc("AAAAAAAAAAAA", 200, null, 8, 1L, 10L)); // noindex
+        builder.add(doc("EEEEEEEEEEEE", 200, null, null, -5L, null));
+        final SignatureIndex.HostSignatures signatures = builder.build();
+
+        assertEquals(3, signatures.count(CollectionSchema.exact_signature_l, 1L));
+        assertEquals("BBBBBBBBBBBB", signatures.firstID(CollectionSchema.exact_signature_l, 1L));
+        assertEquals(1, signatures.count(CollectionSchema.exact_signature_l, -5L));
+        assertEquals(1, signatures.count(CollectionSchema.fuzzy_signature_l, 10L));
+        assertEquals("CCCCCCCCCCCC", signatures.firstID(CollectionSchema.fuzzy_signature_l, 10L));
+        assertEquals(0, signatures.count(CollectionSchema.exact_signature_l, 2L));
+        assertNull(signatures.firstID(CollectionSchema.exact_signature_l, 2L));
+        assertEquals(0, signatures.count(CollectionSchema.title_exact_signature_l, 1L));
+        assertEquals(0, signatures.count(CollectionSchema.sku, 1L));
+    }
+}
@@ -0,0 +1,128 @@
+package net.yacy.search.snippet;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link SnippetWorkerPool} class.
+ */
+public class SnippetWorkerPoolTest {
+
+    /** the results of the jobs: the name of the job, with "expired" or "cancelled" appended */
+    private final List<String> results = new CopyOnWriteArrayList<String>();
+
+    private class TestJob implements SnippetWorkerPool.Job {
+        private final String name;
+        private final CountDownLatch done;
+
+        private TestJob(final String name, final CountDownLatch done) {
+            this.name = name;
+            this.done = done;
+        }
+
+        @Override
+        public void run(final boolean expired) {
+            SnippetWorkerPoolTest.this.results.add(expired ? this.name + " expired" : this.name);
+            this.done.countDown();
+        }
+
+        @Override
+        public void cancel() {
+            SnippetWorkerPoolTest.this.results.add(this.name + " cancelled");
+            this.done.countDown();
+        }
+    }
+
+    /** a job which blocks the single worker until it is released */
+    private static SnippetWorkerPool.Job blocker(final CountDownLatch started, final CountDownLatch release) {
+        return new SnippetWorkerPool.Job() {
+            @Override
+            public void run(final boolean expired) {
+                started.countDown();
+                try {
+                    release.await(10, TimeUnit.SECONDS);
+                } catch (final InterruptedException e) {
+                    // interrupted by a cancel
+                }
+            }
+
+            @Override
+            public void cancel() {
+            }
+        };
+    }
+
+    @Before
+    public void setUp() {
+        SnippetWorkerPool.configure(1, false);
+    }
+
+    @After
+    public void tearDown() {
+        SnippetWorkerPool.configure(SnippetWorkerPool.DEFAULT_WORKERS, false);
+    }
+
+    /**
+     * Test that the queued jobs are computed by rank and that the queue is bounded
+     */
+    @Test
+    public void testRankOrderAndRejection() throws InterruptedException {
+        final SnippetWorkerPool.Batch batch = SnippetWorkerPool.newBatch(Long.MAX_VALUE);
+        final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        assertTrue(batch.submit(blocker(started, release), 0));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        final CountDownLatch done = new CountDownLatch(4);
+        assertTrue(batch.submit(new TestJob("low", done), 1));
+        assertTrue(batch.submit(new TestJob("best", done), 3));
+        assertTrue(batch.submit(new TestJob("middle", done), 2));
+        assertTrue(batch.submit(new TestJob("worst", done), 0));
+        final long rejected = SnippetWorkerPool.getRejected();
+        assertFalse("the queue is full", batch.submit(new TestJob("rejected", done), 4));
+        assertEquals(rejected + 1, SnippetWorkerPool.getRejected());
+
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("[best, middle, low, worst]", this.results.toString());
+    }
+
+    /**
+     * Test the deadline and the cancellation of a batch
+     */
+    @Test
+    public void testDeadlineAndCancel() throws InterruptedException {
+        final SnippetWorkerPool.Batch expired = SnippetWorkerPool.newBatch(System.currentTimeMillis() - 1);
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(expired.submit(new TestJob("late", done), 0));
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("[late expired]", this.results.toString());
+        this.results.clear();
+
+        // the deadline can be extended
+        expired.extendDeadline(Long.MAX_VALUE);
+        assertFalse(expired.isExpired());
+
+        final SnippetWorkerPool.Batch batch = SnippetWorkerPool.newBatch(Long.MAX_VALUE);
+        final CountDownLatch started = new CountDownLatch(1), release = new CountDownLatch(1);
+        assertTrue(batch.submit(blocker(started, release), 0));
+        assertTrue(started.await(10, TimeUnit.SECONDS));
+        done = new CountDownLatch(1);
+        assertTrue(batch.submit(new TestJob("queued", done), 1));
+
+        // the cancel interrupts the blocker and the queued job is not run
+        batch.cancel();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals("[queued cancelled]", this.results.toString());
+        assertFalse(batch.submit(new TestJob("after", done), 0));
+    }
+}
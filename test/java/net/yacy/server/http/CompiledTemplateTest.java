@@ -0,0 +1,159 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import net.yacy.cora.document.encoding.UTF8;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverObjects;
+
+/**
+ * Unit tests for the {@link CompiledTemplate} class.
+ */
+public class CompiledTemplateTest {
+
+    private static String engine(final byte[] template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        TemplateEngine.writeTemplate("test", new ByteArrayInputStream(template), out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    private static String compiled(final byte[] template, final serverObjects pattern) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        CompiledTemplate.compile("test", template).write(out, pattern);
+        return UTF8.String(out.toByteArray());
+    }
+
+    /**
+     * Assert that the compiled template writes the same as the template engine
+     */
+    private static void assertSameOutput(final String template, final serverObjects pattern) throws IOException {
+        final byte[] b = UTF8.getBytes(template);
+        assertEquals(template, engine(b, pattern), compiled(b, pattern));
+    }
+
+    private static serverObjects pattern(final String... keyValues) {
+        final serverObjects pattern = new serverObjects();
+        for (int i = 0; i < keyValues.length; i += 2) pattern.put(keyValues[i], keyValues[i + 1]);
+        return pattern;
+    }
+
+    /**
+     * Test of normal templates and of '#' characters without meaning
+     */
+    @Test
+    public void testNormal() throws IOException {
+        assertEquals("Hello World! -UNRESOLVED_PATTERN-", compiled(UTF8.getBytes("Hello #[name]#! #[other]#"), pattern("name", "World")));
+        assertSameOutput("Hello #[name]#! #[other]#", pattern("name", "World"));
+        assertSameOutput("a # b ## c #x #[name]##[name]# #.", pattern("name", "äöü"));
+        // the template engine writes an additional 0xff byte after a '#' at the end of the template
+        assertEquals("a #", compiled(UTF8.getBytes("a #"), new serverObjects()));
+        assertSameOutput("text without patterns", new serverObjects());
+        assertSameOutput("unclosed #[name and more", pattern("name", "x"));
+        assertEquals("raw #[name]#", compiled(UTF8.getBytes("raw #[name]#"), null));
+    }
+
+    /**
+     * Test of multi templates
+     */
+    @Test
+    public void testMulti() throws IOException {
+        final String template = "<ul>\n#{list}#\n<li>#[name]# #{sub}##[v]#,#{/sub}#</li>\n#{/list}#\n</ul>";
+        final serverObjects pattern = pattern("list", "3", "list_0_name", "a", "list_1_name", "b", "list_2_name", "c",
+                "list_1_sub", "2", "list_1_sub_0_v", "x", "list_1_sub_1_v", "y");
+        assertEquals("<ul>\n<li>a </li>\n<li>b x,y,</li>\n<li>c </li>\n</ul>", compiled(UTF8.getBytes(template), pattern));
+        assertSameOutput(template, pattern);
+        assertSameOutput(template, pattern("list", ""));
+        assertSameOutput(template, pattern("list", "none"));
+        assertSameOutput("#{list}#unclosed", pattern("list", "1"));
+    }
+
+    /**
+     * Test of alternatives, selected by index, boolean and name
+     */
+    @Test
+    public void testAlternative() throws IOException {
+        final String template = "[#(x)#zero::one #[v]#::two#(/x)#]";
+        assertEquals("[one V]", compiled(UTF8.getBytes(template), pattern("x", "1", "x_v", "V")));
+        for (final String x: new String[]{"0", "1", "2", "5", "-1", "true", "false"}) {
+            assertSameOutput(template, pattern("x", x, "x_v", "V"));
+        }
+        assertSameOutput(template, new serverObjects());
+
+        // nested alternatives and multi templates
+        final String nested = "#(a)#A0::#(b)#B0::B1 a:b #(c)#C0#(/c)#::B2#(/b)#::A2#{l}##(d)#D0::D1#(/d)##{/l}#.#(/a)#end";
+        for (final String a: new String[]{"0", "1", "2"}) {
+            for (final String b: new String[]{"0", "1", "2"}) {
+                assertSameOutput(nested, pattern("a", a, "a_b", b, "a_l", "2", "a_l_0_d", "1", "a_l_1_d", "0"));
+            }
+        }
+
+        // the template engine writes an additional 0xff byte after a multi template at the end of an alternative
+        assertEquals("xyxy", compiled(UTF8.getBytes("#(a)#::#{l}#xy#{/l}##(/a)#"), pattern("a", "1", "a_l", "2")));
+
+        // selection by name
+        final String byName = "pre #(a)#%%fooFOO::%%barBAR::#(/a)# post";
+        assertEquals("pre FOO post", compiled(UTF8.getBytes(byName), pattern("a", "foo")));
+        assertSameOutput(byName, pattern("a", "foo"));
+        assertSameOutput(byName, pattern("a", "bar"));
+        assertSameOutput(byName, pattern("a", "baz"));
+
+        // an alternative selected by name is compiled once and rendered again with other values
+        final CompiledTemplate t = CompiledTemplate.compile("test", UTF8.getBytes("#(a)#%%foo#[v]#::%%bar-#(/a)#"));
+        for (final String v: new String[]{"1", "2"}) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            t.write(out, pattern("a", "foo", "a_v", v));
+            assertEquals(v, UTF8.String(out.toByteArray()));
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        t.write(out, pattern("a", "bar"));
+        assertEquals("-", UTF8.String(out.toByteArray()));
+    }
+
+    /**
+     * Test with the templates of the htroot which have no includes
+     */
+    @Test
+    public void testHtroot() throws IOException {
+        final File[] files = new File("htroot").listFiles();
+        int count = 0;
+        for (final File file: files) {
+            if (!file.isFile() || !file.getName().endsWith(".html")) continue;
+            final byte[] b = FileUtils.read(file);
+            if (UTF8.String(b).contains("#%")) continue;
+            assertEquals(file.getName(), engine(b, new serverObjects()), compiled(b, new serverObjects()));
+            count++;
+        }
+        assertEquals(true, count > 0);
+    }
+
+    /**
+     * Test of the cache which is invalidated when the template file is changed
+     */
+    @Test
+    public void testCache() throws IOException {
+        final File file = File.createTempFile("CompiledTemplateTest", ".html");
+        try {
+            FileUtils.copy(UTF8.getBytes("Hello #[name]#"), file);
+            final CompiledTemplate t0 = CompiledTemplate.get(file);
+            assertSame(t0, CompiledTemplate.get(file));
+            FileUtils.copy(UTF8.getBytes("Goodbye #[name]#"), file);
+            final CompiledTemplate t1 = CompiledTemplate.get(file);
+            assertNotSame(t0, t1);
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            t1.write(out, pattern("name", "World"));
+            assertEquals("Goodbye World", UTF8.String(out.toByteArray()));
+        } finally {
+            file.delete();
+            CompiledTemplate.clearCache();
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package net.yacy.server.http;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.yacy.kelondro.util.FileUtils;
+
+/**
+ * Unit tests for the {@link StaticFile} class.
+ */
+public class StaticFileTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File compressed;
+
+    @Before
+    public void setUp() throws IOException {
+        this.compressed = this.folder.newFolder("compressed");
+        StaticFile.setCompressedPath(this.compressed, this.folder.getRoot());
+    }
+
+    @After
+    public void tearDown() {
+        StaticFile.setCompressedPath(null);
+        StaticFile.clear();
+    }
+
+    private File file(final String name, final String content) throws IOException {
+        final File file = new File(this.folder.getRoot(), name);
+        FileUtils.copy(content.getBytes(StandardCharsets.UTF_8), file);
+        return file;
+    }
+
+    private static String repeat(final String s, final int n) {
+        final StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < n; i++) sb.append(s);
+        return sb.toString();
+    }
+
+    /**
+     * the gzip variant is generated in the background, wait for it
+     */
+    private static StaticFile selectGzip(final StaticFile file) throws Exception {
+        StaticFile selected = file.select("gzip, deflate");
+        for (int i = 0; i < 500 && selected == file; i++) {
+            Thread.sleep(10);
+            selected = file.select("gzip, deflate");
+        }
+        return selected;
+    }
+
+    private static byte[] content(final StaticFile file) throws IOException {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        file.writeTo(out, 0, file.length());
+        return out.toByteArray();
+    }
+
+    /**
+     * Test the cache, the entity tags and the mapped content
+     */
+    @Test
+    public void testGet() throws IOException {
+        final File f = file("style.css", "body {color: black;}");
+        final StaticFile file = StaticFile.get(f);
+        assertSame(file, StaticFile.get(f));
+        assertTrue(file.isMapped());
+        assertNull(file.encoding());
+        assertEquals("body {color: black;}", new String(content(file), StandardCharsets.UTF_8));
+        final ByteBuffer part = file.content(6, 5);
+        assertEquals(5, part.remaining());
+        assertEquals('c', part.get(0));
+
+        assertTrue(file.etag().startsWith("\"") && file.etag().endsWith("\""));
+        assertTrue(file.matches(file.etag()));
+        assertTrue(file.matches("\"other\", W/" + file.etag()));
+        assertTrue(file.matches("*"));
+        assertFalse(file.matches("\"other\""));
+        assertFalse(file.matches(null));
+
+        // a changed file is read again and has another entity tag
+        FileUtils.copy("body {color: white; margin: 0;}".getBytes(StandardCharsets.UTF_8), f);
+        final StaticFile changed = StaticFile.get(f);
+        assertNotEquals(file.etag(), changed.etag());
+        assertFalse(changed.matches(file.etag()));
+        assertEquals("body {color: white; margin: 0;}", new String(content(changed), StandardCharsets.UTF_8));
+
+        // the mapped size is given back when the cache is cleared
+        assertTrue(StaticFile.mappedSize() > 0);
+        StaticFile.clear();
+        assertEquals(0, StaticFile.size());
+        assertEquals(0, StaticFile.mappedSize());
+    }
+
+    /**
+     * Test that files outside of the root directories are not compressed
+     */
+    @Test
+    public void testOutsideRoots() throws Exception {
+        StaticFile.setCompressedPath(this.compressed, this.compressed);
+        final StaticFile file = StaticFile.get(file("outside.js", repeat("var outside = 'YaCy';\n", 100)));
+        assertFalse(file.hasVariants());
+        assertSame(file, file.select("gzip"));
+        Thread.sleep(100);
+        assertSame(file, file.select("gzip"));
+        assertEquals(0, this.compressed.list().length);
+    }
+
+    /**
+     * Test the generated gzip variant and the selection by the Accept-Encoding header
+     */
+    @Test
+    public void testGzipVariant() throws Exception {
+        final String text = repeat("function f() { return 'YaCy'; }\n", 100);
+        final StaticFile file = StaticFile.get(file("script.js", text));
+        // the variant is not generated without a request which accepts it
+        assertNull(file.variant(StaticFile.GZIP));
+        assertTrue(file.hasVariants());
+        assertNull(file.variant(StaticFile.GZIP));
+        final StaticFile gzip = selectGzip(file);
+        assertNotSame(file, gzip);
+        assertEquals(StaticFile.GZIP, gzip.encoding());
+        assertTrue(gzip.length() < file.length());
+        assertNotEquals(file.etag(), gzip.etag());
+        assertTrue(file.hasVariants());
+
+        final byte[] decoded = FileUtils.read(new GZIPInputStream(new ByteArrayInputStream(content(gzip))));
+        assertArrayEquals(text.getBytes(StandardCharsets.UTF_8), decoded);
+
+        assertSame(file, file.select(null));
+        assertSame(file, file.select("deflate"));
+        assertSame(file, file.select("gzip;q=0, *"));
+        assertSame(gzip, file.select("*"));
+        assertSame(gzip, file.select("br, gzip;q=0.5"));
+
+        // small and already compressed files have no variants
+        assertNull(StaticFile.get(file("small.js", "var a = 1;")).variant(StaticFile.GZIP));
+        assertNull(StaticFile.get(file("image.png", repeat("x", 1000))).variant(StaticFile.GZIP));
+    }
+
+    /**
+     * Test that the variants provided as sibling files are preferred
+     */
+    @Test
+    public void testSiblingVariants() throws Exception {
+        final File f = file("index.html", repeat("<p>YaCy</p>\n", 100));
+        final File br = file("index.html.br", "brotli");
+        br.setLastModified(f.lastModified());
+        final StaticFile file = StaticFile.get(f);
+        final StaticFile brotli = file.select("gzip, br");
+        assertEquals(StaticFile.BROTLI, brotli.encoding());
+        assertEquals("brotli", new String(content(brotli), StandardCharsets.UTF_8));
+        assertEquals(StaticFile.GZIP, selectGzip(file).encoding());
+    }
+
+    /**
+     * Test the generation of the variants of a directory
+     */
+    @Test
+    public void testPrecompress() throws IOException {
+        final File a = file("a.css", repeat("a {color: red;}\n", 50));
+        file("b.html", repeat("<p>page</p>\n", 50));
+        file("b.class", "servlet"); // b.html is a template
+        file("c.gif", repeat("x", 1000));
+        assertEquals(1, StaticFile.precompress(this.folder.getRoot()));
+        assertEquals(StaticFile.GZIP, StaticFile.get(a).select("gzip").encoding());
+
+        // the variants of deleted files are deleted
+        file("d.js", repeat("var d = 'YaCy';\n", 50));
+        assertEquals(2, StaticFile.precompress(this.folder.getRoot()));
+        assertEquals(2, this.compressed.list().length);
+        StaticFile.clear();
+        assertTrue(new File(this.folder.getRoot(), "d.js").delete());
+        assertEquals(1, StaticFile.deleteUnused());
+        assertEquals(1, this.compressed.list().length);
+    }
+}
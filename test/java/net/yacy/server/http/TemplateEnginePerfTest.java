@@ -0,0 +1,102 @@
+// TemplateEnginePerfTest.java
+// -----------------------
+// part of YaCy
+// Copyright 2026 by the YaCy contributors
+//
+// This program is free software; you can redistribute it and/or modify
+// it under the terms of the GNU General Public License as published by
+// the Free Software Foundation; either version 2 of the License, or
+// (at your option) any later version.
+//
+// This program is distributed in the hope that it will be useful,
+// but WITHOUT ANY WARRANTY; without even the implied warranty of
+// MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+// GNU General Public License for more details.
+//
+// You should have received a copy of the GNU General Public License
+// along with this program; if not, write to the Free Software
+// Foundation, Inc., 59 Temple Place, Suite 330, Boston, MA  02111-1307  USA
+
+package net.yacy.server.http;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+
+import net.yacy.cora.util.ByteBuffer;
+import net.yacy.cora.util.ConcurrentLog;
+import net.yacy.kelondro.util.FileUtils;
+import net.yacy.server.serverObjects;
+
+/**
+ * Comparing the rendering performances of the {@link TemplateEngine} and of
+ * the {@link CompiledTemplate}
+ */
+public class TemplateEnginePerfTest {
+
+	/**
+	 * Render a template file repeatedly, as the servlet does it: with the
+	 * template engine the file is read and parsed for each request, the
+	 * compiled template is taken from the cache and written into a reused
+	 * buffer.
+	 *
+	 * @param args
+	 *            parameters: the template file, the number of runs and
+	 *            pattern values as key=value
+	 * @throws IOException
+	 */
+	public static void main(final String[] args) throws IOException {
+		if (args.length < 1) {
+			System.out.println("Usage : java TemplateEnginePerfTest <templateFilePath> [runs] [key=value ...]");
+			return;
+		}
+		try {
+			run(args);
+		} finally {
+			ConcurrentLog.shutdown();
+		}
+	}
+
+	private static void run(final String[] args) throws IOException {
+
+		final File file = new File(args[0]);
+		final int runs = args.length >= 2 ? Integer.parseInt(args[1]) : 10000;
+		final serverObjects pattern = new serverObjects();
+		for (int i = 2; i < args.length; i++) {
+			final int p = args[i].indexOf('=');
+			if (p > 0) {
+				pattern.put(args[i].substring(0, p), args[i].substring(p + 1));
+			}
+		}
+
+		final ByteBuffer buffer = new ByteBuffer(4096);
+		long size = 0;
+		/* warm up both variants before measuring */
+		for (int i = 0; i < Math.min(runs, 1000); i++) {
+			TemplateEngine.writeTemplate(file.getName(), new ByteArrayInputStream(FileUtils.read(file)), new ByteBuffer(4096), pattern);
+			buffer.clear();
+			CompiledTemplate.get(file).write(buffer, pattern);
+		}
+
+		long beginTime = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			final ByteBuffer out = new ByteBuffer(4096);
+			TemplateEngine.writeTemplate(file.getName(), new ByteArrayInputStream(FileUtils.read(file)), out, pattern);
+			size += out.length();
+		}
+		final long engineTime = System.nanoTime() - beginTime;
+
+		beginTime = System.nanoTime();
+		for (int i = 0; i < runs; i++) {
+			buffer.clear();
+			CompiledTemplate.get(file).write(buffer, pattern);
+			size -= buffer.length();
+		}
+		final long compiledTime = System.nanoTime() - beginTime;
+
+		System.out.println("Rendered " + file.getAbsolutePath() + " " + runs + " times" + (size == 0 ? "" : " (outputs differ!)"));
+		System.out.println("TemplateEngine   : " + (engineTime / runs / 1000) + " microseconds per run");
+		System.out.println("CompiledTemplate : " + (compiledTime / runs / 1000) + " microseconds per run");
+	}
+
+}